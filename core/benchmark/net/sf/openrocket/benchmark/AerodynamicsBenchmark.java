@@ -0,0 +1,44 @@
+package net.sf.openrocket.benchmark;
+
+import net.sf.openrocket.aerodynamics.AerodynamicForces;
+import net.sf.openrocket.aerodynamics.BarrowmanCalculator;
+import net.sf.openrocket.aerodynamics.FlightConditions;
+import net.sf.openrocket.aerodynamics.WarningSet;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.util.TestRockets;
+
+/**
+ * Calculates the aerodynamic forces of the Estes Alpha III at varying Mach numbers
+ * and angles of attack.
+ */
+public class AerodynamicsBenchmark extends Benchmark {
+	
+	private final BarrowmanCalculator calculator = new BarrowmanCalculator();
+	private final WarningSet warnings = new WarningSet();
+	private FlightConfiguration configuration;
+	private FlightConditions conditions;
+	private int step = 0;
+	
+	public AerodynamicsBenchmark() {
+		super("aerodynamics.barrowman");
+	}
+	
+	@Override
+	public void setUp() {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		configuration = rocket.getSelectedConfiguration();
+		conditions = new FlightConditions(configuration);
+	}
+	
+	@Override
+	public double run() {
+		step = (step + 1) % 1000;
+		conditions.setMach(0.05 + 0.0005 * step);
+		conditions.setAOA(Math.toRadians(0.01 * step));
+		conditions.setRollRate(0.01 * step);
+		
+		AerodynamicForces forces = calculator.getAerodynamicForces(configuration, conditions, warnings);
+		return forces.getCN() + forces.getCD();
+	}
+}
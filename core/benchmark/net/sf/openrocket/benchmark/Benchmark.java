@@ -0,0 +1,51 @@
+package net.sf.openrocket.benchmark;
+
+/**
+ * A single benchmarked operation.  The runner calls {@link #setUp()} once, then
+ * {@link #run()} repeatedly during the warmup and measurement iterations, and finally
+ * {@link #tearDown()}.
+ * <p>
+ * Each call of {@link #run()} performs one operation.  Implementations should vary the
+ * input of successive operations where the measured code could otherwise return a
+ * cached result, and return a value depending on the result so that the computation
+ * cannot be eliminated by the JIT compiler.
+ */
+public abstract class Benchmark {
+	
+	private final String name;
+	
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Return the name of the benchmark, used in the results.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Prepare the benchmark, excluded from the measurements.
+	 */
+	public void setUp() throws Exception {
+	}
+	
+	/**
+	 * Perform one operation.
+	 * 
+	 * @return	a value depending on the result of the operation.
+	 */
+	public abstract double run() throws Exception;
+	
+	/**
+	 * Release the resources of the benchmark.
+	 */
+	public void tearDown() throws Exception {
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,321 @@
+package net.sf.openrocket.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import net.sf.openrocket.ServicesForTesting;
+import net.sf.openrocket.database.motor.MotorDatabase;
+import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.plugin.PluginModule;
+import net.sf.openrocket.startup.Application;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+
+/**
+ * Runs the benchmarks of OpenRocket and writes the results in the JSON format of JMH,
+ * so that the results can be compared using the tools available for JMH.
+ * <p>
+ * Each benchmark is run for a number of warmup iterations followed by a number of
+ * measurement iterations of fixed duration.  The score of an iteration is the average
+ * time per operation, and the score of the benchmark is the mean over the measurement
+ * iterations.  The score error is the half-width of the 99.9% confidence interval,
+ * computed using the normal distribution.  Where the JVM supports measuring thread
+ * allocation, the allocated bytes per operation are reported as the secondary metric
+ * <code>gc.alloc.rate.norm</code>.
+ * <p>
+ * Usage: <code>BenchmarkRunner [output file]</code>, with the system properties
+ * <code>benchmark.include</code> (a regular expression matching the names of the benchmarks
+ * to run), <code>benchmark.warmup</code> and <code>benchmark.iterations</code> (the number of
+ * warmup and measurement iterations) and <code>benchmark.time</code> (the duration of each
+ * iteration in milliseconds).
+ */
+public class BenchmarkRunner {
+
+	/** Quantile of the normal distribution for a 99.9% confidence interval. */
+	private static final double CONFIDENCE_QUANTILE = 3.291;
+
+	private final int warmupIterations;
+	private final int measurementIterations;
+	private final long iterationTime;
+
+
+	/**
+	 * @param warmupIterations		the number of warmup iterations.
+	 * @param measurementIterations	the number of measurement iterations.
+	 * @param iterationTime			the duration of each iteration (ms).
+	 */
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationTime) {
+		if (warmupIterations < 0 || measurementIterations < 1 || iterationTime < 1) {
+			throw new IllegalArgumentException("warmupIterations=" + warmupIterations +
+					" measurementIterations=" + measurementIterations + " iterationTime=" + iterationTime);
+		}
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationTime = iterationTime;
+	}
+
+
+	/**
+	 * Return all benchmarks.
+	 */
+	public static List<Benchmark> getBenchmarks() {
+		List<Benchmark> list = new ArrayList<Benchmark>();
+		list.add(new SimulationBenchmark());
+		list.add(new AerodynamicsBenchmark());
+		list.add(new MassBenchmark());
+		list.add(new MotorBenchmark(false));
+		list.add(new MotorBenchmark(true));
+		list.add(new FileBenchmark(false));
+		list.add(new FileBenchmark(true));
+		return list;
+	}
+
+
+	/**
+	 * Run a single benchmark.
+	 *
+	 * @param benchmark	the benchmark to run.
+	 * @return			the results of the measurement iterations.
+	 * @throws Exception	if the benchmark fails.
+	 */
+	public Result run(Benchmark benchmark) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = null;
+		if (threads instanceof com.sun.management.ThreadMXBean &&
+				((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			allocation = (com.sun.management.ThreadMXBean) threads;
+		}
+		long threadId = Thread.currentThread().getId();
+
+		Result result = new Result(benchmark.getName(), measurementIterations);
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				iterate(benchmark);
+			}
+
+			long operations = 0;
+			long allocatedBefore = (allocation != null) ? allocation.getThreadAllocatedBytes(threadId) : 0;
+			for (int i = 0; i < measurementIterations; i++) {
+				long start = System.nanoTime();
+				long count = iterate(benchmark);
+				long end = System.nanoTime();
+
+				result.scores[i] = (end - start) / 1000.0 / count;
+				operations += count;
+			}
+			if (allocation != null) {
+				long allocated = allocation.getThreadAllocatedBytes(threadId) - allocatedBefore;
+				result.allocation = (double) allocated / operations;
+			}
+		} finally {
+			benchmark.tearDown();
+		}
+		return result;
+	}
+
+	/**
+	 * Run operations for the duration of one iteration.
+	 *
+	 * @return	the number of operations performed.
+	 */
+	private long iterate(Benchmark benchmark) throws Exception {
+		long end = System.nanoTime() + iterationTime * 1000000L;
+		long count = 0;
+		double sink = 0;
+		do {
+			sink += benchmark.run();
+			count++;
+		} while (System.nanoTime() < end);
+
+		if (sink == Double.MIN_VALUE) {
+			// Never true in practice, prevents eliminating the operations
+			System.out.println(sink);
+		}
+		return count;
+	}
+
+
+	/**
+	 * Write the results in the JSON format of JMH.
+	 */
+	public void writeJSON(List<Result> results, PrintWriter out) {
+		out.println("[");
+		for (int i = 0; i < results.size(); i++) {
+			Result r = results.get(i);
+			out.println("    {");
+			out.println("        \"benchmark\" : \"" + r.getName() + "\",");
+			out.println("        \"mode\" : \"avgt\",");
+			out.println("        \"threads\" : 1,");
+			out.println("        \"forks\" : 1,");
+			out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+			out.println("        \"warmupTime\" : \"" + iterationTime + " ms\",");
+			out.println("        \"measurementIterations\" : " + measurementIterations + ",");
+			out.println("        \"measurementTime\" : \"" + iterationTime + " ms\",");
+			out.println("        \"primaryMetric\" : {");
+			out.println("            \"score\" : " + format(r.getScore()) + ",");
+			out.println("            \"scoreError\" : " + format(r.getScoreError()) + ",");
+			out.println("            \"scoreUnit\" : \"us/op\",");
+			StringBuilder raw = new StringBuilder();
+			for (int j = 0; j < r.scores.length; j++) {
+				if (j > 0) {
+					raw.append(", ");
+				}
+				raw.append(format(r.scores[j]));
+			}
+			out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+			if (Double.isNaN(r.getAllocation())) {
+				out.println("        },");
+				out.println("        \"secondaryMetrics\" : {}");
+			} else {
+				out.println("        },");
+				out.println("        \"secondaryMetrics\" : {");
+				out.println("            \"gc.alloc.rate.norm\" : {");
+				out.println("                \"score\" : " + format(r.getAllocation()) + ",");
+				out.println("                \"scoreUnit\" : \"B/op\"");
+				out.println("            }");
+				out.println("        }");
+			}
+			out.println((i < results.size() - 1) ? "    }," : "    }");
+		}
+		out.println("]");
+	}
+
+	private static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "\"NaN\"";
+		}
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+
+
+	public static void main(String[] args) throws Exception {
+		// Empty motor database, the benchmarks add the motors they need
+		final ThrustCurveMotorSetDatabase motors = new ThrustCurveMotorSetDatabase();
+		Module motorModule = new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(MotorDatabase.class).toInstance(motors);
+				bind(ThrustCurveMotorSetDatabase.class).toInstance(motors);
+			}
+		};
+		Injector injector = Guice.createInjector(Modules.override(new ServicesForTesting()).with(motorModule),
+				new PluginModule());
+		Application.setInjector(injector);
+
+		Pattern include = Pattern.compile(System.getProperty("benchmark.include", ".*"));
+		BenchmarkRunner runner = new BenchmarkRunner(
+				Integer.getInteger("benchmark.warmup", 5),
+				Integer.getInteger("benchmark.iterations", 10),
+				Long.getLong("benchmark.time", 1000L));
+
+		List<Result> results = new ArrayList<Result>();
+		for (Benchmark benchmark : getBenchmarks()) {
+			if (!include.matcher(benchmark.getName()).find()) {
+				continue;
+			}
+			System.out.println("Running " + benchmark.getName());
+			Result result = runner.run(benchmark);
+			System.out.println("    " + result);
+			results.add(result);
+		}
+
+		System.out.println();
+		System.out.println(String.format(Locale.ROOT, "%-28s %14s %12s %14s", "Benchmark", "Score (us/op)", "Error", "Alloc (B/op)"));
+		for (Result r : results) {
+			System.out.println(String.format(Locale.ROOT, "%-28s %14.3f %12.3f %14.0f",
+					r.getName(), r.getScore(), r.getScoreError(), r.getAllocation()));
+		}
+
+		if (args.length > 0) {
+			File file = new File(args[0]);
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			try {
+				runner.writeJSON(results, out);
+			} finally {
+				out.close();
+			}
+			if (out.checkError()) {
+				throw new IOException("Error writing " + file);
+			}
+			System.out.println();
+			System.out.println("Results written to " + file);
+		}
+	}
+
+
+	/**
+	 * The results of a benchmark.
+	 */
+	public static class Result {
+		private final String name;
+		private final double[] scores;
+		private double allocation = Double.NaN;
+
+		private Result(String name, int iterations) {
+			this.name = name;
+			this.scores = new double[iterations];
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Return the mean time per operation (us).
+		 */
+		public double getScore() {
+			double sum = 0;
+			for (double s : scores) {
+				sum += s;
+			}
+			return sum / scores.length;
+		}
+
+		/**
+		 * Return the half-width of the 99.9% confidence interval of the score (us),
+		 * or NaN if there is only one iteration.
+		 */
+		public double getScoreError() {
+			if (scores.length < 2) {
+				return Double.NaN;
+			}
+			double mean = getScore();
+			double sum = 0;
+			for (double s : scores) {
+				sum += (s - mean) * (s - mean);
+			}
+			double deviation = Math.sqrt(sum / (scores.length - 1));
+			return CONFIDENCE_QUANTILE * deviation / Math.sqrt(scores.length);
+		}
+
+		/**
+		 * Return the allocated bytes per operation, or NaN if not available.
+		 */
+		public double getAllocation() {
+			return allocation;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s: %.3f +- %.3f us/op, %.0f B/op",
+					name, getScore(), getScoreError(), allocation);
+		}
+	}
+}
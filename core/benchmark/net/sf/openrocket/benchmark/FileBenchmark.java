@@ -0,0 +1,79 @@
+package net.sf.openrocket.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.OpenRocketDocumentFactory;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.file.GeneralRocketLoader;
+import net.sf.openrocket.file.openrocket.OpenRocketSaver;
+import net.sf.openrocket.motor.MotorConfiguration;
+import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.rocketcomponent.FlightConfigurationId;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.startup.Application;
+
+/**
+ * Saves or loads an .ork document of the Estes Alpha III containing a simulation with
+ * its flight data.  The document is saved to and loaded from memory, so the results
+ * do not include the file system.
+ */
+public class FileBenchmark extends Benchmark {
+	
+	private final boolean load;
+	private final OpenRocketSaver saver = new OpenRocketSaver();
+	private final StorageOptions options = new StorageOptions();
+	private OpenRocketDocument document;
+	private byte[] bytes;
+	
+	/**
+	 * @param load	whether to load the document instead of saving it.
+	 */
+	public FileBenchmark(boolean load) {
+		super(load ? "file.load" : "file.save");
+		this.load = load;
+	}
+	
+	@Override
+	public void setUp() throws Exception {
+		Simulation simulation = SimulationBenchmark.createSimulation();
+		document = OpenRocketDocumentFactory.createDocumentFromRocket(simulation.getRocket());
+		document.addSimulation(simulation);
+		
+		// The loader looks up the motors of the document in the motor database
+		Rocket rocket = simulation.getRocket();
+		ThrustCurveMotorSetDatabase motors = Application.getInjector().getInstance(ThrustCurveMotorSetDatabase.class);
+		for (FlightConfigurationId id : rocket.getIds()) {
+			for (MotorConfiguration motorConfig : rocket.getFlightConfiguration(id).getActiveMotors()) {
+				if (motors.findMotor(motorConfig.getMotor().getDigest()) == null) {
+					motors.addMotor((ThrustCurveMotor) motorConfig.getMotor());
+				}
+			}
+		}
+		simulation.simulate();
+		
+		options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+		bytes = save();
+	}
+	
+	@Override
+	public double run() throws Exception {
+		if (load) {
+			GeneralRocketLoader loader = new GeneralRocketLoader(new File("benchmark.ork"));
+			OpenRocketDocument loaded = loader.load(new ByteArrayInputStream(bytes));
+			return loaded.getSimulationCount();
+		} else {
+			return save().length;
+		}
+	}
+	
+	private byte[] save() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes != null ? bytes.length : 1024);
+		saver.save(out, document, options);
+		return out.toByteArray();
+	}
+}
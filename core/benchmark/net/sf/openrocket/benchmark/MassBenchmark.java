@@ -0,0 +1,36 @@
+package net.sf.openrocket.benchmark;
+
+import net.sf.openrocket.masscalc.MassCalculation;
+import net.sf.openrocket.masscalc.MassCalculator;
+import net.sf.openrocket.masscalc.RigidBody;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.rocketcomponent.FlightConfigurationId;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.util.TestRockets;
+
+/**
+ * Calculates the launch mass properties of the Falcon 9 Heavy, which includes parallel
+ * boosters and clustered motors, at varying motor times.
+ */
+public class MassBenchmark extends Benchmark {
+	
+	private FlightConfiguration configuration;
+	private int step = 0;
+	
+	public MassBenchmark() {
+		super("mass.falcon9Heavy");
+	}
+	
+	@Override
+	public void setUp() {
+		Rocket rocket = TestRockets.makeFalcon9Heavy();
+		configuration = rocket.getFlightConfiguration(new FlightConfigurationId(TestRockets.FALCON_9H_FCID_1));
+	}
+	
+	@Override
+	public double run() {
+		step = (step + 1) % 1000;
+		RigidBody body = MassCalculator.calculate(MassCalculation.Type.LAUNCH, configuration, 0.005 * step);
+		return body.getMass() + body.getLongitudinalInertia();
+	}
+}
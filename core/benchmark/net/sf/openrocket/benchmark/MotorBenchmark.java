@@ -0,0 +1,50 @@
+package net.sf.openrocket.benchmark;
+
+import net.sf.openrocket.motor.Motor;
+import net.sf.openrocket.motor.MotorConfiguration;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.util.TestRockets;
+
+/**
+ * Evaluates the thrust curve of the motor of the Estes Alpha III at successive times,
+ * either as the instantaneous thrust or as the average thrust over a simulation time step.
+ */
+public class MotorBenchmark extends Benchmark {
+	
+	private static final double TIME_STEP = 0.01;
+	
+	private final boolean average;
+	private Motor motor;
+	private double time = 0;
+	
+	/**
+	 * @param average	whether to evaluate the average thrust instead of the thrust.
+	 */
+	public MotorBenchmark(boolean average) {
+		super(average ? "motor.averageThrust" : "motor.thrust");
+		this.average = average;
+	}
+	
+	@Override
+	public void setUp() {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		FlightConfiguration configuration = rocket.getFlightConfiguration(rocket.getId(2));
+		for (MotorConfiguration motorConfig : configuration.getActiveMotors()) {
+			motor = motorConfig.getMotor();
+		}
+	}
+	
+	@Override
+	public double run() {
+		time += TIME_STEP;
+		if (time > motor.getBurnTime()) {
+			time = 0;
+		}
+		if (average) {
+			return motor.getAverageThrust(time, time + TIME_STEP);
+		} else {
+			return motor.getThrust(time);
+		}
+	}
+}
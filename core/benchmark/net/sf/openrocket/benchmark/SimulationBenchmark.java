@@ -0,0 +1,56 @@
+package net.sf.openrocket.benchmark;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.simulation.BasicEventSimulationEngine;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.RK4SimulationStepper;
+import net.sf.openrocket.simulation.SimulationConditions;
+import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.util.TestRockets;
+
+/**
+ * Simulates a complete flight of the Estes Alpha III with the default RK4 stepper.
+ */
+public class SimulationBenchmark extends Benchmark {
+	
+	private Simulation simulation;
+	private long seed = 0;
+	
+	public SimulationBenchmark() {
+		super("simulation.alphaIII");
+	}
+	
+	@Override
+	public void setUp() {
+		simulation = createSimulation();
+	}
+	
+	/**
+	 * Create a simulation of the Estes Alpha III.  All options are set
+	 * explicitly, as the preferences used for testing default to zero.
+	 */
+	static Simulation createSimulation() {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		Simulation simulation = new Simulation(rocket);
+		simulation.setFlightConfigurationId(rocket.getId(2));
+		
+		SimulationOptions options = simulation.getOptions();
+		options.setTimeStep(RK4SimulationStepper.RECOMMENDED_TIME_STEP);
+		options.setISAAtmosphere(true);
+		options.setLaunchRodLength(1.0);
+		options.setLaunchLatitude(28.6);
+		options.setWindSpeedAverage(3);
+		options.setWindTurbulenceIntensity(0.1);
+		return simulation;
+	}
+	
+	@Override
+	public double run() throws Exception {
+		simulation.getOptions().setRandomSeed((int) seed++);
+		SimulationConditions conditions = simulation.getOptions().toSimulationConditions();
+		conditions.setSimulation(simulation);
+		FlightData data = new BasicEventSimulationEngine().simulate(conditions);
+		return data.getMaxAltitude();
+	}
+}
@@ -17,6 +17,8 @@
 package de.congrace.exp4j;
 
 import java.text.NumberFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Abstract base class for mathematical expressions
@@ -71,5 +73,20 @@ abstract class AbstractExpression {
 	Token[] getTokens() {
 		return tokens;
 	}
+
+	/**
+	 * get the names of the variables referenced by the expression
+	 * 
+	 * @return the variable names in order of first occurrence
+	 */
+	public Set<String> getVariableNames() {
+		Set<String> names = new LinkedHashSet<String>();
+		for (Token t : tokens) {
+			if (t instanceof VariableToken) {
+				names.add(t.getValue());
+			}
+		}
+		return names;
+	}
 	
 }
@@ -1,5 +1,7 @@
 package de.congrace.exp4j;
 
+import java.util.Set;
+
 /**
  * This is the basic result class of the exp4j {@link ExpressionBuilder}
  * 
@@ -28,4 +30,22 @@ public interface Calculable {
 	 *            the value of the variable
 	 */
 	public void setVariable(Variable var);
+
+	/**
+	 * return the names of the variables referenced by the expression
+	 * 
+	 * @return the variable names in order of first occurrence
+	 */
+	public Set<String> getVariableNames();
+
+	/**
+	 * compile the expression for evaluation on primitive doubles
+	 * 
+	 * @param variableNames
+	 *            the names of the variables, in the order of the values given
+	 *            to the compiled expression
+	 * @return the compiled expression, or null if the expression cannot be
+	 *         compiled, for example if it uses a variable not named
+	 */
+	public DoubleExpression compile(String... variableNames);
 }
@@ -68,6 +68,24 @@ public abstract class CustomFunction extends CalculationToken {
 	 */
 	public abstract Variable applyFunction(List<Variable> vars);
 
+	/**
+	 * apply the function to double arguments, as used by compiled expressions. The
+	 * default implementation wraps the arguments in variables and calls
+	 * {@link #applyFunction(List)}, functions of doubles may override this to avoid
+	 * the allocation.
+	 * 
+	 * @param args
+	 *            the argument values, which must not be modified
+	 * @return the double value of the result
+	 */
+	public double applyDoubleFunction(double[] args) {
+		List<Variable> vars = new ArrayList<Variable>(args.length);
+		for (double arg : args) {
+			vars.add(new Variable("double argument", arg));
+		}
+		return applyFunction(vars).getDoubleValue();
+	}
+
     @Override
 	void mutateStackForCalculation(Stack<Variable> stack, VariableSet variables) {
 	    List<Variable> args = new ArrayList<Variable>(argc);
@@ -0,0 +1,242 @@
+package de.congrace.exp4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * An expression compiled into a tree of operations on primitive doubles. Unlike
+ * calculating a {@link Calculable}, evaluating a compiled expression does not
+ * allocate any objects (unless it calls a custom function that does), so it is
+ * suitable for evaluating an expression on every step of a simulation.
+ * <p>
+ * Only expressions of double values can be compiled. Custom functions are applied
+ * to double arguments, so array valued variables are not supported.
+ * <p>
+ * A compiled expression must not be evaluated by several threads at the same time.
+ * 
+ * @see Calculable#compile(String...)
+ */
+public abstract class DoubleExpression {
+
+	/**
+	 * evaluate the expression
+	 * 
+	 * @param values
+	 *            the variable values, in the order of the variable names the
+	 *            expression was compiled with
+	 * @return the value of the expression
+	 */
+	public abstract double evaluate(double[] values);
+
+
+	/**
+	 * compile postfix tokens
+	 * 
+	 * @param tokens
+	 *            the tokens of the expression in postfix order
+	 * @param variableNames
+	 *            the names of the variables, in the order of the values given
+	 *            to the compiled expression
+	 * @return the compiled expression, or null if the tokens cannot be compiled,
+	 *         in which case the expression should be calculated using the tokens
+	 */
+	static DoubleExpression compile(Token[] tokens, String[] variableNames) {
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		for (int i = 0; i < variableNames.length; i++) {
+			indexes.put(variableNames[i], i);
+		}
+
+		Stack<DoubleExpression> stack = new Stack<DoubleExpression>();
+		for (Token t : tokens) {
+			if (t instanceof NumberToken) {
+				stack.push(new Constant(Double.parseDouble(t.getValue())));
+
+			} else if (t instanceof VariableToken) {
+				Integer index = indexes.get(t.getValue());
+				if (index == null) {
+					return null;
+				}
+				stack.push(new Value(index));
+
+			} else if (t instanceof OperatorToken) {
+				OperatorToken op = (OperatorToken) t;
+				if (stack.size() < op.getOperandCount()) {
+					return null;
+				}
+				DoubleExpression e;
+				if (op.getOperandCount() == 2) {
+					DoubleExpression b = stack.pop();
+					DoubleExpression a = stack.pop();
+					e = binary(op.getOperation(), a, b);
+				} else {
+					e = unary(op.getOperation(), stack.pop());
+				}
+				if (e == null) {
+					return null;
+				}
+				stack.push(e);
+
+			} else if (t instanceof FunctionToken) {
+				if (stack.isEmpty()) {
+					return null;
+				}
+				stack.push(new Function((FunctionToken) t, stack.pop()));
+
+			} else if (t instanceof CustomFunction) {
+				CustomFunction fn = (CustomFunction) t;
+				if (stack.size() < fn.getArgumentCount()) {
+					return null;
+				}
+				DoubleExpression[] args = new DoubleExpression[fn.getArgumentCount()];
+				for (int i = args.length - 1; i >= 0; i--) {
+					args[i] = stack.pop();
+				}
+				stack.push(new Custom(fn, args));
+
+			} else {
+				return null;
+			}
+		}
+
+		if (stack.isEmpty()) {
+			return null;
+		}
+		return stack.pop();
+	}
+
+	/**
+	 * @return the compiled binary operation, or null if the operation is not a
+	 *         binary operation that can be compiled
+	 */
+	static DoubleExpression binary(OperatorToken.Operation operation, final DoubleExpression a, final DoubleExpression b) {
+		switch (operation) {
+		case ADDITION:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return a.evaluate(values) + b.evaluate(values);
+				}
+			};
+		case SUBTRACTION:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return a.evaluate(values) - b.evaluate(values);
+				}
+			};
+		case MULTIPLICATION:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return a.evaluate(values) * b.evaluate(values);
+				}
+			};
+		case DIVISION:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return a.evaluate(values) / b.evaluate(values);
+				}
+			};
+		case MODULO:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return a.evaluate(values) % b.evaluate(values);
+				}
+			};
+		case EXPONENTIATION:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return Math.pow(a.evaluate(values), b.evaluate(values));
+				}
+			};
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return the compiled unary operation, or null if the operation is not a
+	 *         unary operation that can be compiled
+	 */
+	static DoubleExpression unary(OperatorToken.Operation operation, final DoubleExpression a) {
+		switch (operation) {
+		case UNARY_MINUS:
+			return new DoubleExpression() {
+				@Override
+				public double evaluate(double[] values) {
+					return -a.evaluate(values);
+				}
+			};
+		case UNARY_PLUS:
+			return a;
+		default:
+			return null;
+		}
+	}
+
+
+	private static class Constant extends DoubleExpression {
+		private final double value;
+
+		public Constant(double value) {
+			this.value = value;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			return value;
+		}
+	}
+
+	private static class Value extends DoubleExpression {
+		private final int index;
+
+		public Value(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			return values[index];
+		}
+	}
+
+	private static class Function extends DoubleExpression {
+		private final FunctionToken function;
+		private final DoubleExpression arg;
+
+		public Function(FunctionToken function, DoubleExpression arg) {
+			this.function = function;
+			this.arg = arg;
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			return function.applyFunction(arg.evaluate(values));
+		}
+	}
+
+	private static class Custom extends DoubleExpression {
+		private final CustomFunction function;
+		private final DoubleExpression[] args;
+		private final double[] argValues;
+
+		public Custom(CustomFunction function, DoubleExpression[] args) {
+			this.function = function;
+			this.args = args;
+			this.argValues = new double[args.length];
+		}
+
+		@Override
+		public double evaluate(double[] values) {
+			for (int i = 0; i < args.length; i++) {
+				argValues[i] = args[i].evaluate(values);
+			}
+			return function.applyDoubleFunction(argValues);
+		}
+	}
+}
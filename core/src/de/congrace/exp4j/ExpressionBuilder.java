@@ -39,6 +39,8 @@ public class ExpressionBuilder {
 	 *             if the expression could not be parsed
 	 */
 	public Calculable build() throws UnknownFunctionException, UnparsableExpressionException {
+		// The builder is not modified, so that it can be built again with other variables
+		String expression = this.expression;
 		if (expression.indexOf('=') == -1 && !variables.isEmpty()) {
 
 			// User supplied an expression without leading "f(...)="
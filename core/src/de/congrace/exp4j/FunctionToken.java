@@ -92,7 +92,7 @@ class FunctionToken extends CalculationToken {
 	/*
 	 * The actual function application on a double
 	 */
-	private double applyFunction(double x){
+	double applyFunction(double x){
 		switch (function) {
 		case ABS:
 			return Math.abs(x);
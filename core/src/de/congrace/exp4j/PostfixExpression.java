@@ -115,4 +115,9 @@ public final class PostfixExpression extends AbstractExpression implements Calcu
 	public void setVariable(Variable value) {
 		variables.add(value);
 	}
+
+	@Override
+	public DoubleExpression compile(String... variableNames) {
+		return DoubleExpression.compile(getTokens(), variableNames);
+	}
 }
@@ -1,24 +1,29 @@
 package de.congrace.exp4j;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 public class VariableSet extends HashSet<Variable> {
 
+	// The last variable added with each name.  All variables are added through add(),
+	// but may have been removed from the set since.
+	private final Map<String, Variable> byName = new HashMap<String, Variable>();
+
 	@Override
 	public boolean add(Variable v){
 		Variable previous = getVariableNamed(v.getName());
 		if ( previous != null ){
 			this.remove( previous );
 		}
-			
+		byName.put(v.getName(), v);
 		return super.add(v);
 	}
 	
 	public Variable getVariableNamed(String name){
-		for (Variable var : this){
-			if (var.getName().equals(name) ){
-				return var;
-			}
+		Variable var = byName.get(name);
+		if (var != null && contains(var)){
+			return var;
 		}
 		return null;
 	}
@@ -0,0 +1,435 @@
+package net.sf.openrocket.aerodynamics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.openrocket.models.atmosphere.AtmosphericConditions;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.util.BugException;
+import net.sf.openrocket.util.Coordinate;
+import net.sf.openrocket.util.MathUtil;
+
+/**
+ * A table of the aerodynamic coefficients of a single rocket configuration, sampled
+ * from {@link BarrowmanCalculator} on a grid of flight conditions.  Tables are built
+ * using a {@link Builder} and used through a {@link TabulatedAerodynamicCalculator}.
+ * <p>
+ * The normal force, moment and roll forcing coefficients and the CP are tabulated
+ * as functions of the Mach number and angle of attack, the pressure and base drag as
+ * functions of the Mach number, and the friction drag as a function of the Mach number
+ * and the Reynolds number per unit Mach number and length.  The values between the
+ * samples are interpolated linearly.  The normal force and moment coefficients are
+ * tabulated divided by the angle of attack, since the body lift is quadratic in the
+ * angle of attack at small angles.
+ * <p>
+ * The table covers flight at zero roll rate, for which the roll damping is zero.  If
+ * the rocket has fin sets of one or two fins, the coefficients depend on the direction
+ * of the lateral airflow and the table covers no flight conditions at all.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class AerodynamicTable {
+
+	private static final Logger log = LoggerFactory.getLogger(AerodynamicTable.class);
+
+	/** Roll rate below which the roll damping is zero, see the fin set calculators. */
+	private static final double ZERO_ROLL_RATE = 0.1;
+
+	/** AOA of the samples at zero AOA, small enough for the normal force to be linear in the AOA. */
+	private static final double MIN_AOA = 1e-6;
+	
+	// Indices of the coefficients tabulated by Mach and AOA, the normal force and moment divided by the AOA
+	private static final int CNA = 0;
+	private static final int CN = 1;
+	private static final int CM = 2;
+	private static final int CSIDE = 3;
+	private static final int CYAW = 4;
+	private static final int CROLL_FORCE = 5;
+	private static final int CP_X = 6;
+	private static final int CP_Y = 7;
+	private static final int CP_Z = 8;
+	private static final int CP_WEIGHT = 9;
+	private static final int NONAXIAL_COUNT = 10;
+
+
+	private final Rocket rocket;
+	private final int configurationModID;
+	private final int aerodynamicModID;
+	private final int treeModID;
+	private final double refLength;
+	private final boolean thetaDependent;
+
+	private final double machStep;
+	private final int machCount;
+	private final double aoaStep;
+	private final int aoaCount;
+	private final double reynoldsMin;
+	private final double reynoldsStep;
+	private final int reynoldsCount;
+
+	// Values indexed by [coefficient][mach * aoaCount + aoa]
+	private final float[][] nonaxial;
+	// Values indexed by [mach]
+	private final float[] pressureCD;
+	private final float[] baseCD;
+	// Values indexed by [mach * reynoldsCount + reynolds]
+	private final float[] frictionCD;
+
+	private final Warning[] warnings;
+
+
+	private AerodynamicTable(Builder builder, FlightConfiguration configuration) {
+		this.rocket = configuration.getRocket();
+		this.configurationModID = configuration.getModID();
+		this.aerodynamicModID = rocket.getAerodynamicModID();
+		this.treeModID = rocket.getTreeModID();
+		this.refLength = configuration.getReferenceLength();
+
+		this.machStep = builder.machStep;
+		this.machCount = (int) Math.ceil(builder.maxMach / builder.machStep - 0.0001) + 1;
+		this.aoaStep = Math.PI / (builder.aoaDivisions - 1);
+		this.aoaCount = builder.aoaDivisions;
+		this.reynoldsMin = Math.log(builder.minReynolds);
+		this.reynoldsStep = Math.log(builder.reynoldsRatio);
+		this.reynoldsCount = (int) Math.ceil((Math.log(builder.maxReynolds) - reynoldsMin) / reynoldsStep
+				- 0.0001) + 1;
+
+		this.nonaxial = new float[NONAXIAL_COUNT][machCount * aoaCount];
+		this.pressureCD = new float[machCount];
+		this.baseCD = new float[machCount];
+		this.frictionCD = new float[machCount * reynoldsCount];
+
+		BarrowmanCalculator calculator = new BarrowmanCalculator();
+		FlightConditions conditions = new FlightConditions(configuration);
+		WarningSet set = new WarningSet();
+		calculator.calculateCoefficients(configuration, conditions, set);
+		this.warnings = set.toArray(new Warning[0]);
+
+		// Lateral airflow direction matters only with fin sets of one or two fins
+		conditions.setMach(0.3);
+		conditions.setAOA(0.1);
+		double cn = calculator.calculateCoefficients(configuration, conditions, new WarningSet()).getCN();
+		conditions.setTheta(1.0);
+		this.thetaDependent = !MathUtil.equals(cn,
+				calculator.calculateCoefficients(configuration, conditions, new WarningSet()).getCN());
+		if (thetaDependent) {
+			log.info("Aerodynamics of " + configuration + " depend on the airflow direction, table not usable");
+		}
+	}
+
+
+	/**
+	 * Return whether the table covers the specified configuration and flight conditions.
+	 * The configuration must be the one the table was built for, or a copy of it, and
+	 * must not have been modified since.
+	 */
+	public boolean covers(FlightConfiguration configuration, FlightConditions conditions) {
+		if (thetaDependent || configuration.getRocket() != rocket ||
+				configuration.getModID() != configurationModID ||
+				rocket.getAerodynamicModID() != aerodynamicModID ||
+				rocket.getTreeModID() != treeModID) {
+			return false;
+		}
+		if (Math.abs(conditions.getRollRate()) >= ZERO_ROLL_RATE ||
+				!MathUtil.equals(conditions.getRefLength(), refLength)) {
+			return false;
+		}
+		if (!(conditions.getMach() <= (machCount - 1) * machStep)) {
+			return false;
+		}
+		double r = getReynolds(conditions.getAtmosphericConditions());
+		return r >= 0 && r <= reynoldsCount - 1;
+	}
+
+
+	/**
+	 * Return the coefficients at the specified flight conditions, which must be covered
+	 * by the table.  The axial force and damping moments are not set.
+	 */
+	AerodynamicForces getCoefficients(FlightConditions conditions, WarningSet warningSet) {
+		double m = conditions.getMach() / machStep;
+		int mi = Math.min((int) m, machCount - 2);
+		double mf = m - mi;
+
+		double a = conditions.getAOA() / aoaStep;
+		int ai = Math.min((int) a, aoaCount - 2);
+		double af = a - ai;
+
+		double r = getReynolds(conditions.getAtmosphericConditions());
+		int ri = Math.min((int) r, reynoldsCount - 2);
+		double rf = r - ri;
+
+		int i00 = mi * aoaCount + ai;
+		int i10 = i00 + aoaCount;
+		double w00 = (1 - mf) * (1 - af);
+		double w01 = (1 - mf) * af;
+		double w10 = mf * (1 - af);
+		double w11 = mf * af;
+		double[] v = new double[NONAXIAL_COUNT];
+		for (int i = 0; i < NONAXIAL_COUNT; i++) {
+			float[] values = nonaxial[i];
+			v[i] = w00 * values[i00] + w01 * values[i00 + 1] + w10 * values[i10] + w11 * values[i10 + 1];
+		}
+
+		int f00 = mi * reynoldsCount + ri;
+		int f10 = f00 + reynoldsCount;
+		double friction = (1 - mf) * ((1 - rf) * frictionCD[f00] + rf * frictionCD[f00 + 1]) +
+				mf * ((1 - rf) * frictionCD[f10] + rf * frictionCD[f10 + 1]);
+		double pressure = (1 - mf) * pressureCD[mi] + mf * pressureCD[mi + 1];
+		double base = (1 - mf) * baseCD[mi] + mf * baseCD[mi + 1];
+
+		AerodynamicForces forces = new AerodynamicForces();
+		forces.setCNa(v[CNA]);
+		forces.setCN(v[CN] * conditions.getAOA());
+		forces.setCm(v[CM] * conditions.getAOA());
+		forces.setCside(v[CSIDE]);
+		forces.setCyaw(v[CYAW]);
+		forces.setCroll(v[CROLL_FORCE]);
+		forces.setCrollDamp(0);
+		forces.setCrollForce(v[CROLL_FORCE]);
+		forces.setCP(new Coordinate(v[CP_X], v[CP_Y], v[CP_Z], v[CP_WEIGHT]));
+		forces.setFrictionCD(friction);
+		forces.setPressureCD(pressure);
+		forces.setBaseCD(base);
+		forces.setCD(friction + pressure + base);
+
+		for (Warning w : warnings) {
+			warningSet.add(w);
+		}
+		if (conditions.getAOA() > 17.5 * Math.PI / 180) {
+			warningSet.add(new Warning.LargeAOA(conditions.getAOA()));
+		}
+		return forces;
+	}
+
+
+	/**
+	 * Return the fractional Reynolds number index of the atmospheric conditions.
+	 */
+	private double getReynolds(AtmosphericConditions atmosphere) {
+		return (Math.log(atmosphere.getMachSpeed() / atmosphere.getKinematicViscosity()) - reynoldsMin) /
+				reynoldsStep;
+	}
+
+
+	/**
+	 * Return the maximum Mach number covered by the table.
+	 */
+	public double getMaxMach() {
+		return (machCount - 1) * machStep;
+	}
+
+	/**
+	 * Return the number of coefficient samples computed for the table.
+	 */
+	public int getSampleCount() {
+		return machCount * (aoaCount + reynoldsCount);
+	}
+
+	/**
+	 * Return whether the coefficients depend on the direction of the lateral airflow,
+	 * in which case the table covers no flight conditions.
+	 */
+	public boolean isThetaDependent() {
+		return thetaDependent;
+	}
+
+
+	@Override
+	public String toString() {
+		return "AerodynamicTable[mach=0.." + getMaxMach() + "/" + machCount + ", aoa=" + aoaCount +
+				", reynolds=" + reynoldsCount + ", thetaDependent=" + thetaDependent + "]";
+	}
+
+
+
+	/**
+	 * A builder of aerodynamic tables.  The samples of a table are computed in parallel.
+	 */
+	public static class Builder {
+
+		private final FlightConfiguration configuration;
+
+		private double maxMach = 2.0;
+		private double machStep = 0.01;
+		private int aoaDivisions = 181;
+		private double minReynolds = 3e5;
+		private double maxReynolds = 3e7;
+		private double reynoldsRatio = 1.1;
+
+		/**
+		 * @param configuration	the configuration to tabulate, which must not be modified
+		 * 						while the table is being built.
+		 */
+		public Builder(FlightConfiguration configuration) {
+			this.configuration = configuration;
+		}
+
+		/**
+		 * Set the Mach number range of the table.
+		 *
+		 * @param maxMach	the maximum Mach number covered (default 2).
+		 * @param step		the spacing of the Mach number samples (default 0.01).
+		 */
+		public Builder setMach(double maxMach, double step) {
+			if (!(maxMach > 0) || !(step > 0)) {
+				throw new IllegalArgumentException("maxMach=" + maxMach + " step=" + step);
+			}
+			this.maxMach = maxMach;
+			this.machStep = step;
+			return this;
+		}
+
+		/**
+		 * Set the number of angle of attack samples in the range 0...180 degrees
+		 * (default 181).
+		 */
+		public Builder setAOADivisions(int divisions) {
+			if (divisions < 2) {
+				throw new IllegalArgumentException("divisions=" + divisions);
+			}
+			this.aoaDivisions = divisions;
+			return this;
+		}
+
+		/**
+		 * Set the range of the Reynolds number per unit Mach number and length, that is
+		 * the speed of sound divided by the kinematic viscosity.  The default range of
+		 * 3e5...3e7 1/m covers altitudes up to about 30 km.
+		 *
+		 * @param min	the minimum value (1/m).
+		 * @param max	the maximum value (1/m).
+		 * @param ratio	the ratio of successive samples (default 1.1).
+		 */
+		public Builder setReynolds(double min, double max, double ratio) {
+			if (!(min > 0) || !(max > min) || !(ratio > 1)) {
+				throw new IllegalArgumentException("min=" + min + " max=" + max + " ratio=" + ratio);
+			}
+			this.minReynolds = min;
+			this.maxReynolds = max;
+			this.reynoldsRatio = ratio;
+			return this;
+		}
+
+
+		/**
+		 * Build the table using one thread for each available processor.
+		 *
+		 * @throws InterruptedException	if the current thread was interrupted.
+		 */
+		public AerodynamicTable build() throws InterruptedException {
+			ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory() {
+						private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = factory.newThread(r);
+							t.setName("AerodynamicTable-" + t.getName());
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			try {
+				return build(executor);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+
+		/**
+		 * Build the table using the specified executor.
+		 *
+		 * @param executor	the executor computing the samples.
+		 * @throws InterruptedException	if the current thread was interrupted.
+		 */
+		public AerodynamicTable build(ExecutorService executor) throws InterruptedException {
+			long t0 = System.currentTimeMillis();
+			final AerodynamicTable table = new AerodynamicTable(this, configuration);
+
+			// Each task computes the samples of a single Mach number with its own calculator
+			List<Future<?>> futures = new ArrayList<Future<?>>(table.machCount);
+			for (int i = 0; i < table.machCount; i++) {
+				final int machIndex = i;
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						table.computeSamples(configuration, machIndex);
+						return null;
+					}
+				}));
+			}
+
+			try {
+				for (Future<?> f : futures) {
+					f.get();
+				}
+			} catch (ExecutionException e) {
+				throw new BugException("Aerodynamic table computation failed", e.getCause());
+			} finally {
+				for (Future<?> f : futures) {
+					f.cancel(true);
+				}
+			}
+
+			log.info("Built " + table + " in " + (System.currentTimeMillis() - t0) + " ms");
+			return table;
+		}
+	}
+
+
+	/**
+	 * Compute the samples of a single Mach number.  Each sample is written by exactly one
+	 * thread, and the samples are published by the completion of the tasks.
+	 */
+	private void computeSamples(FlightConfiguration configuration, int machIndex) {
+		BarrowmanCalculator calculator = new BarrowmanCalculator();
+		WarningSet ignored = new WarningSet();
+		FlightConditions conditions = new FlightConditions(configuration);
+		conditions.setMach(machIndex * machStep);
+
+		for (int i = 0; i < aoaCount; i++) {
+			double aoa = Math.max(i * aoaStep, MIN_AOA);
+			conditions.setAOA(aoa);
+			AerodynamicForces forces = calculator.calculateCoefficients(configuration, conditions, ignored);
+			if (i == 0) {
+				// Pressure and base drag depend only on the Mach number
+				pressureCD[machIndex] = (float) forces.getPressureCD();
+				baseCD[machIndex] = (float) forces.getBaseCD();
+			}
+			int index = machIndex * aoaCount + i;
+			Coordinate cp = forces.getCP();
+			nonaxial[CNA][index] = (float) forces.getCNa();
+			nonaxial[CN][index] = (float) (forces.getCN() / aoa);
+			nonaxial[CM][index] = (float) (forces.getCm() / aoa);
+			nonaxial[CSIDE][index] = (float) forces.getCside();
+			nonaxial[CYAW][index] = (float) forces.getCyaw();
+			nonaxial[CROLL_FORCE][index] = (float) forces.getCrollForce();
+			nonaxial[CP_X][index] = (float) cp.x;
+			nonaxial[CP_Y][index] = (float) cp.y;
+			nonaxial[CP_Z][index] = (float) cp.z;
+			nonaxial[CP_WEIGHT][index] = (float) cp.weight;
+		}
+
+		// Friction drag depends on the Reynolds number, which is set using the air pressure
+		conditions.setAOA(0);
+		AtmosphericConditions atmosphere = conditions.getAtmosphericConditions();
+		double standard = atmosphere.getMachSpeed() / atmosphere.getKinematicViscosity();
+		for (int i = 0; i < reynoldsCount; i++) {
+			double reynolds = Math.exp(reynoldsMin + i * reynoldsStep);
+			atmosphere.setPressure(AtmosphericConditions.STANDARD_PRESSURE * reynolds / standard);
+			AerodynamicForces forces = calculator.calculateCoefficients(configuration, conditions, ignored);
+			frictionCD[machIndex * reynoldsCount + i] = (float) forces.getFrictionCD();
+		}
+	}
+}
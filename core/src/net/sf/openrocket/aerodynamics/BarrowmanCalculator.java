@@ -131,6 +131,32 @@ public class BarrowmanCalculator extends AbstractAerodynamicCalculator {
 		if (warnings == null)
 			warnings = ignoreWarningSet;
 		
+		AerodynamicForces total = calculateCoefficients(configuration, conditions, warnings);
+		
+		total.setCaxial(calculateAxialDrag(conditions, total.getCD()));
+		
+		// Calculate pitch and yaw damping moments
+		calculateDampingMoments(configuration, conditions, total);
+		total.setCm(total.getCm() - total.getPitchDampingMoment());
+		total.setCyaw(total.getCyaw() - total.getYawDampingMoment());
+		
+		
+		return total;
+	}
+	
+	
+	/**
+	 * Calculate the non-axial force and drag coefficients of the rocket.  These depend only
+	 * on the configuration and the flight conditions excluding the pitch and yaw rates, unlike
+	 * the axial force and the damping moments computed by {@link #getAerodynamicForces}.
+	 * 
+	 * @param configuration		the rocket configuration.
+	 * @param conditions		the flight conditions.
+	 * @param warnings			the set in which to place warnings.
+	 * @return					the coefficients, excluding the axial force and damping moments.
+	 */
+	protected AerodynamicForces calculateCoefficients(FlightConfiguration configuration,
+			FlightConditions conditions, WarningSet warnings) {
 		// Calculate non-axial force data
 		AerodynamicForces total = calculateNonAxialForces(configuration, conditions, null, warnings);
 		
@@ -141,14 +167,6 @@ public class BarrowmanCalculator extends AbstractAerodynamicCalculator {
 		
 		total.setCD(total.getFrictionCD() + total.getPressureCD() + total.getBaseCD());
 		
-		total.setCaxial(calculateAxialDrag(conditions, total.getCD()));
-		
-		// Calculate pitch and yaw damping moments
-		calculateDampingMoments(configuration, conditions, total);
-		total.setCm(total.getCm() - total.getPitchDampingMoment());
-		total.setCyaw(total.getCyaw() - total.getYawDampingMoment());
-		
-		
 		return total;
 	}
 	
@@ -749,6 +767,9 @@ public class BarrowmanCalculator extends AbstractAerodynamicCalculator {
 	
 	private double getDampingMultiplier(FlightConfiguration configuration, FlightConditions conditions,
 			double cgx) {
+		if (calcMap == null)
+			buildCalcMap(configuration);
+		
 		if (cacheDiameter < 0) {
 			double area = 0;
 			cacheLength = 0;
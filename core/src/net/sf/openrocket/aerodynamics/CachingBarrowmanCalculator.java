@@ -0,0 +1,314 @@
+package net.sf.openrocket.aerodynamics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.sf.openrocket.models.atmosphere.AtmosphericConditions;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.util.Coordinate;
+
+/**
+ * A Barrowman calculator that caches the aerodynamic coefficients computed for
+ * similar flight conditions.  Successive simulation steps, and especially the
+ * sub-steps of a Runge-Kutta step, occur at nearly the same flight conditions, so
+ * most of the coefficient computations can be avoided.
+ * <p>
+ * The coefficients are computed at the nodes of a grid of flight conditions.  The
+ * coefficients at other flight conditions are interpolated linearly in Mach number
+ * and angle of attack between the four surrounding nodes, while the lateral wind
+ * direction, the roll rate and the Reynolds number use the nearest node.  The error
+ * of the coefficients is thus bounded by their variation over a single grid cell.
+ * The axial force and the pitch and yaw damping moments are always computed exactly.
+ * <p>
+ * The cache is cleared when the rocket configuration changes, for example at stage
+ * separation.  The hit counts accumulate over all calculations of the instance.
+ * <p>
+ * The calculator is selected per simulation with
+ * {@link net.sf.openrocket.simulation.SimulationOptions#setAerodynamicCache(boolean)}.
+ */
+public class CachingBarrowmanCalculator extends BarrowmanCalculator {
+
+	/** Default spacing of the Mach number nodes. */
+	public static final double DEFAULT_MACH_STEP = 0.005;
+
+	/** Default spacing of the angle of attack nodes (rad). */
+	public static final double DEFAULT_AOA_STEP = Math.PI / 720;
+
+	/** Number of lateral wind direction nodes per revolution. */
+	private static final int THETA_DIVISIONS = 144;
+
+	/** Spacing of the roll rate nodes (rad/s). */
+	private static final double ROLL_RATE_STEP = 0.05;
+
+	/** Relative spacing of the Reynolds number nodes. */
+	private static final double REYNOLDS_STEP = Math.log(1.01);
+
+	/** Number of nodes after which the cache is cleared to bound its size. */
+	private static final int MAX_NODES = 100000;
+
+	// Indices of the coefficients in the node values
+	private static final int CNA = 0;
+	private static final int CN = 1;
+	private static final int CM = 2;
+	private static final int CSIDE = 3;
+	private static final int CYAW = 4;
+	private static final int CROLL = 5;
+	private static final int CROLL_DAMP = 6;
+	private static final int CROLL_FORCE = 7;
+	private static final int CP_X = 8;
+	private static final int CP_Y = 9;
+	private static final int CP_Z = 10;
+	private static final int CP_WEIGHT = 11;
+	private static final int FRICTION_CD = 12;
+	private static final int PRESSURE_CD = 13;
+	private static final int BASE_CD = 14;
+	private static final int VALUE_COUNT = 15;
+
+
+	private final double machStep;
+	private final double aoaStep;
+
+	private final Map<NodeKey, Node> nodes = new HashMap<NodeKey, Node>();
+	private final NodeKey probe = new NodeKey();
+	private final double[] values = new double[VALUE_COUNT];
+	private FlightConfiguration cachedConfiguration = null;
+	private int cachedConfigurationModID = -1;
+
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long nodeCount = 0;
+
+
+	public CachingBarrowmanCalculator() {
+		this(DEFAULT_MACH_STEP, DEFAULT_AOA_STEP);
+	}
+
+	/**
+	 * Construct a calculator with the specified grid spacing.
+	 *
+	 * @param machStep	the spacing of the Mach number nodes.
+	 * @param aoaStep	the spacing of the angle of attack nodes (rad).
+	 */
+	public CachingBarrowmanCalculator(double machStep, double aoaStep) {
+		if (!(machStep > 0) || !(aoaStep > 0)) {
+			throw new IllegalArgumentException("machStep=" + machStep + " aoaStep=" + aoaStep);
+		}
+		this.machStep = machStep;
+		this.aoaStep = aoaStep;
+	}
+
+
+	@Override
+	public CachingBarrowmanCalculator newInstance() {
+		return new CachingBarrowmanCalculator(machStep, aoaStep);
+	}
+
+
+	@Override
+	protected AerodynamicForces calculateCoefficients(FlightConfiguration configuration,
+			FlightConditions conditions, WarningSet warnings) {
+		if (configuration != cachedConfiguration || configuration.getModID() != cachedConfigurationModID) {
+			nodes.clear();
+			cachedConfiguration = configuration;
+			cachedConfigurationModID = configuration.getModID();
+		}
+		if (nodes.size() > MAX_NODES) {
+			nodes.clear();
+		}
+
+		double m = conditions.getMach() / machStep;
+		double a = conditions.getAOA() / aoaStep;
+		int machIndex = (int) Math.floor(m);
+		int aoaIndex = (int) Math.floor(a);
+		double mf = m - machIndex;
+		double af = a - aoaIndex;
+
+		double theta = conditions.getTheta() * THETA_DIVISIONS / (2 * Math.PI);
+		probe.theta = (int) (Math.round(theta) % THETA_DIVISIONS);
+		if (probe.theta < 0) {
+			probe.theta += THETA_DIVISIONS;
+		}
+		probe.rollRate = (int) Math.round(conditions.getRollRate() / ROLL_RATE_STEP);
+		AtmosphericConditions atmosphere = conditions.getAtmosphericConditions();
+		probe.reynolds = (int) Math.round(Math.log(atmosphere.getMachSpeed() /
+				atmosphere.getKinematicViscosity()) / REYNOLDS_STEP);
+
+		long before = nodeCount;
+		Node n00 = getNode(configuration, conditions, machIndex, aoaIndex, warnings);
+		Node n01 = getNode(configuration, conditions, machIndex, aoaIndex + 1, warnings);
+		Node n10 = getNode(configuration, conditions, machIndex + 1, aoaIndex, warnings);
+		Node n11 = getNode(configuration, conditions, machIndex + 1, aoaIndex + 1, warnings);
+		if (nodeCount == before) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+
+		double w00 = (1 - mf) * (1 - af);
+		double w01 = (1 - mf) * af;
+		double w10 = mf * (1 - af);
+		double w11 = mf * af;
+		double[] v = values;
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			v[i] = w00 * n00.values[i] + w01 * n01.values[i] + w10 * n10.values[i] + w11 * n11.values[i];
+		}
+
+		AerodynamicForces forces = new AerodynamicForces();
+		forces.setCNa(v[CNA]);
+		forces.setCN(v[CN]);
+		forces.setCm(v[CM]);
+		forces.setCside(v[CSIDE]);
+		forces.setCyaw(v[CYAW]);
+		forces.setCroll(v[CROLL]);
+		forces.setCrollDamp(v[CROLL_DAMP]);
+		forces.setCrollForce(v[CROLL_FORCE]);
+		forces.setCP(new Coordinate(v[CP_X], v[CP_Y], v[CP_Z], v[CP_WEIGHT]));
+		forces.setFrictionCD(v[FRICTION_CD]);
+		forces.setPressureCD(v[PRESSURE_CD]);
+		forces.setBaseCD(v[BASE_CD]);
+		forces.setCD(v[FRICTION_CD] + v[PRESSURE_CD] + v[BASE_CD]);
+		return forces;
+	}
+
+
+	/**
+	 * Return the node at the specified Mach and AOA indices and the other indices of the
+	 * probe key, computing it if necessary.  The warnings of the node are added to the
+	 * warning set in either case.
+	 */
+	private Node getNode(FlightConfiguration configuration, FlightConditions conditions,
+			int machIndex, int aoaIndex, WarningSet warnings) {
+		probe.mach = machIndex;
+		probe.aoa = aoaIndex;
+		Node node = nodes.get(probe);
+
+		if (node == null) {
+			FlightConditions cond = conditions.clone();
+			cond.setMach(machIndex * machStep);
+			cond.setAOA(aoaIndex * aoaStep);
+			cond.setTheta(probe.theta * 2 * Math.PI / THETA_DIVISIONS);
+			cond.setRollRate(probe.rollRate * ROLL_RATE_STEP);
+
+			WarningSet nodeWarnings = new WarningSet();
+			AerodynamicForces forces = super.calculateCoefficients(configuration, cond, nodeWarnings);
+			node = new Node(forces, nodeWarnings);
+			nodes.put(probe.copy(), node);
+			nodeCount++;
+		}
+
+		for (Warning w : node.warnings) {
+			warnings.add(w);
+		}
+		return node;
+	}
+
+
+	@Override
+	protected void voidAerodynamicCache() {
+		super.voidAerodynamicCache();
+		nodes.clear();
+	}
+
+
+	/**
+	 * Return the number of calculations answered from cached nodes only.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Return the number of calculations that required computing at least one node.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Return the number of nodes computed.
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Return the fraction of calculations answered from cached nodes only, or NaN if
+	 * no calculations have been performed.
+	 */
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return total > 0 ? (double) hitCount / total : Double.NaN;
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format("CachingBarrowmanCalculator[hits=%d, misses=%d, nodes=%d, hitRate=%.3f]",
+				hitCount, missCount, nodeCount, getHitRate());
+	}
+
+
+
+	private static class NodeKey {
+		private int mach;
+		private int aoa;
+		private int theta;
+		private int rollRate;
+		private int reynolds;
+
+		private NodeKey copy() {
+			NodeKey key = new NodeKey();
+			key.mach = mach;
+			key.aoa = aoa;
+			key.theta = theta;
+			key.rollRate = rollRate;
+			key.reynolds = reynolds;
+			return key;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NodeKey))
+				return false;
+			NodeKey o = (NodeKey) obj;
+			return mach == o.mach && aoa == o.aoa && theta == o.theta && rollRate == o.rollRate &&
+					reynolds == o.reynolds;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = mach;
+			h = 31 * h + aoa;
+			h = 31 * h + theta;
+			h = 31 * h + rollRate;
+			h = 31 * h + reynolds;
+			return h;
+		}
+	}
+
+
+	private static class Node {
+		private final double[] values = new double[VALUE_COUNT];
+		private final Warning[] warnings;
+
+		private Node(AerodynamicForces forces, WarningSet warnings) {
+			Coordinate cp = forces.getCP();
+			values[CNA] = forces.getCNa();
+			values[CN] = forces.getCN();
+			values[CM] = forces.getCm();
+			values[CSIDE] = forces.getCside();
+			values[CYAW] = forces.getCyaw();
+			values[CROLL] = forces.getCroll();
+			values[CROLL_DAMP] = forces.getCrollDamp();
+			values[CROLL_FORCE] = forces.getCrollForce();
+			values[CP_X] = cp.x;
+			values[CP_Y] = cp.y;
+			values[CP_Z] = cp.z;
+			values[CP_WEIGHT] = cp.weight;
+			values[FRICTION_CD] = forces.getFrictionCD();
+			values[PRESSURE_CD] = forces.getPressureCD();
+			values[BASE_CD] = forces.getBaseCD();
+			this.warnings = warnings.toArray(new Warning[0]);
+		}
+	}
+}
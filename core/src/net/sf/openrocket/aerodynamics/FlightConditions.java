@@ -94,6 +94,32 @@ public class FlightConditions implements Cloneable, ChangeSource, Monitorable {
 	}
 	
 	
+	/**
+	 * Reset all values except the atmospheric conditions to those of a new object
+	 * constructed with the given configuration.  As the setters ignore changes smaller
+	 * than {@link MathUtil#EPSILON}, an object reused for new conditions must be reset
+	 * first to obtain the same values as a new object.
+	 * fires change event
+	 * 
+	 * @param config   the configuration of which the reference length is taken.
+	 */
+	public void reset(FlightConfiguration config) {
+		refLength = (config != null) ? config.getReferenceLength() : 1.0;
+		refArea = Math.PI * MathUtil.pow2(refLength / 2);
+		aoa = 0;
+		sinAOA = 0;
+		sincAOA = 1.0;
+		theta = 0;
+		mach = 0.3;
+		beta = MathUtil.safeSqrt(1 - mach * mach);
+		rollRate = 0;
+		pitchRate = 0;
+		yawRate = 0;
+		pitchCenter = Coordinate.NUL;
+		fireChangeEvent();
+	}
+	
+	
 	/**
 	 * Set the reference length from the given configuration.
 	 * @param config	the configuration from which to get the reference length.
@@ -481,6 +507,10 @@ public class FlightConditions implements Cloneable, ChangeSource, Monitorable {
 	 */
 	protected void fireChangeEvent() {
 		modID = UniqueID.next();
+		// Simulation steps create many listener-less conditions, avoid copying an empty list
+		if (listenerList.isEmpty()) {
+			return;
+		}
 		// Copy the list before iterating to prevent concurrent modification exceptions.
 		EventListener[] listeners = listenerList.toArray(new EventListener[0]);
 		for (EventListener l : listeners) {
@@ -0,0 +1,74 @@
+package net.sf.openrocket.aerodynamics;
+
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+
+/**
+ * A Barrowman calculator that obtains the aerodynamic coefficients from a precomputed
+ * {@link AerodynamicTable}.  Flight conditions not covered by the table, such as a
+ * rolling rocket or a configuration after stage separation, are calculated normally.
+ * The axial force and the pitch and yaw damping moments are always computed exactly.
+ * <p>
+ * The table is shared by all new instances of the calculator, so that repeated
+ * simulations of the same rocket compute the coefficients only once.
+ */
+public class TabulatedAerodynamicCalculator extends BarrowmanCalculator {
+
+	private final AerodynamicTable table;
+
+	private long tableCount = 0;
+	private long calculatedCount = 0;
+
+
+	/**
+	 * @param table	the table of coefficients.
+	 */
+	public TabulatedAerodynamicCalculator(AerodynamicTable table) {
+		if (table == null) {
+			throw new IllegalArgumentException("table is null");
+		}
+		this.table = table;
+	}
+
+
+	@Override
+	public TabulatedAerodynamicCalculator newInstance() {
+		return new TabulatedAerodynamicCalculator(table);
+	}
+
+
+	@Override
+	protected AerodynamicForces calculateCoefficients(FlightConfiguration configuration,
+			FlightConditions conditions, WarningSet warnings) {
+		if (table.covers(configuration, conditions)) {
+			tableCount++;
+			return table.getCoefficients(conditions, warnings);
+		}
+		calculatedCount++;
+		return super.calculateCoefficients(configuration, conditions, warnings);
+	}
+
+
+	public AerodynamicTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Return the number of calculations answered from the table.
+	 */
+	public long getTableCount() {
+		return tableCount;
+	}
+
+	/**
+	 * Return the number of calculations not covered by the table.
+	 */
+	public long getCalculatedCount() {
+		return calculatedCount;
+	}
+
+
+	@Override
+	public String toString() {
+		return "TabulatedAerodynamicCalculator[table=" + tableCount + ", calculated=" + calculatedCount + "]";
+	}
+}
@@ -1,83 +1,154 @@
 package net.sf.openrocket.database.motor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
+import net.sf.openrocket.motor.Manufacturer;
 import net.sf.openrocket.motor.Motor;
 import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.util.MathUtil;
 
 /**
  * A database containing ThrustCurveMotorSet objects and allowing adding a motor
  * to the database.
- * 
+ * <p>
+ * Lookups use indexes by digest, designation, manufacturer, diameter and total impulse.
+ * The indexes are discarded when a motor is added and rebuilt by the next lookup, so
+ * loading the database costs a single rebuild.
+ *
  * @author Sampo Niskanen <sampo.niskanen@iki.fi>
  */
 public class ThrustCurveMotorSetDatabase implements MotorDatabase {
-	
+
+	/** Tolerance of the diameter and length in {@link #findMotors}. */
+	private static final double SIZE_TOLERANCE = 0.005;
+
 	private final List<ThrustCurveMotorSet> motorSets = new ArrayList<ThrustCurveMotorSet>();
-	
+
+	private Index index = null;
+
 	@Override
 	public ThrustCurveMotor findMotor(String digest) {
 		if (digest == null) {
 			return null;
 		}
-		for (ThrustCurveMotorSet set : motorSets) {
-			for (ThrustCurveMotor m : set.getMotors()) {
-				if (digest.equals(m.getDigest())) {
-					return m;
-				}
-			}
-		}
-		
-		return null;
-		
+		return getIndex().digests.get(digest);
 	}
-	
+
 	@Override
 	public List<ThrustCurveMotor> findMotors(Motor.Type type, String manufacturer, String designation,
 			double diameter, double length) {
+		Index idx = getIndex();
 		ArrayList<ThrustCurveMotor> results = new ArrayList<ThrustCurveMotor>();
-		
-		for (ThrustCurveMotorSet set : motorSets) {
-			for (ThrustCurveMotor m : set.getMotors()) {
-				boolean match = true;
-				if (type != null && type != set.getType())
-					match = false;
-				else if (manufacturer != null && !m.getManufacturer().matches(manufacturer))
-					match = false;
-				else if (designation != null && !designation.equalsIgnoreCase(m.getDesignation()))
-					match = false;
-				else if (!Double.isNaN(diameter) && (Math.abs(diameter - m.getDiameter()) > 0.005))
-					match = false;
-				else if (!Double.isNaN(length) && (Math.abs(length - m.getLength()) > 0.005))
-					match = false;
-					
-				if (match)
-					results.add(m);
+
+		// Use the most selective index to find the candidates, in database order
+		List<ThrustCurveMotor> candidates;
+		if (designation != null) {
+			candidates = idx.designations.get(designationKey(designation));
+			if (candidates == null) {
+				return results;
+			}
+		} else {
+			List<ThrustCurveMotorSet> sets = motorSets;
+			if (manufacturer != null) {
+				sets = idx.getSetsByManufacturer(manufacturer);
 			}
+			if (!Double.isNaN(diameter)) {
+				List<ThrustCurveMotorSet> bySize = idx.getSetsByDiameter(diameter - SIZE_TOLERANCE - MathUtil.EPSILON,
+						diameter + SIZE_TOLERANCE + MathUtil.EPSILON);
+				if (bySize.size() < sets.size()) {
+					sets = bySize;
+				}
+			}
+			candidates = new ArrayList<ThrustCurveMotor>();
+			for (ThrustCurveMotorSet set : sets) {
+				candidates.addAll(set.getMotors());
+			}
+		}
+
+		for (ThrustCurveMotor m : candidates) {
+			ThrustCurveMotorSet set = idx.sets.get(m);
+			boolean match = true;
+			if (type != null && type != set.getType())
+				match = false;
+			else if (manufacturer != null && !m.getManufacturer().matches(manufacturer))
+				match = false;
+			else if (designation != null && !designation.equalsIgnoreCase(m.getDesignation()))
+				match = false;
+			else if (!Double.isNaN(diameter) && (Math.abs(diameter - m.getDiameter()) > SIZE_TOLERANCE))
+				match = false;
+			else if (!Double.isNaN(length) && (Math.abs(length - m.getLength()) > SIZE_TOLERANCE))
+				match = false;
+
+			if (match)
+				results.add(m);
 		}
-		
+
 		return results;
 	}
-	
-	
+
+
 	/**
 	 * Return a list of all ThrustCurveMotorSets.
 	 */
 	public List<ThrustCurveMotorSet> getMotorSets() {
 		return Collections.unmodifiableList(motorSets);
 	}
-	
-	
+
 	/**
-	 * Add a motor to the database.  If a matching ThrustCurveMototSet is found, 
+	 * Return the ThrustCurveMotorSets of a manufacturer, in database order.
+	 *
+	 * @param manufacturer	the manufacturer
+	 */
+	public List<ThrustCurveMotorSet> getMotorSets(Manufacturer manufacturer) {
+		List<ThrustCurveMotorSet> sets = getIndex().manufacturers.get(manufacturer);
+		if (sets == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(sets);
+	}
+
+	/**
+	 * Return the ThrustCurveMotorSets with a diameter within the specified range, in
+	 * database order.
+	 *
+	 * @param minDiameter	the minimum diameter (inclusive)
+	 * @param maxDiameter	the maximum diameter (inclusive)
+	 */
+	public List<ThrustCurveMotorSet> getMotorSetsByDiameter(double minDiameter, double maxDiameter) {
+		return Collections.unmodifiableList(getIndex().getSetsByDiameter(minDiameter, maxDiameter));
+	}
+
+	/**
+	 * Return the ThrustCurveMotorSets with a total impulse estimate within the specified
+	 * range, in database order.  This can be used for selecting motors by impulse class.
+	 *
+	 * @param minImpulse	the minimum total impulse (exclusive)
+	 * @param maxImpulse	the maximum total impulse (inclusive)
+	 */
+	public List<ThrustCurveMotorSet> getMotorSetsByTotalImpulse(double minImpulse, double maxImpulse) {
+		return Collections.unmodifiableList(getIndex().getSetsByTotalImpulse(minImpulse, maxImpulse));
+	}
+
+
+	/**
+	 * Add a motor to the database.  If a matching ThrustCurveMototSet is found,
 	 * the motor is added to that set, otherwise a new set is created and added to the
 	 * database.
-	 * 
+	 *
 	 * @param motor		the motor to add
 	 */
-	public void addMotor(ThrustCurveMotor motor) {
+	public synchronized void addMotor(ThrustCurveMotor motor) {
+		index = null;
+
 		// Iterate from last to first, as this is most likely to hit early when loading files
 		for (int i = motorSets.size() - 1; i >= 0; i--) {
 			ThrustCurveMotorSet set = motorSets.get(i);
@@ -86,10 +157,149 @@ public class ThrustCurveMotorSetDatabase implements MotorDatabase {
 				return;
 			}
 		}
-		
+
 		ThrustCurveMotorSet newSet = new ThrustCurveMotorSet();
 		newSet.addMotor(motor);
 		motorSets.add(newSet);
 	}
-	
+
+
+	private synchronized Index getIndex() {
+		if (index == null) {
+			index = new Index(motorSets);
+		}
+		return index;
+	}
+
+	private static String designationKey(String designation) {
+		return designation.toLowerCase(Locale.ENGLISH);
+	}
+
+
+	/**
+	 * The lookup indexes of the database.  An index is not modified after creation.
+	 */
+	private static class Index {
+
+		// First motor in database order with each digest
+		private final Map<String, ThrustCurveMotor> digests = new HashMap<String, ThrustCurveMotor>();
+		private final Map<String, List<ThrustCurveMotor>> designations = new HashMap<String, List<ThrustCurveMotor>>();
+		private final Map<Manufacturer, List<ThrustCurveMotorSet>> manufacturers =
+				new LinkedHashMap<Manufacturer, List<ThrustCurveMotorSet>>();
+		private final Map<ThrustCurveMotor, ThrustCurveMotorSet> sets =
+				new IdentityHashMap<ThrustCurveMotor, ThrustCurveMotorSet>();
+		private final Map<ThrustCurveMotorSet, Integer> positions =
+				new IdentityHashMap<ThrustCurveMotorSet, Integer>();
+
+		// Sets sorted by diameter and total impulse, and the corresponding sorted keys
+		private final ThrustCurveMotorSet[] byDiameter;
+		private final double[] diameters;
+		private final ThrustCurveMotorSet[] byImpulse;
+		private final double[] impulses;
+
+		private Index(List<ThrustCurveMotorSet> motorSets) {
+			for (ThrustCurveMotorSet set : motorSets) {
+				positions.put(set, positions.size());
+
+				List<ThrustCurveMotorSet> list = manufacturers.get(set.getManufacturer());
+				if (list == null) {
+					list = new ArrayList<ThrustCurveMotorSet>();
+					manufacturers.put(set.getManufacturer(), list);
+				}
+				list.add(set);
+
+				for (ThrustCurveMotor m : set.getMotors()) {
+					sets.put(m, set);
+					if (!digests.containsKey(m.getDigest())) {
+						digests.put(m.getDigest(), m);
+					}
+					String key = designationKey(m.getDesignation());
+					List<ThrustCurveMotor> motors = designations.get(key);
+					if (motors == null) {
+						motors = new ArrayList<ThrustCurveMotor>();
+						designations.put(key, motors);
+					}
+					motors.add(m);
+				}
+			}
+
+			byDiameter = motorSets.toArray(new ThrustCurveMotorSet[0]);
+			Arrays.sort(byDiameter, new Comparator<ThrustCurveMotorSet>() {
+				@Override
+				public int compare(ThrustCurveMotorSet o1, ThrustCurveMotorSet o2) {
+					return Double.compare(o1.getDiameter(), o2.getDiameter());
+				}
+			});
+			diameters = new double[byDiameter.length];
+			for (int i = 0; i < byDiameter.length; i++) {
+				diameters[i] = byDiameter[i].getDiameter();
+			}
+
+			byImpulse = motorSets.toArray(new ThrustCurveMotorSet[0]);
+			Arrays.sort(byImpulse, new Comparator<ThrustCurveMotorSet>() {
+				@Override
+				public int compare(ThrustCurveMotorSet o1, ThrustCurveMotorSet o2) {
+					return Long.compare(o1.getTotalImpuse(), o2.getTotalImpuse());
+				}
+			});
+			impulses = new double[byImpulse.length];
+			for (int i = 0; i < byImpulse.length; i++) {
+				impulses[i] = byImpulse[i].getTotalImpuse();
+			}
+		}
+
+		private List<ThrustCurveMotorSet> getSetsByManufacturer(String name) {
+			List<ThrustCurveMotorSet> list = new ArrayList<ThrustCurveMotorSet>();
+			for (Map.Entry<Manufacturer, List<ThrustCurveMotorSet>> entry : manufacturers.entrySet()) {
+				if (entry.getKey().matches(name)) {
+					list.addAll(entry.getValue());
+				}
+			}
+			return inDatabaseOrder(list);
+		}
+
+		private List<ThrustCurveMotorSet> getSetsByDiameter(double min, double max) {
+			// first index with diameter >= min, and first index with diameter > max
+			int from = firstIndex(diameters, min, false);
+			int to = firstIndex(diameters, max, true);
+			return inDatabaseOrder(Arrays.asList(byDiameter).subList(from, Math.max(from, to)));
+		}
+
+		private List<ThrustCurveMotorSet> getSetsByTotalImpulse(double min, double max) {
+			// first index with impulse > min, and first index with impulse > max
+			int from = firstIndex(impulses, min, true);
+			int to = firstIndex(impulses, max, true);
+			return inDatabaseOrder(Arrays.asList(byImpulse).subList(from, Math.max(from, to)));
+		}
+
+		/**
+		 * Return the first index of the sorted array with a value greater than (or equal to,
+		 * if not strict) the key, or the array length if there is none.
+		 */
+		private static int firstIndex(double[] sorted, double key, boolean strict) {
+			int low = 0;
+			int high = sorted.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (sorted[mid] < key || (strict && sorted[mid] == key)) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+
+		private List<ThrustCurveMotorSet> inDatabaseOrder(List<ThrustCurveMotorSet> list) {
+			List<ThrustCurveMotorSet> sorted = new ArrayList<ThrustCurveMotorSet>(list);
+			Collections.sort(sorted, new Comparator<ThrustCurveMotorSet>() {
+				@Override
+				public int compare(ThrustCurveMotorSet o1, ThrustCurveMotorSet o2) {
+					return positions.get(o1) - positions.get(o2);
+				}
+			});
+			return sorted;
+		}
+	}
+
 }
@@ -9,12 +9,24 @@ public class StorageOptions implements Cloneable {
 		ROCKSIM
 	}
 	
+	/**
+	 * The format of the simulation data stored in OpenRocket files.
+	 */
+	public enum DataFormat {
+		/** Data points as text in the XML document, readable by all versions. */
+		TEXT,
+		/** Data columns as binary entries of the ZIP container. */
+		BINARY
+	}
+	
 	public static final double SIMULATION_DATA_NONE = Double.POSITIVE_INFINITY;
 	public static final double SIMULATION_DATA_ALL = 0;
 	
 	private FileType fileType = FileType.OPENROCKET;
 	
 	private double simulationTimeSkip = SIMULATION_DATA_NONE;
+	
+	private DataFormat simulationDataFormat = DataFormat.TEXT;
 
 	private boolean explicitlySet = false;
 	
@@ -34,6 +46,14 @@ public class StorageOptions implements Cloneable {
 		this.simulationTimeSkip = simulationTimeSkip;
 	}
 	
+	public DataFormat getSimulationDataFormat() {
+		return simulationDataFormat;
+	}
+	
+	public void setSimulationDataFormat(DataFormat simulationDataFormat) {
+		this.simulationDataFormat = simulationDataFormat;
+	}
+	
 	public boolean isExplicitlySet() {
 		return explicitlySet;
 	}
@@ -1,11 +1,14 @@
 package net.sf.openrocket.document.attachments;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import net.sf.openrocket.document.Attachment;
@@ -24,6 +27,22 @@ public class ZipFileAttachment extends Attachment {
 	public InputStream getBytes() throws FileNotFoundException, IOException {
 		String name = getName();
 		
+		// Local files are read through their central directory instead of scanned
+		File file = toFile(zipFileLocation);
+		if (file != null) {
+			ZipFile zipFile = new ZipFile(file);
+			try {
+				ZipEntry entry = zipFile.getEntry(name);
+				if (entry == null) {
+					throw new FileNotFoundException("Unable to locate decal for name " + name);
+				}
+				InputStream is = zipFile.getInputStream(entry);
+				return new ByteArrayInputStream(FileUtils.readBytes(is));
+			} finally {
+				zipFile.close();
+			}
+		}
+		
 		ZipInputStream zis = new ZipInputStream(zipFileLocation.openStream());
 		
 		try {
@@ -42,4 +61,17 @@ public class ZipFileAttachment extends Attachment {
 		
 	}
 	
+	private static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
 }
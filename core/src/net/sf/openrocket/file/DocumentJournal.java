@@ -0,0 +1,616 @@
+package net.sf.openrocket.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.EventObject;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipFile;
+
+import net.sf.openrocket.aerodynamics.WarningSet;
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.OpenRocketDocumentFactory;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.document.events.DocumentChangeEvent;
+import net.sf.openrocket.document.events.DocumentChangeListener;
+import net.sf.openrocket.file.openrocket.OpenRocketSaver;
+import net.sf.openrocket.file.openrocket.importt.OpenRocketLoader;
+import net.sf.openrocket.rocketcomponent.ComponentChangeEvent;
+import net.sf.openrocket.rocketcomponent.ComponentChangeListener;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.util.BugException;
+import net.sf.openrocket.util.FileUtils;
+import net.sf.openrocket.util.StateChangeListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A journal of the changes of a document saved in a file, used to save the changes
+ * frequently without rewriting the whole file.
+ * <p>
+ * Each {@link #checkpoint()} after a change of the rocket or the simulations appends a
+ * record to a journal file next to the document file.  The first record contains the
+ * document, and each later record only the part of the document that differs from the
+ * previous record, so a small edit results in a small record.  The records do not
+ * contain simulation data.  Data already stored in the document file in binary format
+ * is referenced from the records, other data is represented by its summary figures
+ * only.  Once the journal grows larger than the maximum size, a checkpoint replaces it
+ * with a single record of the document.  The document file itself is only written by
+ * {@link #save()}.
+ * <p>
+ * After a crash, {@link #recover(File, WarningSet)} loads the document as of the last
+ * complete record.  A journal applies only to the document file it was written for,
+ * and is ignored if the file has been saved by other means since.
+ * <p>
+ * The journal must be created for a document that has just been loaded from or saved
+ * to the file, and used from the thread modifying the document.  A checkpoint takes
+ * the snapshot of the document on that thread, while compressing and writing the
+ * record to disk is done by a background thread of the journal, so that
+ * {@link #submitCheckpoint()} returns without waiting for the disk.  A document that
+ * has unsaved changes when the journal is created, such as a recovered document, is
+ * recorded at the first checkpoint.
+ */
+public class DocumentJournal {
+	private static final Logger log = LoggerFactory.getLogger(DocumentJournal.class);
+
+	/** Suffix added to the name of the document file to obtain the journal file. */
+	public static final String SUFFIX = ".journal";
+
+	/** Default maximum size of the journal before it is compacted, in bytes. */
+	public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+	private static final int MAGIC = 0x4F524A4C; // "ORJL"
+	private static final int VERSION = 2;
+
+	// Record types
+	private static final int DOCUMENT = 1;
+	private static final int DELTA = 2;
+
+
+	private final OpenRocketDocument document;
+	private final File file;
+	private final File journalFile;
+
+	private volatile long maxSize = DEFAULT_MAX_SIZE;
+
+	// The simulation data stored in the document file, and the identity of the file
+	private final Map<FlightData, OpenRocketSaver.StoredData> storedData = new IdentityHashMap<FlightData, OpenRocketSaver.StoredData>();
+	private double storedTimeSkip;
+	private long baseLength;
+	private long baseModified;
+
+	// The document as of the last record written, or null to start a new journal, accessed by the writer only
+	private byte[] lastDocument = null;
+	private volatile boolean changed;
+
+	// Single thread writing the records in the order of the checkpoints
+	private final ExecutorService writer;
+
+	private final Listener listener = new Listener();
+	private final Map<Simulation, Boolean> listenedSimulations = new IdentityHashMap<Simulation, Boolean>();
+
+
+	/**
+	 * Create a journal for a document.  An existing journal of the file is replaced
+	 * at the first checkpoint.
+	 *
+	 * @param document	the document, just loaded from or saved to the file.
+	 * @param file		the document file.
+	 */
+	public DocumentJournal(OpenRocketDocument document, File file) {
+		this.document = document;
+		this.file = file;
+		this.journalFile = getJournalFile(file);
+		this.changed = !document.isSaved();
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setName("DocumentJournal-" + t.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		indexStoredData();
+
+		document.getRocket().addComponentChangeListener(listener);
+		document.addDocumentChangeListener(listener);
+		listenToSimulations();
+	}
+
+
+	/**
+	 * Return the journal file of a document file.
+	 */
+	public static File getJournalFile(File file) {
+		return new File(file.getPath() + SUFFIX);
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Set the size of the journal file above which a checkpoint compacts the journal.
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+
+	/**
+	 * Record the current state of the document if it has changed since the previous
+	 * checkpoint, and wait until the record is on disk.
+	 *
+	 * @return				whether anything was written.
+	 * @throws IOException	in case of an I/O error.
+	 */
+	public boolean checkpoint() throws IOException {
+		return waitFor(submitCheckpoint());
+	}
+
+
+	/**
+	 * Take a snapshot of the document if it has changed since the previous checkpoint,
+	 * and record it in the background.  A record which cannot be written is logged,
+	 * and the document is recorded again at the next checkpoint.
+	 *
+	 * @return				the result of writing the record, whether anything was written.
+	 * @throws IOException	if the snapshot cannot be taken.
+	 */
+	public Future<Boolean> submitCheckpoint() throws IOException {
+		if (file.length() != baseLength || file.lastModified() != baseModified) {
+			// Saved by other means, the journal and the stored data no longer apply
+			log.info("Document file " + file + " changed, discarding journal");
+			discard();
+			indexStoredData();
+		}
+
+		if (!changed) {
+			FutureTask<Boolean> nothing = new FutureTask<Boolean>(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return false;
+				}
+			});
+			nothing.run();
+			return nothing;
+		}
+		changed = false;
+
+		final byte[] current;
+		try {
+			current = createDocument();
+		} catch (IOException e) {
+			changed = true;
+			throw e;
+		}
+		final long length = baseLength;
+		final long modified = baseModified;
+
+		return writer.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws IOException {
+				try {
+					if (lastDocument == null || !journalFile.isFile() || journalFile.length() > maxSize) {
+						writeJournal(current, length, modified);
+					} else if (!Arrays.equals(current, lastDocument)) {
+						appendRecord(DELTA, createDelta(lastDocument, current));
+					} else {
+						return false;
+					}
+					lastDocument = current;
+					return true;
+				} catch (IOException e) {
+					changed = true;
+					log.warn("Unable to record changes in journal " + journalFile, e);
+					throw e;
+				}
+			}
+		});
+	}
+
+
+	/**
+	 * Save the document into its file using its default storage options and discard
+	 * the journal.
+	 *
+	 * @throws IOException	in case of an I/O error.
+	 */
+	public void save() throws IOException {
+		new GeneralRocketSaver().save(file, document);
+		documentSaved();
+	}
+
+
+	/**
+	 * Discard the journal after the document has been saved into its file by other
+	 * means.  The changes made before are no longer recorded in the journal.
+	 */
+	public void documentSaved() {
+		discard();
+		indexStoredData();
+		changed = false;
+	}
+
+
+	/**
+	 * Delete the journal, for example when the changes of the document are discarded.
+	 * The records still being written are deleted as well.
+	 */
+	public void discard() {
+		Runnable delete = new Runnable() {
+			@Override
+			public void run() {
+				if (journalFile.exists() && !journalFile.delete()) {
+					log.warn("Unable to delete journal " + journalFile);
+				}
+				lastDocument = null;
+			}
+		};
+		if (writer.isShutdown()) {
+			delete.run();
+			return;
+		}
+		try {
+			waitFor(writer.submit(delete, Boolean.TRUE));
+		} catch (IOException e) {
+			log.warn("Interrupted while deleting journal " + journalFile, e);
+		}
+	}
+
+
+	/**
+	 * Stop listening to changes of the document.  The records already submitted are
+	 * still written.
+	 */
+	public void close() {
+		document.getRocket().removeComponentChangeListener(listener);
+		document.removeDocumentChangeListener(listener);
+		for (Simulation s : listenedSimulations.keySet()) {
+			s.removeChangeListener(listener);
+		}
+		listenedSimulations.clear();
+		writer.shutdown();
+	}
+
+
+	/**
+	 * Return whether a document file has a journal that can be recovered.
+	 *
+	 * @param file	the document file.
+	 */
+	public static boolean hasJournal(File file) {
+		try {
+			return readDocument(file) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Load a document as of the last complete record of the journal of its file.
+	 *
+	 * @param file		the document file.
+	 * @param warnings	the set to add loading warnings to.
+	 * @return			the recovered document.
+	 * @throws RocketLoadException	if the journal cannot be read or contains no complete record.
+	 */
+	public static OpenRocketDocument recover(File file, WarningSet warnings) throws RocketLoadException {
+		byte[] record;
+		try {
+			record = readDocument(file);
+		} catch (IOException e) {
+			throw new RocketLoadException("Unable to read journal of " + file + ": " + e.getMessage(), e);
+		}
+		if (record == null) {
+			throw new RocketLoadException("No recoverable journal for " + file);
+		}
+
+		OpenRocketDocument doc = OpenRocketDocumentFactory.createEmptyRocket();
+		DocumentLoadingContext context = new DocumentLoadingContext();
+		context.setOpenRocketDocument(doc);
+		context.setMotorFinder(new DatabaseMotorFinder());
+		try {
+			// Stored simulation data and decals are read from the document file
+			context.setAttachmentFactory(new ZipFileAttachmentFactory(file.toURI().toURL()));
+			OpenRocketLoader loader = new OpenRocketLoader();
+			loader.load(context, new ByteArrayInputStream(record));
+			warnings.addAll(loader.getWarnings());
+		} catch (IOException e) {
+			throw new RocketLoadException("Unable to read journal of " + file + ": " + e.getMessage(), e);
+		}
+		doc.getRocket().enableEvents();
+		return doc;
+	}
+
+
+
+	private static <T> T waitFor(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing journal");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new BugException("Writing journal failed", cause);
+		}
+	}
+
+
+	private byte[] createDocument() throws IOException {
+		StorageOptions options = new StorageOptions();
+		options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_NONE);
+
+		OpenRocketSaver saver = new OpenRocketSaver();
+		saver.setStoredData(storedData, storedTimeSkip);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		saver.save(bytes, document, options);
+		return bytes.toByteArray();
+	}
+
+
+	// The delta contains the lengths of the common prefix and suffix and the bytes between them
+	private static byte[] createDelta(byte[] previous, byte[] current) throws IOException {
+		int max = Math.min(previous.length, current.length);
+		int prefix = 0;
+		while (prefix < max && previous[prefix] == current[prefix]) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix &&
+				previous[previous.length - 1 - suffix] == current[current.length - 1 - suffix]) {
+			suffix++;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(prefix);
+		out.writeInt(suffix);
+		out.write(current, prefix, current.length - prefix - suffix);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+
+	private static byte[] applyDelta(byte[] previous, byte[] delta) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+		int prefix = in.readInt();
+		int suffix = in.readInt();
+		if (prefix < 0 || suffix < 0 || prefix + suffix > previous.length) {
+			throw new IOException("Invalid journal record, prefix=" + prefix + " suffix=" + suffix +
+					" length=" + previous.length);
+		}
+		int middle = delta.length - 8;
+		byte[] current = new byte[prefix + middle + suffix];
+		System.arraycopy(previous, 0, current, 0, prefix);
+		System.arraycopy(delta, 8, current, prefix, middle);
+		System.arraycopy(previous, previous.length - suffix, current, prefix + middle, suffix);
+		return current;
+	}
+
+
+	// Replace the journal with one containing the document, so that a partial write never loses the journal
+	private void writeJournal(byte[] current, long length, long modified) throws IOException {
+		File temporary = new File(journalFile.getPath() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(temporary);
+		try {
+			DataOutputStream out = new DataOutputStream(fos);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(length);
+			out.writeLong(modified);
+			writeRecord(out, DOCUMENT, compress(current));
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+
+		if (journalFile.exists() && !journalFile.delete()) {
+			temporary.delete();
+			throw new IOException("Unable to replace journal " + journalFile);
+		}
+		if (!temporary.renameTo(journalFile)) {
+			throw new IOException("Unable to rename " + temporary + " to " + journalFile);
+		}
+	}
+
+
+	private void appendRecord(int type, byte[] record) throws IOException {
+		FileOutputStream fos = new FileOutputStream(journalFile, true);
+		try {
+			DataOutputStream out = new DataOutputStream(fos);
+			writeRecord(out, type, record);
+			out.flush();
+
+			// The record must be complete on disk before the change is considered saved
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+	}
+
+
+	private static void writeRecord(DataOutputStream out, int type, byte[] record) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		out.writeInt(MAGIC);
+		out.writeInt(type);
+		out.writeInt(record.length);
+		out.writeInt((int) crc.getValue());
+		out.write(record);
+	}
+
+
+	private static byte[] compress(byte[] bytes) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(compressed);
+		out.write(bytes);
+		out.close();
+		return compressed.toByteArray();
+	}
+
+
+	// Return the document as of the last complete record, or null if there is none or the journal does not apply
+	private static byte[] readDocument(File file) throws IOException {
+		File journal = getJournalFile(file);
+		if (!journal.isFile()) {
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+		byte[] current = null;
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			if (in.readLong() != file.length() || in.readLong() != file.lastModified()) {
+				log.info("Journal " + journal + " does not apply to " + file);
+				return null;
+			}
+
+			while (in.readInt() == MAGIC) {
+				int type = in.readInt();
+				int length = in.readInt();
+				long checksum = in.readInt() & 0xFFFFFFFFL;
+				if (length < 0 || length > journal.length()) {
+					break;
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+
+				CRC32 crc = new CRC32();
+				crc.update(record);
+				if (crc.getValue() != checksum) {
+					break;
+				}
+				if (type == DOCUMENT) {
+					current = FileUtils.readBytes(new GZIPInputStream(new ByteArrayInputStream(record)));
+				} else if (type == DELTA && current != null) {
+					current = applyDelta(current, record);
+				} else {
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// End of the journal, or an incomplete record written when the application stopped
+		} finally {
+			in.close();
+		}
+		return current;
+	}
+
+
+	// Find the simulation data stored in binary format in the document file
+	private void indexStoredData() {
+		storedData.clear();
+		storedTimeSkip = document.getDefaultStorageOptions().getSimulationTimeSkip();
+		baseLength = file.length();
+		baseModified = file.lastModified();
+
+		if (!file.isFile()) {
+			return;
+		}
+
+		try {
+			ZipFile zip = new ZipFile(file);
+			try {
+				List<Simulation> simulations = document.getSimulations();
+				for (int i = 0; i < simulations.size(); i++) {
+					FlightData data = simulations.get(i).getSimulatedData();
+					if (data == null || data.getBranchCount() == 0) {
+						continue;
+					}
+					// The types of the branches held in memory are those of the entries until values are set
+					boolean stored = true;
+					FlightDataType[][] types = new FlightDataType[data.getBranchCount()][];
+					for (int j = 0; j < data.getBranchCount(); j++) {
+						stored &= (zip.getEntry(OpenRocketSaver.getDataEntryName(i + 1, j)) != null);
+						types[j] = data.peekBranch(j).getTypes();
+					}
+					if (stored) {
+						storedData.put(data, new OpenRocketSaver.StoredData(i + 1, types));
+					}
+				}
+			} finally {
+				zip.close();
+			}
+		} catch (IOException e) {
+			// Not a ZIP container, no stored data
+		}
+	}
+
+
+	private void listenToSimulations() {
+		Map<Simulation, Boolean> current = new IdentityHashMap<Simulation, Boolean>();
+		for (Simulation s : document.getSimulations()) {
+			current.put(s, Boolean.TRUE);
+			if (!listenedSimulations.containsKey(s)) {
+				s.addChangeListener(listener);
+			}
+		}
+		for (Simulation s : listenedSimulations.keySet()) {
+			if (!current.containsKey(s)) {
+				s.removeChangeListener(listener);
+			}
+		}
+		listenedSimulations.clear();
+		listenedSimulations.putAll(current);
+	}
+
+
+	private class Listener implements ComponentChangeListener, DocumentChangeListener, StateChangeListener {
+		@Override
+		public void componentChanged(ComponentChangeEvent e) {
+			changed = true;
+		}
+
+		@Override
+		public void documentChanged(DocumentChangeEvent event) {
+			changed = true;
+			listenToSimulations();
+		}
+
+		@Override
+		public void stateChanged(EventObject e) {
+			changed = true;
+		}
+	}
+}
@@ -16,11 +16,13 @@ import net.sf.openrocket.appearance.Appearance;
 import net.sf.openrocket.appearance.Decal;
 import net.sf.openrocket.appearance.DecalImage;
 import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
 import net.sf.openrocket.document.StorageOptions;
 import net.sf.openrocket.document.StorageOptions.FileType;
 import net.sf.openrocket.file.openrocket.OpenRocketSaver;
 import net.sf.openrocket.file.rocksim.export.RocksimSaver;
 import net.sf.openrocket.rocketcomponent.RocketComponent;
+import net.sf.openrocket.simulation.FlightData;
 import net.sf.openrocket.util.MathUtil;
 
 public class GeneralRocketSaver {
@@ -93,6 +95,19 @@ public class GeneralRocketSaver {
 		// This method is the core operational method.  It saves the document into a new (hopefully unique)
 		// file, then if the save is successful, it will copy the file over the old one.
 		
+		boolean destExists = dest.exists();
+		
+		// The document may load its simulation data from the file being replaced.  This
+		// is done first, so that data which cannot be loaded aborts saving.
+		if (destExists) {
+			for (Simulation sim : doc.getSimulations()) {
+				FlightData data = sim.getSimulatedData();
+				if (data != null) {
+					data.loadBranches();
+				}
+			}
+		}
+		
 		// Write to a temporary file in the same directory as the specified file.
 		File temporaryNewFile = File.createTempFile("ORSave", ".tmp", dest.getParentFile());
 		
@@ -102,15 +117,20 @@ public class GeneralRocketSaver {
 			long estimatedSize = this.estimateFileSize(doc, opts);
 			s = new ProgressOutputStream(s, estimatedSize, progress);
 		}
+		OpenRocketSaver saver = null;
+		boolean saved = false;
 		try {
-			save(dest.getName(), s, doc, opts);
+			saver = save(dest.getName(), s, doc, opts);
+			saved = true;
 		} finally {
 			s.close();
+			if (!saved) {
+				temporaryNewFile.delete();
+			}
 		}
 		
 		// Move the temporary new file over the specified file.
 		
-		boolean destExists = dest.exists();
 		File oldBackupFile = new File(dest.getParentFile(), dest.getName() + "-bak");
 		
 		if (destExists) {
@@ -124,6 +144,11 @@ public class GeneralRocketSaver {
 			if (destExists) {
 				oldBackupFile.delete();
 			}
+			
+			// The saved simulation data need not be kept in memory
+			if (saver != null) {
+				saver.releaseSavedData(dest.toURI().toURL());
+			}
 		}
 	}
 	
@@ -144,7 +169,10 @@ public class GeneralRocketSaver {
 		}
 	}
 	
-	private void save(String fileName, OutputStream output, OpenRocketDocument document, StorageOptions options) throws IOException {
+	/*
+	 * Returns the saver of the OpenRocket document, or null when saving a Rocksim file.
+	 */
+	private OpenRocketSaver save(String fileName, OutputStream output, OpenRocketDocument document, StorageOptions options) throws IOException {
 		
 		// For now, we don't save decal inforamtion in ROCKSIM files, so don't do anything
 		// which follows.
@@ -152,7 +180,7 @@ public class GeneralRocketSaver {
 		if (options.getFileType() == FileType.ROCKSIM) {
 			saveInternal(output, document, options);
 			output.close();
-			return;
+			return null;
 		}
 		
 		Set<DecalImage> usedDecals = new TreeSet<DecalImage>();
@@ -172,10 +200,16 @@ public class GeneralRocketSaver {
 			usedDecals.add(decal.getImage());
 		}
 		
-		saveAllPartsZipFile(output, document, options, usedDecals);
+		return saveZipFile(output, document, options, usedDecals);
 	}
 	
 	public void saveAllPartsZipFile(OutputStream output, OpenRocketDocument document, StorageOptions options, Set<DecalImage> decals) throws IOException {
+		saveZipFile(output, document, options, decals);
+	}
+	
+	private OpenRocketSaver saveZipFile(OutputStream output, OpenRocketDocument document, StorageOptions options, Set<DecalImage> decals) throws IOException {
+		
+		OpenRocketSaver saver = new OpenRocketSaver();
 		
 		// Open a zip stream to write to.
 		ZipOutputStream zos = new ZipOutputStream(output);
@@ -184,11 +218,15 @@ public class GeneralRocketSaver {
 		try {
 			
 			
+			// The document is written first, since loaders read it from the first entry.
 			ZipEntry mainFile = new ZipEntry("rocket.ork");
 			zos.putNextEntry(mainFile);
-			saveInternal(zos, document, options);
+			saver.save(zos, document, options);
 			zos.closeEntry();
 			
+			// Then the simulation data stored in binary format, if any.
+			saver.saveDataEntries(zos);
+			
 			// Now we write out all the decal images files.
 			
 			for (DecalImage image : decals) {
@@ -211,7 +249,7 @@ public class GeneralRocketSaver {
 			zos.close();
 		}
 		
-		
+		return saver;
 	}
 	
 	// package scope for testing.
@@ -0,0 +1,178 @@
+package net.sf.openrocket.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of the objects loaded from files.  An entry of the cache is valid
+ * as long as the size and modification time of the file are unchanged, so files that
+ * have not changed since they were last loaded need not be parsed again.
+ * <p>
+ * The cache is stored using Java serialization.  A cache file that cannot be read,
+ * for example because it was written by an incompatible version, is ignored.  When the
+ * cache is written, only the entries used since it was read are kept, so entries of
+ * removed files are dropped.
+ * <p>
+ * The methods of this class are thread-safe.
+ *
+ * @param <T>	the type of the loaded objects, which must be serializable
+ */
+public class LoaderCache<T> {
+
+	private static final Logger log = LoggerFactory.getLogger(LoaderCache.class);
+
+	/** The version of the cache format, changed whenever the format is changed. */
+	private static final int VERSION = 1;
+
+	private final File cacheFile;
+
+	private Map<String, Entry<T>> entries = new HashMap<String, Entry<T>>();
+	private final Map<String, Entry<T>> used = new HashMap<String, Entry<T>>();
+	private boolean modified = false;
+
+
+	/**
+	 * Sole constructor.  The cache is initially empty.
+	 *
+	 * @param cacheFile		the file in which the cache is stored.
+	 */
+	public LoaderCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+
+	/**
+	 * Read the cache from the cache file.  If the file does not exist or cannot be read,
+	 * the cache is left empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void read() {
+		if (!cacheFile.isFile()) {
+			return;
+		}
+		try {
+			ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			try {
+				if (in.readInt() != VERSION) {
+					log.info("Ignoring cache " + cacheFile + " of different version");
+					return;
+				}
+				entries = (Map<String, Entry<T>>) in.readObject();
+			} finally {
+				in.close();
+			}
+			log.debug("Read " + entries.size() + " entries from cache " + cacheFile);
+		} catch (Exception e) {
+			log.info("Unable to read cache " + cacheFile + ": " + e);
+			entries = new HashMap<String, Entry<T>>();
+		}
+	}
+
+
+	/**
+	 * Return the cached contents of a file, or <code>null</code> if the file is not cached
+	 * or has changed since it was cached.
+	 *
+	 * @param file	the file.
+	 * @return		the objects loaded from the file, or <code>null</code>.
+	 */
+	public synchronized Collection<T> get(File file) {
+		String key = getKey(file);
+		Entry<T> entry = entries.get(key);
+		if (entry == null || entry.size != file.length() || entry.lastModified != file.lastModified()) {
+			return null;
+		}
+		used.put(key, entry);
+		return new ArrayList<T>(entry.contents);
+	}
+
+
+	/**
+	 * Store the contents of a file in the cache.  The size and modification time must be
+	 * read before the file is read, so that a file changed while it was being read is
+	 * not considered unchanged.
+	 *
+	 * @param file			the file.
+	 * @param size			the size of the file before it was read.
+	 * @param lastModified	the modification time of the file before it was read.
+	 * @param contents		the objects loaded from the file.
+	 */
+	public synchronized void put(File file, long size, long lastModified, Collection<T> contents) {
+		String key = getKey(file);
+		Entry<T> entry = new Entry<T>(size, lastModified, new ArrayList<T>(contents));
+		entries.put(key, entry);
+		used.put(key, entry);
+		modified = true;
+	}
+
+
+	/**
+	 * Write the entries used since the cache was read to the cache file, if they
+	 * differ from the entries read.  Failure to write the cache is logged.
+	 */
+	public synchronized void write() {
+		if (!modified && used.size() == entries.size()) {
+			return;
+		}
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		try {
+			File dir = cacheFile.getAbsoluteFile().getParentFile();
+			if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Unable to create directory " + dir);
+			}
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(VERSION);
+				out.writeObject(new HashMap<String, Entry<T>>(used));
+			} finally {
+				out.close();
+			}
+			if (cacheFile.exists() && !cacheFile.delete()) {
+				throw new IOException("Unable to delete " + cacheFile);
+			}
+			if (!tmpFile.renameTo(cacheFile)) {
+				throw new IOException("Unable to rename " + tmpFile + " to " + cacheFile);
+			}
+			entries = new HashMap<String, Entry<T>>(used);
+			modified = false;
+			log.debug("Wrote " + used.size() + " entries to cache " + cacheFile);
+		} catch (IOException e) {
+			log.warn("Unable to write cache " + cacheFile + ": " + e);
+			tmpFile.delete();
+		}
+	}
+
+
+	private static String getKey(File file) {
+		return file.getAbsolutePath();
+	}
+
+
+	private static class Entry<T> implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final long size;
+		private final long lastModified;
+		private final ArrayList<T> contents;
+
+		private Entry(long size, long lastModified, ArrayList<T> contents) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.contents = contents;
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package net.sf.openrocket.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.openrocket.file.iterator.DirectoryIterator;
+import net.sf.openrocket.util.BugException;
+import net.sf.openrocket.util.Pair;
+
+/**
+ * Loads a number of files in parallel using a {@link Loader}.  The files are read
+ * sequentially by the calling thread and parsed concurrently by a pool of threads.
+ * The results are returned in the order the files were added, so the result does not
+ * depend on the number of threads or on the order in which the files are parsed.
+ * <p>
+ * Files added as {@link File} objects may be cached in a {@link LoaderCache}, in which
+ * case files that have not changed since they were cached are not parsed.
+ * <p>
+ * The loader must be safe to use from several threads at the same time.
+ *
+ * @param <T>	the type of the loaded objects
+ */
+public class ParallelLoader<T> {
+
+	private static final Logger log = LoggerFactory.getLogger(ParallelLoader.class);
+
+	private final Loader<T> loader;
+	private final ExecutorService executor;
+	private final List<Task<T>> tasks = new ArrayList<Task<T>>();
+	private LoaderCache<T> cache = null;
+
+
+	/**
+	 * Create a loader using one thread for each available processor.
+	 *
+	 * @param loader	the loader used to parse the files.
+	 */
+	public ParallelLoader(Loader<T> loader) {
+		this(loader, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a loader using the specified number of threads.
+	 *
+	 * @param loader		the loader used to parse the files.
+	 * @param threadCount	the number of files to parse simultaneously.
+	 */
+	public ParallelLoader(Loader<T> loader, int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount=" + threadCount);
+		}
+		this.loader = loader;
+		this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setName("ParallelLoader-" + t.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+
+	/**
+	 * Set the cache of the files added as {@link File} objects.  The results of the
+	 * files that are parsed are stored in the cache by {@link #getResults()}, but
+	 * writing the cache is left to the caller.
+	 *
+	 * @param cache		the cache, or <code>null</code> for none.
+	 */
+	public void setCache(LoaderCache<T> cache) {
+		this.cache = cache;
+	}
+
+
+	/**
+	 * Add a file to be loaded, unless it is found in the cache.
+	 *
+	 * @param file	the file to load.
+	 * @throws IOException	if the file cannot be opened.
+	 */
+	public void add(File file) throws IOException {
+		long size = file.length();
+		long lastModified = file.lastModified();
+		if (!addCached(file)) {
+			add(file, size, lastModified, file.getName(), new BufferedInputStream(new FileInputStream(file)));
+		}
+	}
+
+	/**
+	 * Add the files of a directory and its subdirectories to be loaded, in the order
+	 * of {@link DirectoryIterator}.
+	 *
+	 * @param directory	the directory to search.
+	 * @param filter	the filter for selecting files.
+	 * @throws IOException	if the directory cannot be read.
+	 */
+	public void addDirectory(File directory, FileFilter filter) throws IOException {
+		DirectoryIterator iterator = new DirectoryIterator(directory, filter, true);
+		try {
+			while (iterator.hasNext()) {
+				Pair<String, InputStream> f = iterator.next();
+				File file = iterator.getCurrentFile();
+				// The cache key is read before the contents
+				long size = file.length();
+				long lastModified = file.lastModified();
+				if (addCached(file)) {
+					f.getV().close();
+				} else {
+					add(file, size, lastModified, f.getU(), f.getV());
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private boolean addCached(File file) {
+		if (cache == null) {
+			return false;
+		}
+		final Collection<T> cached = cache.get(file);
+		if (cached == null) {
+			return false;
+		}
+		FutureTask<Collection<T>> future = new FutureTask<Collection<T>>(new Callable<Collection<T>>() {
+			@Override
+			public Collection<T> call() {
+				return cached;
+			}
+		});
+		future.run();
+		tasks.add(new Task<T>(file.getName(), null, 0, 0, future));
+		return true;
+	}
+
+	/**
+	 * Add a file to be loaded.  The stream is read fully and closed before returning,
+	 * so that only a bounded number of files are open at a time.  A file that cannot
+	 * be read is logged and skipped.
+	 *
+	 * @param filename	the name of the file, passed to the loader.
+	 * @param stream	the contents of the file.
+	 */
+	public void add(String filename, InputStream stream) {
+		add(null, 0, 0, filename, stream);
+	}
+
+	private void add(File file, long size, long lastModified, final String filename, InputStream stream) {
+		final byte[] contents;
+		try {
+			contents = readFully(stream);
+		} catch (IOException e) {
+			log.warn("IOException while reading file " + filename + ": " + e, e);
+			return;
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+			}
+		}
+
+		Future<Collection<T>> future = executor.submit(new Callable<Collection<T>>() {
+			@Override
+			public Collection<T> call() throws Exception {
+				return loader.load(new ByteArrayInputStream(contents), filename);
+			}
+		});
+		tasks.add(new Task<T>(filename, file, size, lastModified, future));
+	}
+
+	/**
+	 * Add all files of an iterator to be loaded.
+	 *
+	 * @param iterator	the files to load.
+	 */
+	public void addAll(Iterator<Pair<String, InputStream>> iterator) {
+		while (iterator.hasNext()) {
+			Pair<String, InputStream> f = iterator.next();
+			add(f.getU(), f.getV());
+		}
+	}
+
+
+	/**
+	 * Wait for all files to be loaded and return the loaded objects of each file in the
+	 * order the files were added.  Files whose loading failed with an IOException are
+	 * logged and omitted from the results.  The results of parsed files are stored in
+	 * the cache, if any.  The threads of this loader are released, and no more files may
+	 * be added.
+	 *
+	 * @return	pairs of the file name and the objects loaded from the file.
+	 * @throws InterruptedException	if the current thread is interrupted while waiting.
+	 */
+	public List<Pair<String, Collection<T>>> getResults() throws InterruptedException {
+		executor.shutdown();
+		try {
+			List<Pair<String, Collection<T>>> results = new ArrayList<Pair<String, Collection<T>>>(tasks.size());
+			for (Task<T> task : tasks) {
+				try {
+					Collection<T> contents = task.future.get();
+					if (cache != null && task.file != null) {
+						cache.put(task.file, task.size, task.lastModified, contents);
+					}
+					results.add(new Pair<String, Collection<T>>(task.filename, contents));
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						log.warn("IOException while loading file " + task.filename + ": " + cause, cause);
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else {
+						throw new BugException("Unexpected exception while loading file " + task.filename, cause);
+					}
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	private static byte[] readFully(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = stream.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+
+	private static class Task<T> {
+		private final String filename;
+		private final File file;
+		private final long size;
+		private final long lastModified;
+		private final Future<Collection<T>> future;
+
+		private Task(String filename, File file, long size, long lastModified, Future<Collection<T>> future) {
+			this.filename = filename;
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.future = future;
+		}
+	}
+}
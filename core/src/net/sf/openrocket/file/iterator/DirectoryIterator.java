@@ -7,6 +7,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +17,8 @@ import net.sf.openrocket.util.Pair;
 
 /**
  * A DirectoryIterator that scans for files within a directory in the file system
- * matching a FileFilter.  The scan is optionally recursive.
+ * matching a FileFilter.  The scan is optionally recursive.  The files of a directory
+ * are returned in the order of their names, independent of the file system.
  * 
  * @author Sampo Niskanen <sampo.niskanen@iki.fi>
  */
@@ -29,6 +31,7 @@ public class DirectoryIterator extends FileIterator {
 	private final boolean recursive;
 	private int position = 0;
 	private DirectoryIterator subIterator = null;
+	private File current = null;
 	
 	/**
 	 * Sole constructor.
@@ -49,6 +52,7 @@ public class DirectoryIterator extends FileIterator {
 			throw new IOException("not a directory or IOException occurred when listing files " +
 					"from " + directory);
 		}
+		Arrays.sort(this.files);
 	}
 	
 	
@@ -61,7 +65,7 @@ public class DirectoryIterator extends FileIterator {
 		// Check if we're recursing
 		if (subIterator != null) {
 			if (subIterator.hasNext()) {
-				return subIterator.next();
+				return nextOfSubIterator();
 			} else {
 				subIterator.close();
 				subIterator = null;
@@ -77,7 +81,7 @@ public class DirectoryIterator extends FileIterator {
 				if (recursive && file.isDirectory()) {
 					subIterator = new DirectoryIterator(file, filter, recursive);
 					if (subIterator.hasNext()) {
-						return subIterator.next();
+						return nextOfSubIterator();
 					} else {
 						subIterator.close();
 						subIterator = null;
@@ -86,6 +90,7 @@ public class DirectoryIterator extends FileIterator {
 				}
 				
 				InputStream is = new BufferedInputStream(new FileInputStream(file));
+				current = file;
 				return new Pair<String, InputStream>(file.getName(), is);
 			} catch (IOException e) {
 				logger.warn("Error opening file/directory " + file, e);
@@ -94,6 +99,23 @@ public class DirectoryIterator extends FileIterator {
 		return null;
 	}
 	
+	private Pair<String, InputStream> nextOfSubIterator() {
+		Pair<String, InputStream> next = subIterator.next();
+		current = subIterator.getCurrentFile();
+		return next;
+	}
+	
+	
+	/**
+	 * Return the file of the entry last returned by {@link #next()}.  The file must
+	 * be retrieved before calling {@link #hasNext()} again.
+	 * 
+	 * @return	the file, or <code>null</code> if no entry has been returned.
+	 */
+	public File getCurrentFile() {
+		return current;
+	}
+	
 	
 
 	/**
@@ -0,0 +1,319 @@
+package net.sf.openrocket.file.motor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.openrocket.motor.Manufacturer;
+import net.sf.openrocket.motor.Motor;
+import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.util.Coordinate;
+
+/**
+ * Reads and writes the binary motor database format used for the built-in thrust curves.
+ * <p>
+ * After a short header, the file contains a string table holding all text fields of the
+ * motors, a record of each motor and the thrust curves stored as packed arrays of doubles.  The records contain the statistics of the motors, so a motor can be listed
+ * and selected without reading its thrust curve.  The thrust curves are read on first
+ * use from the buffer, which is memory-mapped when reading from a file.
+ * <p>
+ * All values are big-endian.  The layout of version 1 is:
+ * <pre>
+ * int     magic number "ORMD"
+ * int     version
+ * int     offset of the thrust curves from the start of the file, a multiple of eight
+ * int     number of strings, followed by each string as an int length and UTF-8 bytes
+ * int     number of motors, followed by a record of each motor:
+ *   int     manufacturer, designation, description, digest, case info,
+ *           propellant info and motor type as indexes to the string table (-1 for null)
+ *   byte    1 if the motor is available, 0 otherwise
+ *   double  diameter, length, initial mass, maximum thrust, burn time estimate,
+ *           average thrust estimate and total impulse estimate
+ *   int     number of standard delays, followed by the delays as doubles
+ *   int     number of points in the thrust curve
+ *   int     offset of the thrust curve from the start of the thrust curves
+ * thrust curves, each as the time, thrust, CG position and mass arrays of doubles
+ * </pre>
+ * The CG of a motor is assumed to be on the motor axis.
+ */
+public class BinaryMotorDatabase {
+
+	/** The magic number at the start of the file, "ORMD". */
+	public static final int MAGIC = 0x4F524D44;
+
+	/** The version of the format written. */
+	public static final int VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+	/**
+	 * Write motors in the binary format.
+	 *
+	 * @param motors	the motors to write.
+	 * @param output	the stream to write to, which is not closed.
+	 * @throws IOException	if an I/O error occurs.
+	 * @throws IllegalArgumentException	if the CG of a motor is not on the motor axis.
+	 */
+	public static void write(List<ThrustCurveMotor> motors, OutputStream output) throws IOException {
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+		// Motor records and thrust curves
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream rec = new DataOutputStream(records);
+		ByteArrayOutputStream curves = new ByteArrayOutputStream();
+		DataOutputStream cur = new DataOutputStream(curves);
+
+		rec.writeInt(motors.size());
+		for (ThrustCurveMotor m : motors) {
+			rec.writeInt(addString(m.getManufacturer().getDisplayName(), strings, stringIndex));
+			rec.writeInt(addString(m.getDesignation(), strings, stringIndex));
+			rec.writeInt(addString(m.getDescription(), strings, stringIndex));
+			rec.writeInt(addString(m.getDigest(), strings, stringIndex));
+			rec.writeInt(addString(m.getCaseInfo(), strings, stringIndex));
+			rec.writeInt(addString(m.getPropellantInfo(), strings, stringIndex));
+			rec.writeInt(addString(m.getMotorType().name(), strings, stringIndex));
+			rec.writeByte(m.isAvailable() ? 1 : 0);
+			rec.writeDouble(m.getDiameter());
+			rec.writeDouble(m.getLength());
+			rec.writeDouble(m.getInitialMass());
+			rec.writeDouble(m.getMaxThrustEstimate());
+			rec.writeDouble(m.getBurnTimeEstimate());
+			rec.writeDouble(m.getAverageThrustEstimate());
+			rec.writeDouble(m.getTotalImpulseEstimate());
+			double[] delays = m.getStandardDelays();
+			rec.writeInt(delays.length);
+			for (double d : delays) {
+				rec.writeDouble(d);
+			}
+
+			double[] time = m.getTimePoints();
+			double[] thrust = m.getThrustPoints();
+			Coordinate[] cg = m.getCGPoints();
+			rec.writeInt(time.length);
+			rec.writeInt(cur.size());
+			for (double t : time) {
+				cur.writeDouble(t);
+			}
+			for (double t : thrust) {
+				cur.writeDouble(t);
+			}
+			for (Coordinate c : cg) {
+				if (c.y != 0 || c.z != 0) {
+					throw new IllegalArgumentException("CG of motor " + m + " is not on the motor axis: " + c);
+				}
+				cur.writeDouble(c.x);
+			}
+			for (Coordinate c : cg) {
+				cur.writeDouble(c.weight);
+			}
+		}
+		rec.flush();
+		cur.flush();
+
+		ByteArrayOutputStream stringTable = new ByteArrayOutputStream();
+		DataOutputStream str = new DataOutputStream(stringTable);
+		str.writeInt(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(UTF8);
+			str.writeInt(bytes.length);
+			str.write(bytes);
+		}
+		str.flush();
+
+		// Align the thrust curves to eight bytes
+		int curveStart = 3 * 4 + stringTable.size() + records.size();
+		int padding = (8 - curveStart % 8) % 8;
+		curveStart += padding;
+
+		DataOutputStream out = new DataOutputStream(output);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(curveStart);
+		stringTable.writeTo(out);
+		records.writeTo(out);
+		out.write(new byte[padding]);
+		curves.writeTo(out);
+		out.flush();
+	}
+
+	private static int addString(String s, List<String> strings, Map<String, Integer> stringIndex) {
+		if (s == null) {
+			return -1;
+		}
+		Integer index = stringIndex.get(s);
+		if (index == null) {
+			index = strings.size();
+			strings.add(s);
+			stringIndex.put(s, index);
+		}
+		return index;
+	}
+
+
+	/**
+	 * Read motors from a file, which is memory-mapped.
+	 *
+	 * @param file	the file to read.
+	 * @return		the motors in the file.
+	 * @throws IOException	if an I/O error occurs or the file format is invalid.
+	 */
+	public static List<ThrustCurveMotor> read(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			// The mapping remains valid after the channel is closed
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read motors from a stream.  The contents of the stream are read into memory.
+	 *
+	 * @param stream	the stream to read, which is not closed.
+	 * @return			the motors in the stream.
+	 * @throws IOException	if an I/O error occurs or the file format is invalid.
+	 */
+	public static List<ThrustCurveMotor> read(InputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[65536];
+		int n;
+		while ((n = stream.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, n);
+		}
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Read motors from a buffer.  The thrust curves of the motors are read from the
+	 * buffer when first used, so the buffer must not be modified afterwards.
+	 *
+	 * @param buffer	the buffer containing the motor database, starting at position zero.
+	 * @return			the motors in the buffer.
+	 * @throws IOException	if the format is invalid.
+	 */
+	public static List<ThrustCurveMotor> read(ByteBuffer buffer) throws IOException {
+		ByteBuffer in = buffer.duplicate();
+		in.order(ByteOrder.BIG_ENDIAN);
+		in.position(0);
+		try {
+			if (in.getInt() != MAGIC) {
+				throw new IOException("Not a motor database file");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported motor database version " + version);
+			}
+			int curveStart = in.getInt();
+
+			String[] strings = new String[in.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[in.getInt()];
+				in.get(bytes);
+				strings[i] = new String(bytes, UTF8);
+			}
+
+			int count = in.getInt();
+			List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>(count);
+			for (int i = 0; i < count; i++) {
+				ThrustCurveMotor.Builder builder = new ThrustCurveMotor.Builder();
+				builder.setManufacturer(Manufacturer.getManufacturer(getString(strings, in.getInt())));
+				builder.setDesignation(getString(strings, in.getInt()));
+				builder.setDescription(getString(strings, in.getInt()));
+				builder.setDigest(getString(strings, in.getInt()));
+				builder.setCaseInfo(getString(strings, in.getInt()));
+				builder.setPropellantInfo(getString(strings, in.getInt()));
+				builder.setMotorType(Motor.Type.valueOf(getString(strings, in.getInt())));
+				builder.setAvailablity(in.get() != 0);
+				builder.setDiameter(in.getDouble());
+				builder.setLength(in.getDouble());
+				builder.setInitialMass(in.getDouble());
+				builder.setMaxThrustEstimate(in.getDouble());
+				builder.setBurnTimeEstimate(in.getDouble());
+				builder.setAverageThrustEstimate(in.getDouble());
+				builder.setTotalThrustEstimate(in.getDouble());
+				double[] delays = new double[in.getInt()];
+				for (int j = 0; j < delays.length; j++) {
+					delays[j] = in.getDouble();
+				}
+				builder.setStandardDelays(delays);
+
+				int size = in.getInt();
+				long offset = (long) curveStart + in.getInt();
+				if (size < 2 || offset < curveStart || offset + size * 4L * 8 > in.limit()) {
+					throw new IOException("Invalid thrust curve of motor " + i);
+				}
+				builder.setCurveLoader(new Curve(in, (int) offset, size));
+				motors.add(builder.build());
+			}
+			return motors;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated motor database", e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid motor database: " + e.getMessage(), e);
+		}
+	}
+
+	private static String getString(String[] strings, int index) throws IOException {
+		if (index == -1) {
+			return null;
+		}
+		if (index < 0 || index >= strings.length) {
+			throw new IOException("Invalid string index " + index);
+		}
+		return strings[index];
+	}
+
+
+	/**
+	 * A thrust curve in the buffer of the database.
+	 */
+	private static class Curve implements ThrustCurveMotor.CurveLoader {
+		private final ByteBuffer buffer;
+		private final int offset;
+		private final int size;
+
+		public Curve(ByteBuffer buffer, int offset, int size) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		public int getDataSize() {
+			return size;
+		}
+
+		@Override
+		public void load(double[] time, double[] thrust, Coordinate[] cg) {
+			// Absolute reads do not modify the buffer
+			int pos = offset;
+			for (int i = 0; i < size; i++, pos += 8) {
+				time[i] = buffer.getDouble(pos);
+			}
+			for (int i = 0; i < size; i++, pos += 8) {
+				thrust[i] = buffer.getDouble(pos);
+			}
+			int massPos = pos + size * 8;
+			for (int i = 0; i < size; i++, pos += 8, massPos += 8) {
+				cg[i] = new Coordinate(buffer.getDouble(pos), 0, 0, buffer.getDouble(massPos));
+			}
+		}
+	}
+}
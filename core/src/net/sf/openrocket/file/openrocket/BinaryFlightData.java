@@ -0,0 +1,98 @@
+package net.sf.openrocket.file.openrocket;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+
+/**
+ * The binary format of flight data branches stored as separate entries of an
+ * OpenRocket ZIP container.  The types of the columns, the events and the other
+ * properties of the branch are stored in the XML document referencing the entry.
+ * <p>
+ * An entry contains the format version, the number of columns and the number of
+ * points as integers, followed by the values of each column in turn.  Each value is
+ * stored as the bits of the double XORed with the bits of the previous value of the
+ * column, which makes slowly changing values compress well in the ZIP container.
+ */
+public final class BinaryFlightData {
+
+	/** The version of the format. */
+	public static final int VERSION = 1;
+
+	private BinaryFlightData() {
+	}
+
+
+	/**
+	 * Write the selected points of a flight data branch.
+	 *
+	 * @param out		the output to write to.
+	 * @param branch	the branch to write.
+	 * @param types		the types of the columns to write, in order.
+	 * @param points	the indices of the points to write.
+	 * @throws IOException	if an I/O error occurs.
+	 */
+	public static void write(DataOutputStream out, FlightDataBranch branch, FlightDataType[] types, int[] points)
+			throws IOException {
+		out.writeInt(VERSION);
+		out.writeInt(types.length);
+		out.writeInt(points.length);
+
+		for (FlightDataType type : types) {
+			double[] values = branch.getValues(type);
+			long previous = 0;
+			for (int point : points) {
+				long bits = Double.doubleToRawLongBits(values[point]);
+				out.writeLong(bits ^ previous);
+				previous = bits;
+			}
+		}
+	}
+
+
+	/**
+	 * Read flight data points into an empty branch.
+	 *
+	 * @param in		the input to read from.
+	 * @param branch	the branch to add the points to, which must not contain points.
+	 * @param types		the types of the columns, in order.
+	 * @throws IOException	if an I/O error occurs or the data is invalid.
+	 */
+	public static void read(DataInputStream in, FlightDataBranch branch, FlightDataType[] types)
+			throws IOException {
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported flight data version " + version);
+		}
+		int columns = in.readInt();
+		int length = in.readInt();
+		if (columns != types.length || length < 0) {
+			throw new IOException("Invalid flight data, columns=" + columns + " types=" + types.length +
+					" length=" + length);
+		}
+
+		double[][] values = new double[columns][length];
+		try {
+			for (int i = 0; i < columns; i++) {
+				long bits = 0;
+				for (int j = 0; j < length; j++) {
+					bits ^= in.readLong();
+					values[i][j] = Double.longBitsToDouble(bits);
+				}
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated flight data", e);
+		}
+
+		for (int j = 0; j < length; j++) {
+			branch.addPoint();
+		}
+		for (int i = 0; i < columns; i++) {
+			branch.setValues(types[i], values[i]);
+		}
+	}
+}
@@ -1,23 +1,43 @@
 package net.sf.openrocket.file.openrocket;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sf.openrocket.aerodynamics.Warning;
+import net.sf.openrocket.document.Attachment;
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.document.Simulation;
 import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.document.attachments.ZipFileAttachment;
 import net.sf.openrocket.file.RocketSaver;
+import net.sf.openrocket.file.openrocket.importt.BinaryFlightDataLoader;
 import net.sf.openrocket.rocketcomponent.Rocket;
 import net.sf.openrocket.rocketcomponent.RocketComponent;
 import net.sf.openrocket.simulation.FlightData;
@@ -49,23 +69,92 @@ public class OpenRocketSaver extends RocketSaver {
 	private static final String METHOD_PACKAGE = "net.sf.openrocket.file.openrocket.savers";
 	private static final String METHOD_SUFFIX = "Saver";
 	
+	/** The getElements methods of the component classes saved so far. */
+	private static final ConcurrentMap<Class<?>, Reflection.Method> GET_ELEMENTS_METHODS =
+			new ConcurrentHashMap<Class<?>, Reflection.Method>();
+	
 	
 	// Estimated storage used by different portions
 	// These have been hand-estimated from saved files
 	private static final int BYTES_PER_COMPONENT_COMPRESSED = 80;
 	private static final int BYTES_PER_SIMULATION_COMPRESSED = 100;
 	private static final int BYTES_PER_DATAPOINT_COMPRESSED = 100;
+	private static final int BYTES_PER_BINARY_VALUE_COMPRESSED = 5;
+	
+	/** Prefix of the names of the ZIP entries of binary simulation data. */
+	private static final String DATA_ENTRY_PREFIX = "data/";
 	
 	
 	private int indent;
 	private Writer dest;
 	
+	/** The binary data entries referenced by the document, or null if storing data as text. */
+	private List<DataEntry> dataEntries;
+	
+	/** Simulation data already stored in the container. */
+	private Map<FlightData, StoredData> storedData = null;
+	private double storedTimeSkip;
+	
+	/**
+	 * The entries of simulation data stored in binary format in a container.
+	 */
+	public static class StoredData {
+		private final int simulation;
+		private final FlightDataType[][] types;
+		
+		/**
+		 * @param simulation	the number of the simulation the data was stored for.
+		 * @param types			the types of the columns of the entry of each branch.
+		 */
+		public StoredData(int simulation, FlightDataType[][] types) {
+			this.simulation = simulation;
+			this.types = types;
+		}
+	}
+	
+	/**
+	 * Set the simulation data that is already stored in binary format in the container
+	 * the saved document is placed in or read with.  The document references the stored
+	 * entries of this data instead of storing the data again, regardless of the storage
+	 * options.  Values set in the branches after the data was stored are not saved.
+	 * 
+	 * @param storedData	the stored data, or <code>null</code> for none.
+	 * @param timeSkip		the time skip the data was stored with.
+	 */
+	public void setStoredData(Map<FlightData, StoredData> storedData, double timeSkip) {
+		this.storedData = storedData;
+		this.storedTimeSkip = timeSkip;
+	}
+	
+	/**
+	 * Return the name of the ZIP entry that stores a branch of the data of a simulation
+	 * in binary format.
+	 * 
+	 * @param simulation	the number of the simulation in the document, starting from 1.
+	 * @param branch		the index of the branch.
+	 */
+	public static String getDataEntryName(int simulation, int branch) {
+		return DATA_ENTRY_PREFIX + "simulation" + simulation + "-branch" + (branch + 1) + ".bin";
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the storage options select binary simulation data, the data is not written into
+	 * the document.  The caller must then store it in the ZIP container of the document
+	 * using {@link #saveDataEntries(ZipOutputStream)}.
+	 */
 	@Override
 	public void save(OutputStream output, OpenRocketDocument document, StorageOptions options) throws IOException {
 		
 		log.info("Saving .ork file");
 		
 		dest = new BufferedWriter(new OutputStreamWriter(output, OPENROCKET_CHARSET));
+		if (options.getSimulationDataFormat() == StorageOptions.DataFormat.BINARY) {
+			dataEntries = new ArrayList<DataEntry>();
+		} else {
+			dataEntries = null;
+		}
 		
 		// Select file version number
 		final int fileVersion = calculateNecessaryFileVersion(document, options);
@@ -94,11 +183,13 @@ public class OpenRocketSaver extends RocketSaver {
 		writeln("<simulations>");
 		indent++;
 		boolean first = true;
+		int number = 0;
 		for (Simulation s : document.getSimulations()) {
 			if (!first)
 				writeln("");
 			first = false;
-			saveSimulation(s, options.getSimulationTimeSkip());
+			number++;
+			saveSimulation(s, number, options.getSimulationTimeSkip());
 		}
 		indent--;
 		writeln("</simulations>");
@@ -110,6 +201,90 @@ public class OpenRocketSaver extends RocketSaver {
 		dest.flush();
 	}
 	
+	/**
+	 * Write the binary simulation data referenced by the document last saved as
+	 * entries of a ZIP container.  Does nothing if the data was stored as text.
+	 * <p>
+	 * The entries are encoded concurrently, a few at a time, and written in order.
+	 * 
+	 * @param zos			the ZIP container of the document.
+	 * @throws IOException	in case of an I/O error.
+	 */
+	public void saveDataEntries(ZipOutputStream zos) throws IOException {
+		if (dataEntries == null || dataEntries.isEmpty())
+			return;
+		
+		int threads = Math.min(Runtime.getRuntime().availableProcessors(), dataEntries.size());
+		if (threads < 2) {
+			for (DataEntry entry : dataEntries) {
+				zos.putNextEntry(new ZipEntry(entry.name));
+				zos.write(entry.call());
+				zos.closeEntry();
+			}
+			return;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			// Keep at most two encoded entries per thread in memory
+			LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+			Iterator<DataEntry> iterator = dataEntries.iterator();
+			for (DataEntry entry : dataEntries) {
+				while (pending.size() < 2 * threads && iterator.hasNext()) {
+					pending.add(executor.submit(iterator.next()));
+				}
+				zos.putNextEntry(new ZipEntry(entry.name));
+				zos.write(getEncoded(pending.removeFirst()));
+				zos.closeEntry();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Let the simulation data written by {@link #saveDataEntries(ZipOutputStream)} be
+	 * loaded from the saved container when needed instead of keeping it in memory.  Only
+	 * branches stored with all their points are released.  This must be called after the
+	 * container has been written successfully, before the simulation data is modified.
+	 * 
+	 * @param container	the location of the saved ZIP container.
+	 */
+	public void releaseSavedData(URL container) {
+		if (dataEntries == null)
+			return;
+		
+		for (DataEntry entry : dataEntries) {
+			if (entry.points.length == entry.branch.getLength()) {
+				Attachment attachment = new ZipFileAttachment(entry.name, container);
+				entry.data.releaseBranch(entry.index, BinaryFlightDataLoader.forBranch(attachment, entry.branch, entry.types));
+			}
+		}
+	}
+	
+	private static byte[] getEncoded(Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while saving simulation data");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new BugException("Unable to encode simulation data", e.getCause());
+		}
+	}
+	
 	/*
 	 * Save all the custom expressions
 	 */
@@ -171,19 +346,27 @@ public class OpenRocketSaver extends RocketSaver {
 		
 		// Size per flight data point
 		int pointCount = 0;
+		long valueCount = 0;
 		double timeSkip = options.getSimulationTimeSkip();
 		if (timeSkip != StorageOptions.SIMULATION_DATA_NONE) {
 			for (Simulation s : doc.getSimulations()) {
 				FlightData data = s.getSimulatedData();
 				if (data != null) {
 					for (int i = 0; i < data.getBranchCount(); i++) {
-						pointCount += countFlightDataBranchPoints(data.getBranch(i), timeSkip);
+						FlightDataBranch branch = data.getBranch(i);
+						int points = selectDataPoints(branch, timeSkip).length;
+						pointCount += points;
+						valueCount += (long) points * branch.getTypes().length;
 					}
 				}
 			}
 		}
 		
-		size += pointCount * BYTES_PER_DATAPOINT_COMPRESSED;
+		if (options.getSimulationDataFormat() == StorageOptions.DataFormat.BINARY) {
+			size += valueCount * BYTES_PER_BINARY_VALUE_COMPRESSED;
+		} else {
+			size += pointCount * BYTES_PER_DATAPOINT_COMPRESSED;
+		}
 		
 		return size;
 	}
@@ -233,9 +416,23 @@ public class OpenRocketSaver extends RocketSaver {
 	
 	
 	/**
-	 * Finds a getElements method somewhere in the *saver class hiearchy corresponding to the given component. 
+	 * Returns the getElements method of the *saver class corresponding to the given component.
+	 * The method is looked up once per component class.
+	 */
+	private static Reflection.Method getElementsMethod(RocketComponent component) {
+		Class<?> componentClass = component.getClass();
+		Reflection.Method m = GET_ELEMENTS_METHODS.get(componentClass);
+		if (m == null) {
+			m = findGetElementsMethod(componentClass);
+			GET_ELEMENTS_METHODS.putIfAbsent(componentClass, m);
+		}
+		return m;
+	}
+	
+	/**
+	 * Finds a getElements method somewhere in the *saver class hiearchy corresponding to the given component class. 
 	 */
-	private static Reflection.Method findGetElementsMethod(RocketComponent component) {
+	private static Reflection.Method findGetElementsMethod(Class<?> componentClass) {
 		String currentclassname;
 		Class<?> currentclass;
 		String saverclassname;
@@ -243,7 +440,7 @@ public class OpenRocketSaver extends RocketSaver {
 		
 		Reflection.Method mtr = null; // method-to-return
 		
-		currentclass = component.getClass();
+		currentclass = componentClass;
 		while ((currentclass != null) && (currentclass != Object.class)) {
 			currentclassname = currentclass.getSimpleName();
 			saverclassname = METHOD_PACKAGE + "." + currentclassname + METHOD_SUFFIX;
@@ -264,14 +461,14 @@ public class OpenRocketSaver extends RocketSaver {
 		
 		// if( null == mtr ){
 		throw new BugException("Unable to find saving class for component " +
-				METHOD_PACKAGE + "." + component.getClass().getSimpleName() + " ... " + METHOD_SUFFIX);
+				METHOD_PACKAGE + "." + componentClass.getSimpleName() + " ... " + METHOD_SUFFIX);
 	}
 	
 	@SuppressWarnings("unchecked")
 	private void saveComponent(RocketComponent component) throws IOException {
 		log.debug("Saving component " + component.getComponentName());
 		
-		Reflection.Method m = findGetElementsMethod(component);
+		Reflection.Method m = getElementsMethod(component);
 		
 		// Get the strings to save
 		List<String> list = (List<String>) m.invokeStatic(component);
@@ -315,7 +512,7 @@ public class OpenRocketSaver extends RocketSaver {
 	}
 	
 	
-	private void saveSimulation(Simulation simulation, double timeSkip) throws IOException {
+	private void saveSimulation(Simulation simulation, int number, double timeSkip) throws IOException {
 		SimulationOptions cond = simulation.getOptions();
 		
 		writeln("<simulation status=\"" + enumToXMLName(simulation.getStatus()) + "\">");
@@ -353,6 +550,8 @@ public class OpenRocketSaver extends RocketSaver {
 		}
 		
 		writeElement("timestep", cond.getTimeStep());
+		writeElement("stepper", cond.getSimulationStepperType().name().toLowerCase(Locale.ENGLISH));
+		writeElement("aerodynamiccache", cond.isAerodynamicCache());
 		
 		indent--;
 		writeln("</conditions>");
@@ -375,27 +574,18 @@ public class OpenRocketSaver extends RocketSaver {
 		
 		FlightData data = simulation.getSimulatedData();
 		if (data != null) {
-			String str = "<flightdata";
-			if (!Double.isNaN(data.getMaxAltitude()))
-				str += " maxaltitude=\"" + TextUtil.doubleToString(data.getMaxAltitude()) + "\"";
-			if (!Double.isNaN(data.getMaxVelocity()))
-				str += " maxvelocity=\"" + TextUtil.doubleToString(data.getMaxVelocity()) + "\"";
-			if (!Double.isNaN(data.getMaxAcceleration()))
-				str += " maxacceleration=\"" + TextUtil.doubleToString(data.getMaxAcceleration()) + "\"";
-			if (!Double.isNaN(data.getMaxMachNumber()))
-				str += " maxmach=\"" + TextUtil.doubleToString(data.getMaxMachNumber()) + "\"";
-			if (!Double.isNaN(data.getTimeToApogee()))
-				str += " timetoapogee=\"" + TextUtil.doubleToString(data.getTimeToApogee()) + "\"";
-			if (!Double.isNaN(data.getFlightTime()))
-				str += " flighttime=\"" + TextUtil.doubleToString(data.getFlightTime()) + "\"";
-			if (!Double.isNaN(data.getGroundHitVelocity()))
-				str += " groundhitvelocity=\"" + TextUtil.doubleToString(data.getGroundHitVelocity()) + "\"";
-			if (!Double.isNaN(data.getLaunchRodVelocity()))
-				str += " launchrodvelocity=\"" + TextUtil.doubleToString(data.getLaunchRodVelocity()) + "\"";
-			if (!Double.isNaN(data.getDeploymentVelocity()))
-				str += " deploymentvelocity=\"" + TextUtil.doubleToString(data.getDeploymentVelocity()) + "\"";
-			str += ">";
-			writeln(str);
+			StringBuilder sb = new StringBuilder("<flightdata");
+			appendAttribute(sb, "maxaltitude", data.getMaxAltitude());
+			appendAttribute(sb, "maxvelocity", data.getMaxVelocity());
+			appendAttribute(sb, "maxacceleration", data.getMaxAcceleration());
+			appendAttribute(sb, "maxmach", data.getMaxMachNumber());
+			appendAttribute(sb, "timetoapogee", data.getTimeToApogee());
+			appendAttribute(sb, "flighttime", data.getFlightTime());
+			appendAttribute(sb, "groundhitvelocity", data.getGroundHitVelocity());
+			appendAttribute(sb, "launchrodvelocity", data.getLaunchRodVelocity());
+			appendAttribute(sb, "deploymentvelocity", data.getDeploymentVelocity());
+			sb.append(">");
+			writeln(sb);
 			indent++;
 			
 			for (Warning w : data.getWarningSet()) {
@@ -406,10 +596,25 @@ public class OpenRocketSaver extends RocketSaver {
 			if (simulation.getStatus() == Simulation.Status.EXTERNAL) // Always store external data
 				timeSkip = 0;
 			
-			if (timeSkip != StorageOptions.SIMULATION_DATA_NONE) {
+			StoredData stored = (storedData != null) ? storedData.get(data) : null;
+			if (stored != null) {
+				for (int i = 0; i < data.getBranchCount(); i++) {
+					saveFlightDataBranch(data.peekBranch(i), stored.types[i], storedTimeSkip,
+							getDataEntryName(stored.simulation, i), true);
+				}
+			} else if (timeSkip != StorageOptions.SIMULATION_DATA_NONE) {
 				for (int i = 0; i < data.getBranchCount(); i++) {
-					FlightDataBranch branch = data.getBranch(i);
-					saveFlightDataBranch(branch, timeSkip);
+					// Data which cannot be loaded must not be saved as an empty branch
+					FlightDataBranch branch = data.loadBranch(i);
+					String entryName = null;
+					if (dataEntries != null) {
+						entryName = getDataEntryName(number, i);
+					}
+					FlightDataType[] types = branch.getTypes();
+					saveFlightDataBranch(branch, types, timeSkip, entryName, false);
+					if (types.length > 0 && entryName != null) {
+						dataEntries.add(new DataEntry(entryName, data, i, branch, types, selectDataPoints(branch, timeSkip)));
+					}
 				}
 			}
 			
@@ -456,26 +661,21 @@ public class OpenRocketSaver extends RocketSaver {
 		}
 	}
 	
-	private void saveFlightDataBranch(FlightDataBranch branch, double timeSkip)
-			throws IOException {
-		double previousTime = -100000;
-		
-		if (branch == null)
-			return;
-		
-		// Retrieve the types from the branch
-		FlightDataType[] types = branch.getTypes();
-		
+	/**
+	 * Save a flight data branch.
+	 * 
+	 * @param branch		the branch to save.
+	 * @param types			the types of the columns to save.
+	 * @param timeSkip		the approximate time between stored points.
+	 * @param entryName		the name of the ZIP entry to store the points in, or null to
+	 * 						store them as text.
+	 * @param stored		whether the entry is already stored and only referenced.
+	 */
+	private void saveFlightDataBranch(FlightDataBranch branch, FlightDataType[] types, double timeSkip,
+			String entryName, boolean stored) throws IOException {
 		if (types.length == 0)
 			return;
 		
-		// Retrieve the data from the branch
-		List<List<Double>> data = new ArrayList<List<Double>>(types.length);
-		for (int i = 0; i < types.length; i++) {
-			data.add(branch.get(types[i]));
-		}
-		List<Double> timeData = branch.get(FlightDataType.TYPE_TIME);
-		
 		// Build the <databranch> tag
 		StringBuilder sb = new StringBuilder();
 		sb.append("<databranch name=\"");
@@ -504,6 +704,14 @@ public class OpenRocketSaver extends RocketSaver {
 			sb.append("\" ");
 		}
 		
+		if (entryName != null) {
+			sb.append("data=\"");
+			sb.append(TextUtil.escapeXML(entryName));
+			sb.append("\" timeskip=\"");
+			sb.append(TextUtil.doubleToString(timeSkip));
+			sb.append("\" ");
+		}
+		
 		sb.append("types=\"");
 		for (int i = 0; i < types.length; i++) {
 			if (i > 0)
@@ -511,7 +719,7 @@ public class OpenRocketSaver extends RocketSaver {
 			sb.append(TextUtil.escapeXML(types[i].getName()));
 		}
 		sb.append("\">");
-		writeln(sb.toString());
+		writeln(sb);
 		indent++;
 		
 		// Write events
@@ -520,88 +728,77 @@ public class OpenRocketSaver extends RocketSaver {
 					+ "\" type=\"" + enumToXMLName(event.getType()) + "\"/>");
 		}
 		
-		// Write the data
-		int length = branch.getLength();
-		if (length > 0) {
-			writeDataPointString(data, 0, sb);
-			previousTime = timeData.get(0);
-		}
-		
-		for (int i = 1; i < length - 1; i++) {
-			if (timeData != null) {
-				if (Math.abs(timeData.get(i) - previousTime - timeSkip) < Math.abs(timeData.get(i + 1) - previousTime - timeSkip)) {
-					writeDataPointString(data, i, sb);
-					previousTime = timeData.get(i);
-				}
-			} else {
-				// If time data is not available, write all points
-				writeDataPointString(data, i, sb);
+		// Write the data, unless stored in the container
+		if (!stored && entryName == null) {
+			int[] points = selectDataPoints(branch, timeSkip);
+			double[][] data = new double[types.length][];
+			for (int i = 0; i < types.length; i++) {
+				data[i] = branch.getValues(types[i]);
+			}
+			for (int point : points) {
+				writeDataPointString(data, point, sb);
 			}
-		}
-		
-		if (length > 1) {
-			writeDataPointString(data, length - 1, sb);
 		}
 		
 		indent--;
 		writeln("</databranch>");
 	}
 	
-	/* TODO: LOW: This is largely duplicated from above! */
-	private int countFlightDataBranchPoints(FlightDataBranch branch, double timeSkip) {
+	/**
+	 * Select the points of a flight data branch to store.  The first and last points are
+	 * always stored, and of the others the points closest to the time skip apart.  All
+	 * points are stored if the branch has no time data.
+	 * 
+	 * @param branch	the branch.
+	 * @param timeSkip	the approximate time between stored points.
+	 * @return			the indices of the points to store.
+	 */
+	private static int[] selectDataPoints(FlightDataBranch branch, double timeSkip) {
+		int length = branch.getLength();
+		int[] points = new int[length];
 		int count = 0;
 		
-		double previousTime = -100000;
-		
-		if (branch == null)
-			return 0;
-		
-		// Retrieve the types from the branch
-		FlightDataType[] types = branch.getTypes();
-		
-		if (types.length == 0)
-			return 0;
-		
-		List<Double> timeData = branch.get(FlightDataType.TYPE_TIME);
+		double[] timeData = branch.getValues(FlightDataType.TYPE_TIME);
 		if (timeData == null) {
-			// If time data not available, store all points
-			return branch.getLength();
+			for (int i = 0; i < length; i++) {
+				points[i] = i;
+			}
+			return points;
 		}
 		
-		// Write the data
-		int length = branch.getLength();
+		double previousTime = -100000;
 		if (length > 0) {
-			count++;
-			previousTime = timeData.get(0);
+			points[count++] = 0;
+			previousTime = timeData[0];
 		}
 		
 		for (int i = 1; i < length - 1; i++) {
-			if (Math.abs(timeData.get(i) - previousTime - timeSkip) < Math.abs(timeData.get(i + 1) - previousTime - timeSkip)) {
-				count++;
-				previousTime = timeData.get(i);
+			if (Math.abs(timeData[i] - previousTime - timeSkip) < Math.abs(timeData[i + 1] - previousTime - timeSkip)) {
+				points[count++] = i;
+				previousTime = timeData[i];
 			}
 		}
 		
 		if (length > 1) {
-			count++;
+			points[count++] = length - 1;
 		}
 		
-		return count;
+		return Arrays.copyOf(points, count);
 	}
 	
 	
 	
-	private void writeDataPointString(List<List<Double>> data, int index, StringBuilder sb)
+	private void writeDataPointString(double[][] data, int index, StringBuilder sb)
 			throws IOException {
 		sb.setLength(0);
 		sb.append("<datapoint>");
-		for (int j = 0; j < data.size(); j++) {
+		for (int j = 0; j < data.length; j++) {
 			if (j > 0)
 				sb.append(",");
-			sb.append(TextUtil.doubleToString(data.get(j).get(index)));
+			sb.append(TextUtil.doubleToString(data[j][index]));
 		}
 		sb.append("</datapoint>");
-		writeln(sb.toString());
+		writeln(sb);
 	}
 	
 	
@@ -614,16 +811,21 @@ public class OpenRocketSaver extends RocketSaver {
 	
 	
 	
-	private void writeln(String str) throws IOException {
-		if (str.length() == 0) {
-			dest.write("\n");
-			return;
+	private void writeln(CharSequence str) throws IOException {
+		if (str.length() > 0) {
+			for (int i = 0; i < indent; i++) {
+				dest.write("  ");
+			}
+			dest.append(str);
+		}
+		dest.write('\n');
+	}
+	
+	// Append the attribute unless the value is NaN
+	private static void appendAttribute(StringBuilder sb, String name, double value) {
+		if (!Double.isNaN(value)) {
+			sb.append(' ').append(name).append("=\"").append(TextUtil.doubleToString(value)).append('"');
 		}
-		String s = "";
-		for (int i = 0; i < indent; i++)
-			s = s + "  ";
-		s = s + str + "\n";
-		dest.write(s);
 	}
 	
 	
@@ -639,4 +841,36 @@ public class OpenRocketSaver extends RocketSaver {
 		return e.name().toLowerCase(Locale.ENGLISH).replace("_", "");
 	}
 	
+	
+	/**
+	 * A flight data branch to store as a binary ZIP entry, encoded when called.
+	 */
+	private static class DataEntry implements Callable<byte[]> {
+		private final String name;
+		private final FlightData data;
+		private final int index;
+		private final FlightDataBranch branch;
+		private final FlightDataType[] types;
+		private final int[] points;
+		
+		private DataEntry(String name, FlightData data, int index, FlightDataBranch branch, FlightDataType[] types,
+				int[] points) {
+			this.name = name;
+			this.data = data;
+			this.index = index;
+			this.branch = branch;
+			this.types = types;
+			this.points = points;
+		}
+		
+		@Override
+		public byte[] call() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + 8 * types.length * points.length);
+			DataOutputStream out = new DataOutputStream(bytes);
+			BinaryFlightData.write(out, branch, types, points);
+			out.flush();
+			return bytes.toByteArray();
+		}
+	}
+	
 }
@@ -0,0 +1,73 @@
+package net.sf.openrocket.file.openrocket.importt;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.sf.openrocket.document.Attachment;
+import net.sf.openrocket.file.openrocket.BinaryFlightData;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.simulation.FlightEvent;
+
+/**
+ * Loads the data points of a flight data branch from a binary entry of the
+ * document container when the branch is first accessed.
+ */
+public class BinaryFlightDataLoader implements FlightData.BranchLoader {
+	
+	private final Attachment attachment;
+	private final FlightDataBranch template;
+	private final FlightDataType[] types;
+	
+	/**
+	 * @param attachment	the container entry of the data points.
+	 * @param template		a branch with the name, events and optimum altitude of the
+	 * 						branch but no data points.
+	 * @param types			the types of the columns of the entry.
+	 */
+	public BinaryFlightDataLoader(Attachment attachment, FlightDataBranch template, FlightDataType[] types) {
+		this.attachment = attachment;
+		this.template = template;
+		this.types = types;
+	}
+	
+	/**
+	 * Create a loader of the data points of a branch stored in a container entry.  The
+	 * loader does not reference the branch, so the branch may be evicted from memory.
+	 * 
+	 * @param attachment	the container entry of the data points.
+	 * @param branch		the stored branch.
+	 * @param types			the types of the columns of the entry.
+	 */
+	public static BinaryFlightDataLoader forBranch(Attachment attachment, FlightDataBranch branch, FlightDataType[] types) {
+		FlightDataBranch template = new BinaryFlightDataLoader(attachment, branch, types).loadEmpty();
+		return new BinaryFlightDataLoader(attachment, template, types);
+	}
+	
+	@Override
+	public FlightDataBranch load() throws IOException {
+		FlightDataBranch branch = loadEmpty();
+		InputStream is = attachment.getBytes();
+		try {
+			BinaryFlightData.read(new DataInputStream(new BufferedInputStream(is)), branch, types);
+		} finally {
+			is.close();
+		}
+		return branch;
+	}
+	
+	@Override
+	public FlightDataBranch loadEmpty() {
+		FlightDataBranch branch = new FlightDataBranch(template.getBranchName(), types);
+		branch.setOptimumAltitude(template.getOptimumAltitude());
+		branch.setTimeToOptimumAltitude(template.getTimeToOptimumAltitude());
+		for (FlightEvent event : template.getEvents()) {
+			branch.addEvent(event);
+		}
+		return branch;
+	}
+	
+}
@@ -4,9 +4,11 @@ import java.util.HashMap;
 
 import net.sf.openrocket.aerodynamics.WarningSet;
 import net.sf.openrocket.file.DocumentLoadingContext;
+import net.sf.openrocket.file.openrocket.BinaryFlightData;
 import net.sf.openrocket.file.simplesax.AbstractElementHandler;
 import net.sf.openrocket.file.simplesax.ElementHandler;
 import net.sf.openrocket.file.simplesax.PlainTextHandler;
+import net.sf.openrocket.simulation.FlightData;
 import net.sf.openrocket.simulation.FlightDataBranch;
 import net.sf.openrocket.simulation.FlightDataType;
 import net.sf.openrocket.simulation.FlightEvent;
@@ -18,10 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 class FlightDataBranchHandler extends AbstractElementHandler {
-	@SuppressWarnings("unused")
 	private final DocumentLoadingContext context;
 	private final FlightDataType[] types;
 	private final FlightDataBranch branch;
+	private String dataEntry = null;
+	private BinaryFlightDataLoader loader = null;
 	
 	private static final Logger log = LoggerFactory.getLogger(FlightDataBranchHandler.class);
 	private final SingleSimulationHandler simHandler;
@@ -58,6 +61,16 @@ class FlightDataBranchHandler extends AbstractElementHandler {
 		branch.setOptimumAltitude(optimumAltitude);
 	}
 	
+	/**
+	 * Set the name of the container entry the data points are stored in, as
+	 * written by {@link BinaryFlightData}.
+	 * 
+	 * @param dataEntry		the name of the entry.
+	 */
+	public void setDataEntry(String dataEntry) {
+		this.dataEntry = dataEntry;
+	}
+	
 	// Find the full flight data type given name only
 	// Note: this way of doing it requires that custom expressions always come before flight data in the file,
 	// not the nicest but this is always the case anyway.
@@ -97,6 +110,14 @@ class FlightDataBranchHandler extends AbstractElementHandler {
 		return branch;
 	}
 	
+	/**
+	 * Return the loader of the data points stored in a container entry, or
+	 * <code>null</code> if the points were stored in the document.
+	 */
+	public FlightData.BranchLoader getLoader() {
+		return loader;
+	}
+	
 	@Override
 	public ElementHandler openElement(String element, HashMap<String, String> attributes,
 			WarningSet warnings) {
@@ -168,4 +189,22 @@ class FlightDataBranchHandler extends AbstractElementHandler {
 			branch.setValue(types[i], values[i]);
 		}
 	}
-}
\ No newline at end of file
+	
+	
+	@Override
+	public void endHandler(String element, HashMap<String, String> attributes,
+			String content, WarningSet warnings) {
+		
+		if (dataEntry == null)
+			return;
+		
+		if (branch.getLength() > 0) {
+			warnings.add("Flight data stored both in the document and in '" + dataEntry + "', ignoring the latter.");
+			return;
+		}
+		
+		// The points are read when the branch is first accessed
+		loader = new BinaryFlightDataLoader(context.getAttachmentFactory().getAttachment(dataEntry),
+				branch, types);
+	}
+}
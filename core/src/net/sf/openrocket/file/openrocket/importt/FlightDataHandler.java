@@ -6,6 +6,7 @@ import java.util.List;
 
 import net.sf.openrocket.aerodynamics.Warning;
 import net.sf.openrocket.aerodynamics.WarningSet;
+import net.sf.openrocket.document.StorageOptions;
 import net.sf.openrocket.file.DocumentLoadingContext;
 import net.sf.openrocket.file.simplesax.AbstractElementHandler;
 import net.sf.openrocket.file.simplesax.ElementHandler;
@@ -18,7 +19,7 @@ class FlightDataHandler extends AbstractElementHandler {
 	
 	private FlightDataBranchHandler dataHandler;
 	private WarningSet warningSet = new WarningSet();
-	private List<FlightDataBranch> branches = new ArrayList<FlightDataBranch>();
+	private List<FlightDataBranchHandler> branchHandlers = new ArrayList<FlightDataBranchHandler>();
 	
 	private SingleSimulationHandler simHandler;
 	private FlightData data;
@@ -65,6 +66,18 @@ class FlightDataHandler extends AbstractElementHandler {
 				}
 				dataHandler.setTimeToOptimumAltitude(timeToOptimumAltitude);
 			}
+			if (attributes.get("data") != null) {
+				dataHandler.setDataEntry(attributes.get("data"));
+				
+				// Keep the format, and the time skip that is not deduced from data loaded later
+				StorageOptions options = context.getOpenRocketDocument().getDefaultStorageOptions();
+				options.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+				try {
+					double timeSkip = DocumentConfig.stringToDouble(attributes.get("timeskip"));
+					options.setSimulationTimeSkip(Math.min(options.getSimulationTimeSkip(), timeSkip));
+				} catch (NumberFormatException ignore) {
+				}
+			}
 			return dataHandler;
 		}
 		
@@ -78,9 +91,8 @@ class FlightDataHandler extends AbstractElementHandler {
 			String content, WarningSet warnings) {
 		
 		if (element.equals("databranch")) {
-			FlightDataBranch branch = dataHandler.getBranch();
-			if (branch.getLength() > 0) {
-				branches.add(branch);
+			if (dataHandler.getLoader() != null || dataHandler.getBranch().getLength() > 0) {
+				branchHandlers.add(dataHandler);
 			}
 		} else if (element.equals("warning")) {
 			warningSet.add(Warning.fromString(content));
@@ -92,8 +104,17 @@ class FlightDataHandler extends AbstractElementHandler {
 	public void endHandler(String element, HashMap<String, String> attributes,
 			String content, WarningSet warnings) {
 		
-		if (branches.size() > 0) {
-			data = new FlightData(branches.toArray(new FlightDataBranch[0]));
+		boolean deferred = false;
+		for (FlightDataBranchHandler h : branchHandlers) {
+			deferred |= (h.getLoader() != null);
+		}
+		
+		if (branchHandlers.size() > 0 && !deferred) {
+			FlightDataBranch[] branches = new FlightDataBranch[branchHandlers.size()];
+			for (int i = 0; i < branches.length; i++) {
+				branches[i] = branchHandlers.get(i).getBranch();
+			}
+			data = new FlightData(branches);
 		} else {
 			double maxAltitude = Double.NaN;
 			double maxVelocity = Double.NaN;
@@ -145,6 +166,15 @@ class FlightDataHandler extends AbstractElementHandler {
 			
 			data = new FlightData(maxAltitude, maxVelocity, maxAcceleration, maxMach,
 					timeToApogee, flightTime, groundHitVelocity, launchRodVelocity, deploymentVelocity);
+			
+			// Branches stored in container entries are loaded when first accessed
+			for (FlightDataBranchHandler h : branchHandlers) {
+				if (h.getLoader() != null) {
+					data.addBranch(h.getLoader());
+				} else {
+					data.addBranch(h.getBranch());
+				}
+			}
 		}
 		
 		data.getWarningSet().addAll(warningSet);
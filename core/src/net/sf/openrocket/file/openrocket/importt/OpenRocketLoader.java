@@ -11,7 +11,6 @@ import org.xml.sax.SAXException;
 
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.document.Simulation;
-import net.sf.openrocket.document.StorageOptions;
 import net.sf.openrocket.document.StorageOptions.FileType;
 import net.sf.openrocket.file.AbstractRocketLoader;
 import net.sf.openrocket.file.DocumentLoadingContext;
@@ -55,8 +54,8 @@ public class OpenRocketLoader extends AbstractRocketLoader {
 		
 		doc.getSelectedConfiguration().setAllStages();
 		
-		// Deduce suitable time skip
-		double timeSkip = StorageOptions.SIMULATION_DATA_NONE;
+		// Deduce suitable time skip, starting from that of data not loaded yet
+		double timeSkip = doc.getDefaultStorageOptions().getSimulationTimeSkip();
 		for (Simulation s : doc.getSimulations()) {
 			if (s.getStatus() == Simulation.Status.EXTERNAL ||
 					s.getStatus() == Simulation.Status.NOT_SIMULATED)
@@ -65,6 +64,8 @@ public class OpenRocketLoader extends AbstractRocketLoader {
 				continue;
 			if (s.getSimulatedData().getBranchCount() == 0)
 				continue;
+			if (!s.getSimulatedData().isBranchLoaded(0))
+				continue;
 			FlightDataBranch branch = s.getSimulatedData().getBranch(0);
 			if (branch == null)
 				continue;
@@ -10,6 +10,7 @@ import net.sf.openrocket.file.simplesax.PlainTextHandler;
 import net.sf.openrocket.rocketcomponent.FlightConfigurationId;
 import net.sf.openrocket.rocketcomponent.Rocket;
 import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.simulation.SimulationStepperType;
 import net.sf.openrocket.util.GeodeticComputationStrategy;
 
 class SimulationConditionsHandler extends AbstractElementHandler {
@@ -116,6 +117,22 @@ class SimulationConditionsHandler extends AbstractElementHandler {
 			} else {
 				options.setTimeStep(d);
 			}
+		} else if (element.equals("stepper")) {
+			SimulationStepperType stepper =
+					(SimulationStepperType) DocumentConfig.findEnum(content, SimulationStepperType.class);
+			if (stepper != null) {
+				options.setSimulationStepperType(stepper);
+			} else {
+				warnings.add("Unknown simulation stepper '" + content + "'");
+			}
+		} else if (element.equals("aerodynamiccache")) {
+			if (content.trim().equalsIgnoreCase("true")) {
+				options.setAerodynamicCache(true);
+			} else if (content.trim().equalsIgnoreCase("false")) {
+				options.setAerodynamicCache(false);
+			} else {
+				warnings.add("Illegal aerodynamic cache setting '" + content + "'");
+			}
 		}
 	}
 }
\ No newline at end of file
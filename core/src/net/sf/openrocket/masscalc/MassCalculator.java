@@ -1,11 +1,15 @@
 package net.sf.openrocket.masscalc;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
 import net.sf.openrocket.masscalc.MassCalculation.Type;
 import net.sf.openrocket.motor.Motor;
+import net.sf.openrocket.rocketcomponent.AxialStage;
 import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.rocketcomponent.FlightConfigurationId;
+import net.sf.openrocket.rocketcomponent.Rocket;
 import net.sf.openrocket.rocketcomponent.RocketComponent;
 import net.sf.openrocket.simulation.SimulationStatus;
 import net.sf.openrocket.util.Coordinate;
@@ -13,6 +17,14 @@ import net.sf.openrocket.util.MathUtil;
 import net.sf.openrocket.util.Monitorable;
 import net.sf.openrocket.util.Transformation;
 
+/**
+ * Calculates the mass properties of rocket configurations.
+ * <p>
+ * The static methods always walk the full component tree.  The structure mass of an
+ * instance is instead cached per flight configuration and set of active stages, as it
+ * changes only at stage separation or when the rocket is modified.  The cache is cleared
+ * whenever the modification ID of the rocket changes.  Instances are not thread-safe.
+ */
 public class MassCalculator implements Monitorable {
 	
 	public static final double MIN_MASS = MathUtil.EPSILON;
@@ -21,9 +33,11 @@ public class MassCalculator implements Monitorable {
 	 * Cached data.  All CG data is in absolute coordinates.  All moments of inertia
 	 * are relative to their respective CG.
 	 */
-	//	private HashMap< Integer, MassData> stageMassCache = new HashMap<Integer, MassData >();
-	//	private MassData rocketSpentMassCache;
-	//	private MassData propellantMassCache;
+	private final Map<StructureKey, RigidBody> structureCache = new HashMap<StructureKey, RigidBody>();
+	private Rocket cachedRocket = null;
+	private int cachedRocketModID = -1;
+	private long structureHitCount = 0;
+	private long structureMissCount = 0;
 
 	private int modId=0;
 	
@@ -85,6 +99,66 @@ public class MassCalculator implements Monitorable {
 		return calculate( MassCalculation.Type.MOTOR, status ); 
 	}
 
+	/**
+	 * Return the structure mass data of a configuration, as {@link #calculateStructure(FlightConfiguration)},
+	 * using the cached value if the rocket and the active stages have not changed since
+	 * the value was calculated.
+	 * 
+	 * @param config	the rocket configuration to calculate for
+	 * @return			the structure mass data of the active stages
+	 */
+	public RigidBody getStructure( final FlightConfiguration config ) {
+		final Rocket rocket = config.getRocket();
+		if( rocket != cachedRocket || rocket.getModID() != cachedRocketModID ) {
+			structureCache.clear();
+			cachedRocket = rocket;
+			cachedRocketModID = rocket.getModID();
+			modId++;
+		}
+		
+		final BitSet activeStages = new BitSet();
+		for( AxialStage stage : rocket.getStageList() ) {
+			if( config.isStageActive( stage.getStageNumber() )) {
+				activeStages.set( stage.getStageNumber() );
+			}
+		}
+		
+		final StructureKey key = new StructureKey( config.getId(), activeStages );
+		RigidBody structure = structureCache.get( key );
+		if( null == structure ) {
+			structure = calculateStructure( config );
+			structureCache.put( key, structure );
+			structureMissCount++;
+		} else {
+			structureHitCount++;
+		}
+		return structure;
+	}
+	
+	/**
+	 * Return the number of structure mass requests answered from the cache.
+	 */
+	public long getStructureHitCount() {
+		return structureHitCount;
+	}
+	
+	/**
+	 * Return the number of structure mass requests that required a calculation.
+	 */
+	public long getStructureMissCount() {
+		return structureMissCount;
+	}
+	
+	/**
+	 * Discard all cached mass data.
+	 */
+	public void clearCache() {
+		structureCache.clear();
+		cachedRocket = null;
+		cachedRocketModID = -1;
+		modId++;
+	}
+
 	////////////////// Mass property Wrappers  ///////////////////
 	// all mass calculation calls should probably call through one of these two wrappers. 
 	
@@ -161,4 +235,27 @@ public class MassCalculator implements Monitorable {
 		return this.modId;
 	}
 	
+	
+	private static final class StructureKey {
+		private final FlightConfigurationId configId;
+		private final BitSet activeStages;
+		
+		private StructureKey( final FlightConfigurationId configId, final BitSet activeStages ) {
+			this.configId = configId;
+			this.activeStages = activeStages;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StructureKey))
+				return false;
+			StructureKey other = (StructureKey) obj;
+			return configId.equals(other.configId) && activeStages.equals(other.activeStages);
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * configId.hashCode() + activeStages.hashCode();
+		}
+	}
 }
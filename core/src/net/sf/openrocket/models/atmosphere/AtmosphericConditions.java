@@ -27,6 +27,12 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 	/** Air temperature, in Kelvins. */
 	private double temperature;
 	
+	/** Density of air, cached when the pressure or temperature changes. */
+	private double density;
+	
+	/** Speed of sound, cached when the temperature changes. */
+	private double machSpeed;
+	
 	private int modID;
 	
 	
@@ -44,9 +50,20 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 	 * @param pressure		the pressure in Pascals.
 	 */
 	public AtmosphericConditions(double temperature, double pressure) {
-		this.setTemperature(temperature);
-		this.setPressure(pressure);
-		this.modID = UniqueID.next();
+		this.set(temperature, pressure);
+	}
+	
+	
+	/**
+	 * Set both the temperature and the pressure.
+	 * 
+	 * @param temperature	the temperature in Kelvins.
+	 * @param pressure		the pressure in Pascals.
+	 */
+	public void set(double temperature, double pressure) {
+		this.temperature = temperature;
+		this.pressure = pressure;
+		update();
 	}
 	
 	
@@ -57,7 +74,7 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 
 	public void setPressure(double pressure) {
 		this.pressure = pressure;
-		this.modID = UniqueID.next();
+		update();
 	}
 
 	public double getTemperature() {
@@ -66,6 +83,12 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 
 	public void setTemperature(double temperature) {
 		this.temperature = temperature;
+		update();
+	}
+	
+	private void update() {
+		this.density = pressure / (R * temperature);
+		this.machSpeed = 165.77 + 0.606 * temperature;
 		this.modID = UniqueID.next();
 	}
 
@@ -75,7 +98,7 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 	 * @return   the current density of air.
 	 */
 	public double getDensity() {
-		return getPressure() / (R*getTemperature());
+		return density;
 	}
 	
 	
@@ -90,7 +113,7 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 	 * @return   the current speed of sound.
 	 */
 	public double getMachSpeed() {
-		return 165.77 + 0.606 * getTemperature();
+		return machSpeed;
 	}
 	
 	
@@ -106,8 +129,8 @@ public class AtmosphericConditions implements Cloneable, Monitorable {
 	 * @return	the current kinematic viscosity.
 	 */
 	public double getKinematicViscosity() {
-		double v = 3.7291e-06 + 4.9944e-08 * getTemperature();
-		return v / getDensity();
+		double v = 3.7291e-06 + 4.9944e-08 * temperature;
+		return v / density;
 	}
 	
 	
@@ -78,7 +78,7 @@ public class ExtendedISAModel extends InterpolatingAtmosphericModel {
 	protected AtmosphericConditions getExactConditions(double altitude) {
 		altitude = MathUtil.clamp(altitude, layer[0], layer[layer.length - 1]);
 		int n;
-		for (n = 0; n < layer.length - 1; n++) {
+		for (n = 0; n < layer.length - 2; n++) {
 			if (layer[n + 1] > altitude)
 				break;
 		}
@@ -8,42 +8,82 @@ package net.sf.openrocket.models.atmosphere;
  */
 public abstract class InterpolatingAtmosphericModel implements AtmosphericModel {
 	/** Layer thickness of interpolated altitude. */
-	private static final double DELTA = 500;
+	private static final double DELTA = 50;
 	
-	private AtmosphericConditions[] levels = null;
+	/*
+	 * The layers may be computed concurrently by several simulations sharing the model.
+	 * The table is fully computed before it is published, so concurrent callers at most
+	 * compute the same layers twice.
+	 */
+	private volatile Levels levels = null;
 	
 	
 	@Override
 	public AtmosphericConditions getConditions(double altitude) {
+		AtmosphericConditions c = new AtmosphericConditions();
+		getConditions(altitude, c);
+		return c;
+	}
+	
+	
+	/**
+	 * Compute the atmospheric conditions at the specified altitude into an existing
+	 * object, without allocating a new one.
+	 * 
+	 * @param altitude	the altitude.
+	 * @param result	the conditions object to set.
+	 */
+	public void getConditions(double altitude, AtmosphericConditions result) {
+		Levels levels = this.levels;
 		if (levels == null)
-			computeLayers();
+			levels = computeLayers();
+		
+		double[] temperature = levels.temperature;
+		double[] pressure = levels.pressure;
+		int last = temperature.length - 1;
 		
-		if (altitude <= 0)
-			return levels[0];
-		if (altitude >= DELTA * (levels.length - 1))
-			return levels[levels.length - 1];
+		if (altitude <= 0) {
+			result.set(temperature[0], pressure[0]);
+			return;
+		}
+		if (altitude >= DELTA * last) {
+			result.set(temperature[last], pressure[last]);
+			return;
+		}
 		
 		int n = (int) (altitude / DELTA);
 		double d = (altitude - n * DELTA) / DELTA;
-		AtmosphericConditions c = new AtmosphericConditions();
-		c.setTemperature(levels[n].getTemperature() * (1 - d) + levels[n + 1].getTemperature() * d);
-		c.setPressure(levels[n].getPressure() * (1 - d) + levels[n + 1].getPressure() * d);
-		
-		return c;
+		result.set(temperature[n] * (1 - d) + temperature[n + 1] * d,
+				pressure[n] * (1 - d) + pressure[n + 1] * d);
 	}
 	
 	
-	private void computeLayers() {
+	private Levels computeLayers() {
 		double max = getMaxAltitude();
-		int n = (int) (max / DELTA) + 1;
-		levels = new AtmosphericConditions[n];
+		int n = (int) Math.ceil(Math.max(max, 0) / DELTA) + 1;
+		Levels levels = new Levels(n);
 		for (int i = 0; i < n; i++) {
-			levels[i] = getExactConditions(i * DELTA);
+			AtmosphericConditions c = getExactConditions(Math.min(i * DELTA, max));
+			levels.temperature[i] = c.getTemperature();
+			levels.pressure[i] = c.getPressure();
 		}
+		this.levels = levels;
+		return levels;
 	}
 	
 	
 	protected abstract double getMaxAltitude();
 	
 	protected abstract AtmosphericConditions getExactConditions(double altitude);
+	
+	
+	private static class Levels {
+		private final double[] temperature;
+		private final double[] pressure;
+		
+		private Levels(int n) {
+			temperature = new double[n];
+			pressure = new double[n];
+		}
+	}
 }
@@ -0,0 +1,146 @@
+package net.sf.openrocket.models.atmosphere;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.openrocket.util.MathUtil;
+
+
+/**
+ * An atmospheric model defined by a measured sounding profile, a list of the
+ * temperature and pressure at increasing altitudes.  Between the sounding levels the
+ * temperature is interpolated linearly and the pressure exponentially.  Below the
+ * lowest and above the highest level the values of that level are used.
+ * <p>
+ * A profile can be read from a text file with {@link #load(Reader)}.  Each line of the
+ * file contains the altitude in meters above sea level, the temperature in Kelvins and
+ * the pressure in Pascals, separated by whitespace or commas.  Empty lines and lines
+ * starting with <code>#</code> are ignored.
+ */
+public class SoundingAtmosphericModel extends InterpolatingAtmosphericModel {
+
+	private final double[] altitude;
+	private final double[] temperature;
+	private final double[] pressure;
+	private final int modID;
+
+
+	/**
+	 * Construct a model from a sounding profile.
+	 *
+	 * @param altitude		the altitudes of the levels, in increasing order.
+	 * @param temperature	the temperatures at the levels.
+	 * @param pressure		the pressures at the levels.
+	 * @throws IllegalArgumentException	if the profile is empty, the array lengths differ,
+	 * 									the altitudes are not increasing or a temperature
+	 * 									or pressure is not positive.
+	 */
+	public SoundingAtmosphericModel(double[] altitude, double[] temperature, double[] pressure) {
+		if (altitude.length == 0) {
+			throw new IllegalArgumentException("Empty sounding profile");
+		}
+		if (altitude.length != temperature.length || altitude.length != pressure.length) {
+			throw new IllegalArgumentException("Array lengths differ: altitude=" + altitude.length +
+					" temperature=" + temperature.length + " pressure=" + pressure.length);
+		}
+		for (int i = 0; i < altitude.length; i++) {
+			if (i > 0 && !(altitude[i] > altitude[i - 1])) {
+				throw new IllegalArgumentException("Altitudes not increasing: " + altitude[i - 1] + ", " + altitude[i]);
+			}
+			if (!(temperature[i] > 0) || !(pressure[i] > 0)) {
+				throw new IllegalArgumentException("Illegal conditions at altitude " + altitude[i] +
+						": temperature=" + temperature[i] + " pressure=" + pressure[i]);
+			}
+		}
+		this.altitude = altitude.clone();
+		this.temperature = temperature.clone();
+		this.pressure = pressure.clone();
+		this.modID = (Arrays.hashCode(altitude) * 31 + Arrays.hashCode(temperature)) * 31 + Arrays.hashCode(pressure);
+	}
+
+
+	/**
+	 * Read a sounding profile.  The reader is not closed.
+	 *
+	 * @param reader	the reader of the profile text.
+	 * @return			the atmospheric model of the profile.
+	 * @throws IOException	if an I/O error occurs or the file format is illegal.
+	 */
+	public static SoundingAtmosphericModel load(Reader reader) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		List<double[]> levels = new ArrayList<double[]>();
+
+		String line;
+		int lineNumber = 0;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+
+			String[] pieces = line.split("[\\s,]+");
+			if (pieces.length < 3) {
+				throw new IOException("Illegal file format on line " + lineNumber + ": " + line);
+			}
+			try {
+				levels.add(new double[] {
+						Double.parseDouble(pieces[0]),
+						Double.parseDouble(pieces[1]),
+						Double.parseDouble(pieces[2])
+				});
+			} catch (NumberFormatException e) {
+				throw new IOException("Illegal number on line " + lineNumber + ": " + line, e);
+			}
+		}
+
+		double[] altitude = new double[levels.size()];
+		double[] temperature = new double[levels.size()];
+		double[] pressure = new double[levels.size()];
+		for (int i = 0; i < levels.size(); i++) {
+			altitude[i] = levels.get(i)[0];
+			temperature[i] = levels.get(i)[1];
+			pressure[i] = levels.get(i)[2];
+		}
+
+		try {
+			return new SoundingAtmosphericModel(altitude, temperature, pressure);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Illegal sounding profile: " + e.getMessage(), e);
+		}
+	}
+
+
+	@Override
+	protected AtmosphericConditions getExactConditions(double alt) {
+		alt = MathUtil.clamp(alt, altitude[0], altitude[altitude.length - 1]);
+		int n;
+		for (n = 0; n < altitude.length - 2; n++) {
+			if (altitude[n + 1] > alt)
+				break;
+		}
+		if (altitude.length == 1) {
+			return new AtmosphericConditions(temperature[0], pressure[0]);
+		}
+
+		double d = (alt - altitude[n]) / (altitude[n + 1] - altitude[n]);
+		double t = temperature[n] + (temperature[n + 1] - temperature[n]) * d;
+		double p = pressure[n] * Math.pow(pressure[n + 1] / pressure[n], d);
+		return new AtmosphericConditions(t, p);
+	}
+
+	@Override
+	protected double getMaxAltitude() {
+		return altitude[altitude.length - 1];
+	}
+
+	@Override
+	public int getModID() {
+		return modID;
+	}
+
+}
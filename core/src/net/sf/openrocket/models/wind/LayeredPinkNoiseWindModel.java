@@ -0,0 +1,204 @@
+package net.sf.openrocket.models.wind;
+
+import static net.sf.openrocket.models.wind.PinkNoiseWindModel.ALPHA;
+import static net.sf.openrocket.models.wind.PinkNoiseWindModel.DELTA_T;
+import static net.sf.openrocket.models.wind.PinkNoiseWindModel.POLES;
+import static net.sf.openrocket.models.wind.PinkNoiseWindModel.SEED_RANDOMIZATION;
+import static net.sf.openrocket.models.wind.PinkNoiseWindModel.STDDEV;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sf.openrocket.util.Coordinate;
+
+/**
+ * A wind simulator that generates wind speed as pink noise like {@link PinkNoiseWindModel},
+ * with the average wind speed, standard deviation and direction defined at a number of
+ * altitude layers.  Between two layers the wind velocity is interpolated linearly, and
+ * below the lowest and above the highest layer the wind of that layer is used.  With a
+ * single layer the wind is identical to that of <code>PinkNoiseWindModel</code> with the
+ * same seed.
+ * <p>
+ * The noise sequence is generated once per seed into a primitive array and shared by
+ * all models using the same seed, so the wind can be looked up at any time in constant
+ * time.  Looking up an earlier time, as done by the sub-steps of the integrators and by
+ * the branches of multi-stage rockets, does not regenerate the sequence.  The model is
+ * safe to use concurrently once its layers have been set.
+ */
+public class LayeredPinkNoiseWindModel implements WindModel {
+
+	/** Number of noise values generated at first, 60 seconds of wind. */
+	private static final int INITIAL_LENGTH = 1200;
+
+	/** Maximum number of noise sequences kept for reuse. */
+	private static final int CACHE_SIZE = 32;
+
+	private static final Map<Integer, PinkNoiseSequence> sequences = new SequenceCache();
+
+
+	private final PinkNoiseSequence noise;
+
+	private double[] altitude = new double[0];
+	private double[] average = new double[0];
+	private double[] standardDeviation = new double[0];
+	private double[] direction = new double[0];
+
+	// Cached components of the direction of each layer
+	private double[] sin = new double[0];
+	private double[] cos = new double[0];
+
+
+	/**
+	 * Construct a new wind simulation with a specific seed value.  Layers must be added
+	 * before the wind velocity is computed.
+	 *
+	 * @param seed	the seed value.
+	 */
+	public LayeredPinkNoiseWindModel(int seed) {
+		this.noise = getSequence(seed ^ SEED_RANDOMIZATION);
+	}
+
+
+	private static PinkNoiseSequence getSequence(int seed) {
+		synchronized (sequences) {
+			PinkNoiseSequence sequence = sequences.get(seed);
+			if (sequence == null) {
+				sequence = new PinkNoiseSequence(ALPHA, POLES, seed, INITIAL_LENGTH);
+				sequences.put(seed, sequence);
+			}
+			return sequence;
+		}
+	}
+
+
+	/**
+	 * Add a wind layer.
+	 *
+	 * @param alt		the altitude of the layer above sea level.
+	 * @param avg		the average wind speed, negative values are taken as zero.
+	 * @param stddev	the standard deviation of the wind speed, negative values are taken as zero.
+	 * @param dir		the wind direction in radians, as in {@link PinkNoiseWindModel#setDirection(double)}.
+	 * @throws IllegalArgumentException	if a layer has already been added at the altitude.
+	 */
+	public void addLayer(double alt, double avg, double stddev, double dir) {
+		int n = Arrays.binarySearch(altitude, alt);
+		if (n >= 0) {
+			throw new IllegalArgumentException("Layer already defined at altitude " + alt);
+		}
+		n = -n - 1;
+
+		altitude = insert(altitude, n, alt);
+		average = insert(average, n, Math.max(avg, 0));
+		standardDeviation = insert(standardDeviation, n, Math.max(stddev, 0));
+		direction = insert(direction, n, dir);
+		sin = insert(sin, n, Math.sin(dir));
+		cos = insert(cos, n, Math.cos(dir));
+	}
+
+	private static double[] insert(double[] array, int index, double value) {
+		double[] result = new double[array.length + 1];
+		System.arraycopy(array, 0, result, 0, index);
+		result[index] = value;
+		System.arraycopy(array, index, result, index + 1, array.length - index);
+		return result;
+	}
+
+
+	/**
+	 * Return the number of layers.
+	 */
+	public int getLayerCount() {
+		return altitude.length;
+	}
+
+	public double getAltitude(int layer) {
+		return altitude[layer];
+	}
+
+	public double getAverage(int layer) {
+		return average[layer];
+	}
+
+	public double getStandardDeviation(int layer) {
+		return standardDeviation[layer];
+	}
+
+	public double getDirection(int layer) {
+		return direction[layer];
+	}
+
+
+	@Override
+	public Coordinate getWindVelocity(double time, double alt) {
+		if (time < 0) {
+			throw new IllegalArgumentException("Requesting wind speed at t=" + time);
+		}
+		if (altitude.length == 0) {
+			throw new IllegalStateException("No wind layers defined");
+		}
+
+		// Interpolate the noise between the samples
+		int i = (int) (time / DELTA_T);
+		double a = (time - i * DELTA_T) / DELTA_T;
+		double value = noise.get(i) * (1 - a) + noise.get(i + 1) * a;
+
+		int last = altitude.length - 1;
+		if (alt <= altitude[0]) {
+			return velocity(0, value);
+		}
+		if (alt >= altitude[last]) {
+			return velocity(last, value);
+		}
+
+		int n = 0;
+		while (altitude[n + 1] <= alt) {
+			n++;
+		}
+		double d = (alt - altitude[n]) / (altitude[n + 1] - altitude[n]);
+		double speed0 = (average[n] + value * standardDeviation[n] / STDDEV) * (1 - d);
+		double speed1 = (average[n + 1] + value * standardDeviation[n + 1] / STDDEV) * d;
+		return new Coordinate(speed0 * sin[n] + speed1 * sin[n + 1], speed0 * cos[n] + speed1 * cos[n + 1], 0);
+	}
+
+	private Coordinate velocity(int n, double value) {
+		double speed = average[n] + value * standardDeviation[n] / STDDEV;
+		return new Coordinate(speed * sin[n], speed * cos[n], 0);
+	}
+
+
+	@Override
+	public int getModID() {
+		int modID = 0;
+		for (int n = 0; n < altitude.length; n++) {
+			modID = hash(modID, altitude[n]);
+			modID = hash(modID, average[n]);
+			modID = hash(modID, standardDeviation[n]);
+			modID = hash(modID, direction[n]);
+		}
+		return modID;
+	}
+
+	private static int hash(int hash, double value) {
+		long bits = Double.doubleToLongBits(value);
+		return 31 * hash + (int) (bits ^ (bits >>> 32));
+	}
+
+
+	/**
+	 * Noise sequences by seed, dropping the least recently used beyond {@link #CACHE_SIZE} sequences.
+	 */
+	private static class SequenceCache extends LinkedHashMap<Integer, PinkNoiseSequence> {
+		private static final long serialVersionUID = 1L;
+
+		public SequenceCache() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, PinkNoiseSequence> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package net.sf.openrocket.models.wind;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.sf.openrocket.util.PinkNoise;
+
+/**
+ * A pink noise sequence stored in a primitive array, so that any of its values can be
+ * read in constant time.  The values are the same as those returned by successive calls
+ * to {@link PinkNoise#nextValue()} of a generator with the same parameters and seed.
+ * <p>
+ * The sequence is generated in blocks as further values are requested.  It may be
+ * read concurrently by several threads.
+ */
+final class PinkNoiseSequence {
+
+	private final PinkNoise source;
+
+	/*
+	 * The array is filled before it is published, so readers need no locking.
+	 */
+	private volatile double[] values;
+
+
+	/**
+	 * Generate a pink noise sequence.
+	 *
+	 * @param alpha			the exponent of the pink noise, 1/f^alpha.
+	 * @param poles			the number of poles to use.
+	 * @param seed			the random seed.
+	 * @param initialLength	the number of values to generate at first.
+	 */
+	PinkNoiseSequence(double alpha, int poles, int seed, int initialLength) {
+		this.source = new PinkNoise(alpha, poles, new Random(seed));
+		this.values = generate(new double[0], Math.max(initialLength, 1));
+	}
+
+
+	/**
+	 * Return the value at the specified index of the sequence.
+	 *
+	 * @param index		the index, zero or positive.
+	 */
+	double get(int index) {
+		double[] v = values;
+		if (index >= v.length) {
+			v = extend(index);
+		}
+		return v[index];
+	}
+
+
+	private synchronized double[] extend(int index) {
+		double[] v = values;
+		if (index >= v.length) {
+			v = generate(v, Math.max(2 * v.length, index + 1));
+			values = v;
+		}
+		return v;
+	}
+
+	// Called only from the constructor and extend(), so the source is never used concurrently
+	private double[] generate(double[] previous, int length) {
+		double[] v = Arrays.copyOf(previous, length);
+		for (int i = previous.length; i < length; i++) {
+			v[i] = source.nextValue();
+		}
+		return v;
+	}
+}
@@ -16,21 +16,21 @@ import net.sf.openrocket.util.PinkNoise;
 public class PinkNoiseWindModel implements WindModel {
 	
 	/** Random value with which to XOR the random seed value */
-	private static final int SEED_RANDOMIZATION = 0x7343AA03;
+	static final int SEED_RANDOMIZATION = 0x7343AA03;
 	
 	
 	
 	/** Pink noise alpha parameter. */
-	private static final double ALPHA = 5.0 / 3.0;
+	static final double ALPHA = 5.0 / 3.0;
 	
 	/** Number of poles to use in the pink noise IIR filter. */
-	private static final int POLES = 2;
+	static final int POLES = 2;
 	
 	/** The standard deviation of the generated pink noise with the specified number of poles. */
-	private static final double STDDEV = 2.252;
+	static final double STDDEV = 2.252;
 	
 	/** Time difference between random samples. */
-	private static final double DELTA_T = 0.05;
+	static final double DELTA_T = 0.05;
 	
 	
 	private double average = 0;
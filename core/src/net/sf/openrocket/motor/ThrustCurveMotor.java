@@ -1,5 +1,8 @@
 package net.sf.openrocket.motor;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.text.Collator;
 import java.util.Arrays;
@@ -43,6 +46,12 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	private double[] thrust;
 	private Coordinate[] cg;
 	
+	// Cumulative impulse at each time point, computed from the thrust curve
+	private transient double[] impulse;
+	
+	// Loader of the thrust curve if it has not been loaded yet
+	private transient volatile CurveLoader curveLoader;
+	
 	private String caseInfo;
 	private String propellantInfo;
 	
@@ -155,7 +164,26 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 			return this;
 		}
 		
+		/**
+		 * Set a loader that provides the thrust curve when it is first needed, instead of
+		 * the time, thrust and CG points.  The curve is not validated, and the statistics
+		 * of the motor are not computed, so the burn time, average thrust, maximum thrust
+		 * and total impulse estimates must be set.
+		 * 
+		 * @param loader	the loader of the thrust curve
+		 */
+		public Builder setCurveLoader(CurveLoader loader) {
+			motor.curveLoader = loader;
+			return this;
+		}
+		
 		public ThrustCurveMotor build() {
+			if (motor.curveLoader != null) {
+				motor.unitRotationalInertia = Inertia.filledCylinderRotational( motor.diameter / 2);
+				motor.unitLongitudinalInertia = Inertia.filledCylinderLongitudinal( motor.diameter / 2, motor.length);
+				return motor;
+			}
+			
 			// Check argument validity
 			if ((motor.time.length != motor.thrust.length) || (motor.time.length != motor.cg.length)) {
 				throw new IllegalArgumentException("Array lengths do not match, " +
@@ -214,6 +242,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 			motor.unitLongitudinalInertia = Inertia.filledCylinderLongitudinal( motor.diameter / 2, motor.length);
 
 			motor.computeStatistics();
+			motor.computeImpulse();
 			
 			return motor;
 		}
@@ -221,6 +250,29 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	}
 	
 	
+	/**
+	 * A source of a thrust curve that is loaded on first use.  This allows loading a motor
+	 * database without creating the thrust curves of all the motors.
+	 */
+	public interface CurveLoader {
+		
+		/**
+		 * Return the number of points in the thrust curve.
+		 */
+		public int getDataSize();
+		
+		/**
+		 * Load the thrust curve into the given arrays, which have the length
+		 * returned by {@link #getDataSize()}.
+		 * 
+		 * @param time		the array for the time points
+		 * @param thrust	the array for the thrust points
+		 * @param cg		the array for the CG points
+		 */
+		public void load(double[] time, double[] thrust, Coordinate[] cg);
+	}
+	
+	
 	/**
 	 * Get the manufacturer of this motor.
 	 * 
@@ -236,6 +288,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	 * @return	an array of time points where the thrust is sampled
 	 */
 	public double[] getTimePoints() {
+		loadCurve();
 		return time.clone();
 	}
 	
@@ -250,24 +303,55 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	 * @return a pseudo index to this motor's data. 
 	 */
 	protected double getPseudoIndex( final double motorTime ){
+		loadCurve();
 		if(( time.length == 0 )||( 0 > motorTime )){
 			return Double.NaN;
 		}
 		
-		final int lowerIndex = getIndex( motorTime);
+		final int lowerIndex = getIndex( motorTime, 0 );
 		final double fraction = getIndexFraction( motorTime, lowerIndex );
 		return ((double)lowerIndex)+fraction;
 	}
 	
-	private int getIndex( final double motorTime ){
-		int lowerBoundIndex=0;
-		int upperBoundIndex=0;
-		while( ( upperBoundIndex < time.length ) && ( motorTime >= time[upperBoundIndex] )){
-			lowerBoundIndex = upperBoundIndex;
-			++upperBoundIndex;
-		}	
+	/**
+	 * Return the index of the last time point at or before the given motor time, or zero if
+	 * the time is before the first time point.
+	 * <p>
+	 * The search starts from the hint index if the time is at or after the hint, so lookups
+	 * at increasing times passing the previous result as the hint take constant time.
+	 * Otherwise a binary search is used.
+	 * 
+	 * @param motorTime  time after motor ignition, in seconds
+	 * @param hint       an index at or before the expected result, for example the result of
+	 *                   a previous lookup at an earlier time
+	 * @return the index of the thrust curve segment containing the time
+	 */
+	public int getIndex( final double motorTime, final int hint ){
+		loadCurve();
+		
+		// invariant:  time[low] <= motorTime < time[high], or low == 0, or high == time.length
+		int low = 0;
+		int high = time.length;
+		
+		if(( 0 < hint )&&( hint < time.length )&&( time[hint] <= motorTime )){
+			low = hint;
+		}
+		
+		// usually the time is within the same or the next segment
+		if(( low + 1 == high )||!( motorTime >= time[low + 1] )){
+			return low;
+		}
+		low++;
 		
-		return lowerBoundIndex; 
+		while( 1 < high - low ){
+			final int mid = (low + high) >>> 1;
+			if( time[mid] <= motorTime ){
+				low = mid;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
 	}
 	
 	private double getIndexFraction( final double motorTime, final int index ){
@@ -300,47 +384,98 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	
 	@Override
 	public double getAverageThrust( final double startTime, final double endTime ) {
-		
-		int timeIndex = 0;
-		
-		while( timeIndex < time.length-2 && startTime > time[timeIndex+1] ) {
-			timeIndex++;
+		final int startIndex = getIndex( startTime, 0 );
+		final int endIndex = getIndex( endTime, startIndex );
+		return getAverageThrust( startTime, endTime, startIndex, endIndex );
+	}
+	
+	/**
+	 * Compute the average thrust over an interval, given the indices of the start and end times
+	 * as returned by {@link #getIndex(double, int)}.  The average is the difference of the
+	 * cumulative impulse at the end and start times divided by the interval, and takes
+	 * constant time regardless of the length of the interval.
+	 * 
+	 * @param startTime   start of the interval, after motor ignition, in seconds
+	 * @param endTime     end of the interval, after motor ignition, in seconds
+	 * @param startIndex  the index of the start time
+	 * @param endIndex    the index of the end time
+	 * @return the average thrust over the interval
+	 */
+	public double getAverageThrust( final double startTime, final double endTime, final int startIndex, final int endIndex ) {
+		loadCurve();
+		if( endTime <= startTime ) {
+			// empty interval, use the thrust at the given times
+			return (getThrustAtIndex( startTime, startIndex ) + getThrustAtIndex( endTime, endIndex )) / 2.0;
 		}
 		
-		if ( timeIndex == time.length ) {
-			return 0.0;
+		return (getImpulse( endTime, endIndex ) - getImpulse( startTime, startIndex )) / (endTime - startTime);
+	}
+	
+	/**
+	 * Return the linearly interpolated thrust, or zero outside the thrust curve.
+	 */
+	private double getThrustAtIndex( final double motorTime, final int index ){
+		if(( motorTime < 0 )||( index >= time.length - 1 )){
+			return 0.;
 		}
-		
-		if ( endTime <= time[timeIndex+1] ) {
-			// we are completely within this time slice so the computation of the average is pretty easy:
-			double avgImpulse = MathUtil.map(startTime, time[timeIndex], time[timeIndex+1], thrust[timeIndex], thrust[timeIndex+1]);
-			avgImpulse += MathUtil.map(endTime, time[timeIndex], time[timeIndex+1], thrust[timeIndex], thrust[timeIndex+1]);
-			avgImpulse /= 2.0;
-			return avgImpulse;
+		return MathUtil.map( motorTime, time[index], time[index + 1], thrust[index], thrust[index + 1] );
+	}
+	
+	/**
+	 * Return the impulse from ignition to the given time.
+	 */
+	private double getImpulse( final double motorTime, final int index ){
+		if( motorTime <= 0 ){
+			return 0.;
 		}
-		
-		// portion from startTime through time[timeIndex]
-		double avgImpulse = 0.0;
-		// For numeric stability.
-		if( time[timeIndex+1] - startTime > 0.001 ) {
-			avgImpulse = (MathUtil.map(startTime, time[timeIndex], time[timeIndex+1], thrust[timeIndex], thrust[timeIndex+1]) + thrust[timeIndex+1])
-					/ 2.0 * (time[timeIndex+1] - startTime);
+		if( index >= time.length - 1 ){
+			return impulse[time.length - 1];
 		}
-		
-		// Now add the whole steps;
-		timeIndex++;
-		while( timeIndex < time.length -1 && endTime >= time[timeIndex+1] ) {
-			avgImpulse += (thrust[timeIndex] + thrust[timeIndex+1]) / 2.0 * (time[timeIndex+1]-time[timeIndex]);
-			timeIndex++;
+		final double segmentThrust = getThrustAtIndex( motorTime, index );
+		return impulse[index] + (thrust[index] + segmentThrust) / 2.0 * (motorTime - time[index]);
+	}
+	
+	/**
+	 * Compute the impulse at each time point by integrating the linearly interpolated thrust.
+	 */
+	private void computeImpulse() {
+		impulse = new double[time.length];
+		for (int i = 1; i < time.length; i++) {
+			impulse[i] = impulse[i - 1] + (thrust[i - 1] + thrust[i]) / 2.0 * (time[i] - time[i - 1]);
 		}
-		
-		// Now add the bit after the last time index
-		if ( timeIndex < time.length -1 ) {
-			double endInstImpulse = MathUtil.map( endTime,  time[timeIndex], time[timeIndex+1], thrust[timeIndex], thrust[timeIndex+1]);
-			avgImpulse += (thrust[timeIndex] + endInstImpulse) / 2.0 * (endTime - time[timeIndex]);
+	}
+	
+	/**
+	 * Load the thrust curve if it has been given as a {@link CurveLoader} and has not
+	 * been loaded yet.
+	 */
+	private void loadCurve() {
+		if (curveLoader == null) {
+			return;
+		}
+		synchronized (this) {
+			CurveLoader loader = curveLoader;
+			if (loader == null) {
+				return;
+			}
+			int size = loader.getDataSize();
+			time = new double[size];
+			thrust = new double[size];
+			cg = new Coordinate[size];
+			loader.load(time, thrust, cg);
+			computeImpulse();
+			curveLoader = null;
 		}
-		
-		return avgImpulse / (endTime - startTime);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		computeImpulse();
+	}
+	
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		loadCurve();
+		out.defaultWriteObject();
 	}
 	
 	@Override
@@ -390,6 +525,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	 * @return	an array of thrust samples
 	 */
 	public double[] getThrustPoints() {
+		loadCurve();
 		return thrust.clone();
 	}
 	
@@ -402,6 +538,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	//	}
 	
 	public Coordinate[] getCGPoints(){
+		loadCurve();
 		return cg;
 	}
 	
@@ -483,26 +620,31 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	
 	@Override
 	public double getLaunchCGx() {
+		loadCurve();
 		return cg[0].x;//cgx[0];
 	}
 	
 	@Override
 	public double getBurnoutCGx() {
+		loadCurve();
 		return cg[cg.length - 1].x;// cgx[ cg.length - 1];
 	}
 	
 	@Override
 	public double getLaunchMass() {
+		loadCurve();
 		return cg[0].weight;//mass[0];
 	}
 	
 	@Override
 	public double getBurnoutMass() {
+		loadCurve();
 		return cg[cg.length-1].weight; //mass[mass.length - 1];
 	}	
 	
 	@Override
 	public double getBurnTime() {
+		loadCurve();
 		return time[time.length-1];
 	}
 	
@@ -540,6 +682,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	 * @return the time at requested time
 	 */
 	public double getTime( final double motorTime ){
+		loadCurve();
 		final double pseudoIndex = getPseudoIndex( motorTime);
 		final double foundTime = ThrustCurveMotor.interpolateAtIndex( this.time, pseudoIndex);
 		return foundTime;
@@ -563,6 +706,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	}
 	
 	protected Coordinate interpolateCenterOfMassAtIndex( final double pseudoIndex ){
+		loadCurve();
 		final double SNAP_TOLERANCE = 0.0001;
 		
 		final double upperFrac = pseudoIndex%1;
@@ -585,6 +729,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	}
 	
 	public int getDataSize() {
+		loadCurve();
 		return this.time.length;
 	}
 	
@@ -614,6 +759,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	}
 	
 	public double getCutOffTime() {
+		loadCurve();
 		return time[time.length - 1];
 	}
 	
@@ -745,6 +891,7 @@ public class ThrustCurveMotor implements Motor, Comparable<ThrustCurveMotor>, Se
 	 * @return return the size of the data arrays
 	 */
 	public int getSampleSize(){
+		loadCurve();
 		return time.length;
 	}
 	
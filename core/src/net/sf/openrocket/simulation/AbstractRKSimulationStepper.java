@@ -0,0 +1,583 @@
+package net.sf.openrocket.simulation;
+
+import java.util.Random;
+
+import net.sf.openrocket.aerodynamics.AerodynamicForces;
+import net.sf.openrocket.aerodynamics.FlightConditions;
+import net.sf.openrocket.aerodynamics.WarningSet;
+import net.sf.openrocket.l10n.Translator;
+import net.sf.openrocket.masscalc.RigidBody;
+import net.sf.openrocket.models.atmosphere.AtmosphericConditions;
+import net.sf.openrocket.rocketcomponent.FlightConfiguration;
+import net.sf.openrocket.simulation.exception.SimulationCalculationException;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.simulation.listeners.SimulationListenerHelper;
+import net.sf.openrocket.startup.Application;
+import net.sf.openrocket.util.Coordinate;
+import net.sf.openrocket.util.GeodeticComputationStrategy;
+import net.sf.openrocket.util.MathUtil;
+import net.sf.openrocket.util.Rotation2D;
+
+/**
+ * Base class of the Runge-Kutta steppers of the powered and coasting flight.  It computes
+ * the derivatives of the rocket state at a status and stores the flight data of a step,
+ * while the subclasses implement the integration method and the time step selection.
+ */
+public abstract class AbstractRKSimulationStepper extends AbstractSimulationStepper {
+	
+	private static final Translator trans = Application.getTranslator();
+	
+
+	/** Random value with which to XOR the random seed value */
+	private static final int SEED_RANDOMIZATION = 0x23E3A01F;
+	
+	/**
+	 * A random amount that is added to pitch and yaw coefficients, plus or minus.
+	 */
+	public static final double PITCH_YAW_RANDOM = 0.0005;
+	
+	protected static final double MIN_TIME_STEP = 0.001;
+	
+	
+	private Random random;
+	
+	/**
+	 * Data of the current step, which is stored in the flight data.  A stepper instance is
+	 * only used by a single simulation thread, so it does not need to be allocated per step.
+	 */
+	protected final DataStore store = new DataStore();
+	
+	
+	
+	@Override
+	public RK4SimulationStatus initialize(SimulationStatus original) {
+		
+		RK4SimulationStatus status = new RK4SimulationStatus(original);
+		// Copy the existing warnings
+		status.setWarnings(original.getWarnings());
+		
+		SimulationConditions sim = original.getSimulationConditions();
+		
+		status.setLaunchRodDirection(new Coordinate(
+				Math.sin(sim.getLaunchRodAngle()) * Math.cos(Math.PI / 2.0 - sim.getLaunchRodDirection()),
+				Math.sin(sim.getLaunchRodAngle()) * Math.sin(Math.PI / 2.0 - sim.getLaunchRodDirection()),
+				Math.cos(sim.getLaunchRodAngle())
+				));
+		
+		this.random = new Random(original.getSimulationConditions().getRandomSeed() ^ SEED_RANDOMIZATION);
+		
+		return status;
+	}
+	
+	
+	/**
+	 * Verify that values don't run out of range.
+	 * 
+	 * @throws SimulationCalculationException	if the velocity, position or rotation is too large.
+	 */
+	protected void checkValueLimits(SimulationStatus status) throws SimulationCalculationException {
+		if (status.getRocketVelocity().length2() > 1e18 ||
+				status.getRocketPosition().length2() > 1e18 ||
+				status.getRocketRotationVelocity().length2() > 1e18) {
+			throw new SimulationCalculationException(trans.get("error.valuesTooLarge"));
+		}
+	}
+	
+	
+	protected void computeParameters(RK4SimulationStatus status, DataStore dataStore, RK4Parameters params)
+			throws SimulationException {
+		
+		calculateAcceleration(status, dataStore);
+		params.a = dataStore.linearAcceleration;
+		params.ra = dataStore.angularAcceleration;
+		params.v = status.getRocketVelocity();
+		params.rv = status.getRocketRotationVelocity();
+		
+		checkNaN(params.a);
+		checkNaN(params.ra);
+		checkNaN(params.v);
+		checkNaN(params.rv);
+	}
+	
+	
+
+
+
+	/**
+	 * Calculate the linear and angular acceleration at the given status.  The results
+	 * are stored in the fields {@link #linearAcceleration} and {@link #angularAcceleration}.
+	 *  
+	 * @param status   the status of the rocket.
+	 * @throws SimulationException 
+	 */
+	private void calculateAcceleration(RK4SimulationStatus status, DataStore store) throws SimulationException {
+		
+		// Call pre-listeners
+		store.accelerationData = SimulationListenerHelper.firePreAccelerationCalculation(status);
+		if (store.accelerationData != null) {
+			return;
+		}
+		
+		// Compute the forces affecting the rocket
+		calculateForces(status, store);
+		
+		// Calculate mass data
+		RigidBody structureMassData = calculateStructureMass(status);
+		
+		store.motorMass = calculateMotorMass(status);
+		store.rocketMass = structureMassData.add( store.motorMass );
+
+		// Calculate the forces from the aerodynamic coefficients
+		
+		double dynP = (0.5 * store.flightConditions.getAtmosphericConditions().getDensity() *
+					MathUtil.pow2(store.flightConditions.getVelocity()));
+		double refArea = store.flightConditions.getRefArea();
+		double refLength = store.flightConditions.getRefLength();
+		
+
+		// Linear forces in rocket coordinates
+		store.dragForce = store.forces.getCaxial() * dynP * refArea;
+		double fN = store.forces.getCN() * dynP * refArea;
+		double fSide = store.forces.getCside() * dynP * refArea;
+		
+		double forceZ = store.thrustForce - store.dragForce;
+		
+		// Rotated by the lateral wind direction, see Rotation2D.rotateZ
+		double ax = -fN / store.rocketMass.getMass();
+		double ay = -fSide / store.rocketMass.getMass();
+		store.linearAcceleration = new Coordinate(
+					store.thetaRotation.cos * ax - store.thetaRotation.sin * ay,
+					store.thetaRotation.cos * ay + store.thetaRotation.sin * ax,
+					forceZ / store.rocketMass.getMass());
+		
+		// Convert into rocket world coordinates
+		store.linearAcceleration = status.getRocketOrientationQuaternion().rotate(store.linearAcceleration);
+		
+		// add effect of gravity and Coriolis acceleration
+		store.gravity = modelGravity(status);
+		store.coriolisAcceleration = status.getSimulationConditions().getGeodeticComputation()
+				.getCoriolisAcceleration(status.getRocketWorldPosition(), status.getRocketVelocity());
+		store.linearAcceleration = new Coordinate(
+				store.linearAcceleration.x + store.coriolisAcceleration.x,
+				store.linearAcceleration.y + store.coriolisAcceleration.y,
+				(store.linearAcceleration.z - store.gravity) + store.coriolisAcceleration.z);
+		
+		// If still on the launch rod, project acceleration onto launch rod direction and
+		// set angular acceleration to zero.
+		if (!status.isLaunchRodCleared()) {
+			
+			store.linearAcceleration = status.getLaunchRodDirection().multiply(
+						store.linearAcceleration.dot(status.getLaunchRodDirection()));
+			store.angularAcceleration = Coordinate.NUL;
+			store.rollAcceleration = 0;
+			store.lateralPitchAcceleration = 0;
+			
+		} else {
+			
+			// Shift moments to CG
+			double Cm = store.forces.getCm() - store.forces.getCN() * store.rocketMass.getCM().x / refLength;
+			double Cyaw = store.forces.getCyaw() - store.forces.getCside() * store.rocketMass.getCM().x / refLength;
+			
+			// Compute moments
+			double momX = -Cyaw * dynP * refArea * refLength;
+			double momY = Cm * dynP * refArea * refLength;
+			double momZ = store.forces.getCroll() * dynP * refArea * refLength;
+			
+			// Compute acceleration in rocket coordinates
+			double rax = momX / store.rocketMass.getLongitudinalInertia();
+			double ray = momY / store.rocketMass.getLongitudinalInertia();
+			
+			store.rollAcceleration = momZ / store.rocketMass.getRotationalInertia();
+			// TODO: LOW: This should be hypot, but does it matter?
+			store.lateralPitchAcceleration = MathUtil.max(Math.abs(rax), Math.abs(ray));
+			
+			// Rotated by the lateral wind direction, see Rotation2D.rotateZ
+			store.angularAcceleration = new Coordinate(
+						store.thetaRotation.cos * rax - store.thetaRotation.sin * ray,
+						store.thetaRotation.cos * ray + store.thetaRotation.sin * rax,
+						store.rollAcceleration);
+			
+			// Convert to world coordinates
+			store.angularAcceleration = status.getRocketOrientationQuaternion().rotate(store.angularAcceleration);
+			
+		}
+		
+		// Call post-listeners
+		store.accelerationData = SimulationListenerHelper.firePostAccelerationCalculation(status, store.accelerationData);
+	}
+	
+	
+	/**
+	 * Calculate the aerodynamic forces into the data store.  This method also handles
+	 * whether to include aerodynamic computation warnings or not.
+	 */
+	private void calculateForces(RK4SimulationStatus status, DataStore store) throws SimulationException {
+		
+		// Call pre-listeners
+		store.forces = SimulationListenerHelper.firePreAerodynamicCalculation(status);
+		if (store.forces != null) {
+			return;
+		}
+		
+		// Compute flight conditions
+		calculateFlightConditions(status, store);
+		
+		/*
+		 * Check whether to store warnings or not.  Warnings are ignored when on the 
+		 * launch rod or 0.25 seconds after departure, and when the velocity has dropped
+		 * below 20% of the max. velocity.
+		 */
+		WarningSet warnings = status.getWarnings();
+		status.setMaxZVelocity(MathUtil.max(status.getMaxZVelocity(), status.getRocketVelocity().z));
+		
+		if (!status.isLaunchRodCleared()) {
+			warnings = null;
+		} else {
+			if (status.getRocketVelocity().z < 0.2 * status.getMaxZVelocity())
+				warnings = null;
+			if (status.getStartWarningTime() < 0)
+				status.setStartWarningTime(status.getSimulationTime() + 0.25);
+		}
+		if (status.getSimulationTime() < status.getStartWarningTime())
+			warnings = null;
+		
+
+		// Calculate aerodynamic forces
+		store.forces = status.getSimulationConditions().getAerodynamicCalculator()
+				.getAerodynamicForces(status.getConfiguration(), store.flightConditions, warnings);
+		
+
+		// Add very small randomization to yaw & pitch moments to prevent over-perfect flight
+		// TODO: HIGH: This should rather be performed as a listener
+		store.forces.setCm(store.forces.getCm() + (PITCH_YAW_RANDOM * 2 * (random.nextDouble() - 0.5)));
+		store.forces.setCyaw(store.forces.getCyaw() + (PITCH_YAW_RANDOM * 2 * (random.nextDouble() - 0.5)));
+		
+
+		// Call post-listeners
+		store.forces = SimulationListenerHelper.firePostAerodynamicCalculation(status, store.forces);
+	}
+	
+	
+
+	/**
+	 * Calculate and return the flight conditions for the current rocket status.
+	 * Listeners can override these if necessary.
+	 * <p>
+	 * Additionally the fields thetaRotation and lateralPitchRate are defined in
+	 * the data store, and can be used after calling this method.
+	 */
+	private void calculateFlightConditions(RK4SimulationStatus status, DataStore store)
+			throws SimulationException {
+		
+		// Call pre listeners, allow complete override
+		store.flightConditions = SimulationListenerHelper.firePreFlightConditions(
+				status);
+		if (store.flightConditions != null) {
+			// Compute the store values
+			store.thetaRotation = new Rotation2D(store.flightConditions.getTheta());
+			store.lateralPitchRate = Math.hypot(store.flightConditions.getPitchRate(), store.flightConditions.getYawRate());
+			return;
+		}
+		
+
+
+		//// Atmospheric conditions
+		store.flightConditions = store.getScratchFlightConditions(status.getConfiguration());
+		modelAtmosphericConditions(status, store.flightConditions.getAtmosphericConditions());
+		
+
+		//// Local wind speed and direction
+		Coordinate windSpeed = modelWindVelocity(status);
+		Coordinate airSpeed = status.getRocketVelocity().add(windSpeed);
+		airSpeed = status.getRocketOrientationQuaternion().invRotate(airSpeed);
+		
+
+		// Lateral direction:
+		double len = MathUtil.hypot(airSpeed.x, airSpeed.y);
+		if (len > 0.0001) {
+			store.thetaRotation = new Rotation2D(airSpeed.y / len, airSpeed.x / len);
+			store.flightConditions.setTheta(Math.atan2(airSpeed.y, airSpeed.x));
+		} else {
+			store.thetaRotation = Rotation2D.ID;
+			store.flightConditions.setTheta(0);
+		}
+		
+		double velocity = airSpeed.length();
+		store.flightConditions.setVelocity(velocity);
+		if (velocity > 0.01) {
+			// aoa must be calculated from the monotonous cosine
+			// sine can be calculated by a simple division
+			store.flightConditions.setAOA(Math.acos(airSpeed.z / velocity), len / velocity);
+		} else {
+			store.flightConditions.setAOA(0);
+		}
+		
+
+		// Roll, pitch and yaw rate
+		Coordinate rot = status.getRocketOrientationQuaternion().invRotate(status.getRocketRotationVelocity());
+		rot = store.thetaRotation.invRotateZ(rot);
+		
+		store.flightConditions.setRollRate(rot.z);
+		if (len < 0.001) {
+			store.flightConditions.setPitchRate(0);
+			store.flightConditions.setYawRate(0);
+			store.lateralPitchRate = 0;
+		} else {
+			store.flightConditions.setPitchRate(rot.y);
+			store.flightConditions.setYawRate(rot.x);
+			// TODO: LOW: set this as power of two?
+			store.lateralPitchRate = MathUtil.hypot(rot.x, rot.y);
+		}
+		
+
+		// Call post listeners
+		FlightConditions c = SimulationListenerHelper.firePostFlightConditions(
+				status, store.flightConditions);
+		if (c != store.flightConditions) {
+			// Listeners changed the values, recalculate data store
+			store.flightConditions = c;
+			store.thetaRotation = new Rotation2D(store.flightConditions.getTheta());
+			store.lateralPitchRate = Math.hypot(store.flightConditions.getPitchRate(), store.flightConditions.getYawRate());
+		}
+		
+	}
+	
+	
+
+	protected void storeData(RK4SimulationStatus status, DataStore store) {
+		
+		FlightDataBranch data = status.getFlightData();
+		boolean extra = status.getSimulationConditions().isCalculateExtras();
+		
+		data.addPoint();
+		data.setValue(FlightDataType.TYPE_TIME, status.getSimulationTime());
+		data.setValue(FlightDataType.TYPE_ALTITUDE, status.getRocketPosition().z);
+		data.setValue(FlightDataType.TYPE_POSITION_X, status.getRocketPosition().x);
+		data.setValue(FlightDataType.TYPE_POSITION_Y, status.getRocketPosition().y);
+		
+		data.setValue(FlightDataType.TYPE_LATITUDE, status.getRocketWorldPosition().getLatitudeRad());
+		data.setValue(FlightDataType.TYPE_LONGITUDE, status.getRocketWorldPosition().getLongitudeRad());
+		if (status.getSimulationConditions().getGeodeticComputation() != GeodeticComputationStrategy.FLAT) {
+			data.setValue(FlightDataType.TYPE_CORIOLIS_ACCELERATION, store.coriolisAcceleration.length());
+		}
+		
+		if (extra) {
+			data.setValue(FlightDataType.TYPE_POSITION_XY,
+					MathUtil.hypot(status.getRocketPosition().x, status.getRocketPosition().y));
+			data.setValue(FlightDataType.TYPE_POSITION_DIRECTION,
+					Math.atan2(status.getRocketPosition().y, status.getRocketPosition().x));
+			
+			data.setValue(FlightDataType.TYPE_VELOCITY_XY,
+					MathUtil.hypot(status.getRocketVelocity().x, status.getRocketVelocity().y));
+			
+			if (store.linearAcceleration != null) {
+				data.setValue(FlightDataType.TYPE_ACCELERATION_XY,
+						MathUtil.hypot(store.linearAcceleration.x, store.linearAcceleration.y));
+				
+				data.setValue(FlightDataType.TYPE_ACCELERATION_TOTAL, store.linearAcceleration.length());
+			}
+			
+			if (store.flightConditions != null) {
+				double Re = (store.flightConditions.getVelocity() *
+						status.getConfiguration().getLength() /
+						store.flightConditions.getAtmosphericConditions().getKinematicViscosity());
+				data.setValue(FlightDataType.TYPE_REYNOLDS_NUMBER, Re);
+			}
+		}
+		
+		data.setValue(FlightDataType.TYPE_VELOCITY_Z, status.getRocketVelocity().z);
+		if (store.linearAcceleration != null) {
+			data.setValue(FlightDataType.TYPE_ACCELERATION_Z, store.linearAcceleration.z);
+		}
+		
+		if (store.flightConditions != null) {
+			data.setValue(FlightDataType.TYPE_VELOCITY_TOTAL, status.getRocketVelocity().length());
+			data.setValue(FlightDataType.TYPE_MACH_NUMBER, store.flightConditions.getMach());
+		}
+		
+		if (store.rocketMass != null) {
+			data.setValue(FlightDataType.TYPE_CG_LOCATION, store.rocketMass.getCM().x);
+		}
+		if (status.isLaunchRodCleared()) {
+			// Don't include CP and stability with huge launch AOA
+			if (store.forces != null) {
+				data.setValue(FlightDataType.TYPE_CP_LOCATION, store.forces.getCP().x);
+			}
+			if (store.forces != null && store.flightConditions != null && store.rocketMass != null) {
+				data.setValue(FlightDataType.TYPE_STABILITY,
+						(store.forces.getCP().x - store.rocketMass.getCM().x) / store.flightConditions.getRefLength());
+			}
+		}
+
+		if( null != store.motorMass ){
+			data.setValue(FlightDataType.TYPE_PROPELLANT_MASS, store.motorMass.getMass());
+			//data.setValue(FlightDataType.TYPE_PROPELLANT_LONGITUDINAL_INERTIA, store.propellantMassData.getLongitudinalInertia());
+			//data.setValue(FlightDataType.TYPE_PROPELLANT_ROTATIONAL_INERTIA, store.propellantMassData.getRotationalInertia());
+		}
+		if (store.rocketMass != null) {
+			// N.B.: These refer to total mass
+			data.setValue(FlightDataType.TYPE_MASS, store.rocketMass.getMass());
+			data.setValue(FlightDataType.TYPE_LONGITUDINAL_INERTIA, store.rocketMass.getLongitudinalInertia());
+			data.setValue(FlightDataType.TYPE_ROTATIONAL_INERTIA, store.rocketMass.getRotationalInertia());
+		}
+		
+		data.setValue(FlightDataType.TYPE_THRUST_FORCE, store.thrustForce);
+		data.setValue(FlightDataType.TYPE_DRAG_FORCE, store.dragForce);
+		data.setValue(FlightDataType.TYPE_GRAVITY, store.gravity);
+		
+		if (status.isLaunchRodCleared() && store.forces != null) {
+			if (store.rocketMass != null && store.flightConditions != null) {
+				data.setValue(FlightDataType.TYPE_PITCH_MOMENT_COEFF,
+						store.forces.getCm() - store.forces.getCN() * store.rocketMass.getCM().x / store.flightConditions.getRefLength());
+				data.setValue(FlightDataType.TYPE_YAW_MOMENT_COEFF,
+						store.forces.getCyaw() - store.forces.getCside() * store.rocketMass.getCM().x / store.flightConditions.getRefLength());
+			}
+			data.setValue(FlightDataType.TYPE_NORMAL_FORCE_COEFF, store.forces.getCN());
+			data.setValue(FlightDataType.TYPE_SIDE_FORCE_COEFF, store.forces.getCside());
+			data.setValue(FlightDataType.TYPE_ROLL_MOMENT_COEFF, store.forces.getCroll());
+			data.setValue(FlightDataType.TYPE_ROLL_FORCING_COEFF, store.forces.getCrollForce());
+			data.setValue(FlightDataType.TYPE_ROLL_DAMPING_COEFF, store.forces.getCrollDamp());
+			data.setValue(FlightDataType.TYPE_PITCH_DAMPING_MOMENT_COEFF,
+					store.forces.getPitchDampingMoment());
+		}
+		
+		if (store.forces != null) {
+			data.setValue(FlightDataType.TYPE_DRAG_COEFF, store.forces.getCD());
+			data.setValue(FlightDataType.TYPE_AXIAL_DRAG_COEFF, store.forces.getCaxial());
+			data.setValue(FlightDataType.TYPE_FRICTION_DRAG_COEFF, store.forces.getFrictionCD());
+			data.setValue(FlightDataType.TYPE_PRESSURE_DRAG_COEFF, store.forces.getPressureCD());
+			data.setValue(FlightDataType.TYPE_BASE_DRAG_COEFF, store.forces.getBaseCD());
+		}
+		
+		if (store.flightConditions != null) {
+			data.setValue(FlightDataType.TYPE_REFERENCE_LENGTH, store.flightConditions.getRefLength());
+			data.setValue(FlightDataType.TYPE_REFERENCE_AREA, store.flightConditions.getRefArea());
+			
+			data.setValue(FlightDataType.TYPE_PITCH_RATE, store.flightConditions.getPitchRate());
+			data.setValue(FlightDataType.TYPE_YAW_RATE, store.flightConditions.getYawRate());
+			data.setValue(FlightDataType.TYPE_ROLL_RATE, store.flightConditions.getRollRate());
+			
+			data.setValue(FlightDataType.TYPE_AOA, store.flightConditions.getAOA());
+		}
+		
+
+		if (extra) {
+			Coordinate c = status.getRocketOrientationQuaternion().rotateZ();
+			double theta = Math.atan2(c.z, MathUtil.hypot(c.x, c.y));
+			double phi = Math.atan2(c.y, c.x);
+			if (phi < -(Math.PI - 0.0001))
+				phi = Math.PI;
+			data.setValue(FlightDataType.TYPE_ORIENTATION_THETA, theta);
+			data.setValue(FlightDataType.TYPE_ORIENTATION_PHI, phi);
+		}
+		
+		data.setValue(FlightDataType.TYPE_WIND_VELOCITY, store.windSpeed);
+		
+		if (store.flightConditions != null) {
+			data.setValue(FlightDataType.TYPE_AIR_TEMPERATURE,
+					store.flightConditions.getAtmosphericConditions().getTemperature());
+			data.setValue(FlightDataType.TYPE_AIR_PRESSURE,
+					store.flightConditions.getAtmosphericConditions().getPressure());
+			data.setValue(FlightDataType.TYPE_SPEED_OF_SOUND,
+					store.flightConditions.getAtmosphericConditions().getMachSpeed());
+		}
+		
+
+		data.setValue(FlightDataType.TYPE_TIME_STEP, store.timestep);
+		data.setValue(FlightDataType.TYPE_COMPUTATION_TIME,
+				(System.nanoTime() - status.getSimulationStartWallTime()) / 1000000000.0);
+	}
+	
+	
+
+
+	protected static class RK4Parameters {
+		/** Linear acceleration */
+		public Coordinate a;
+		/** Linear velocity */
+		public Coordinate v;
+		/** Rotational acceleration */
+		public Coordinate ra;
+		/** Rotational velocity */
+		public Coordinate rv;
+	}
+	
+	protected static class DataStore {
+		public double timestep = Double.NaN;
+		
+		public AccelerationData accelerationData;
+		
+		public AtmosphericConditions atmosphericConditions;
+		
+		public FlightConditions flightConditions;
+		
+		public double longitudinalAcceleration = Double.NaN;
+		
+		public RigidBody rocketMass;
+		
+		public RigidBody motorMass;
+		
+		public Coordinate coriolisAcceleration;
+		
+		public Coordinate linearAcceleration;
+		public Coordinate angularAcceleration;
+		
+		// set by calculateFlightConditions and calculateAcceleration:
+		public AerodynamicForces forces;
+		public double windSpeed = Double.NaN;
+		public double gravity = Double.NaN;
+		public double thrustForce = Double.NaN;
+		public double dragForce = Double.NaN;
+		public double lateralPitchRate = Double.NaN;
+		
+		public double rollAcceleration = Double.NaN;
+		public double lateralPitchAcceleration = Double.NaN;
+		
+		public Rotation2D thetaRotation;
+		
+		/** Flight conditions reused by every computation using this store, not cleared by reset(). */
+		FlightConditions scratchFlightConditions;
+		
+		/**
+		 * Return the flight conditions object reused for computing the flight conditions
+		 * with this store, reset to the values of a new object for the given configuration.
+		 * Listeners are only given copies of it.
+		 */
+		FlightConditions getScratchFlightConditions(FlightConfiguration configuration) {
+			if (scratchFlightConditions == null) {
+				scratchFlightConditions = new FlightConditions(configuration);
+			} else {
+				scratchFlightConditions.reset(configuration);
+			}
+			return scratchFlightConditions;
+		}
+		
+		/**
+		 * Reset all values to their initial state, so that the same store
+		 * can be reused for each step.
+		 */
+		public void reset() {
+			timestep = Double.NaN;
+			accelerationData = null;
+			atmosphericConditions = null;
+			flightConditions = null;
+			longitudinalAcceleration = Double.NaN;
+			rocketMass = null;
+			motorMass = null;
+			coriolisAcceleration = null;
+			linearAcceleration = null;
+			angularAcceleration = null;
+			forces = null;
+			windSpeed = Double.NaN;
+			gravity = Double.NaN;
+			thrustForce = Double.NaN;
+			dragForce = Double.NaN;
+			lateralPitchRate = Double.NaN;
+			rollAcceleration = Double.NaN;
+			lateralPitchAcceleration = Double.NaN;
+			thetaRotation = null;
+		}
+		
+	}
+	
+}
@@ -5,6 +5,8 @@ import java.util.Collection;
 import net.sf.openrocket.masscalc.MassCalculator;
 import net.sf.openrocket.masscalc.RigidBody;
 import net.sf.openrocket.models.atmosphere.AtmosphericConditions;
+import net.sf.openrocket.models.atmosphere.AtmosphericModel;
+import net.sf.openrocket.models.atmosphere.InterpolatingAtmosphericModel;
 import net.sf.openrocket.simulation.exception.SimulationException;
 import net.sf.openrocket.simulation.listeners.SimulationListenerHelper;
 import net.sf.openrocket.util.BugException;
@@ -21,25 +23,48 @@ public abstract class AbstractSimulationStepper implements SimulationStepper {
 	 * @throws SimulationException	if a listener throws SimulationException
 	 */
 	protected AtmosphericConditions modelAtmosphericConditions(SimulationStatus status) throws SimulationException {
-		AtmosphericConditions conditions;
+		AtmosphericConditions conditions = new AtmosphericConditions();
+		modelAtmosphericConditions(status, conditions);
+		return conditions;
+	}
+	
+	/**
+	 * Compute the atmospheric conditions into an existing object, allowing listeners
+	 * to override.
+	 * 
+	 * @param status		the simulation status
+	 * @param conditions	the atmospheric conditions to set
+	 * @throws SimulationException	if a listener throws SimulationException
+	 */
+	protected void modelAtmosphericConditions(SimulationStatus status, AtmosphericConditions conditions) throws SimulationException {
+		AtmosphericConditions c;
 		
 		// Call pre-listener
-		conditions = SimulationListenerHelper.firePreAtmosphericModel(status);
-		if (conditions != null) {
-			return conditions;
+		c = SimulationListenerHelper.firePreAtmosphericModel(status);
+		if (c != null) {
+			conditions.set(c.getTemperature(), c.getPressure());
+			return;
 		}
 		
 		// Compute conditions
 		double altitude = status.getRocketPosition().z + status.getSimulationConditions().getLaunchSite().getAltitude();
-		conditions = status.getSimulationConditions().getAtmosphericModel().getConditions(altitude);
+		AtmosphericModel model = status.getSimulationConditions().getAtmosphericModel();
+		if (model instanceof InterpolatingAtmosphericModel) {
+			((InterpolatingAtmosphericModel) model).getConditions(altitude, conditions);
+		} else {
+			// Other models only return new conditions objects
+			c = model.getConditions(altitude);
+			conditions.set(c.getTemperature(), c.getPressure());
+		}
 		
 		// Call post-listener
-		conditions = SimulationListenerHelper.firePostAtmosphericModel(status, conditions);
+		c = SimulationListenerHelper.firePostAtmosphericModel(status, conditions);
+		if (c != conditions) {
+			conditions.set(c.getTemperature(), c.getPressure());
+		}
 		
 		checkNaN(conditions.getPressure());
 		checkNaN(conditions.getTemperature());
-		
-		return conditions;
 	}
 	
 	
@@ -119,7 +144,13 @@ public abstract class AbstractSimulationStepper implements SimulationStepper {
 			return structureMass;
 		}
 		
-		structureMass = MassCalculator.calculateStructure( status.getConfiguration() );  
+		// The structure mass changes only at stage separation, use the cache of the calculator if available
+		MassCalculator calculator = status.getSimulationConditions().getMassCalculator();
+		if (calculator != null) {
+			structureMass = calculator.getStructure( status.getConfiguration() );
+		} else {
+			structureMass = MassCalculator.calculateStructure( status.getConfiguration() );
+		}
 						
 		// Call post-listener
 		structureMass = SimulationListenerHelper.firePostMassCalculation(status, structureMass);
@@ -6,6 +6,7 @@ import java.util.Deque;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sf.openrocket.aerodynamics.CachingBarrowmanCalculator;
 import net.sf.openrocket.aerodynamics.Warning;
 import net.sf.openrocket.l10n.Translator;
 import net.sf.openrocket.motor.MotorConfigurationId;
@@ -33,8 +34,7 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 	private static final Translator trans = Application.getTranslator();
 	private static final Logger log = LoggerFactory.getLogger(BasicEventSimulationEngine.class);
 	
-	// TODO: MEDIUM: Allow selecting steppers
-	private SimulationStepper flightStepper = new RK4SimulationStepper();
+	private SimulationStepper flightStepper;
 	private SimulationStepper landingStepper = new BasicLandingStepper();
 	private SimulationStepper tumbleStepper = new BasicTumbleStepper();
 	
@@ -61,6 +61,9 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 		// Set up flight data
 		FlightData flightData = new FlightData();
 		
+		// Set up the stepper for powered and coasting flight
+		flightStepper = newFlightStepper(simulationConditions);
+		
 		// Set up rocket configuration
 		this.fcid = simulationConditions.getFlightConfigurationID();
 		FlightConfiguration simulationConfig = simulationConditions.getRocket().getFlightConfiguration( this.fcid).clone();
@@ -73,7 +76,7 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 		{
 			// main simulation branch 
 			final String branchName = simulationConfig.getRocket().getTopmostStage().getName();
-			currentStatus.setFlightData(new FlightDataBranch( branchName, FlightDataType.TYPE_TIME));
+			currentStatus.setFlightData(new FlightDataBranch( branchName, simulationConditions.getRecordingPolicy(), FlightDataType.TYPE_TIME));
 		}
 		toSimulate.add(currentStatus);
 		
@@ -100,10 +103,21 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 		if (!flightData.getWarningSet().isEmpty()) {
 			log.info("Warnings at the end of simulation:  " + flightData.getWarningSet());
 		}
+		if (simulationConditions.getAerodynamicCalculator() instanceof CachingBarrowmanCalculator) {
+			log.info("Aerodynamic coefficient cache at the end of simulation:  " +
+					simulationConditions.getAerodynamicCalculator());
+		}
 
 		return flightData;
 	}
 	
+	/**
+	 * Create the stepper used for the powered and coasting flight.
+	 */
+	SimulationStepper newFlightStepper(SimulationConditions simulationConditions) {
+		return simulationConditions.getSimulationStepperType().newStepper();
+	}
+	
 	private FlightDataBranch simulateLoop() {
 		
 		// Initialize the simulation
@@ -410,7 +424,8 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 				
 				// Prepare the simulation branch
 				SimulationStatus boosterStatus = new SimulationStatus(currentStatus);
-				boosterStatus.setFlightData(new FlightDataBranch(boosterStage.getName(), FlightDataType.TYPE_TIME));
+				boosterStatus.setFlightData(new FlightDataBranch(boosterStage.getName(),
+						currentStatus.getSimulationConditions().getRecordingPolicy(), FlightDataType.TYPE_TIME));
 				// Mark the booster status as only having the booster.
 				boosterStatus.getConfiguration().setOnlyStage(stageNumber);
 				toSimulate.add(boosterStatus);
@@ -580,6 +595,8 @@ public class BasicEventSimulationEngine implements SimulationEngine {
 		try {
 			SimulationConditions conds = currentStatus.getSimulationConditions().clone();
 			conds.getSimulationListenerList().add(OptimumCoastListener.INSTANCE);
+			// Only the apogee is used
+			conds.setRecordingPolicy(RecordingPolicy.SUMMARY);
 			BasicEventSimulationEngine e = new BasicEventSimulationEngine();
 		
 			FlightData d = e.simulate(conds);
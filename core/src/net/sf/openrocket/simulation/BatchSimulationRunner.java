@@ -0,0 +1,511 @@
+package net.sf.openrocket.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.openrocket.aerodynamics.AerodynamicCalculator;
+import net.sf.openrocket.aerodynamics.TabulatedAerodynamicCalculator;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.masscalc.MassCalculator;
+import net.sf.openrocket.simulation.exception.SimulationCancelledException;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.simulation.listeners.AbstractSimulationListener;
+
+/**
+ * Runs batches of simulations in parallel without any user interface.  The results
+ * of a batch are made available in the order the simulations complete, and a batch
+ * can be cancelled at any time.
+ * <p>
+ * Simulations given as {@link SimulationConditions} are run on a copy of the conditions
+ * which uses aerodynamic and mass calculators owned by the worker thread.  The other
+ * models of the conditions, such as the wind model, are stateful and must not be shared
+ * between conditions of the same batch.  Conditions are best created separately for each
+ * simulation using {@link SimulationOptions#toSimulationConditions()}.
+ * <p>
+ * Large batches can instead be given as a {@link ConditionsFactory}, which creates the
+ * conditions of each simulation just before it is run.  Only a limited number of these
+ * simulations are submitted ahead of the retrieved results, so the memory used by a
+ * batch does not grow with its size as long as the results are retrieved.
+ * <p>
+ * Simulations given as {@link Simulation} objects are run using
+ * {@link Simulation#simulate(net.sf.openrocket.simulation.listeners.SimulationListener...)},
+ * which stores the results in the simulation as usual.  A simulation object must
+ * not be included in the same batch twice.
+ */
+public class BatchSimulationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchSimulationRunner.class);
+
+	/** Number of factory simulations submitted per thread ahead of the retrieved results. */
+	private static final int WINDOW_PER_THREAD = 4;
+
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final int window;
+
+	private final ThreadLocal<AerodynamicCalculator> aerodynamicCalculators = new ThreadLocal<AerodynamicCalculator>();
+	private final ThreadLocal<MassCalculator> massCalculators = new ThreadLocal<MassCalculator>();
+
+
+	/**
+	 * Create a runner using one thread for each available processor.
+	 */
+	public BatchSimulationRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a runner using the specified number of threads.  The threads are
+	 * released by calling {@link #shutdown()}.
+	 *
+	 * @param threadCount	the number of simulations to run simultaneously.
+	 */
+	public BatchSimulationRunner(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount=" + threadCount);
+		}
+		this.executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setName("BatchSimulationRunner-" + t.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.ownExecutor = true;
+		this.window = WINDOW_PER_THREAD * threadCount;
+	}
+
+	/**
+	 * Create a runner using the specified executor.  The executor is not shut down
+	 * by {@link #shutdown()}.
+	 *
+	 * @param executor	the executor to run the simulations on.
+	 */
+	public BatchSimulationRunner(ExecutorService executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor is null");
+		}
+		this.executor = executor;
+		this.ownExecutor = false;
+		this.window = WINDOW_PER_THREAD * Runtime.getRuntime().availableProcessors();
+	}
+
+
+	/**
+	 * Start simulating the given simulation conditions.
+	 *
+	 * @param conditions	the conditions to simulate, which are not modified.
+	 * @return				the batch providing the results.
+	 */
+	public Batch simulateConditions(List<SimulationConditions> conditions) {
+		Batch batch = new Batch(conditions.size());
+		for (int i = 0; i < conditions.size(); i++) {
+			batch.submit(new ConditionsTask(batch, i, conditions.get(i)));
+		}
+		return batch;
+	}
+
+	/**
+	 * Start simulating conditions created by a factory.  The conditions of each simulation
+	 * are created on the worker thread just before the simulation is run, and simulations
+	 * are only submitted while fewer than a limited number of results are waiting to be
+	 * retrieved.  The results must therefore be retrieved for the batch to complete.
+	 *
+	 * @param count		the number of simulations.
+	 * @param factory	the factory creating the conditions of each simulation.
+	 * @return			the batch providing the results.
+	 */
+	public Batch simulateConditions(int count, ConditionsFactory factory) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count=" + count);
+		}
+		Batch batch = new Batch(count);
+		batch.setFactory(factory);
+		return batch;
+	}
+
+	/**
+	 * Start simulating the given simulations.  The results are also stored in the
+	 * simulations when they complete successfully.
+	 *
+	 * @param simulations	the simulations to run.
+	 * @return				the batch providing the results.
+	 */
+	public Batch simulate(List<Simulation> simulations) {
+		Batch batch = new Batch(simulations.size());
+		for (int i = 0; i < simulations.size(); i++) {
+			batch.submit(new SimulationTask(batch, i, simulations.get(i)));
+		}
+		return batch;
+	}
+
+
+	/**
+	 * Shut down the threads created by this runner.  Simulations already submitted
+	 * are completed.  Does nothing if the runner was created with an external executor.
+	 */
+	public void shutdown() {
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+
+
+	private AerodynamicCalculator getAerodynamicCalculator(AerodynamicCalculator prototype) {
+		AerodynamicCalculator calculator = aerodynamicCalculators.get();
+		// Calculators of the same class are equivalent unless they use different tables
+		if (calculator == null || calculator.getClass() != prototype.getClass() ||
+				(prototype instanceof TabulatedAerodynamicCalculator &&
+						((TabulatedAerodynamicCalculator) prototype).getTable() !=
+						((TabulatedAerodynamicCalculator) calculator).getTable())) {
+			calculator = prototype.newInstance();
+			aerodynamicCalculators.set(calculator);
+		}
+		return calculator;
+	}
+
+	private MassCalculator getMassCalculator() {
+		MassCalculator calculator = massCalculators.get();
+		if (calculator == null) {
+			calculator = new MassCalculator();
+			massCalculators.set(calculator);
+		}
+		return calculator;
+	}
+
+
+
+	/**
+	 * A factory creating the simulation conditions of a batch on demand.
+	 */
+	public interface ConditionsFactory {
+		/**
+		 * Create the conditions of a simulation.  The factory is called by one worker
+		 * thread at a time, and must return new conditions for each call.
+		 *
+		 * @param index	the index of the simulation in the batch.
+		 * @return		the conditions to simulate, which are used by the runner.
+		 * @throws SimulationException	if the conditions cannot be created, which fails
+		 * 								the simulation.
+		 */
+		public SimulationConditions createConditions(int index) throws SimulationException;
+	}
+
+
+
+	/**
+	 * The result of a single simulation of a batch.
+	 */
+	public static class Result {
+		private final int index;
+		private final FlightData flightData;
+		private final SimulationException exception;
+		private final long runTime;
+
+		private Result(int index, FlightData flightData, SimulationException exception, long runTime) {
+			this.index = index;
+			this.flightData = flightData;
+			this.exception = exception;
+			this.runTime = runTime;
+		}
+
+		/**
+		 * Return the index of the simulation in the batch, its position in the list given to the runner.
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Return the simulated flight data, or <code>null</code> if the simulation failed.
+		 */
+		public FlightData getFlightData() {
+			return flightData;
+		}
+
+		/**
+		 * Return the exception that caused the simulation to fail, or <code>null</code>
+		 * if the simulation completed successfully.  Cancelled simulations fail with a
+		 * {@link SimulationCancelledException}.
+		 */
+		public SimulationException getException() {
+			return exception;
+		}
+
+		public boolean isSuccessful() {
+			return exception == null;
+		}
+
+		/**
+		 * Return the wall clock time the simulation took in milliseconds, or zero if
+		 * the simulation was cancelled before it was started.
+		 */
+		public long getRunTime() {
+			return runTime;
+		}
+	}
+
+
+
+	/**
+	 * A batch of simulations being run.  Exactly one result is returned for each
+	 * simulation of the batch, including failed and cancelled ones.
+	 */
+	public class Batch {
+
+		private final int size;
+		// Holds the futures of the completed simulations until their results are retrieved
+		private final CompletionService<Result> completionService;
+		private int taken = 0;
+		private volatile boolean cancelled = false;
+
+		// Simulations created on demand by a factory, submitted within the window
+		private ConditionsFactory factory = null;
+		private int submitted = 0;
+
+		private Batch(int size) {
+			this.size = size;
+			this.completionService = new ExecutorCompletionService<Result>(executor);
+		}
+
+		private void submit(Task task) {
+			completionService.submit(task);
+		}
+
+		private synchronized void setFactory(ConditionsFactory factory) {
+			this.factory = factory;
+			submitWindow();
+		}
+
+		private void submitWindow() {
+			if (factory == null) {
+				return;
+			}
+			while (submitted < size && submitted - taken < window) {
+				submit(new FactoryTask(this, submitted, factory));
+				submitted++;
+			}
+		}
+
+
+		/**
+		 * Return the number of simulations in this batch.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Return the number of results still to be retrieved from this batch.
+		 */
+		public synchronized int getRemaining() {
+			return size - taken;
+		}
+
+		/**
+		 * Wait for the next simulation to complete and return its result.
+		 *
+		 * @return	the next result, or <code>null</code> if all results have been retrieved.
+		 * @throws InterruptedException	if the current thread was interrupted while waiting.
+		 */
+		public synchronized Result take() throws InterruptedException {
+			if (taken >= size) {
+				return null;
+			}
+			return toResult(completionService.take());
+		}
+
+		/**
+		 * Wait at most the specified time for the next simulation to complete.
+		 *
+		 * @return	the next result, or <code>null</code> if all results have been retrieved
+		 * 			or no simulation completed within the time.
+		 * @throws InterruptedException	if the current thread was interrupted while waiting.
+		 */
+		public synchronized Result poll(long timeout, TimeUnit unit) throws InterruptedException {
+			if (taken >= size) {
+				return null;
+			}
+			Future<Result> future = completionService.poll(timeout, unit);
+			if (future == null) {
+				return null;
+			}
+			return toResult(future);
+		}
+
+		/**
+		 * Wait for all simulations to complete and return their results ordered by index.
+		 * After cancelling, this waits until the running simulations have stopped.
+		 *
+		 * @throws InterruptedException	if the current thread was interrupted while waiting.
+		 */
+		public List<Result> getAll() throws InterruptedException {
+			Result[] results = new Result[size];
+			Result r;
+			while ((r = take()) != null) {
+				results[r.getIndex()] = r;
+			}
+			List<Result> list = new ArrayList<Result>(size);
+			for (Result result : results) {
+				if (result != null) {
+					list.add(result);
+				}
+			}
+			return list;
+		}
+
+		/**
+		 * Cancel the simulations of this batch.  Running simulations are interrupted
+		 * at their next time step, and the ones not yet started are never run.  Their
+		 * results are returned once they have stopped.
+		 */
+		public void cancel() {
+			// The tasks are not cancelled, so that the result of a running simulation is only available when it stops
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+
+		private Result toResult(Future<Result> future) throws InterruptedException {
+			taken++;
+			submitWindow();
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				// Tasks catch all exceptions, this is a bug
+				throw new IllegalStateException("Unexpected exception in simulation task", e.getCause());
+			}
+		}
+	}
+
+
+
+	private abstract class Task implements Callable<Result> {
+		protected final Batch batch;
+		protected final int index;
+
+		public Task(Batch batch, int index) {
+			this.batch = batch;
+			this.index = index;
+		}
+
+		@Override
+		public Result call() {
+			if (batch.isCancelled()) {
+				return new Result(index, null, new SimulationCancelledException("The simulation was cancelled."), 0);
+			}
+			long start = System.nanoTime();
+			try {
+				FlightData data = run(new CancelListener(batch));
+				return new Result(index, data, null, elapsed(start));
+			} catch (SimulationException e) {
+				return new Result(index, null, e, elapsed(start));
+			} catch (RuntimeException e) {
+				log.warn("Simulation " + index + " of batch failed", e);
+				return new Result(index, null, new SimulationException(e.getMessage(), e), elapsed(start));
+			}
+		}
+
+		private long elapsed(long start) {
+			return (System.nanoTime() - start) / 1000000;
+		}
+
+		protected abstract FlightData run(CancelListener cancelListener) throws SimulationException;
+	}
+
+
+	private class ConditionsTask extends Task {
+		private final SimulationConditions conditions;
+
+		public ConditionsTask(Batch batch, int index, SimulationConditions conditions) {
+			super(batch, index);
+			this.conditions = conditions;
+		}
+
+		@Override
+		protected FlightData run(CancelListener cancelListener) throws SimulationException {
+			SimulationConditions c = conditions.clone();
+			c.setAerodynamicCalculator(getAerodynamicCalculator(conditions.getAerodynamicCalculator()));
+			c.setMassCalculator(getMassCalculator());
+			c.getSimulationListenerList().add(cancelListener);
+			return new BasicEventSimulationEngine().simulate(c);
+		}
+	}
+
+
+	private class FactoryTask extends Task {
+		private final ConditionsFactory factory;
+
+		public FactoryTask(Batch batch, int index, ConditionsFactory factory) {
+			super(batch, index);
+			this.factory = factory;
+		}
+
+		@Override
+		protected FlightData run(CancelListener cancelListener) throws SimulationException {
+			SimulationConditions c;
+			synchronized (factory) {
+				c = factory.createConditions(index);
+			}
+			c.setAerodynamicCalculator(getAerodynamicCalculator(c.getAerodynamicCalculator()));
+			c.setMassCalculator(getMassCalculator());
+			c.getSimulationListenerList().add(cancelListener);
+			return new BasicEventSimulationEngine().simulate(c);
+		}
+	}
+
+
+	private class SimulationTask extends Task {
+		private final Simulation simulation;
+
+		public SimulationTask(Batch batch, int index, Simulation simulation) {
+			super(batch, index);
+			this.simulation = simulation;
+		}
+
+		@Override
+		protected FlightData run(CancelListener cancelListener) throws SimulationException {
+			simulation.simulate(cancelListener);
+			return simulation.getSimulatedData();
+		}
+	}
+
+
+	/**
+	 * A simulation listener that throws a {@link SimulationCancelledException} once the
+	 * batch has been cancelled or the worker thread interrupted.
+	 */
+	private static class CancelListener extends AbstractSimulationListener {
+		private final Batch batch;
+
+		public CancelListener(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void postStep(SimulationStatus status) throws SimulationCancelledException {
+			if (batch.isCancelled() || Thread.currentThread().isInterrupted()) {
+				throw new SimulationCancelledException("The simulation was cancelled.");
+			}
+		}
+	}
+}
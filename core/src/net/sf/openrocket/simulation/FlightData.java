@@ -1,5 +1,7 @@
 package net.sf.openrocket.simulation;
 
+import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +21,10 @@ import net.sf.openrocket.util.Mutable;
  * 	<li>A WarningSet including warnings that occurred during simulation
  * </ul> 
  * <p>
+ * Branches may also be added as {@link BranchLoader}s, which are loaded when first accessed
+ * and may be evicted from memory and loaded again later.  This allows opening documents
+ * with a lot of stored data without reading the data until it is needed.
+ * <p>
  * A FlightData object can be made immutable by calling {@link #immute()}.
  * 
  * @author Sampo Niskanen <sampo.niskanen@iki.fi>
@@ -26,6 +32,26 @@ import net.sf.openrocket.util.Mutable;
 public class FlightData {
 	private static final Logger log = LoggerFactory.getLogger(FlightData.class);
 	
+	/**
+	 * A source of a flight data branch that is loaded on demand.
+	 */
+	public interface BranchLoader {
+		
+		/**
+		 * Load the branch.  Each call must return a new branch with the same content.
+		 * 
+		 * @return				the loaded branch.
+		 * @throws IOException	if the branch cannot be loaded.
+		 */
+		public FlightDataBranch load() throws IOException;
+		
+		/**
+		 * Return a branch with the name, types and events of the loaded branch but
+		 * without data points, used for displaying the branch if loading fails.
+		 */
+		public FlightDataBranch loadEmpty();
+	}
+	
 	/**
 	 * An immutable FlightData object with NaN data.
 	 */
@@ -38,7 +64,7 @@ public class FlightData {
 	
 	private Mutable mutable = new Mutable();
 	
-	private final ArrayList<FlightDataBranch> branches = new ArrayList<FlightDataBranch>();
+	private final ArrayList<BranchReference> branches = new ArrayList<BranchReference>();
 	
 	private final WarningSet warnings = new WarningSet();
 	
@@ -123,19 +149,102 @@ public class FlightData {
 		mutable.check();
 		
 		branch.immute();
-		branches.add(branch);
+		branches.add(new BranchReference(branch));
 		
 		if (branches.size() == 1) {
 			calculateIntrestingValues();
 		}
 	}
 	
+	/**
+	 * Add a branch that is loaded when first accessed.  The summary values are not
+	 * calculated from a branch added this way, they must be given to the constructor.
+	 * 
+	 * @param loader	the loader of the branch.
+	 */
+	public void addBranch(BranchLoader loader) {
+		mutable.check();
+		
+		branches.add(new BranchReference(loader));
+	}
+	
 	public int getBranchCount() {
 		return branches.size();
 	}
 	
+	/**
+	 * Return a branch, loading it if necessary.  If a branch added as a loader cannot be
+	 * loaded, a branch without data points is returned and loading is tried again on the
+	 * next call.  Use {@link #loadBranch(int)} where the failure must not go unnoticed.
+	 * 
+	 * @param n		the index of the branch.
+	 */
 	public FlightDataBranch getBranch(int n) {
-		return branches.get(n);
+		return branches.get(n).get();
+	}
+	
+	/**
+	 * Return a branch, loading it if necessary.
+	 * 
+	 * @param n		the index of the branch.
+	 * @throws IOException	if the branch is added as a loader and cannot be loaded.
+	 */
+	public FlightDataBranch loadBranch(int n) throws IOException {
+		return branches.get(n).load();
+	}
+	
+	/**
+	 * Return a branch if it is held in memory, otherwise a branch with the name, types
+	 * and events of the branch but without data points.  This never loads a branch.
+	 * 
+	 * @param n		the index of the branch.
+	 */
+	public FlightDataBranch peekBranch(int n) {
+		return branches.get(n).peek();
+	}
+	
+	/**
+	 * Return whether a branch is held in memory, so that {@link #getBranch(int)} returns
+	 * it without loading.
+	 * 
+	 * @param n		the index of the branch.
+	 */
+	public boolean isBranchLoaded(int n) {
+		return branches.get(n).isLoaded();
+	}
+	
+	/**
+	 * Load all branches added as loaders and keep them in memory.  This must be called
+	 * before the source of the loaders is modified or removed.
+	 * 
+	 * @throws IOException	if a branch cannot be loaded, the branches loaded before it
+	 * 						are kept in memory.
+	 */
+	public void loadBranches() throws IOException {
+		for (BranchReference b : branches) {
+			b.pin();
+		}
+	}
+	
+	/**
+	 * Let a branch held in memory be loaded on demand again, so that it may be evicted
+	 * from memory.  This is used after the branch has been saved to a file it can be
+	 * loaded from.  The data does not change, so this is allowed for immutable data.
+	 * 
+	 * @param n			the index of the branch.
+	 * @param loader	a loader of the same data as the branch.
+	 */
+	public void releaseBranch(int n, BranchLoader loader) {
+		branches.get(n).release(loader);
+	}
+	
+	/*
+	 * Evict the branches loaded on demand from memory, for testing.
+	 */
+	void evictBranches() {
+		for (BranchReference b : branches) {
+			b.evict();
+		}
 	}
 	
 	
@@ -179,6 +288,19 @@ public class FlightData {
 	public double getDeploymentVelocity() {
 		return deploymentVelocity;
 	}
+	
+	/**
+	 * Return the optimum delay of the first branch.  Unlike calling
+	 * <code>getBranch(0).getOptimumDelay()</code>, this does not load the data
+	 * points of a branch added as a loader.
+	 * 
+	 * @return	the optimum delay, or NaN if not available.
+	 */
+	public double getOptimumDelay() {
+		if (branches.isEmpty())
+			return Double.NaN;
+		return peekBranch(0).getOptimumDelay();
+	}
 
 
 	/**
@@ -189,7 +311,7 @@ public class FlightData {
 		if (branches.isEmpty())
 			return;
 		
-		FlightDataBranch branch = branches.get(0);
+		FlightDataBranch branch = getBranch(0);
 		maxAltitude = branch.getMaximum(FlightDataType.TYPE_ALTITUDE);
 		maxVelocity = branch.getMaximum(FlightDataType.TYPE_VELOCITY_TOTAL);
 		maxMachNumber = branch.getMaximum(FlightDataType.TYPE_MACH_NUMBER);
@@ -261,8 +383,10 @@ public class FlightData {
 	public void immute() {
 		mutable.immute();
 		warnings.immute();
-		for (FlightDataBranch b : branches) {
-			b.immute();
+		for (BranchReference b : branches) {
+			if (b.loader == null) {
+				b.branch.immute();
+			}
 		}
 	}
 	
@@ -310,4 +434,84 @@ public class FlightData {
 		
 		return max;
 	}
+	
+	
+	/**
+	 * A branch held in memory, or loaded on demand and held by a soft reference.
+	 */
+	private static final class BranchReference {
+		private BranchLoader loader;
+		private FlightDataBranch branch;
+		private SoftReference<FlightDataBranch> cache;
+		private FlightDataBranch empty;
+		
+		BranchReference(FlightDataBranch branch) {
+			this.loader = null;
+			this.branch = branch;
+		}
+		
+		BranchReference(BranchLoader loader) {
+			this.loader = loader;
+		}
+		
+		synchronized FlightDataBranch get() {
+			try {
+				return load();
+			} catch (IOException e) {
+				// The empty branch is not cached, so that it is never pinned or saved
+				log.warn("Unable to load flight data branch", e);
+				return peek();
+			}
+		}
+		
+		synchronized FlightDataBranch load() throws IOException {
+			if (branch != null) {
+				return branch;
+			}
+			
+			FlightDataBranch b = (cache != null) ? cache.get() : null;
+			if (b == null) {
+				b = loader.load();
+				b.immute();
+				cache = new SoftReference<FlightDataBranch>(b);
+			}
+			return b;
+		}
+		
+		// Return the branch if held in memory, otherwise the branch without data points
+		synchronized FlightDataBranch peek() {
+			FlightDataBranch b = (branch != null) ? branch : (cache != null) ? cache.get() : null;
+			if (b != null) {
+				return b;
+			}
+			if (empty == null) {
+				empty = loader.loadEmpty();
+				empty.immute();
+			}
+			return empty;
+		}
+		
+		synchronized boolean isLoaded() {
+			return branch != null || (cache != null && cache.get() != null);
+		}
+		
+		synchronized void pin() throws IOException {
+			branch = load();
+			cache = null;
+		}
+		
+		synchronized void release(BranchLoader l) {
+			FlightDataBranch b = (branch != null) ? branch : (cache != null) ? cache.get() : null;
+			loader = l;
+			branch = null;
+			cache = (b != null) ? new SoftReference<FlightDataBranch>(b) : null;
+			empty = null;
+		}
+		
+		synchronized void evict() {
+			if (cache != null) {
+				cache.clear();
+			}
+		}
+	}
 }
@@ -1,10 +1,9 @@
 package net.sf.openrocket.simulation;
 
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.RandomAccess;
 
 import net.sf.openrocket.util.ArrayList;
 import net.sf.openrocket.util.Monitorable;
@@ -21,20 +20,56 @@ import net.sf.openrocket.util.Mutable;
  * not defined in the constructor can be added using {@link #setValue(FlightDataType, double)}, they
  * will be created and all previous values will be set to NaN.
  * <p>
+ * The values recorded into the branch can be limited by a {@link RecordingPolicy}.  Points
+ * not recorded are replaced by the next point added, and types not recorded only retain their
+ * latest value, minimum and maximum.
+ * <p>
  * After populating a FlightDataBranch object it can be made immutable by calling {@link #immute()}.
  * 
  * @author Sampo Niskanen <sampo.niskanen@iki.fi>
  */
 public class FlightDataBranch implements Monitorable {
 	
+	/** Initial number of points allocated for each variable. */
+	private static final int INITIAL_CAPACITY = 64;
+	
 	/** The name of this flight data branch. */
 	private final String branchName;
 	
-	private final Map<FlightDataType, ArrayList<Double>> values =
-			new LinkedHashMap<FlightDataType, ArrayList<Double>>();
+	private final RecordingPolicy policy;
 	
-	private final Map<FlightDataType, Double> maxValues = new HashMap<FlightDataType, Double>();
-	private final Map<FlightDataType, Double> minValues = new HashMap<FlightDataType, Double>();
+	/*
+	 * The values are stored in columns of primitive arrays, one column per variable type
+	 * in the order the types were added.  All columns have the same capacity, of which
+	 * the first 'length' values are in use.  The column of a type not recorded is null.
+	 */
+	private FlightDataType[] types = new FlightDataType[0];
+	private double[][] columns = new double[0][];
+	private double[] latestValues = new double[0];
+	private double[] minValues = new double[0];
+	private double[] maxValues = new double[0];
+	private int length = 0;
+	private int capacity = INITIAL_CAPACITY;
+	
+	/*
+	 * State of the recording policy.  The latest point is always kept if it is protected
+	 * by an event.
+	 */
+	private boolean latestProtected = false;
+	private boolean protectNext = false;
+	private boolean deployed = false;
+	private double lastKeptTime = Double.NaN;
+	
+	/*
+	 * The maxima held by the latest kept point if it was kept only for holding them.
+	 * Such a point is replaced by the next point if it holds the same maxima.
+	 */
+	private int pendingMaxima = 0;
+	private static final int MAX_ALTITUDE = 1;
+	private static final int MAX_ACCELERATION = 2;
+	
+	/** Column number of each type indexed by FlightDataType.getIndex(), or -1 if not present. */
+	private int[] columnIndex = new int[0];
 	
 	/**
 	 * time for the rocket to reach apogee if the flight had been no recovery deployment
@@ -58,21 +93,31 @@ public class FlightDataBranch implements Monitorable {
 	 * @param types		data types to include (must include at least one type).
 	 */
 	public FlightDataBranch(String name, FlightDataType... types) {
+		this(name, RecordingPolicy.ALL, types);
+	}
+	
+	/**
+	 * Construct a FlightDataBranch recording data according to the specified policy.
+	 * 
+	 * @param name		the name of this FlightDataBranch.
+	 * @param policy	the policy defining which data is recorded.
+	 * @param types		data types to include (must include at least one type).
+	 */
+	public FlightDataBranch(String name, RecordingPolicy policy, FlightDataType... types) {
 		if (types.length == 0) {
 			throw new IllegalArgumentException("Must specify at least one data type.");
 		}
 		
 		this.branchName = name;
+		this.policy = policy;
 		
 		for (FlightDataType t : types) {
-			if (values.containsKey(t)) {
+			if (getColumn(t) >= 0) {
 				throw new IllegalArgumentException("Value type " + t + " specified multiple " +
 						"times in constructor.");
 			}
 			
-			values.put(t, new ArrayList<Double>());
-			minValues.put(t, Double.NaN);
-			maxValues.put(t, Double.NaN);
+			addColumn(t, Double.NaN);
 		}
 	}
 	
@@ -81,6 +126,7 @@ public class FlightDataBranch implements Monitorable {
 	 */
 	public FlightDataBranch() {
 		branchName = "Empty branch";
+		policy = RecordingPolicy.ALL;
 		for (FlightDataType type : FlightDataType.ALL_TYPES) {
 			this.setValue(type, Double.NaN);
 		}
@@ -95,12 +141,75 @@ public class FlightDataBranch implements Monitorable {
 	public void addPoint() {
 		mutable.check();
 		
-		for (FlightDataType t : values.keySet()) {
-			values.get(t).add(Double.NaN);
+		if (length == 0 || isLatestPointKept()) {
+			if (length == capacity) {
+				capacity = capacity + (capacity >> 1);
+				for (int i = 0; i < columns.length; i++) {
+					if (columns[i] != null) {
+						columns[i] = Arrays.copyOf(columns[i], capacity);
+					}
+				}
+			}
+			length++;
+		}
+		
+		// Reset the latest point, which may be a point replacing one not recorded
+		for (double[] column : columns) {
+			if (column != null) {
+				column[length - 1] = Double.NaN;
+			}
 		}
+		Arrays.fill(latestValues, Double.NaN);
+		latestProtected = protectNext;
+		protectNext = false;
 		modID++;
 	}
 	
+	/**
+	 * Return whether the latest point should be kept according to the recording policy
+	 * when a new point is added.  A point holding the maximum altitude or acceleration
+	 * replaces the previous point if that was kept only for holding the same maxima,
+	 * so that only the final maxima remain.
+	 */
+	private boolean isLatestPointKept() {
+		double interval = policy.getInterval();
+		if (interval <= 0) {
+			return true;
+		}
+		
+		double time = getLast(FlightDataType.TYPE_TIME);
+		boolean required = length == 1 || latestProtected || !(time < lastKeptTime + interval);
+		if (required) {
+			lastKeptTime = time;
+		}
+		
+		int maxima = 0;
+		if (isLatestMaximum(FlightDataType.TYPE_ALTITUDE)) {
+			maxima |= MAX_ALTITUDE;
+		}
+		if (!deployed && isLatestMaximum(FlightDataType.TYPE_ACCELERATION_TOTAL)) {
+			maxima |= MAX_ACCELERATION;
+		}
+		
+		boolean replace = pendingMaxima != 0 && maxima != 0 && (maxima & pendingMaxima) == pendingMaxima;
+		pendingMaxima = required ? 0 : maxima;
+		if (replace) {
+			// Move the latest point over the previous one
+			for (double[] column : columns) {
+				if (column != null) {
+					column[length - 2] = column[length - 1];
+				}
+			}
+			return false;
+		}
+		return required || maxima != 0;
+	}
+	
+	private boolean isLatestMaximum(FlightDataType type) {
+		int column = getColumn(type);
+		return column >= 0 && latestValues[column] == maxValues[column];
+	}
+	
 	
 	/**
 	 * Set the value for a specific data type at the latest point.  New variable types can be
@@ -113,36 +222,81 @@ public class FlightDataBranch implements Monitorable {
 	public void setValue(FlightDataType type, double value) {
 		mutable.check();
 		
-		ArrayList<Double> list = values.get(type);
-		
-		if (list == null) {
-			list = new ArrayList<Double>();
-			int n = getLength();
-			for (int i = 0; i < n; i++) {
-				list.add(Double.NaN);
-			}
-			values.put(type, list);
-			minValues.put(type, value);
-			maxValues.put(type, value);
+		int column = getColumn(type);
+		if (column < 0) {
+			column = addColumn(type, value);
 		}
 		
-		if (list.size() > 0) {
-			list.set(list.size() - 1, value);
+		if (length > 0) {
+			latestValues[column] = value;
+			if (columns[column] != null) {
+				columns[column][length - 1] = value;
+			}
 		}
 		
-		double min = minValues.get(type);
-		double max = maxValues.get(type);
+		double min = minValues[column];
+		double max = maxValues[column];
 		
 		if (Double.isNaN(min) || (value < min)) {
-			minValues.put(type, value);
+			minValues[column] = value;
 		}
 		if (Double.isNaN(max) || (value > max)) {
-			maxValues.put(type, value);
+			maxValues[column] = value;
 		}
 		modID++;
 	}
 	
 	
+	/**
+	 * Return the column of the specified type, or -1 if the type is not in this branch.
+	 */
+	private int getColumn(FlightDataType type) {
+		int index = type.getIndex();
+		if (index >= columnIndex.length) {
+			return -1;
+		}
+		return columnIndex[index];
+	}
+	
+	/**
+	 * Add a new column for the specified type with all values NaN.
+	 * 
+	 * @param type		the type to add.
+	 * @param minMax	the initial minimum and maximum value of the type.
+	 * @return			the column of the type.
+	 */
+	private int addColumn(FlightDataType type, double minMax) {
+		int index = type.getIndex();
+		if (index >= columnIndex.length) {
+			int n = columnIndex.length;
+			columnIndex = Arrays.copyOf(columnIndex, Math.max(index + 1, 2 * n));
+			Arrays.fill(columnIndex, n, columnIndex.length, -1);
+		}
+		
+		int column = types.length;
+		types = Arrays.copyOf(types, column + 1);
+		types[column] = type;
+		
+		double[] values = null;
+		if (policy.isRecorded(type)) {
+			values = new double[capacity];
+			Arrays.fill(values, 0, length, Double.NaN);
+		}
+		columns = Arrays.copyOf(columns, column + 1);
+		columns[column] = values;
+		
+		latestValues = Arrays.copyOf(latestValues, column + 1);
+		latestValues[column] = Double.NaN;
+		minValues = Arrays.copyOf(minValues, column + 1);
+		minValues[column] = minMax;
+		maxValues = Arrays.copyOf(maxValues, column + 1);
+		maxValues[column] = minMax;
+		
+		columnIndex[index] = column;
+		return column;
+	}
+	
+	
 	/**
 	 * Return the branch name.
 	 */
@@ -151,37 +305,124 @@ public class FlightDataBranch implements Monitorable {
 	}
 	
 	/**
-	 * Return the variable types included in this branch.  The types are sorted in their
+	 * Return the variable types recorded in this branch.  The types are sorted in their
 	 * natural order.
 	 */
 	public FlightDataType[] getTypes() {
-		FlightDataType[] array = values.keySet().toArray(new FlightDataType[0]);
+		FlightDataType[] array = new FlightDataType[types.length];
+		int n = 0;
+		for (int i = 0; i < types.length; i++) {
+			if (columns[i] != null) {
+				array[n++] = types[i];
+			}
+		}
+		array = Arrays.copyOf(array, n);
 		Arrays.sort(array);
 		return array;
 	}
 	
+	/**
+	 * Return the recording policy of this branch.
+	 */
+	public RecordingPolicy getRecordingPolicy() {
+		return policy;
+	}
+	
 	/**
 	 * Return the number of data points in this branch.
 	 */
 	public int getLength() {
-		for (FlightDataType t : values.keySet()) {
-			return values.get(t).size();
-		}
-		return 0;
+		return length;
 	}
 	
 	/**
-	 * Return an array of values for the specified variable type.
+	 * Return a list of values for the specified variable type.  The list is a read-only view
+	 * of the points present at the time of the call.  While the branch is mutable, the value
+	 * of the latest point may still change.
 	 * 
 	 * @param type	the variable type.
 	 * @return		a list of the variable values, or <code>null</code> if
-	 * 				the variable type hasn't been added to this branch.
+	 * 				the variable type hasn't been added to this branch or is not recorded.
 	 */
 	public List<Double> get(FlightDataType type) {
-		ArrayList<Double> list = values.get(type);
-		if (list == null)
+		int column = getColumn(type);
+		if (column < 0 || columns[column] == null)
+			return null;
+		return new ColumnView(columns[column], length);
+	}
+	
+	/**
+	 * Return the values of the specified variable type as an array.
+	 * 
+	 * @param type	the variable type.
+	 * @return		a new array of the variable values, or <code>null</code> if
+	 * 				the variable type hasn't been added to this branch or is not recorded.
+	 */
+	public double[] getValues(FlightDataType type) {
+		int column = getColumn(type);
+		if (column < 0 || columns[column] == null)
 			return null;
-		return list.clone();
+		return Arrays.copyOf(columns[column], length);
+	}
+	
+	/**
+	 * Set all values of the specified variable type, adding the type if necessary.  The
+	 * values are recorded regardless of the recording policy.
+	 * <p>
+	 * This is used for adding values computed from finished flight data, so unlike the
+	 * other set methods it may be called after the branch has been made immutable.  It
+	 * must not be called while other threads are reading the branch.  Branches of flight
+	 * data loaded on demand must be kept in memory using {@link FlightData#loadBranches()}
+	 * first, otherwise the values are lost when the branch is evicted from memory.
+	 * 
+	 * @param type		the variable to set.
+	 * @param values	the values of each point.
+	 * @throws IllegalArgumentException	if the number of values is not the number of points.
+	 */
+	public void setValues(FlightDataType type, double[] values) {
+		if (values.length != length) {
+			throw new IllegalArgumentException("values.length=" + values.length + " length=" + length);
+		}
+		
+		int column = getColumn(type);
+		if (column < 0) {
+			column = addColumn(type, Double.NaN);
+		}
+		columns[column] = Arrays.copyOf(values, capacity);
+		
+		double min = Double.NaN;
+		double max = Double.NaN;
+		for (double value : values) {
+			if (Double.isNaN(min) || (value < min)) {
+				min = value;
+			}
+			if (Double.isNaN(max) || (value > max)) {
+				max = value;
+			}
+		}
+		minValues[column] = min;
+		maxValues[column] = max;
+		latestValues[column] = (length > 0) ? values[length - 1] : Double.NaN;
+		modID++;
+	}
+	
+	/**
+	 * Return the value of the specified type at the specified point, or NaN if the type
+	 * is unavailable or not recorded.
+	 * 
+	 * @param type	the parameter type.
+	 * @param index	the index of the point.
+	 * @return		the value at the point, or NaN.
+	 * @throws IndexOutOfBoundsException	if the index is not a valid point index.
+	 */
+	public double get(FlightDataType type, int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index=" + index + " length=" + length);
+		}
+		int column = getColumn(type);
+		if (column < 0 || columns[column] == null)
+			return Double.NaN;
+		return columns[column][index];
 	}
 	
 	/**
@@ -192,10 +433,10 @@ public class FlightDataBranch implements Monitorable {
 	 * @return		the last value in this branch, or NaN.
 	 */
 	public double getLast(FlightDataType type) {
-		ArrayList<Double> list = values.get(type);
-		if (list == null || list.isEmpty())
+		int column = getColumn(type);
+		if (column < 0 || length == 0)
 			return Double.NaN;
-		return list.get(list.size() - 1);
+		return latestValues[column];
 	}
 	
 	/**
@@ -206,10 +447,10 @@ public class FlightDataBranch implements Monitorable {
 	 * @return		the minimum value in this branch, or NaN.
 	 */
 	public double getMinimum(FlightDataType type) {
-		Double v = minValues.get(type);
-		if (v == null)
+		int column = getColumn(type);
+		if (column < 0)
 			return Double.NaN;
-		return v;
+		return minValues[column];
 	}
 	
 	/**
@@ -220,10 +461,10 @@ public class FlightDataBranch implements Monitorable {
 	 * @return		the maximum value in this branch, or NaN.
 	 */
 	public double getMaximum(FlightDataType type) {
-		Double v = maxValues.get(type);
-		if (v == null)
+		int column = getColumn(type);
+		if (column < 0)
 			return Double.NaN;
-		return v;
+		return maxValues[column];
 	}
 	
 	
@@ -280,6 +521,13 @@ public class FlightDataBranch implements Monitorable {
 	public void addEvent(FlightEvent event) {
 		mutable.check();
 		events.add(event);
+		
+		// Keep the points around the event for interpolating values at the event time
+		latestProtected = true;
+		protectNext = true;
+		if (event.getType() == FlightEvent.Type.RECOVERY_DEVICE_DEPLOYMENT) {
+			deployed = true;
+		}
 		modID++;
 	}
 	
@@ -327,6 +575,15 @@ public class FlightDataBranch implements Monitorable {
 	 * modify this object will after this call throw an <code>IllegalStateException</code>.
 	 */
 	public void immute() {
+		if (mutable.isMutable() && capacity > length) {
+			// Release the unused capacity, no more points can be added
+			capacity = Math.max(length, 1);
+			for (int i = 0; i < columns.length; i++) {
+				if (columns[i] != null) {
+					columns[i] = Arrays.copyOf(columns[i], capacity);
+				}
+			}
+		}
 		mutable.immute();
 	}
 	
@@ -344,4 +601,31 @@ public class FlightDataBranch implements Monitorable {
 		return modID;
 	}
 	
+	
+	/**
+	 * A read-only list view of the first values of a column.
+	 */
+	private static class ColumnView extends AbstractList<Double> implements RandomAccess {
+		private final double[] values;
+		private final int size;
+		
+		public ColumnView(double[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+		
+		@Override
+		public Double get(int index) {
+			if (index >= size) {
+				throw new IndexOutOfBoundsException("index=" + index + " size=" + size);
+			}
+			return values[index];
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+	
 }
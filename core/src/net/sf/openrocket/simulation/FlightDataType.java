@@ -36,6 +36,9 @@ public class FlightDataType implements Comparable<FlightDataType> {
 	/** NOTE: The String key here is now the symbol */
 	private static final Map<String, FlightDataType> EXISTING_TYPES = new HashMap<String, FlightDataType>();
 	
+	/** Dense indices of the type names, used for indexing flight data arrays.  MUST BE DEFINED BEFORE ANY TYPES!! */
+	private static final Map<String, Integer> INDICES = new HashMap<String, Integer>();
+	
 	
 	//// Time
 	public static final FlightDataType TYPE_TIME = newType(trans.get("FlightDataType.TYPE_TIME"), "t", UnitGroup.UNITS_FLIGHT_TIME, 1);
@@ -340,6 +343,7 @@ public class FlightDataType implements Comparable<FlightDataType> {
 	private final UnitGroup units;
 	private final int priority;
 	private final int hashCode;
+	private final int index;
 	
 	
 	private FlightDataType(String typeName, String symbol, UnitGroup units, int priority) {
@@ -352,6 +356,20 @@ public class FlightDataType implements Comparable<FlightDataType> {
 		this.units = units;
 		this.priority = priority;
 		this.hashCode = this.name.toLowerCase(Locale.ENGLISH).hashCode();
+		this.index = indexOf(this.name);
+	}
+	
+	/**
+	 * Return the index of the type name.  Types that are equal have the same index.
+	 */
+	private static synchronized int indexOf(String typeName) {
+		String key = typeName.toLowerCase(Locale.ENGLISH);
+		Integer index = INDICES.get(key);
+		if (index == null) {
+			index = INDICES.size();
+			INDICES.put(key, index);
+		}
+		return index;
 	}
 	
 	/*
@@ -372,6 +390,14 @@ public class FlightDataType implements Comparable<FlightDataType> {
 		return units;
 	}
 	
+	/**
+	 * Return a small non-negative index unique to the type name.  Equal types have
+	 * the same index, so it can be used for indexing arrays of flight data.
+	 */
+	int getIndex() {
+		return index;
+	}
+	
 	@Override
 	public String toString() {
 		return name; //+" ("+symbol+") "+units.getDefaultUnit().toString();
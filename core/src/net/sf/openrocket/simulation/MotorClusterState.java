@@ -4,6 +4,7 @@ import net.sf.openrocket.motor.IgnitionEvent;
 import net.sf.openrocket.motor.Motor;
 import net.sf.openrocket.motor.MotorConfiguration;
 import net.sf.openrocket.motor.MotorConfigurationId;
+import net.sf.openrocket.motor.ThrustCurveMotor;
 import net.sf.openrocket.rocketcomponent.MotorMount;
 import net.sf.openrocket.rocketcomponent.RocketComponent;
 
@@ -20,6 +21,8 @@ public class MotorClusterState {
 	protected double cutoffTime = Double.NaN;
 	protected double ejectionTime = Double.NaN;
 	protected ThrustState currentState = ThrustState.ARMED;
+	// index of the thrust curve segment at the start of the last thrust interval
+	protected int thrustCurveIndex = 0;
 		
 	public MotorClusterState(final MotorConfiguration _config) {
 		this.config = _config;
@@ -131,6 +134,14 @@ public class MotorClusterState {
 			double motorEndTime = this.getMotorTime( endSimulationTime);
 			
 			int instanceCount = this.config.getMount().getLocations().length;
+			if( motor instanceof ThrustCurveMotor ){
+				// the interval starts move forward during a flight, so search onwards from the previous start
+				final ThrustCurveMotor curve = (ThrustCurveMotor) motor;
+				final int startIndex = curve.getIndex( motorStartTime, thrustCurveIndex );
+				final int endIndex = curve.getIndex( motorEndTime, startIndex );
+				thrustCurveIndex = startIndex;
+				return instanceCount * curve.getAverageThrust( motorStartTime, motorEndTime, startIndex, endIndex );
+			}
 			return instanceCount * motor.getAverageThrust( motorStartTime, motorEndTime );
 		}else{
 			return 0.00;
@@ -176,6 +187,7 @@ public class MotorClusterState {
 		ejectionTime = Double.POSITIVE_INFINITY;
 		
 		currentState = ThrustState.ARMED;
+		thrustCurveIndex = 0;
 	}
 	
 	public boolean testForIgnition( final FlightEvent _event ){
@@ -85,4 +85,15 @@ public class RK4SimulationStatus extends SimulationStatus implements Cloneable {
 		return (RK4SimulationStatus) super.clone();
 	}
 	
+	@Override
+	void copyFrom(SimulationStatus orig) {
+		super.copyFrom(orig);
+		RK4SimulationStatus other = (RK4SimulationStatus) orig;
+		this.launchRodDirection = other.launchRodDirection;
+		this.previousAcceleration = other.previousAcceleration;
+		this.previousAtmosphericConditions = other.previousAtmosphericConditions;
+		this.maxZVelocity = other.maxZVelocity;
+		this.startWarningTime = other.startWarningTime;
+	}
+	
 }
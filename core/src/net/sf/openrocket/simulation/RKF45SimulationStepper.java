@@ -0,0 +1,308 @@
+package net.sf.openrocket.simulation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.util.Coordinate;
+import net.sf.openrocket.util.MathUtil;
+import net.sf.openrocket.util.Quaternion;
+import net.sf.openrocket.util.WorldCoordinate;
+
+/**
+ * A simulation stepper using the Runge-Kutta-Fehlberg 4(5) method.  The difference
+ * between the embedded fourth and fifth order solutions estimates the local error of
+ * each step, and the time step is adapted to keep this error within fixed tolerances.
+ * Coasting flight is therefore simulated with long time steps, while quickly changing
+ * phases of the flight are resolved with short ones.
+ * <p>
+ * The force and data storage computations are shared with {@link RK4SimulationStepper}
+ * in {@link AbstractRKSimulationStepper}.  As in the RK4 stepper, the motor thrust is
+ * averaged over the whole time step, which hides thrust changes from the error estimate.
+ * The time step is therefore never longer than the user-selected time step while the
+ * motors are producing thrust.
+ */
+public class RKF45SimulationStepper extends AbstractRKSimulationStepper {
+
+	private static final Logger log = LoggerFactory.getLogger(RKF45SimulationStepper.class);
+
+	/** Relative error tolerance of all integrated quantities. */
+	private static final double RELATIVE_TOLERANCE = 1e-6;
+	/** Absolute error tolerance of the position (m). */
+	private static final double POSITION_TOLERANCE = 0.001;
+	/** Absolute error tolerance of the velocity (m/s). */
+	private static final double VELOCITY_TOLERANCE = 0.001;
+	/** Absolute error tolerance of the rotation velocity (rad/s). */
+	private static final double ROTATION_VELOCITY_TOLERANCE = 0.001;
+	/** Absolute error tolerance of the orientation (rad). */
+	private static final double ORIENTATION_TOLERANCE = 0.0005;
+
+	/** The longest time step ever taken. */
+	private static final double MAX_TIME_STEP = 1.0;
+
+	/** Safety factor and limits for scaling the time step based on the error estimate. */
+	private static final double SAFETY_FACTOR = 0.9;
+	private static final double MIN_SCALE = 0.2;
+	private static final double MAX_SCALE = 5.0;
+
+
+	/*
+	 * The Fehlberg coefficients.  B contains the fifth order weights used to advance
+	 * the solution and E the difference between the fifth and fourth order weights.
+	 */
+	private static final double[] C = { 0, 1.0 / 4, 3.0 / 8, 12.0 / 13, 1, 1.0 / 2 };
+	private static final double[][] A = {
+			{},
+			{ 1.0 / 4 },
+			{ 3.0 / 32, 9.0 / 32 },
+			{ 1932.0 / 2197, -7200.0 / 2197, 7296.0 / 2197 },
+			{ 439.0 / 216, -8, 3680.0 / 513, -845.0 / 4104 },
+			{ -8.0 / 27, 2, -3544.0 / 2565, 1859.0 / 4104, -11.0 / 40 }
+	};
+	private static final double[] B = { 16.0 / 135, 0, 6656.0 / 12825, 28561.0 / 56430, -9.0 / 50, 2.0 / 55 };
+	private static final double[] E = { 1.0 / 360, 0, -128.0 / 4275, -2197.0 / 75240, 1.0 / 50, 2.0 / 55 };
+	private static final int STAGES = B.length;
+
+
+	/** Scratch data of the later stages, the data of the first stage is in the inherited store. */
+	private final DataStore stageStore = new DataStore();
+	private final RK4Parameters[] k = new RK4Parameters[STAGES];
+	/** The intermediate status of the stages, allocated on the first stage. */
+	private RK4SimulationStatus subStatus;
+
+	/** The time step proposed by the error estimate of the previous step. */
+	private double nextTimeStep = Double.NaN;
+
+
+	public RKF45SimulationStepper() {
+		for (int i = 0; i < STAGES; i++) {
+			k[i] = new RK4Parameters();
+		}
+	}
+
+
+	@Override
+	public RK4SimulationStatus initialize(SimulationStatus original) {
+		RK4SimulationStatus status = super.initialize(original);
+		nextTimeStep = status.getPreviousTimeStep();
+		return status;
+	}
+
+
+	@Override
+	public void step(SimulationStatus simulationStatus, double maxTimeStep) throws SimulationException {
+
+		RK4SimulationStatus status = (RK4SimulationStatus) simulationStatus;
+		double userTimeStep = MathUtil.max(status.getSimulationConditions().getTimeStep(), MIN_TIME_STEP);
+
+		double timestep = MathUtil.min(nextTimeStep, MAX_TIME_STEP, maxTimeStep);
+		timestep = MathUtil.max(timestep, MIN_TIME_STEP);
+		checkNaN(timestep);
+		// Only build the per-step trace messages when they are logged
+		final boolean trace = log.isTraceEnabled();
+
+		double error;
+		while (true) {
+
+			//// First stage, also used for selecting the time step limits
+			store.reset();
+			store.timestep = timestep;
+			store.thrustForce = calculateAverageThrust(status, timestep, status.getPreviousAcceleration(),
+					status.getPreviousAtmosphericConditions(), false);
+			computeParameters(status, store, k[0]);
+
+			double limit = limitTimeStep(status, k[0], userTimeStep, maxTimeStep);
+			if (timestep > limit) {
+				// The average thrust must be recomputed for the shorter step
+				if (trace) {
+					log.trace("Time step " + timestep + " limited to " + limit);
+				}
+				timestep = limit;
+				continue;
+			}
+
+			//// Remaining stages
+			for (int i = 1; i < STAGES; i++) {
+				stageStore.reset();
+				stageStore.timestep = timestep;
+				stageStore.thrustForce = store.thrustForce;
+				computeParameters(stageStatus(status, i, timestep), stageStore, k[i]);
+			}
+
+			error = estimateError(status, timestep);
+			if (error <= 1 || timestep <= MIN_TIME_STEP) {
+				break;
+			}
+
+			double reduced = MathUtil.max(timestep * scaleFactor(error), MIN_TIME_STEP);
+			if (trace) {
+				log.trace("Rejected time step " + timestep + " with error " + error + ", retrying with " + reduced);
+			}
+			timestep = reduced;
+		}
+
+		if (trace) {
+			log.trace("Selected time step " + timestep + " with error " + error);
+		}
+
+		// Store data of the first stage
+		storeData(status, store);
+
+
+		//// Advance the solution using the fifth order weights
+		Coordinate v = status.getRocketVelocity();
+		Coordinate p = status.getRocketPosition();
+		Coordinate r = status.getRocketRotationVelocity();
+
+		status.setRocketVelocity(v.add(weightedSum(B, STAGES, timestep, VELOCITY)));
+		status.setRocketPosition(p.add(weightedSum(B, STAGES, timestep, POSITION)));
+		status.setRocketRotationVelocity(r.add(weightedSum(B, STAGES, timestep, ROTATION_VELOCITY)));
+		status.setRocketOrientationQuaternion(status.getRocketOrientationQuaternion().multiplyLeft(
+				Quaternion.rotation(weightedSum(B, STAGES, timestep, ORIENTATION))).normalizeIfNecessary());
+
+		WorldCoordinate w = status.getSimulationConditions().getLaunchSite();
+		w = status.getSimulationConditions().getGeodeticComputation().addCoordinate(w, status.getRocketPosition());
+		status.setRocketWorldPosition(w);
+
+		if (!(0 <= timestep)) {
+			// Also catches NaN
+			throw new IllegalArgumentException("Stepping backwards in time, timestep=" + timestep);
+		}
+		status.setSimulationTime(status.getSimulationTime() + timestep);
+		status.setPreviousTimeStep(timestep);
+		nextTimeStep = timestep * scaleFactor(error);
+
+		checkValueLimits(status);
+	}
+
+
+	/**
+	 * Return the longest time step allowed at the current status, independent of the
+	 * error estimate.
+	 */
+	private double limitTimeStep(RK4SimulationStatus status, RK4Parameters k1, double userTimeStep,
+			double maxTimeStep) {
+
+		double limit = MathUtil.min(MAX_TIME_STEP, maxTimeStep);
+
+		// Same limits as the RK4 stepper while on the launch rod
+		if (!status.isLaunchRodCleared()) {
+			limit = MathUtil.min(limit, userTimeStep / 5,
+					status.getSimulationConditions().getLaunchRodLength() / k1.v.length() / 10);
+		}
+
+		// The thrust is averaged over the step, resolve the burn with the user-selected time step
+		if (store.thrustForce > 0) {
+			limit = MathUtil.min(limit, userTimeStep);
+		}
+
+		/*
+		 * Approach apogee and the ground with shortening steps, so that they are detected
+		 * as accurately as with the user-selected time step.  The time to apogee is
+		 * underestimated using the current deceleration.
+		 */
+		Coordinate velocity = status.getRocketVelocity();
+		if (velocity.z > 0 && k1.a.z < 0) {
+			limit = MathUtil.min(limit, MathUtil.max(userTimeStep, -velocity.z / k1.a.z));
+		} else if (velocity.z < 0 && status.isLiftoff()) {
+			limit = MathUtil.min(limit, MathUtil.max(userTimeStep, -status.getRocketPosition().z / velocity.z));
+		}
+
+		return MathUtil.max(limit, MIN_TIME_STEP);
+	}
+
+
+	/**
+	 * Return the intermediate status of the given stage.  The same status object is
+	 * returned for every stage, so it is only valid until the next call.
+	 */
+	private RK4SimulationStatus stageStatus(RK4SimulationStatus status, int stage, double timestep) {
+		RK4SimulationStatus stageStatus = subStatus;
+		if (stageStatus == null) {
+			stageStatus = status.clone();
+			subStatus = stageStatus;
+		} else {
+			stageStatus.copyFrom(status);
+		}
+		double[] a = A[stage];
+
+		stageStatus.setSimulationTime(status.getSimulationTime() + C[stage] * timestep);
+		stageStatus.setRocketPosition(status.getRocketPosition().add(weightedSum(a, stage, timestep, POSITION)));
+		stageStatus.setRocketVelocity(status.getRocketVelocity().add(weightedSum(a, stage, timestep, VELOCITY)));
+		stageStatus.setRocketOrientationQuaternion(status.getRocketOrientationQuaternion().multiplyLeft(
+				Quaternion.rotation(weightedSum(a, stage, timestep, ORIENTATION))));
+		stageStatus.setRocketRotationVelocity(status.getRocketRotationVelocity().add(
+				weightedSum(a, stage, timestep, ROTATION_VELOCITY)));
+		return stageStatus;
+	}
+
+
+	/**
+	 * Return the error estimate of the step scaled by the tolerances.  A value
+	 * of at most one means the step is acceptable.
+	 */
+	private double estimateError(RK4SimulationStatus status, double timestep) {
+		double relative = RELATIVE_TOLERANCE;
+
+		double position = weightedSum(E, STAGES, timestep, POSITION).length() /
+				(POSITION_TOLERANCE + relative * status.getRocketPosition().length());
+		double velocity = weightedSum(E, STAGES, timestep, VELOCITY).length() /
+				(VELOCITY_TOLERANCE + relative * status.getRocketVelocity().length());
+		double rotation = weightedSum(E, STAGES, timestep, ROTATION_VELOCITY).length() /
+				(ROTATION_VELOCITY_TOLERANCE + relative * status.getRocketRotationVelocity().length());
+		double orientation = weightedSum(E, STAGES, timestep, ORIENTATION).length() / ORIENTATION_TOLERANCE;
+
+		return MathUtil.max(MathUtil.max(position, velocity), MathUtil.max(rotation, orientation));
+	}
+
+
+	/**
+	 * Return the factor by which to scale the time step for the given error estimate.
+	 */
+	private static double scaleFactor(double error) {
+		if (error <= 0) {
+			return MAX_SCALE;
+		}
+		return MathUtil.clamp(SAFETY_FACTOR * Math.pow(error, -0.2), MIN_SCALE, MAX_SCALE);
+	}
+
+
+	private static final int POSITION = 0;
+	private static final int VELOCITY = 1;
+	private static final int ORIENTATION = 2;
+	private static final int ROTATION_VELOCITY = 3;
+
+	/**
+	 * Compute the weighted sum h * sum(weights[i] * k[i]) of the derivative of one
+	 * of the integrated quantities over the first <code>count</code> stages.
+	 */
+	private Coordinate weightedSum(double[] weights, int count, double timestep, int quantity) {
+		double x = 0, y = 0, z = 0;
+		for (int i = 0; i < count; i++) {
+			if (weights[i] == 0) {
+				continue;
+			}
+			Coordinate d = derivative(k[i], quantity);
+			x += weights[i] * d.x;
+			y += weights[i] * d.y;
+			z += weights[i] * d.z;
+		}
+		return new Coordinate(x * timestep, y * timestep, z * timestep);
+	}
+
+	private static Coordinate derivative(RK4Parameters params, int quantity) {
+		switch (quantity) {
+		case POSITION:
+			return params.v;
+		case VELOCITY:
+			return params.a;
+		case ORIENTATION:
+			return params.rv;
+		case ROTATION_VELOCITY:
+			return params.ra;
+		default:
+			throw new IllegalArgumentException("quantity=" + quantity);
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package net.sf.openrocket.simulation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A policy defining which flight data is recorded during a simulation.  Callers that
+ * need only a part of the flight data, such as optimizers needing only the summary
+ * values, can reduce the memory and time used by recording less data.
+ * <p>
+ * The policy may limit the recorded variable types and the interval between recorded
+ * points.  Regardless of the policy, the summary values of {@link FlightData}, the flight
+ * events and the latest value of every variable remain exact.  For this purpose the points
+ * containing the maximum altitude and the maximum acceleration before recovery device
+ * deployment, the points around each flight event and the first and last points are always
+ * recorded, as are the types {@link #REQUIRED_TYPES} used for computing the summary values.
+ * <p>
+ * Instances are immutable.
+ */
+public final class RecordingPolicy {
+
+	/** The types always recorded, as they are used for computing the summary values. */
+	public static final Set<FlightDataType> REQUIRED_TYPES = Collections.unmodifiableSet(
+			new HashSet<FlightDataType>(Arrays.asList(
+					FlightDataType.TYPE_TIME,
+					FlightDataType.TYPE_ALTITUDE,
+					FlightDataType.TYPE_VELOCITY_TOTAL,
+					FlightDataType.TYPE_ACCELERATION_TOTAL)));
+
+	/** Record every point of every type. */
+	public static final RecordingPolicy ALL = new RecordingPolicy(0, null);
+
+	/** Record only the data required for the summary values. */
+	public static final RecordingPolicy SUMMARY = new RecordingPolicy(Double.POSITIVE_INFINITY, REQUIRED_TYPES);
+
+
+	private final double interval;
+	private final Set<FlightDataType> types;
+
+
+	private RecordingPolicy(double interval, Set<FlightDataType> types) {
+		this.interval = interval;
+		this.types = types;
+	}
+
+
+	/**
+	 * Return a policy recording all types at the specified minimum interval.  A point
+	 * is recorded when at least the interval has elapsed since the previous recorded point.
+	 *
+	 * @param interval	the minimum time between recorded points (s).
+	 */
+	public static RecordingPolicy interval(double interval) {
+		if (!(interval >= 0)) {
+			throw new IllegalArgumentException("interval=" + interval);
+		}
+		return new RecordingPolicy(interval, null);
+	}
+
+	/**
+	 * Return a policy equal to this policy but recording only the specified types in
+	 * addition to the required types.
+	 *
+	 * @param recorded	the types to record.
+	 */
+	public RecordingPolicy withTypes(FlightDataType... recorded) {
+		Set<FlightDataType> set = new HashSet<FlightDataType>(REQUIRED_TYPES);
+		set.addAll(Arrays.asList(recorded));
+		return new RecordingPolicy(interval, Collections.unmodifiableSet(set));
+	}
+
+
+	/**
+	 * Return the minimum time between recorded points (s).  Zero means that all points
+	 * are recorded, and infinity that only the points required for the summary values
+	 * are recorded.
+	 */
+	public double getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Return whether the values of the specified type are recorded.
+	 */
+	public boolean isRecorded(FlightDataType type) {
+		return types == null || types.contains(type);
+	}
+
+	/**
+	 * Return whether this policy records all points of all types.
+	 */
+	public boolean isRecordingAll() {
+		return interval <= 0 && types == null;
+	}
+
+
+	@Override
+	public String toString() {
+		return "RecordingPolicy[interval=" + interval + ", types=" + (types == null ? "all" : types) + "]";
+	}
+}
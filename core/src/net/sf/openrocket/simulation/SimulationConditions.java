@@ -58,6 +58,8 @@ public class SimulationConditions implements Monitorable, Cloneable {
 	
 	private double timeStep = RK4SimulationStepper.RECOMMENDED_TIME_STEP;
 	private double maximumAngleStep = RK4SimulationStepper.RECOMMENDED_ANGLE_STEP;
+	private SimulationStepperType stepperType = SimulationStepperType.RK4;
+	private RecordingPolicy recordingPolicy = RecordingPolicy.ALL;
 	
 	/* Whether to calculate additional data or only primary simulation figures */
 	private boolean calculateExtras = true;
@@ -257,6 +259,41 @@ public class SimulationConditions implements Monitorable, Cloneable {
 	}
 	
 	
+	public SimulationStepperType getSimulationStepperType() {
+		return stepperType;
+	}
+	
+	
+	public void setSimulationStepperType(SimulationStepperType stepperType) {
+		if (this.stepperType == stepperType)
+			return;
+		if (stepperType == null) {
+			throw new IllegalArgumentException("stepper type cannot be null");
+		}
+		this.stepperType = stepperType;
+		this.modID++;
+	}
+	
+	
+	/**
+	 * Return the policy defining which flight data is recorded.
+	 */
+	public RecordingPolicy getRecordingPolicy() {
+		return recordingPolicy;
+	}
+	
+	
+	public void setRecordingPolicy(RecordingPolicy recordingPolicy) {
+		if (this.recordingPolicy == recordingPolicy)
+			return;
+		if (recordingPolicy == null) {
+			throw new IllegalArgumentException("recording policy cannot be null");
+		}
+		this.recordingPolicy = recordingPolicy;
+		this.modID++;
+	}
+	
+	
 	public boolean isCalculateExtras() {
 		return calculateExtras;
 	}
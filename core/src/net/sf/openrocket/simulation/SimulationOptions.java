@@ -10,12 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sf.openrocket.aerodynamics.BarrowmanCalculator;
+import net.sf.openrocket.aerodynamics.CachingBarrowmanCalculator;
 import net.sf.openrocket.masscalc.MassCalculator;
 import net.sf.openrocket.models.atmosphere.AtmosphericModel;
 import net.sf.openrocket.models.atmosphere.ExtendedISAModel;
 import net.sf.openrocket.models.gravity.GravityModel;
 import net.sf.openrocket.models.gravity.WGSGravityModel;
-import net.sf.openrocket.models.wind.PinkNoiseWindModel;
+import net.sf.openrocket.models.wind.LayeredPinkNoiseWindModel;
 import net.sf.openrocket.startup.Application;
 import net.sf.openrocket.startup.Preferences;
 import net.sf.openrocket.util.BugException;
@@ -77,6 +78,8 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 	
 	private double timeStep = preferences.getDouble(Preferences.SIMULATION_TIME_STEP, RK4SimulationStepper.RECOMMENDED_TIME_STEP);
 	private double maximumAngle = RK4SimulationStepper.RECOMMENDED_ANGLE_STEP;
+	private SimulationStepperType stepperType = SimulationStepperType.RK4;
+	private boolean aerodynamicCache = false;
 	
 	private int randomSeed = new Random().nextInt();
 	
@@ -337,6 +340,41 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 	
 	
 	
+	public SimulationStepperType getSimulationStepperType() {
+		return stepperType;
+	}
+	
+	public void setSimulationStepperType(SimulationStepperType stepperType) {
+		if (this.stepperType == stepperType)
+			return;
+		if (stepperType == null) {
+			throw new IllegalArgumentException("stepper type cannot be null");
+		}
+		this.stepperType = stepperType;
+		fireChangeEvent();
+	}
+	
+	
+	
+	/**
+	 * Return whether the aerodynamic coefficients are cached between simulation steps.
+	 * The setting is stored in documents as the <code>aerodynamiccache</code> element.
+	 * 
+	 * @see CachingBarrowmanCalculator
+	 */
+	public boolean isAerodynamicCache() {
+		return aerodynamicCache;
+	}
+	
+	public void setAerodynamicCache(boolean aerodynamicCache) {
+		if (this.aerodynamicCache == aerodynamicCache)
+			return;
+		this.aerodynamicCache = aerodynamicCache;
+		fireChangeEvent();
+	}
+	
+	
+	
 	public boolean getCalculateExtras() {
 		return calculateExtras;
 	}
@@ -403,6 +441,8 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 		this.launchTemperature = src.launchTemperature;
 		this.maximumAngle = src.maximumAngle;
 		this.timeStep = src.timeStep;
+		this.stepperType = src.stepperType;
+		this.aerodynamicCache = src.aerodynamicCache;
 		this.windAverage = src.windAverage;
 		this.windTurbulence = src.windTurbulence;
 		this.windDirection = src.windDirection;
@@ -457,6 +497,14 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 			isChanged = true;
 			this.timeStep = src.timeStep;
 		}
+		if (this.stepperType != src.stepperType) {
+			isChanged = true;
+			this.stepperType = src.stepperType;
+		}
+		if (this.aerodynamicCache != src.aerodynamicCache) {
+			isChanged = true;
+			this.aerodynamicCache = src.aerodynamicCache;
+		}
 		if (this.windAverage != src.windAverage) {
 			isChanged = true;
 			this.windAverage = src.windAverage;
@@ -502,6 +550,8 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 				MathUtil.equals(this.launchTemperature, o.launchTemperature) &&
 				MathUtil.equals(this.maximumAngle, o.maximumAngle) &&
 				MathUtil.equals(this.timeStep, o.timeStep) &&
+				this.stepperType == o.stepperType &&
+				this.aerodynamicCache == o.aerodynamicCache &&
 				MathUtil.equals(this.windAverage, o.windAverage) &&
 				MathUtil.equals(this.windTurbulence, o.windTurbulence) &&
 				MathUtil.equals(this.windDirection, o.windDirection) &&
@@ -551,10 +601,8 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 		conditions.setGeodeticComputation(getGeodeticComputation());
 		conditions.setRandomSeed(randomSeed);
 		
-		PinkNoiseWindModel windModel = new PinkNoiseWindModel(randomSeed);
-		windModel.setAverage(getWindSpeedAverage());
-		windModel.setStandardDeviation(getWindSpeedDeviation());
-		windModel.setDirection(windDirection);
+		LayeredPinkNoiseWindModel windModel = new LayeredPinkNoiseWindModel(randomSeed);
+		windModel.addLayer(0, getWindSpeedAverage(), getWindSpeedDeviation(), windDirection);
 		
 		conditions.setWindModel(windModel);
 		
@@ -564,11 +612,16 @@ public class SimulationOptions implements ChangeSource, Cloneable {
 		
 		conditions.setGravityModel(gravityModel);
 		
-		conditions.setAerodynamicCalculator(new BarrowmanCalculator());
+		if (isAerodynamicCache()) {
+			conditions.setAerodynamicCalculator(new CachingBarrowmanCalculator());
+		} else {
+			conditions.setAerodynamicCalculator(new BarrowmanCalculator());
+		}
 		conditions.setMassCalculator(new MassCalculator());
 		
 		conditions.setTimeStep(getTimeStep());
 		conditions.setMaximumAngleStep(getMaximumStepAngle());
+		conditions.setSimulationStepperType(getSimulationStepperType());
 		
 		conditions.setCalculateExtras(getCalculateExtras());
 		
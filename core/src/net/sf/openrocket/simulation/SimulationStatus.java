@@ -75,12 +75,12 @@ public class SimulationStatus implements Monitorable {
 	private MonitorableSet<RecoveryDevice> deployedRecoveryDevices = new MonitorableSet<RecoveryDevice>();
 	
 	/** The flight event queue */
-	private final EventQueue eventQueue = new EventQueue();
+	private EventQueue eventQueue = new EventQueue();
 	
 	private WarningSet warnings;
 	
 	/** Available for special purposes by the listeners. */
-	private final Map<String, Object> extraData = new HashMap<String, Object>();
+	private Map<String, Object> extraData = new HashMap<String, Object>();
 	
 	double maxAlt = Double.NEGATIVE_INFINITY;
 	double maxAltTime = 0;
@@ -489,6 +489,42 @@ public class SimulationStatus implements Monitorable {
 		}
 	}
 	
+	/**
+	 * Make this object the same shallow copy of <code>orig</code> as {@link #clone()}
+	 * returns.  This allows reusing the intermediate copies used during step computation
+	 * instead of allocating a new one for each of them.
+	 * 
+	 * @param orig	the object from which to copy
+	 */
+	void copyFrom(SimulationStatus orig) {
+		this.simulationConditions = orig.simulationConditions;
+		this.configuration = orig.configuration;
+		this.flightData = orig.flightData;
+		this.time = orig.time;
+		this.previousTimeStep = orig.previousTimeStep;
+		this.position = orig.position;
+		this.worldPosition = orig.worldPosition;
+		this.velocity = orig.velocity;
+		this.orientation = orig.orientation;
+		this.rotationVelocity = orig.rotationVelocity;
+		this.effectiveLaunchRodLength = orig.effectiveLaunchRodLength;
+		this.motorStateList = orig.motorStateList;
+		this.simulationStartWallTime = orig.simulationStartWallTime;
+		this.motorIgnited = orig.motorIgnited;
+		this.liftoff = orig.liftoff;
+		this.launchRodCleared = orig.launchRodCleared;
+		this.apogeeReached = orig.apogeeReached;
+		this.tumbling = orig.tumbling;
+		this.deployedRecoveryDevices = orig.deployedRecoveryDevices;
+		this.eventQueue = orig.eventQueue;
+		this.warnings = orig.warnings;
+		this.extraData = orig.extraData;
+		this.maxAlt = orig.maxAlt;
+		this.maxAltTime = orig.maxAltTime;
+		this.modID = orig.modID;
+		this.modIDadd = orig.modIDadd;
+	}
+	
 	@Override
 	public int getModID() {
 		return (modID + modIDadd + simulationConditions.getModID() + configuration.getModID() +
@@ -0,0 +1,64 @@
+package net.sf.openrocket.simulation;
+
+import java.util.Locale;
+
+import net.sf.openrocket.l10n.Translator;
+import net.sf.openrocket.startup.Application;
+
+/**
+ * The integration methods available for simulating the powered and coasting
+ * flight of a rocket.  The descent under recovery devices and tumbling are
+ * always simulated with their own specific steppers.
+ */
+public enum SimulationStepperType {
+
+	/**
+	 * Classical fourth-order Runge-Kutta with a heuristic time step selection.
+	 */
+	RK4 {
+		@Override
+		public SimulationStepper newStepper() {
+			return new RK4SimulationStepper();
+		}
+	},
+
+	/**
+	 * Runge-Kutta-Fehlberg 4(5) with an embedded error estimate which is used
+	 * to select the time step adaptively.
+	 */
+	RKF45 {
+		@Override
+		public SimulationStepper newStepper() {
+			return new RKF45SimulationStepper();
+		}
+	};
+
+
+	private static final Translator trans = Application.getTranslator();
+
+	/**
+	 * Return the name of this integration method.
+	 */
+	public String getName() {
+		return trans.get(name().toLowerCase(Locale.ENGLISH) + ".name");
+	}
+
+	/**
+	 * Return a description of this integration method.
+	 */
+	public String getDescription() {
+		return trans.get(name().toLowerCase(Locale.ENGLISH) + ".desc");
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+	/**
+	 * Create a new stepper instance implementing this integration method.  A stepper
+	 * instance must only be used by a single simulation at a time.
+	 */
+	public abstract SimulationStepper newStepper();
+
+}
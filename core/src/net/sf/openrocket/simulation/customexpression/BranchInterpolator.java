@@ -0,0 +1,46 @@
+package net.sf.openrocket.simulation.customexpression;
+
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.util.LinearInterpolator;
+
+/**
+ * Interpolates the values of a flight data type over the time of a flight data branch.
+ * Only the points added to the branch since the previous call are added to the
+ * interpolator, so evaluating an expression at each point of a growing branch does not
+ * rebuild the interpolator over the whole branch every time.
+ */
+class BranchInterpolator {
+
+	private final FlightDataType type;
+
+	private FlightDataBranch branch;
+	private int length;
+	private LinearInterpolator interpolator;
+
+	public BranchInterpolator(FlightDataType type) {
+		this.type = type;
+	}
+
+	/**
+	 * Return the interpolator of the values of the data up to its last point.
+	 *
+	 * @param data	the flight data.
+	 * @return		the interpolator, valid until the next call.
+	 */
+	public LinearInterpolator get(FlightDataBranch data) {
+		int n = data.getLength();
+		if (data != branch || n < length) {
+			branch = data;
+			length = 0;
+			interpolator = new LinearInterpolator();
+		}
+
+		// The previous last point is added again in case its values were set after the previous call
+		for (int i = Math.max(length - 1, 0); i < n; i++) {
+			interpolator.addPoint(data.get(FlightDataType.TYPE_TIME, i), data.get(type, i));
+		}
+		length = n;
+		return interpolator;
+	}
+}
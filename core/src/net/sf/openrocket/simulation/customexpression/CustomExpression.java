@@ -1,11 +1,13 @@
 package net.sf.openrocket.simulation.customexpression;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.logging.Markers;
+import net.sf.openrocket.simulation.FlightDataBranch;
 import net.sf.openrocket.simulation.FlightDataType;
 import net.sf.openrocket.simulation.SimulationStatus;
 import net.sf.openrocket.unit.FixedUnitGroup;
@@ -17,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.congrace.exp4j.Calculable;
+import de.congrace.exp4j.DoubleExpression;
 import de.congrace.exp4j.ExpressionBuilder;
 import de.congrace.exp4j.UnknownFunctionException;
 import de.congrace.exp4j.UnparsableExpressionException;
@@ -31,6 +34,79 @@ public class CustomExpression implements Cloneable {
 	
 	private static final Logger log = LoggerFactory.getLogger(CustomExpression.class);
 	
+	/**
+	 * An expression compiled for evaluating repeatedly during a simulation.  The expression
+	 * is built and its variables resolved only once.  An evaluator keeps the values of the
+	 * variables between evaluations, so it must not be shared between simulations running
+	 * concurrently.
+	 */
+	public static abstract class Evaluator {
+		
+		/**
+		 * Evaluate the expression using the last variable values of the flight data.
+		 * 
+		 * @param data		the flight data up to the current point.
+		 * @param timeStep	the time step of the simulation, used for range expressions.
+		 */
+		public abstract Variable evaluate(FlightDataBranch data, double timeStep);
+		
+		/**
+		 * Evaluate the expression to a double, with infinite values replaced by NaN.
+		 */
+		public double evaluateDouble(FlightDataBranch data, double timeStep) {
+			return toDouble(evaluate(data, timeStep).getDoubleValue());
+		}
+		
+		/**
+		 * Evaluate the expression using the last variable values from the simulation status.
+		 */
+		public Variable evaluate(SimulationStatus status) {
+			return evaluate(status.getFlightData(), status.getSimulationConditions().getTimeStep());
+		}
+		
+		/**
+		 * Evaluate the expression to a double, with infinite values replaced by NaN.
+		 */
+		public double evaluateDouble(SimulationStatus status) {
+			return evaluateDouble(status.getFlightData(), status.getSimulationConditions().getTimeStep());
+		}
+		
+		/**
+		 * Evaluate the expression at each point of finished flight data, with the values the
+		 * expression would have had when evaluated at that point during the simulation.
+		 * Infinite values are replaced by NaN.  Variables whose values were not recorded
+		 * are NaN.
+		 * <p>
+		 * This implementation replays the points of the branch one at a time.
+		 * 
+		 * @param data		the flight data.
+		 * @param timeStep	the time step of the simulation, used for range expressions.
+		 * @return			the value of the expression at each point.
+		 */
+		public double[] evaluateBranch(FlightDataBranch data, double timeStep) {
+			double[] result = new double[data.getLength()];
+			FlightDataType[] types = data.getTypes();
+			if (types.length == 0) {
+				Arrays.fill(result, evaluateDouble(data, timeStep));
+				return result;
+			}
+			
+			double[][] columns = new double[types.length][];
+			for (int j = 0; j < types.length; j++) {
+				columns[j] = data.getValues(types[j]);
+			}
+			FlightDataBranch replay = new FlightDataBranch(data.getBranchName(), types);
+			for (int i = 0; i < result.length; i++) {
+				replay.addPoint();
+				for (int j = 0; j < types.length; j++) {
+					replay.setValue(types[j], columns[j][i]);
+				}
+				result[i] = evaluateDouble(replay, timeStep);
+			}
+			return result;
+		}
+	}
+	
 	private OpenRocketDocument doc;
 	private String name, symbol, unit;
 	
@@ -373,7 +449,10 @@ public class CustomExpression implements Cloneable {
 	}
 	
 	public Double evaluateDouble(SimulationStatus status) {
-		double result = evaluate(status).getDoubleValue();
+		return compile().evaluateDouble(status);
+	}
+	
+	private static double toDouble(double result) {
 		if (result == Double.NEGATIVE_INFINITY || result == Double.POSITIVE_INFINITY)
 			result = Double.NaN;
 		return result;
@@ -404,37 +483,131 @@ public class CustomExpression implements Cloneable {
 		return calc;
 	}
 	
+	/*
+	 * Binds the variables of a built expression to the flight data types of the document.
+	 */
+	protected VariableBinding bindVariables(Calculable calc) {
+		return new VariableBinding(calc, doc.getFlightDataTypes());
+	}
+	
 	/*
 	 * Evaluate the expression using the last variable values from the simulation status.
-	 * Returns NaN on any error.
+	 * Returns NaN on any error.  When evaluating repeatedly, use compile() instead.
 	 */
 	public Variable evaluate(SimulationStatus status) {
+		return compile().evaluate(status);
+	}
+	
+	/*
+	 * Compiles the expression and any sub expressions for evaluating repeatedly during a simulation.
+	 * Only the variables referenced by the expression are set on each evaluation.  Expressions
+	 * without range sub expressions are compiled for evaluation on primitive doubles.
+	 */
+	public Evaluator compile() {
 		
-		Calculable calc = buildExpression(builder);
+		final Calculable calc = buildExpression(builder);
 		if (calc == null) {
-			return new Variable("Unknown");
+			return new Evaluator() {
+				@Override
+				public Variable evaluate(FlightDataBranch data, double timeStep) {
+					return new Variable("Unknown");
+				}
+			};
 		}
 		
-		// Evaluate any sub expressions and set associated variables in the calculable
+		final VariableBinding binding = bindVariables(calc);
+		final List<Evaluator> subEvaluators = new ArrayList<Evaluator>();
 		for (CustomExpression expr : this.subExpressions) {
-			calc.setVariable(expr.evaluate(status));
+			subEvaluators.add(expr.compile());
 		}
 		
-		// Set all the built-in variables. Strictly we surely won't need all of them
-		// Going through and checking them to include only the ones used *might* give a speedup
-		for (FlightDataType type : status.getFlightData().getTypes()) {
-			double value = status.getFlightData().getLast(type);
-			calc.setVariable(new Variable(type.getSymbol(), value));
+		Evaluator evaluator = compileDouble(calc, binding, subEvaluators);
+		if (evaluator != null) {
+			return evaluator;
 		}
 		
-		double result = Double.NaN;
-		try {
-			result = calc.calculate().getDoubleValue();
-		} catch (java.util.EmptyStackException e) {
-			log.info(Markers.USER_MARKER, "Unable to calculate expression " + this.expression + " due to empty stack exception");
+		return new Evaluator() {
+			@Override
+			public Variable evaluate(FlightDataBranch data, double timeStep) {
+				// Evaluate any sub expressions and set associated variables in the calculable
+				for (Evaluator sub : subEvaluators) {
+					calc.setVariable(sub.evaluate(data, timeStep));
+				}
+				
+				binding.setVariables(calc, data);
+				
+				double result = Double.NaN;
+				try {
+					result = calc.calculate().getDoubleValue();
+				} catch (java.util.EmptyStackException e) {
+					log.info(Markers.USER_MARKER, "Unable to calculate expression " + expression + " due to empty stack exception");
+				}
+				
+				return new Variable(name, result);
+			}
+		};
+	}
+	
+	/*
+	 * Compiles the expression for evaluation on primitive doubles, the values of the sub expressions
+	 * following the flight data values.  Returns null if the expression cannot be compiled.
+	 */
+	private Evaluator compileDouble(Calculable calc, final VariableBinding binding, final List<Evaluator> subEvaluators) {
+		for (CustomExpression expr : this.subExpressions) {
+			if (expr instanceof RangeExpression) {
+				return null;
+			}
 		}
 		
-		return new Variable(name, result);
+		List<String> names = new ArrayList<String>(binding.getSymbols());
+		for (CustomExpression expr : this.subExpressions) {
+			names.add(expr.hash());
+		}
+		final DoubleExpression compiled = calc.compile(names.toArray(new String[0]));
+		if (compiled == null) {
+			return null;
+		}
+		
+		final double[] values = new double[names.size()];
+		final int subStart = binding.getSymbols().size();
+		return new Evaluator() {
+			@Override
+			public Variable evaluate(FlightDataBranch data, double timeStep) {
+				return new Variable(name, calculate(data, timeStep));
+			}
+			
+			@Override
+			public double evaluateDouble(FlightDataBranch data, double timeStep) {
+				return toDouble(calculate(data, timeStep));
+			}
+			
+			@Override
+			public double[] evaluateBranch(FlightDataBranch data, double timeStep) {
+				if (!subEvaluators.isEmpty()) {
+					return super.evaluateBranch(data, timeStep);
+				}
+				
+				// Evaluate in a single pass over the columns of the variables
+				double[][] columns = binding.getColumns(data);
+				double[] point = new double[columns.length];
+				double[] result = new double[data.getLength()];
+				for (int i = 0; i < result.length; i++) {
+					for (int j = 0; j < columns.length; j++) {
+						point[j] = columns[j][i];
+					}
+					result[i] = toDouble(compiled.evaluate(point));
+				}
+				return result;
+			}
+			
+			private double calculate(FlightDataBranch data, double timeStep) {
+				for (int i = 0; i < subEvaluators.size(); i++) {
+					values[subStart + i] = subEvaluators.get(i).evaluate(data, timeStep).getDoubleValue();
+				}
+				binding.getValues(data, values);
+				return compiled.evaluate(values);
+			}
+		};
 	}
 	
 	/*
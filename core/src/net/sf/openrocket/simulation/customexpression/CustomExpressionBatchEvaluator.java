@@ -0,0 +1,142 @@
+package net.sf.openrocket.simulation.customexpression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.util.BugException;
+
+/**
+ * Evaluates custom expressions over the flight data of finished simulations and adds
+ * their values to the flight data branches, so expressions added after a simulation
+ * was run do not require running it again.
+ * <p>
+ * Each expression is evaluated at every point of a branch with the values it would
+ * have had when evaluated during the simulation.  Expressions of doubles are evaluated
+ * in a single pass over the recorded columns, while index and range expressions are
+ * evaluated by replaying the points of the branch.  The expressions are evaluated in
+ * order, so an expression may refer to the values of the expressions before it.
+ */
+public class CustomExpressionBatchEvaluator {
+
+	private final List<CustomExpression> expressions;
+
+
+	/**
+	 * Sole constructor.
+	 *
+	 * @param expressions	the expressions to evaluate.
+	 */
+	public CustomExpressionBatchEvaluator(List<CustomExpression> expressions) {
+		this.expressions = new ArrayList<CustomExpression>(expressions);
+	}
+
+
+	/**
+	 * Evaluate the expressions over a branch and set their values in the branch.  A
+	 * branch of flight data loaded on demand must be kept in memory using
+	 * {@link FlightData#loadBranches()} first.
+	 *
+	 * @param branch	the flight data branch, which may be immutable.
+	 * @param timeStep	the time step of the simulation, used for range expressions.
+	 */
+	public void evaluate(FlightDataBranch branch, double timeStep) {
+		evaluate(branch, timeStep, compile());
+	}
+
+	/**
+	 * Compile the expressions.  Building an expression is not thread-safe and a compiled
+	 * expression keeps the values of its variables, so the expressions are compiled by
+	 * the calling thread separately for each branch.
+	 */
+	private List<CustomExpression.Evaluator> compile() {
+		List<CustomExpression.Evaluator> evaluators = new ArrayList<CustomExpression.Evaluator>();
+		for (CustomExpression expression : expressions) {
+			evaluators.add(expression.compile());
+		}
+		return evaluators;
+	}
+
+	private void evaluate(FlightDataBranch branch, double timeStep, List<CustomExpression.Evaluator> evaluators) {
+		for (int i = 0; i < expressions.size(); i++) {
+			double[] values = evaluators.get(i).evaluateBranch(branch, timeStep);
+			branch.setValues(expressions.get(i).getType(), values);
+		}
+	}
+
+	/**
+	 * Evaluate the expressions over all branches of the simulated data of simulations.
+	 * The branches are evaluated in parallel and kept in memory afterwards, and
+	 * simulations without simulated data are skipped.  The flight data must not be
+	 * read by other threads until this method returns.
+	 *
+	 * @param simulations	the simulations.
+	 * @param threadCount	the number of branches to evaluate simultaneously.
+	 * @throws InterruptedException	if the current thread is interrupted while waiting.
+	 * @throws IOException	if the stored simulation data cannot be loaded.
+	 */
+	public void evaluate(List<Simulation> simulations, int threadCount) throws InterruptedException, IOException {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("threadCount=" + threadCount);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = factory.newThread(r);
+				t.setName("CustomExpressionBatchEvaluator-" + t.getName());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (Simulation simulation : simulations) {
+				FlightData data = simulation.getSimulatedData();
+				if (data == null) {
+					continue;
+				}
+				// The values set in branches evicted from memory would be lost
+				data.loadBranches();
+				final double timeStep = simulation.getOptions().getTimeStep();
+				for (int i = 0; i < data.getBranchCount(); i++) {
+					final FlightDataBranch branch = data.getBranch(i);
+					final List<CustomExpression.Evaluator> evaluators = compile();
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							evaluate(branch, timeStep, evaluators);
+						}
+					}));
+				}
+			}
+
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else {
+						throw new BugException("Unexpected exception while evaluating expressions", cause);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -3,6 +3,7 @@ package net.sf.openrocket.simulation.customexpression;
 import java.util.List;
 
 import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
 import net.sf.openrocket.simulation.SimulationStatus;
 import net.sf.openrocket.simulation.exception.SimulationException;
 import net.sf.openrocket.simulation.listeners.AbstractSimulationListener;
@@ -14,6 +15,8 @@ public class CustomExpressionSimulationListener extends AbstractSimulationListen
 	
 	private static final Logger log = LoggerFactory.getLogger(CustomExpressionSimulationListener.class);
 	private final List<CustomExpression> expressions;
+	private CustomExpression.Evaluator[] evaluators = null;
+	private FlightDataType[] types = null;
 	
 	public CustomExpressionSimulationListener(List<CustomExpression> expressions) {
 		super();
@@ -21,16 +24,30 @@ public class CustomExpressionSimulationListener extends AbstractSimulationListen
 	}
 	
 	@Override
-	public void postStep(SimulationStatus status) throws SimulationException {
+	public void startSimulation(SimulationStatus status) throws SimulationException {
 		if (expressions == null || expressions.size() == 0) {
 			return;
 		}
+		// Compile the expressions once for the whole simulation
+		evaluators = new CustomExpression.Evaluator[expressions.size()];
+		types = new FlightDataType[expressions.size()];
+		for (int i = 0; i < evaluators.length; i++) {
+			evaluators[i] = expressions.get(i).compile();
+			types[i] = expressions.get(i).getType();
+		}
+	}
+	
+	@Override
+	public void postStep(SimulationStatus status) throws SimulationException {
+		if (evaluators == null) {
+			return;
+		}
 		// Calculate values for custom expressions
 		FlightDataBranch data = status.getFlightData();
-		for (CustomExpression expression : expressions) {
-			double value = expression.evaluateDouble(status);
-			//log.debug("Setting value of custom expression "+expression.toString()+" = "+value);
-			data.setValue(expression.getType(), value);
+		for (int i = 0; i < evaluators.length; i++) {
+			double value = evaluators[i].evaluateDouble(status);
+			//log.debug("Setting value of custom expression "+expressions.get(i).toString()+" = "+value);
+			data.setValue(types[i], value);
 		}
 	}
 	
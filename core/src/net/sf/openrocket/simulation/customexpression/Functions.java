@@ -185,6 +185,15 @@ public class Functions {
 		    	}
 		    	return new Variable("double LCLIP result, ", val);
 			}
+			
+			@Override
+			public double applyDoubleFunction(double[] args) {
+				double val = args[0];
+				if (val < args[1]) {
+					val = args[1];
+				}
+				return val;
+			}
 		};
 		allFunctions.add(lclipFn);
 		
@@ -203,6 +212,15 @@ public class Functions {
 		    	}
 		    	return new Variable("double UCLIP result, ", val);
 			}
+			
+			@Override
+			public double applyDoubleFunction(double[] args) {
+				double val = args[0];
+				if (val > args[1]) {
+					val = args[1];
+				}
+				return val;
+			}
 		};
 		allFunctions.add(uclipFn);
 		
@@ -1,7 +1,5 @@
 package net.sf.openrocket.simulation.customexpression;
 
-import java.util.List;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,8 +8,8 @@ import de.congrace.exp4j.Variable;
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.logging.Markers;
 import net.sf.openrocket.simulation.customexpression.CustomExpression;
+import net.sf.openrocket.simulation.FlightDataBranch;
 import net.sf.openrocket.simulation.FlightDataType;
-import net.sf.openrocket.simulation.SimulationStatus;
 import net.sf.openrocket.util.LinearInterpolator;
 
 public class IndexExpression extends CustomExpression {
@@ -28,37 +26,40 @@ public class IndexExpression extends CustomExpression {
 	}
 	
 	@Override
-	public Variable evaluate(SimulationStatus status){
-		Calculable calc = buildExpression();
-		if (calc == null){
-			return new Variable("Unknown");
+	public Evaluator compile() {
+		final Calculable calc = buildExpression();
+		if (calc == null) {
+			return new Evaluator() {
+				@Override
+				public Variable evaluate(FlightDataBranch data, double timeStep) {
+					return new Variable(hash());
+				}
+			};
 		}
+		final VariableBinding binding = bindVariables(calc);
 		
-		// From the given datatype, get the time and function values and make an interpolator
-
 		//Note: must get in a way that flight data system will figure out units. Otherwise there will be a type conflict when we get the new data.
-		FlightDataType myType = FlightDataType.getType(null, getSymbol(), null);  
-				
-		List<Double> data = status.getFlightData().get(myType);
-		List<Double> time = status.getFlightData().get(FlightDataType.TYPE_TIME);
-		LinearInterpolator interp = new LinearInterpolator(time, data); 
-		
-		// Set the variables in the expression to evaluate
-		for (FlightDataType etype : status.getFlightData().getTypes()){
-			double value = status.getFlightData().getLast(etype); 
-			calc.setVariable( new Variable(etype.getSymbol(), value ) );
-		}
+		final FlightDataType myType = FlightDataType.getType(null, getSymbol(), null);
+		final BranchInterpolator interpolator = new BranchInterpolator(myType);
 		
-		// Evaluate this expression to get the t value
-		//System.out.println("Evaluating expression to get t value "+this.getExpressionString());
-		try{
-			double tvalue = calc.calculate().getDoubleValue();
-			//System.out.println("t = "+tvalue);
-			return new Variable(hash(), interp.getValue( tvalue ) );
-		}
-		catch (java.util.EmptyStackException e){
-			log.info(Markers.USER_MARKER, "Unable to calculate time index for indexed expression "+getExpressionString()+" due to empty stack exception");
-			return new Variable("Unknown");
-		}
+		return new Evaluator() {
+			@Override
+			public Variable evaluate(FlightDataBranch data, double timeStep) {
+				// From the given datatype, get the interpolator of the function values over time
+				LinearInterpolator interp = interpolator.get(data);
+				
+				// Set the variables in the expression to evaluate
+				binding.setVariables(calc, data);
+				
+				// Evaluate this expression to get the t value
+				try {
+					double tvalue = calc.calculate().getDoubleValue();
+					return new Variable(hash(), interp.getValue(tvalue));
+				} catch (java.util.EmptyStackException e) {
+					log.info(Markers.USER_MARKER, "Unable to calculate time index for indexed expression " + getExpressionString() + " due to empty stack exception");
+					return new Variable(hash());
+				}
+			}
+		};
 	}
 }
@@ -15,8 +15,8 @@ import de.congrace.exp4j.Variable;
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.logging.Markers;
 import net.sf.openrocket.simulation.customexpression.CustomExpression;
+import net.sf.openrocket.simulation.FlightDataBranch;
 import net.sf.openrocket.simulation.FlightDataType;
-import net.sf.openrocket.simulation.SimulationStatus;
 import net.sf.openrocket.util.ArrayUtils;
 import net.sf.openrocket.util.LinearInterpolator;
 import net.sf.openrocket.util.MathUtil;
@@ -59,62 +59,63 @@ public class RangeExpression extends CustomExpression {
 	}
 	
 	@Override
-	public Variable evaluate(SimulationStatus status){
+	public Evaluator compile() {
 		
-		Calculable startCalc = buildExpression(startBuilder);
-		Calculable endCalc = buildExpression(endBuilder);
-		if (startCalc == null || endCalc == null){
-			return new Variable("Unknown");
+		final Calculable startCalc = buildExpression(startBuilder);
+		final Calculable endCalc = buildExpression(endBuilder);
+		if (startCalc == null || endCalc == null) {
+			return new Evaluator() {
+				@Override
+				public Variable evaluate(FlightDataBranch data, double timeStep) {
+					return new Variable(hash());
+				}
+			};
 		}
+		final VariableBinding startBinding = bindVariables(startCalc);
+		final VariableBinding endBinding = bindVariables(endCalc);
 		
-		// Set the variables in the start and end calculators
-		for (FlightDataType type : status.getFlightData().getTypes()){
-			double value = status.getFlightData().getLast(type); 
-			startCalc.setVariable( new Variable(type.getSymbol(), value ) );
-			endCalc.setVariable( new Variable(type.getSymbol(), value ) );
-		}		
-		
-		// From the given datatype, get the time and function values and make an interpolator
-
 		//Note: must get in a way that flight data system will figure out units. Otherwise there will be a type conflict when we get the new data.
-		FlightDataType type = FlightDataType.getType(null, getSymbol(), null);
+		final FlightDataType type = FlightDataType.getType(null, getSymbol(), null);
+		final BranchInterpolator interpolator = new BranchInterpolator(type);
 		
-		List<Double> data = status.getFlightData().get(type);
-		List<Double> time = status.getFlightData().get(FlightDataType.TYPE_TIME);
-		LinearInterpolator interp = new LinearInterpolator(time, data); 
-		
-		// Evaluate the expression to get the start and end of the range
-		double startTime, endTime;
-		try{
-			startTime = startCalc.calculate().getDoubleValue();
-			startTime = MathUtil.clamp(startTime, 0, Double.MAX_VALUE);
-			
-			endTime = endCalc.calculate().getDoubleValue();
-			endTime = MathUtil.clamp(endTime, 0, time.get(time.size()-1));
-		}
-		catch (java.util.EmptyStackException e){
-			log.info(Markers.USER_MARKER, "Unable to calculate time index for range expression "+getSymbol()+" due to empty stack exception");
-			return new Variable("Unknown");
-		}
-		
-		// generate an array representing the range
-		double step = status.getSimulationConditions().getSimulation().getOptions().getTimeStep();
-		double[] t = ArrayUtils.range(startTime, endTime,  step);
-		double[] y = new double[t.length]; 
-		int i = 0;
-		for (double tval : t){
-			y[i] = interp.getValue( tval );
-			i++;
-		}
+		return new Evaluator() {
+			@Override
+			public Variable evaluate(FlightDataBranch data, double timeStep) {
+				// Set the variables in the start and end calculators
+				startBinding.setVariables(startCalc, data);
+				endBinding.setVariables(endCalc, data);
 				
-		Variable result;
-		if (y.length == 0){
-			result = new Variable("Unknown");
-		}
-		else {
-			result = new Variable(hash(), y, startTime, step);
-		}
-		
-		return result;
+				// From the given datatype, get the interpolator of the function values over time
+				List<Double> time = data.get(FlightDataType.TYPE_TIME);
+				LinearInterpolator interp = interpolator.get(data);
+				
+				// Evaluate the expression to get the start and end of the range
+				double startTime, endTime;
+				try {
+					startTime = startCalc.calculate().getDoubleValue();
+					startTime = MathUtil.clamp(startTime, 0, Double.MAX_VALUE);
+					
+					endTime = endCalc.calculate().getDoubleValue();
+					endTime = MathUtil.clamp(endTime, 0, time.get(time.size() - 1));
+				} catch (java.util.EmptyStackException e) {
+					log.info(Markers.USER_MARKER, "Unable to calculate time index for range expression " + getSymbol() + " due to empty stack exception");
+					return new Variable(hash());
+				}
+				
+				// generate an array representing the range
+				double[] t = ArrayUtils.range(startTime, endTime, timeStep);
+				double[] y = new double[t.length];
+				int i = 0;
+				for (double tval : t) {
+					y[i] = interp.getValue(tval);
+					i++;
+				}
+				
+				if (y.length == 0) {
+					return new Variable(hash());
+				}
+				return new Variable(hash(), y, startTime, timeStep);
+			}
+		};
 	}
 }
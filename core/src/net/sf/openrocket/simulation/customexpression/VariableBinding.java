@@ -0,0 +1,100 @@
+package net.sf.openrocket.simulation.customexpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import de.congrace.exp4j.Calculable;
+import de.congrace.exp4j.Variable;
+
+/**
+ * The flight data types of the variables referenced by a built expression.  The types
+ * are resolved from the variable symbols once, so that setting the variables for each
+ * evaluation does not depend on the number of available flight data types.
+ */
+class VariableBinding {
+
+	private final String[] symbols;
+	private final FlightDataType[] types;
+
+	/**
+	 * Bind the variables of an expression.  Variables that are not the symbol of any of
+	 * the available types, such as the variables of sub expressions, are not bound.
+	 *
+	 * @param calc		the built expression.
+	 * @param available	the available flight data types.
+	 */
+	public VariableBinding(Calculable calc, Collection<FlightDataType> available) {
+		Map<String, FlightDataType> bySymbol = new HashMap<String, FlightDataType>();
+		for (FlightDataType type : available) {
+			bySymbol.put(type.getSymbol(), type);
+		}
+
+		List<String> symbolList = new ArrayList<String>();
+		List<FlightDataType> typeList = new ArrayList<FlightDataType>();
+		for (String symbol : calc.getVariableNames()) {
+			FlightDataType type = bySymbol.get(symbol);
+			if (type != null) {
+				symbolList.add(symbol);
+				typeList.add(type);
+			}
+		}
+		symbols = symbolList.toArray(new String[0]);
+		types = typeList.toArray(new FlightDataType[0]);
+	}
+
+	/**
+	 * Return the symbols of the bound variables.
+	 */
+	public List<String> getSymbols() {
+		return Arrays.asList(symbols);
+	}
+
+	/**
+	 * Store the last values of the bound variables in an array, in the order of
+	 * {@link #getSymbols()}.
+	 *
+	 * @param data		the flight data.
+	 * @param values	the array to store the values in.
+	 */
+	public void getValues(FlightDataBranch data, double[] values) {
+		for (int i = 0; i < types.length; i++) {
+			values[i] = data.getLast(types[i]);
+		}
+	}
+
+	/**
+	 * Return the values of the bound variables at every point of the flight data, in the
+	 * order of {@link #getSymbols()}.  The values of variables not recorded are NaN.
+	 *
+	 * @param data	the flight data.
+	 */
+	public double[][] getColumns(FlightDataBranch data) {
+		double[][] columns = new double[types.length][];
+		for (int i = 0; i < types.length; i++) {
+			columns[i] = data.getValues(types[i]);
+			if (columns[i] == null) {
+				columns[i] = new double[data.getLength()];
+				Arrays.fill(columns[i], Double.NaN);
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Set the bound variables of the expression to the last values of the flight data.
+	 *
+	 * @param calc	the expression the binding was created for.
+	 * @param data	the flight data.
+	 */
+	public void setVariables(Calculable calc, FlightDataBranch data) {
+		for (int i = 0; i < symbols.length; i++) {
+			calc.setVariable(new Variable(symbols[i], data.getLast(types[i])));
+		}
+	}
+}
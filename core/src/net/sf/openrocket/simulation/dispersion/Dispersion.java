@@ -0,0 +1,152 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import java.util.Random;
+
+/**
+ * The declared dispersions of the simulation parameters of a Monte-Carlo analysis.
+ * Each parameter is perturbed by a value drawn from its distribution, which by
+ * default is {@link Distribution#NONE}.
+ * <p>
+ * The perturbations of a single run depend only on the run seed, and are always
+ * drawn in the same order.  A run can therefore be reproduced independent of how
+ * the runs were distributed between threads.
+ */
+public class Dispersion {
+
+	private Distribution launchRodAngle = Distribution.NONE;
+	private Distribution launchRodDirection = Distribution.NONE;
+	private Distribution windSpeed = Distribution.NONE;
+	private Distribution windDirection = Distribution.NONE;
+	private Distribution motorImpulse = Distribution.NONE;
+	private Distribution mass = Distribution.NONE;
+	private Distribution cgOffset = Distribution.NONE;
+
+
+	/**
+	 * Return the distribution of the offset added to the launch rod angle (rad).
+	 */
+	public Distribution getLaunchRodAngle() {
+		return launchRodAngle;
+	}
+
+	public void setLaunchRodAngle(Distribution launchRodAngle) {
+		this.launchRodAngle = check(launchRodAngle);
+	}
+
+	/**
+	 * Return the distribution of the offset added to the launch rod direction (rad).
+	 * The offset has no effect when launching into the wind, as the launch rod
+	 * direction then follows the wind direction.
+	 */
+	public Distribution getLaunchRodDirection() {
+		return launchRodDirection;
+	}
+
+	public void setLaunchRodDirection(Distribution launchRodDirection) {
+		this.launchRodDirection = check(launchRodDirection);
+	}
+
+	/**
+	 * Return the distribution of the offset added to the average wind speed (m/s).
+	 */
+	public Distribution getWindSpeed() {
+		return windSpeed;
+	}
+
+	public void setWindSpeed(Distribution windSpeed) {
+		this.windSpeed = check(windSpeed);
+	}
+
+	/**
+	 * Return the distribution of the offset added to the wind direction (rad).
+	 */
+	public Distribution getWindDirection() {
+		return windDirection;
+	}
+
+	public void setWindDirection(Distribution windDirection) {
+		this.windDirection = check(windDirection);
+	}
+
+	/**
+	 * Return the distribution of the relative error of the motor thrust.  The thrust
+	 * of all motors is multiplied by one plus the drawn value, which scales the total
+	 * impulse without changing the burn time.
+	 */
+	public Distribution getMotorImpulse() {
+		return motorImpulse;
+	}
+
+	public void setMotorImpulse(Distribution motorImpulse) {
+		this.motorImpulse = check(motorImpulse);
+	}
+
+	/**
+	 * Return the distribution of the relative error of the rocket mass.  The mass and
+	 * moments of inertia of the whole rocket, including the motors, are multiplied by
+	 * one plus the drawn value.
+	 */
+	public Distribution getMass() {
+		return mass;
+	}
+
+	public void setMass(Distribution mass) {
+		this.mass = check(mass);
+	}
+
+	/**
+	 * Return the distribution of the offset of the CG along the rocket axis (m).
+	 */
+	public Distribution getCGOffset() {
+		return cgOffset;
+	}
+
+	public void setCGOffset(Distribution cgOffset) {
+		this.cgOffset = check(cgOffset);
+	}
+
+
+	/**
+	 * Draw the perturbations of a single run.
+	 *
+	 * @param seed	the seed of the run.
+	 * @return		the perturbations of the run.
+	 */
+	public DispersionSample sample(int seed) {
+		Random random = new Random(seed);
+		return new DispersionSample(seed,
+				launchRodAngle.sample(random),
+				launchRodDirection.sample(random),
+				windSpeed.sample(random),
+				windDirection.sample(random),
+				motorImpulse.sample(random),
+				mass.sample(random),
+				cgOffset.sample(random));
+	}
+
+
+	/**
+	 * Return the seed of a single run of a Monte-Carlo analysis.  The run seeds
+	 * are well mixed even for consecutive base seeds and run numbers.
+	 *
+	 * @param seed	the base seed of the analysis.
+	 * @param run	the number of the run.
+	 * @return		the seed of the run.
+	 */
+	public static int getRunSeed(long seed, int run) {
+		// SplitMix64 finalizer
+		long z = seed + (run + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+		return (int) (z ^ (z >>> 32));
+	}
+
+
+	private static Distribution check(Distribution distribution) {
+		if (distribution == null) {
+			throw new IllegalArgumentException("distribution is null");
+		}
+		return distribution;
+	}
+}
@@ -0,0 +1,155 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sf.openrocket.aerodynamics.AerodynamicTable;
+import net.sf.openrocket.aerodynamics.TabulatedAerodynamicCalculator;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.simulation.BatchSimulationRunner;
+import net.sf.openrocket.simulation.RecordingPolicy;
+import net.sf.openrocket.simulation.SimulationConditions;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.simulation.extension.SimulationExtension;
+import net.sf.openrocket.simulation.listeners.SimulationListener;
+
+/**
+ * Runs a Monte-Carlo analysis of a simulation.  Each run perturbs the simulation
+ * options and the rocket according to a {@link Dispersion}, using a seed derived from
+ * the base seed of the analysis and the run number.  The results of an analysis are
+ * therefore reproducible, independent of the number of threads used.
+ * <p>
+ * The runs are simulated in parallel using a {@link BatchSimulationRunner}, recording
+ * only the summary flight data.  The conditions of each run are created just before
+ * it is simulated, and its flight data is reduced to a few summary values as soon as
+ * the run completes, so the memory used does not grow with the number of runs.
+ * The summaries are added to the statistics in the order of the runs, so that
+ * the statistics do not depend on the order in which the runs complete.
+ */
+public class DispersionRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(DispersionRunner.class);
+
+	private final Simulation simulation;
+	private final Dispersion dispersion;
+	private AerodynamicTable aerodynamicTable = null;
+
+
+	/**
+	 * Sole constructor.
+	 *
+	 * @param simulation	the nominal simulation, which is not modified.
+	 * @param dispersion	the dispersions of the simulation parameters.
+	 */
+	public DispersionRunner(Simulation simulation, Dispersion dispersion) {
+		this.simulation = simulation;
+		this.dispersion = dispersion;
+	}
+
+
+	/**
+	 * Set the table of aerodynamic coefficients used by the runs, or <code>null</code> to
+	 * calculate the coefficients during each run.  The dispersions do not change the
+	 * aerodynamics of the rocket, so a single table built for the configuration of the
+	 * simulation serves all runs.
+	 */
+	public void setAerodynamicTable(AerodynamicTable table) {
+		this.aerodynamicTable = table;
+	}
+	
+	
+	/**
+	 * Return the perturbations of a single run.
+	 *
+	 * @param seed	the base seed of the analysis.
+	 * @param run	the number of the run.
+	 */
+	public DispersionSample getSample(long seed, int run) {
+		return dispersion.sample(Dispersion.getRunSeed(seed, run));
+	}
+
+	/**
+	 * Create the simulation conditions of a single run.  This can be used to
+	 * reproduce a single run of an analysis.
+	 *
+	 * @param seed	the base seed of the analysis.
+	 * @param run	the number of the run.
+	 * @return		new simulation conditions of the run.
+	 * @throws SimulationException	if a simulation extension fails to initialize.
+	 */
+	public SimulationConditions createConditions(long seed, int run) throws SimulationException {
+		DispersionSample sample = getSample(seed, run);
+
+		SimulationConditions conditions = sample.apply(simulation.getOptions()).toSimulationConditions();
+		conditions.setSimulation(simulation);
+		if (aerodynamicTable != null) {
+			conditions.setAerodynamicCalculator(new TabulatedAerodynamicCalculator(aerodynamicTable));
+		}
+		SimulationListener listener = sample.getListener();
+		if (listener != null) {
+			conditions.getSimulationListenerList().add(listener);
+		}
+		for (SimulationExtension extension : simulation.getSimulationExtensions()) {
+			extension.initialize(conditions);
+		}
+		return conditions;
+	}
+
+
+	/**
+	 * Run the analysis and wait for it to complete.  If the current thread is
+	 * interrupted, the remaining runs are cancelled.  Runs whose simulation extensions
+	 * fail to initialize are counted as failures.
+	 *
+	 * @param runner	the runner used to simulate the runs in parallel.
+	 * @param count		the number of runs.
+	 * @param seed		the base seed of the analysis.
+	 * @return			the statistics of the runs.
+	 * @throws InterruptedException	if the current thread was interrupted.
+	 */
+	public DispersionStatistics run(BatchSimulationRunner runner, int count, final long seed)
+			throws InterruptedException {
+		DispersionStatistics statistics = new DispersionStatistics();
+		BatchSimulationRunner.Batch batch = runner.simulateConditions(count, new BatchSimulationRunner.ConditionsFactory() {
+			@Override
+			public SimulationConditions createConditions(int index) throws SimulationException {
+				SimulationConditions c = DispersionRunner.this.createConditions(seed, index);
+				c.setRecordingPolicy(RecordingPolicy.SUMMARY);
+				return c;
+			}
+		});
+		try {
+			// Summaries of runs completed before some earlier run, a null value marks a failure
+			Map<Integer, double[]> pending = new HashMap<Integer, double[]>();
+			int next = 0;
+
+			BatchSimulationRunner.Result result;
+			while ((result = batch.take()) != null) {
+				double[] summary = null;
+				if (result.isSuccessful()) {
+					summary = DispersionStatistics.summarize(result.getFlightData());
+				} else {
+					log.info("Run " + result.getIndex() + " of dispersion analysis failed: " + result.getException());
+				}
+				pending.put(result.getIndex(), summary);
+
+				while (pending.containsKey(next)) {
+					summary = pending.remove(next);
+					if (summary != null) {
+						statistics.add(summary);
+					} else {
+						statistics.addFailure();
+					}
+					next++;
+				}
+			}
+		} catch (InterruptedException e) {
+			batch.cancel();
+			throw e;
+		}
+		return statistics;
+	}
+}
@@ -0,0 +1,131 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import net.sf.openrocket.masscalc.RigidBody;
+import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.simulation.SimulationStatus;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.simulation.listeners.AbstractSimulationListener;
+import net.sf.openrocket.simulation.listeners.SimulationListener;
+import net.sf.openrocket.util.Coordinate;
+import net.sf.openrocket.util.MathUtil;
+
+/**
+ * The perturbations drawn for a single run of a Monte-Carlo analysis.
+ * Instances are immutable.
+ *
+ * @see Dispersion#sample(int)
+ */
+public class DispersionSample {
+
+	private final int seed;
+	private final double launchRodAngle;
+	private final double launchRodDirection;
+	private final double windSpeed;
+	private final double windDirection;
+	private final double motorImpulse;
+	private final double mass;
+	private final double cgOffset;
+
+	DispersionSample(int seed, double launchRodAngle, double launchRodDirection, double windSpeed,
+			double windDirection, double motorImpulse, double mass, double cgOffset) {
+		this.seed = seed;
+		this.launchRodAngle = launchRodAngle;
+		this.launchRodDirection = launchRodDirection;
+		this.windSpeed = windSpeed;
+		this.windDirection = windDirection;
+		this.motorImpulse = motorImpulse;
+		this.mass = mass;
+		this.cgOffset = cgOffset;
+	}
+
+
+	public int getSeed() {
+		return seed;
+	}
+
+	public double getLaunchRodAngle() {
+		return launchRodAngle;
+	}
+
+	public double getLaunchRodDirection() {
+		return launchRodDirection;
+	}
+
+	public double getWindSpeed() {
+		return windSpeed;
+	}
+
+	public double getWindDirection() {
+		return windDirection;
+	}
+
+	public double getMotorImpulse() {
+		return motorImpulse;
+	}
+
+	public double getMass() {
+		return mass;
+	}
+
+	public double getCGOffset() {
+		return cgOffset;
+	}
+
+
+	/**
+	 * Return a copy of the nominal options with the launch and wind perturbations
+	 * of this sample applied.  The random seed of the copy is the seed of this sample.
+	 *
+	 * @param nominal	the nominal simulation options, which are not modified.
+	 * @return			the perturbed options.
+	 */
+	public SimulationOptions apply(SimulationOptions nominal) {
+		SimulationOptions options = nominal.clone();
+		options.setRandomSeed(seed);
+		options.setLaunchRodAngle(options.getLaunchRodAngle() + launchRodAngle);
+		options.setWindSpeedAverage(options.getWindSpeedAverage() + windSpeed);
+		options.setWindDirection(options.getWindDirection() + windDirection);
+		options.setLaunchRodDirection(options.getLaunchRodDirection() + launchRodDirection);
+		return options;
+	}
+
+
+	/**
+	 * Return a simulation listener applying the thrust and mass perturbations of this sample,
+	 * or <code>null</code> if this sample does not perturb them.
+	 */
+	public SimulationListener getListener() {
+		if (motorImpulse == 0 && mass == 0 && cgOffset == 0) {
+			return null;
+		}
+		return new DispersionListener();
+	}
+
+
+	private class DispersionListener extends AbstractSimulationListener {
+
+		@Override
+		public double postSimpleThrustCalculation(SimulationStatus status, double thrust) throws SimulationException {
+			if (motorImpulse == 0) {
+				return Double.NaN;
+			}
+			return thrust * MathUtil.max(1 + motorImpulse, 0);
+		}
+
+		@Override
+		public RigidBody postMassCalculation(SimulationStatus status, RigidBody massData) throws SimulationException {
+			if (mass == 0 && cgOffset == 0) {
+				return null;
+			}
+			double factor = MathUtil.max(1 + mass, 0);
+			Coordinate cm = massData.getCenterOfMass();
+			cm = new Coordinate(cm.x + cgOffset, cm.y, cm.z, cm.weight * factor);
+			return new RigidBody(cm, massData.getIxx() * factor, massData.getIyy() * factor, massData.getIzz() * factor);
+		}
+
+		@Override
+		public boolean isSystemListener() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+
+/**
+ * Statistics of the flights of a Monte-Carlo analysis.  The statistics are updated
+ * incrementally as each flight completes, so the flight data of the individual runs
+ * need not be retained.
+ * <p>
+ * The landing point is the last position of the first flight data branch, which is
+ * the sustainer.  The landing ellipses assume normally distributed landing points.
+ */
+public class DispersionStatistics {
+
+	private final Statistic apogee = new Statistic();
+	private final Statistic maxVelocity = new Statistic();
+	private final Statistic flightTime = new Statistic();
+	private final Statistic groundHitVelocity = new Statistic();
+
+	// Running mean and co-moments of the landing point
+	private int landingCount = 0;
+	private double landingX = 0;
+	private double landingY = 0;
+	private double landingXX = 0;
+	private double landingYY = 0;
+	private double landingXY = 0;
+
+	private int failureCount = 0;
+
+
+	/**
+	 * Add the results of a completed flight.
+	 */
+	public void add(FlightData data) {
+		add(summarize(data));
+	}
+
+	/**
+	 * Return the values of a flight used by the statistics.  The summary is much
+	 * smaller than the flight data, and can be retained until it is added.
+	 */
+	static double[] summarize(FlightData data) {
+		double x = Double.NaN;
+		double y = Double.NaN;
+		if (data.getBranchCount() > 0) {
+			FlightDataBranch branch = data.getBranch(0);
+			x = branch.getLast(FlightDataType.TYPE_POSITION_X);
+			y = branch.getLast(FlightDataType.TYPE_POSITION_Y);
+		}
+		return new double[] { data.getMaxAltitude(), data.getMaxVelocity(), data.getFlightTime(),
+				data.getGroundHitVelocity(), x, y };
+	}
+
+	/**
+	 * Add a flight summarized by {@link #summarize(FlightData)}.
+	 */
+	void add(double[] summary) {
+		apogee.add(summary[0]);
+		maxVelocity.add(summary[1]);
+		flightTime.add(summary[2]);
+		groundHitVelocity.add(summary[3]);
+		if (!Double.isNaN(summary[4]) && !Double.isNaN(summary[5])) {
+			addLandingPoint(summary[4], summary[5]);
+		}
+	}
+
+	/**
+	 * Record a flight that failed to simulate.
+	 */
+	public void addFailure() {
+		failureCount++;
+	}
+
+
+	void addLandingPoint(double x, double y) {
+		landingCount++;
+		double dx = x - landingX;
+		double dy = y - landingY;
+		landingX += dx / landingCount;
+		landingY += dy / landingCount;
+		landingXX += dx * (x - landingX);
+		landingYY += dy * (y - landingY);
+		landingXY += dx * (y - landingY);
+	}
+
+
+	/**
+	 * Return the number of successfully simulated flights.
+	 */
+	public int getCount() {
+		return apogee.getCount();
+	}
+
+	/**
+	 * Return the number of flights that failed to simulate.
+	 */
+	public int getFailureCount() {
+		return failureCount;
+	}
+
+	public Statistic getApogee() {
+		return apogee;
+	}
+
+	public Statistic getMaxVelocity() {
+		return maxVelocity;
+	}
+
+	public Statistic getFlightTime() {
+		return flightTime;
+	}
+
+	public Statistic getGroundHitVelocity() {
+		return groundHitVelocity;
+	}
+
+
+	/**
+	 * Return the ellipse containing the landing points with the specified probability,
+	 * or <code>null</code> if fewer than two landing points have been recorded.
+	 *
+	 * @param probability	the probability of landing within the ellipse, in the range 0...1.
+	 * @return				the landing ellipse, or <code>null</code>.
+	 */
+	public LandingEllipse getLandingEllipse(double probability) {
+		if (!(probability >= 0 && probability < 1)) {
+			throw new IllegalArgumentException("probability=" + probability);
+		}
+		if (landingCount < 2) {
+			return null;
+		}
+
+		double cxx = landingXX / (landingCount - 1);
+		double cyy = landingYY / (landingCount - 1);
+		double cxy = landingXY / (landingCount - 1);
+
+		// Eigenvalues of the covariance matrix are the variances along the principal axes
+		double mean = (cxx + cyy) / 2;
+		double diff = Math.hypot((cxx - cyy) / 2, cxy);
+		double major = mean + diff;
+		double minor = Math.max(mean - diff, 0);
+		double angle = Math.atan2(2 * cxy, cxx - cyy) / 2;
+
+		// Mahalanobis radius containing the probability for a bivariate normal distribution
+		double k = Math.sqrt(-2 * Math.log(1 - probability));
+
+		return new LandingEllipse(landingX, landingY, k * Math.sqrt(major), k * Math.sqrt(minor), angle);
+	}
+
+
+
+	/**
+	 * Running statistics of a single scalar value, computed with Welford's algorithm.
+	 */
+	public static class Statistic {
+		private int count = 0;
+		private double mean = 0;
+		private double m2 = 0;
+		private double min = Double.NaN;
+		private double max = Double.NaN;
+
+		void add(double value) {
+			if (Double.isNaN(value)) {
+				return;
+			}
+			count++;
+			double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+			if (count == 1) {
+				min = value;
+				max = value;
+			} else {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Return the mean, or NaN if no values have been added.
+		 */
+		public double getMean() {
+			return count > 0 ? mean : Double.NaN;
+		}
+
+		/**
+		 * Return the sample standard deviation, or NaN if fewer than two values have been added.
+		 */
+		public double getStandardDeviation() {
+			return count > 1 ? Math.sqrt(m2 / (count - 1)) : Double.NaN;
+		}
+
+		public double getMin() {
+			return min;
+		}
+
+		public double getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "mean=" + getMean() + " stddev=" + getStandardDeviation() + " min=" + min + " max=" + max;
+		}
+	}
+
+
+
+	/**
+	 * An ellipse of landing points.  The angle is the direction of the major axis
+	 * measured from the x axis towards the y axis.
+	 */
+	public static class LandingEllipse {
+		private final double x;
+		private final double y;
+		private final double semiMajorAxis;
+		private final double semiMinorAxis;
+		private final double angle;
+
+		LandingEllipse(double x, double y, double semiMajorAxis, double semiMinorAxis, double angle) {
+			this.x = x;
+			this.y = y;
+			this.semiMajorAxis = semiMajorAxis;
+			this.semiMinorAxis = semiMinorAxis;
+			this.angle = angle;
+		}
+
+		/** Return the x coordinate of the center of the ellipse (m). */
+		public double getX() {
+			return x;
+		}
+
+		/** Return the y coordinate of the center of the ellipse (m). */
+		public double getY() {
+			return y;
+		}
+
+		public double getSemiMajorAxis() {
+			return semiMajorAxis;
+		}
+
+		public double getSemiMinorAxis() {
+			return semiMinorAxis;
+		}
+
+		/** Return the direction of the major axis (rad). */
+		public double getAngle() {
+			return angle;
+		}
+
+		@Override
+		public String toString() {
+			return "LandingEllipse[x=" + x + ", y=" + y + ", a=" + semiMajorAxis + ", b=" + semiMinorAxis +
+					", angle=" + angle + "]";
+		}
+	}
+}
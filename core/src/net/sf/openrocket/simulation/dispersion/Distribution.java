@@ -0,0 +1,120 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import java.util.Random;
+
+/**
+ * A probability distribution from which the perturbation of a simulation
+ * parameter is drawn.  Distributions are immutable.
+ */
+public abstract class Distribution {
+
+	/** A distribution that always returns zero. */
+	public static final Distribution NONE = fixed(0);
+
+
+	/**
+	 * Draw a value from this distribution.
+	 *
+	 * @param random	the random number generator to use.
+	 * @return			the drawn value.
+	 */
+	public abstract double sample(Random random);
+
+	public abstract double getMean();
+
+	public abstract double getStandardDeviation();
+
+
+	/**
+	 * Return a normal distribution.
+	 *
+	 * @param mean		the mean of the distribution.
+	 * @param deviation	the standard deviation of the distribution.
+	 */
+	public static Distribution normal(final double mean, final double deviation) {
+		if (!(deviation >= 0)) {
+			throw new IllegalArgumentException("deviation=" + deviation);
+		}
+		return new Distribution() {
+			@Override
+			public double sample(Random random) {
+				return mean + deviation * random.nextGaussian();
+			}
+
+			@Override
+			public double getMean() {
+				return mean;
+			}
+
+			@Override
+			public double getStandardDeviation() {
+				return deviation;
+			}
+
+			@Override
+			public String toString() {
+				return "Normal(" + mean + ", " + deviation + ")";
+			}
+		};
+	}
+
+	/**
+	 * Return a uniform distribution between the specified limits.
+	 *
+	 * @param min	the lower limit.
+	 * @param max	the upper limit.
+	 */
+	public static Distribution uniform(final double min, final double max) {
+		if (!(min <= max)) {
+			throw new IllegalArgumentException("min=" + min + " max=" + max);
+		}
+		return new Distribution() {
+			@Override
+			public double sample(Random random) {
+				return min + (max - min) * random.nextDouble();
+			}
+
+			@Override
+			public double getMean() {
+				return (min + max) / 2;
+			}
+
+			@Override
+			public double getStandardDeviation() {
+				return (max - min) / Math.sqrt(12);
+			}
+
+			@Override
+			public String toString() {
+				return "Uniform(" + min + ", " + max + ")";
+			}
+		};
+	}
+
+	/**
+	 * Return a distribution that always returns the specified value.
+	 */
+	public static Distribution fixed(final double value) {
+		return new Distribution() {
+			@Override
+			public double sample(Random random) {
+				return value;
+			}
+
+			@Override
+			public double getMean() {
+				return value;
+			}
+
+			@Override
+			public double getStandardDeviation() {
+				return 0;
+			}
+
+			@Override
+			public String toString() {
+				return "Fixed(" + value + ")";
+			}
+		};
+	}
+}
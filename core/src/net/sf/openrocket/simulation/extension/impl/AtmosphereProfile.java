@@ -0,0 +1,64 @@
+package net.sf.openrocket.simulation.extension.impl;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import net.sf.openrocket.models.atmosphere.SoundingAtmosphericModel;
+import net.sf.openrocket.simulation.SimulationConditions;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.simulation.extension.AbstractSimulationExtension;
+import net.sf.openrocket.util.StringUtil;
+
+/**
+ * Replaces the atmospheric model of the simulation by a sounding profile read from
+ * a local file.  See {@link SoundingAtmosphericModel} for the file format.
+ */
+public class AtmosphereProfile extends AbstractSimulationExtension {
+	
+	@Override
+	public void initialize(SimulationConditions conditions) throws SimulationException {
+		String fileName = getFileName();
+		if (StringUtil.isEmpty(fileName)) {
+			return;
+		}
+		
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(fileName), "UTF-8");
+			conditions.setAtmosphericModel(SoundingAtmosphericModel.load(reader));
+		} catch (IOException e) {
+			throw new SimulationException("Could not read atmosphere profile " + fileName + ": " + e.getMessage(), e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+	
+	@Override
+	public String getName() {
+		String name = trans.get("SimulationExtension.atmosphereprofile.name") + ": ";
+		String fileName = getFileName();
+		if (!StringUtil.isEmpty(fileName)) {
+			name = name + fileName;
+		} else {
+			name = name + trans.get("SimulationExtension.atmosphereprofile.name.none");
+		}
+		return name;
+	}
+	
+	public String getFileName() {
+		return config.getString("fileName", "");
+	}
+	
+	public void setFileName(String fileName) {
+		config.put("fileName", fileName);
+		fireChangeEvent();
+	}
+	
+}
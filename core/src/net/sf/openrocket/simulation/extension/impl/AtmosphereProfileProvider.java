@@ -0,0 +1,13 @@
+package net.sf.openrocket.simulation.extension.impl;
+
+import net.sf.openrocket.plugin.Plugin;
+import net.sf.openrocket.simulation.extension.AbstractSimulationExtensionProvider;
+
+@Plugin
+public class AtmosphereProfileProvider extends AbstractSimulationExtensionProvider {
+	
+	public AtmosphereProfileProvider() {
+		super(AtmosphereProfile.class, "Launch conditions", "Atmosphere profile");
+	}
+	
+}
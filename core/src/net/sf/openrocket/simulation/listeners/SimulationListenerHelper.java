@@ -245,18 +245,22 @@ public class SimulationListenerHelper {
 	}
 	
 	/**
-	 * Fire postAtmosphericModel event.
+	 * Fire postAtmosphericModel event.  The listeners are given a copy of the
+	 * conditions, since the steppers reuse the conditions object for later steps.
 	 * 
 	 * @return	the atmospheric conditions to use.
 	 */
 	public static AtmosphericConditions firePostAtmosphericModel(SimulationStatus status, AtmosphericConditions conditions)
 			throws SimulationException {
 		AtmosphericConditions c;
-		AtmosphericConditions clone = conditions.clone();
+		AtmosphericConditions clone = null;
 		int modID = status.getModID();
 		
 		for (SimulationListener l : status.getSimulationConditions().getSimulationListenerList()) {
 			if (l instanceof SimulationComputationListener) {
+				if (clone == null) {
+					clone = conditions.clone();
+				}
 				c = ((SimulationComputationListener) l).postAtmosphericModel(status, clone);
 				if (modID != status.getModID()) {
 					warn(status, l);
@@ -408,7 +412,8 @@ public class SimulationListenerHelper {
 	}
 	
 	/**
-	 * Fire postFlightConditions event.
+	 * Fire postFlightConditions event.  The listeners are given a copy of the
+	 * conditions, since the steppers reuse the conditions object for later steps.
 	 * 
 	 * @return	the flight conditions to use: either <code>conditions</code> or a new object
 	 * 			containing the modified conditions.
@@ -416,11 +421,14 @@ public class SimulationListenerHelper {
 	public static FlightConditions firePostFlightConditions(SimulationStatus status, FlightConditions conditions)
 			throws SimulationException {
 		FlightConditions c;
-		FlightConditions clone = conditions.clone();
+		FlightConditions clone = null;
 		int modID = status.getModID();
 		
 		for (SimulationListener l : status.getSimulationConditions().getSimulationListenerList()) {
 			if (l instanceof SimulationComputationListener) {
+				if (clone == null) {
+					clone = conditions.clone();
+				}
 				c = ((SimulationComputationListener) l).postFlightConditions(status, clone);
 				if (modID != status.getModID()) {
 					warn(status, l);
@@ -51,6 +51,7 @@ import net.sf.openrocket.rocketcomponent.Transition.Shape;
 import net.sf.openrocket.rocketcomponent.TrapezoidFinSet;
 import net.sf.openrocket.rocketcomponent.TubeCoupler;
 import net.sf.openrocket.rocketcomponent.position.*;
+import net.sf.openrocket.simulation.SimulationOptions;
 import net.sf.openrocket.simulation.customexpression.CustomExpression;
 import net.sf.openrocket.simulation.exception.SimulationException;
 import net.sf.openrocket.simulation.extension.impl.ScriptingExtension;
@@ -527,6 +528,20 @@ public class TestRockets {
 		return rocket;
 	}
 	
+	// Simulation of the third flight configuration of an Estes Alpha III, with an ISA atmosphere,
+	// a 1 m launch rod and a 0.05 s time step.  Tests change the options they depend on.
+	// This function is used for unit, integration tests, DO NOT CHANGE (without updating tests).
+	public static Simulation makeAlphaIIISimulation(Rocket rocket) {
+		Simulation sim = new Simulation(rocket);
+		sim.setFlightConfigurationId(rocket.getId(2));
+		SimulationOptions options = sim.getOptions();
+		options.setISAAtmosphere(true);
+		options.setTimeStep(0.05);
+		options.setLaunchRodLength(1.0);
+		options.setLaunchLatitude(28.6);
+		return sim;
+	}
+	
 	// This is an extra stage tacked onto the end of an Estes Alpha III 
 	// http://www.rocketreviews.com/alpha-iii---estes-221256.html
 	// 
@@ -0,0 +1,437 @@
+package net.sf.openrocket.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.file.CSVExport;
+import net.sf.openrocket.file.GeneralRocketLoader;
+import net.sf.openrocket.file.GeneralRocketSaver;
+import net.sf.openrocket.file.RocketLoadException;
+import net.sf.openrocket.simulation.BatchSimulationRunner;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.unit.Unit;
+
+/**
+ * Runs the simulations of OpenRocket documents without any user interface and
+ * writes the results as CSV files or as documents storing the new simulation data.
+ * The simulations of several documents are run in parallel using a
+ * {@link BatchSimulationRunner}.
+ * <p>
+ * The application services must be initialized before use, the motor database
+ * in particular is needed to load the documents.
+ *
+ * Usage:
+ *   BatchSimulator [options] <files or directories...>
+ *
+ * The return value of {@link #run(String...)} is one of the EXIT_ constants.
+ */
+public class BatchSimulator {
+
+	/** All simulations were run and their results written. */
+	public static final int EXIT_OK = 0;
+	/** One or more simulations failed. */
+	public static final int EXIT_SIMULATION_FAILED = 1;
+	/** One or more files could not be loaded or the results not written. */
+	public static final int EXIT_FILE_ERROR = 2;
+	/** The arguments were invalid. */
+	public static final int EXIT_USAGE = 3;
+
+	public static final String USAGE =
+			"Usage: BatchSimulator [options] <files or directories...>\n" +
+					"\n" +
+					"Runs the simulations of OpenRocket documents.  Directories are searched\n" +
+					"recursively for .ork files.\n" +
+					"\n" +
+					"Options:\n" +
+					"  -o <directory>  write the results to the directory instead of next to the\n" +
+					"                  documents, keeping the subdirectories of the documents\n" +
+					"                  found in directories\n" +
+					"  -f csv|ork      write each simulated flight data branch as a CSV file\n" +
+					"                  (default), or save copies of the documents with all\n" +
+					"                  simulation data stored in binary form, which requires -o\n" +
+					"  -s <name>       run only the simulations with this name, may be repeated\n" +
+					"  -t <threads>    the number of simulations to run in parallel, by default\n" +
+					"                  the number of processors\n" +
+					"  -h              print this help\n" +
+					"\n" +
+					"Exit codes: 0 success, 1 a simulation failed, 2 a file could not be\n" +
+					"read or written, 3 invalid arguments.";
+
+	public enum OutputFormat {
+		CSV, ORK
+	}
+
+	private final PrintStream out;
+	private final PrintStream err;
+
+	private final List<File> files = new ArrayList<File>();
+	// The path of the results of each file without the suffix
+	private final Map<File, File> outputBases = new HashMap<File, File>();
+	// The directory of each file relative to the directory argument it was found in
+	private final Map<File, String> relativeDirectories = new HashMap<File, String>();
+	private final Set<String> simulationNames = new HashSet<String>();
+	private File outputDirectory = null;
+	private OutputFormat format = OutputFormat.CSV;
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	// Statistics of the previous run, times in milliseconds
+	private int fileCount;
+	private int fileErrors;
+	private int simulationCount;
+	private int simulationErrors;
+	private long loadTime;
+	private long simulationTime;
+	private long writeTime;
+
+
+	public BatchSimulator(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+	}
+
+
+	/**
+	 * Parse the command line arguments, run the simulations and write the results.
+	 *
+	 * @param args	the command line arguments.
+	 * @return		the exit code.
+	 */
+	public int run(String... args) {
+		if (!parseArguments(args)) {
+			return EXIT_USAGE;
+		}
+
+		fileCount = 0;
+		fileErrors = 0;
+		simulationCount = 0;
+		simulationErrors = 0;
+		loadTime = 0;
+		simulationTime = 0;
+		writeTime = 0;
+
+		long start = System.currentTimeMillis();
+		BatchSimulationRunner runner = new BatchSimulationRunner(threadCount);
+		try {
+
+			// Keep a limited number of documents in memory while keeping all threads busy
+			int window = 2 * threadCount;
+			Deque<Job> pending = new ArrayDeque<Job>();
+			int next = 0;
+			while (next < files.size() || !pending.isEmpty()) {
+				while (next < files.size() && pending.size() < window) {
+					Job job = submit(runner, files.get(next++));
+					if (job != null) {
+						pending.add(job);
+					}
+				}
+				if (!pending.isEmpty()) {
+					finish(pending.removeFirst());
+				}
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			err.println("ERROR: Interrupted");
+			return EXIT_SIMULATION_FAILED;
+		} finally {
+			runner.shutdown();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+
+		out.println(String.format(Locale.US, "%d files (%d failed), %d simulations (%d failed) in %.2f s",
+				fileCount, fileErrors, simulationCount, simulationErrors, elapsed / 1000.0));
+		out.println(String.format(Locale.US, "Loading %.2f s, simulations %.2f s on %d threads, " +
+				"writing results %.2f s, %.1f simulations/s",
+				loadTime / 1000.0, simulationTime / 1000.0, threadCount, writeTime / 1000.0,
+				simulationCount * 1000.0 / Math.max(elapsed, 1)));
+
+		if (fileErrors > 0) {
+			return EXIT_FILE_ERROR;
+		}
+		if (simulationErrors > 0) {
+			return EXIT_SIMULATION_FAILED;
+		}
+		return EXIT_OK;
+	}
+
+
+	private boolean parseArguments(String[] args) {
+		files.clear();
+		outputBases.clear();
+		relativeDirectories.clear();
+		simulationNames.clear();
+		outputDirectory = null;
+		format = OutputFormat.CSV;
+		threadCount = Runtime.getRuntime().availableProcessors();
+
+		List<File> inputs = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-h") || arg.equals("--help")) {
+				out.println(USAGE);
+				return false;
+			}
+			if (arg.startsWith("-") && arg.length() > 1) {
+				if (i + 1 >= args.length) {
+					return usageError("Option " + arg + " requires an argument");
+				}
+				String value = args[++i];
+				if (arg.equals("-o")) {
+					outputDirectory = new File(value);
+				} else if (arg.equals("-f")) {
+					try {
+						format = OutputFormat.valueOf(value.toUpperCase(Locale.ENGLISH));
+					} catch (IllegalArgumentException e) {
+						return usageError("Unknown output format '" + value + "'");
+					}
+				} else if (arg.equals("-s")) {
+					simulationNames.add(value);
+				} else if (arg.equals("-t")) {
+					try {
+						threadCount = Integer.parseInt(value);
+					} catch (NumberFormatException e) {
+						threadCount = 0;
+					}
+					if (threadCount < 1) {
+						return usageError("Invalid number of threads '" + value + "'");
+					}
+				} else {
+					return usageError("Unknown option " + arg);
+				}
+			} else {
+				inputs.add(new File(arg));
+			}
+		}
+
+		for (File input : inputs) {
+			if (input.isDirectory()) {
+				addDirectory(input, "");
+			} else if (input.isFile()) {
+				files.add(input);
+				relativeDirectories.put(input, "");
+			} else {
+				return usageError("File '" + input + "' does not exist");
+			}
+		}
+		if (files.isEmpty()) {
+			return usageError("No files to simulate");
+		}
+
+		if (format == OutputFormat.ORK && outputDirectory == null) {
+			// The documents would be overwritten
+			return usageError("Saving documents with -f ork requires an output directory (-o)");
+		}
+
+		// Results of different files must not overwrite each other
+		Map<File, File> writers = new HashMap<File, File>();
+		for (File file : files) {
+			File base = createOutputBase(file);
+			File previous = writers.put(base.getAbsoluteFile(), file);
+			if (previous != null) {
+				return usageError("Files '" + previous + "' and '" + file + "' would write the same results '" +
+						base + "'");
+			}
+			outputBases.put(file, base);
+		}
+
+		if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			return usageError("Cannot create output directory '" + outputDirectory + "'");
+		}
+		return true;
+	}
+
+	private boolean usageError(String message) {
+		err.println("ERROR: " + message);
+		err.println(USAGE);
+		return false;
+	}
+
+	private void addDirectory(File dir, String relative) {
+		File[] list = dir.listFiles();
+		if (list == null) {
+			return;
+		}
+		Arrays.sort(list);
+		for (File f : list) {
+			if (f.isDirectory()) {
+				addDirectory(f, relative + f.getName() + File.separator);
+			} else if (f.getName().toLowerCase(Locale.ENGLISH).endsWith(".ork")) {
+				files.add(f);
+				relativeDirectories.put(f, relative);
+			}
+		}
+	}
+
+	private File createOutputBase(File input) {
+		String name = input.getName();
+		if (name.toLowerCase(Locale.ENGLISH).endsWith(".ork")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		if (outputDirectory == null) {
+			return new File(input.getAbsoluteFile().getParentFile(), name);
+		}
+		return new File(new File(outputDirectory, relativeDirectories.get(input)), name);
+	}
+
+
+	/**
+	 * Load a document and start running its selected simulations.
+	 *
+	 * @return	the job, or <code>null</code> if the document could not be loaded.
+	 */
+	private Job submit(BatchSimulationRunner runner, File file) {
+		fileCount++;
+		long start = System.currentTimeMillis();
+		OpenRocketDocument document;
+		try {
+			document = new GeneralRocketLoader(file).load();
+		} catch (RocketLoadException e) {
+			err.println("ERROR: Error loading '" + file + "': " + e.getMessage());
+			fileErrors++;
+			return null;
+		} finally {
+			loadTime += System.currentTimeMillis() - start;
+		}
+
+		Job job = new Job(file, document);
+		List<Simulation> all = document.getSimulations();
+		for (int i = 0; i < all.size(); i++) {
+			Simulation sim = all.get(i);
+			if (!simulationNames.isEmpty() && !simulationNames.contains(sim.getName())) {
+				continue;
+			}
+			if (sim.getStatus() == Simulation.Status.EXTERNAL) {
+				// Imported data cannot be simulated
+				continue;
+			}
+			job.simulations.add(sim);
+			job.numbers.add(i + 1);
+		}
+		if (job.simulations.isEmpty()) {
+			out.println(file + ": no simulations to run");
+		}
+		job.batch = runner.simulate(job.simulations);
+		return job;
+	}
+
+	/**
+	 * Wait for the simulations of a document to complete and write their results.
+	 */
+	private void finish(Job job) throws InterruptedException {
+		List<BatchSimulationRunner.Result> results = job.batch.getAll();
+
+		long start = System.currentTimeMillis();
+		try {
+			File dir = getOutputFile(job.file, "").getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Cannot create directory '" + dir + "'");
+			}
+
+			for (BatchSimulationRunner.Result result : results) {
+				Simulation sim = job.simulations.get(result.getIndex());
+				int number = job.numbers.get(result.getIndex());
+				simulationCount++;
+				simulationTime += result.getRunTime();
+
+				if (!result.isSuccessful()) {
+					err.println("ERROR: Simulation '" + sim.getName() + "' of '" + job.file + "' failed: " +
+							result.getException().getMessage());
+					simulationErrors++;
+					continue;
+				}
+
+				FlightData data = result.getFlightData();
+				out.println(String.format(Locale.US, "%s: %s: max altitude %.2f m, flight time %.2f s, %d ms",
+						job.file, sim.getName(), data.getMaxAltitude(), data.getFlightTime(),
+						result.getRunTime()));
+
+				if (format == OutputFormat.CSV) {
+					for (int i = 0; i < data.getBranchCount(); i++) {
+						writeCSV(getOutputFile(job.file, "-simulation" + number + "-branch" + (i + 1) + ".csv"),
+								sim, data.getBranch(i));
+					}
+				}
+			}
+
+			if (format == OutputFormat.ORK && !results.isEmpty()) {
+				StorageOptions options = job.document.getDefaultStorageOptions().clone();
+				options.setFileType(StorageOptions.FileType.OPENROCKET);
+				options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+				options.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+				new GeneralRocketSaver().save(getOutputFile(job.file, ".ork"), job.document, options);
+			}
+		} catch (IOException e) {
+			err.println("ERROR: Error writing the results of '" + job.file + "': " + e.getMessage());
+			fileErrors++;
+		} finally {
+			writeTime += System.currentTimeMillis() - start;
+		}
+	}
+
+	private File getOutputFile(File input, String suffix) {
+		return new File(outputBases.get(input).getPath() + suffix);
+	}
+
+	private static void writeCSV(File file, Simulation sim, FlightDataBranch branch) throws IOException {
+		FlightDataType[] types = branch.getTypes();
+		Unit[] units = new Unit[types.length];
+		for (int i = 0; i < types.length; i++) {
+			units[i] = types[i].getUnitGroup().getSIUnit();
+		}
+
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			CSVExport.exportCSV(os, sim, branch, types, units, ",", "#", true, true, true);
+		} finally {
+			os.close();
+		}
+	}
+
+
+	/**
+	 * Return the number of simulations run by the previous call to {@link #run(String...)}.
+	 */
+	public int getSimulationCount() {
+		return simulationCount;
+	}
+
+	/**
+	 * Return the number of simulations that failed in the previous call to {@link #run(String...)}.
+	 */
+	public int getSimulationErrors() {
+		return simulationErrors;
+	}
+
+
+	private static class Job {
+		private final File file;
+		private final OpenRocketDocument document;
+		private final List<Simulation> simulations = new ArrayList<Simulation>();
+		private final List<Integer> numbers = new ArrayList<Integer>();
+		private BatchSimulationRunner.Batch batch;
+
+		public Job(File file, OpenRocketDocument document) {
+			this.file = file;
+			this.document = document;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package de.congrace.exp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import de.congrace.exp4j.OperatorToken.Operation;
+
+public class DoubleExpressionTest {
+
+	@Test
+	public void testUnhandledOperation() {
+		DoubleExpression a = DoubleExpression.compile(new Token[] { new NumberToken("2") }, new String[0]);
+		DoubleExpression b = DoubleExpression.compile(new Token[] { new NumberToken("3") }, new String[0]);
+		assertNotNull(DoubleExpression.binary(Operation.ADDITION, a, b));
+		assertNotNull(DoubleExpression.unary(Operation.UNARY_MINUS, a));
+
+		// Operations outside the switch are not compiled, instead of evaluating to zero
+		assertNull(DoubleExpression.binary(Operation.UNARY_MINUS, a, b));
+		assertNull(DoubleExpression.unary(Operation.ADDITION, a));
+	}
+
+	@Test
+	public void testUnhandledOperationInExpression() throws Exception {
+		// A binary token whose operation cannot be compiled as one
+		Token[] tokens = { new NumberToken("2"), new NumberToken("3"), new OperatorToken("+", Operation.ADDITION) {
+			@Override
+			int getOperandCount() {
+				return 2;
+			}
+
+			@Override
+			Operation getOperation() {
+				return Operation.UNARY_PLUS;
+			}
+		} };
+		assertNull(DoubleExpression.compile(tokens, new String[0]));
+
+		tokens = new Token[] { new NumberToken("2"), new NumberToken("3"), new OperatorToken("+", Operation.ADDITION) };
+		assertEquals(5, DoubleExpression.compile(tokens, new String[0]).evaluate(new double[0]), 0);
+	}
+}
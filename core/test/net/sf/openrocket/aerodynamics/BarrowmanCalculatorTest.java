@@ -12,6 +12,7 @@ import com.google.inject.Injector;
 import com.google.inject.Module;
 
 import net.sf.openrocket.ServicesForTesting;
+import net.sf.openrocket.document.Simulation;
 import net.sf.openrocket.plugin.PluginModule;
 import net.sf.openrocket.rocketcomponent.AxialStage;
 import net.sf.openrocket.rocketcomponent.BodyTube;
@@ -20,6 +21,9 @@ import net.sf.openrocket.rocketcomponent.NoseCone;
 import net.sf.openrocket.rocketcomponent.ParallelStage;
 import net.sf.openrocket.rocketcomponent.Rocket;
 import net.sf.openrocket.rocketcomponent.Transition;
+import net.sf.openrocket.simulation.BasicEventSimulationEngine;
+import net.sf.openrocket.simulation.SimulationConditions;
+import net.sf.openrocket.simulation.exception.SimulationException;
 import net.sf.openrocket.startup.Application;
 import net.sf.openrocket.util.Coordinate;
 import net.sf.openrocket.util.TestRockets;
@@ -190,4 +194,93 @@ public class BarrowmanCalculatorTest {
 		
 		assertFalse(" Missed discontinuity in Falcon 9 Heavy:", calc.isContinuous( rocket));
 	}
+	
+	@Test
+	public void testCachedCoefficients() {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		FlightConfiguration config = rocket.getSelectedConfiguration();
+		BarrowmanCalculator exact = new BarrowmanCalculator();
+		CachingBarrowmanCalculator cached = new CachingBarrowmanCalculator();
+		FlightConditions conditions = new FlightConditions(config);
+		
+		for (int i = 0; i < 100; i++) {
+			conditions.setMach(0.2 + i * 0.0007);
+			conditions.setAOA(0.03 + i * 0.0001);
+			AerodynamicForces e = exact.getAerodynamicForces(config, conditions, null);
+			AerodynamicForces c = cached.getAerodynamicForces(config, conditions, null);
+			assertEquals(e.getCD(), c.getCD(), 0.001 * e.getCD());
+			assertEquals(e.getCN(), c.getCN(), 0.001 * e.getCN());
+			assertEquals(e.getCP().x, c.getCP().x, 0.001);
+			assertEquals(e.getCaxial(), c.getCaxial(), 0.001 * e.getCaxial());
+		}
+		assertEquals(100, cached.getHitCount() + cached.getMissCount());
+		assertTrue(cached.getHitRate() > 0.5);
+		
+		// Modifying the rocket voids the cache
+		long nodes = cached.getNodeCount();
+		((BodyTube) rocket.getChild(0).getChild(1)).setOuterRadius(0.02);
+		AerodynamicForces e = exact.getAerodynamicForces(config, conditions, null);
+		AerodynamicForces c = cached.getAerodynamicForces(config, conditions, null);
+		assertTrue(cached.getNodeCount() > nodes);
+		assertEquals(e.getCD(), c.getCD(), 0.001 * e.getCD());
+	}
+	
+	@Test
+	public void testTabulatedCoefficients() throws InterruptedException {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		FlightConfiguration config = rocket.getSelectedConfiguration();
+		AerodynamicTable table = new AerodynamicTable.Builder(config).setMach(0.5, 0.01).setAOADivisions(91).build();
+		assertFalse(table.isThetaDependent());
+		
+		BarrowmanCalculator exact = new BarrowmanCalculator();
+		TabulatedAerodynamicCalculator tabulated = new TabulatedAerodynamicCalculator(table);
+		FlightConditions conditions = new FlightConditions(config);
+		for (int i = 0; i < 20; i++) {
+			conditions.setMach(0.053 + i * 0.021);
+			conditions.setAOA(0.01 + i * 0.004);
+			AerodynamicForces e = exact.getAerodynamicForces(config, conditions, null);
+			AerodynamicForces t = tabulated.getAerodynamicForces(config, conditions, null);
+			assertEquals(e.getCD(), t.getCD(), 0.001 * e.getCD());
+			assertEquals(e.getCN(), t.getCN(), 0.001 * e.getCN());
+			assertEquals(e.getCP().x, t.getCP().x, 0.001);
+		}
+		assertEquals(20, tabulated.getTableCount());
+		
+		// Conditions outside the table are calculated
+		conditions.setMach(0.6);
+		assertFalse(table.covers(config, conditions));
+		conditions.setMach(0.3);
+		assertTrue(table.covers(config, conditions));
+		conditions.setRollRate(1.0);
+		assertFalse(table.covers(config, conditions));
+		conditions.setRollRate(0);
+		((BodyTube) rocket.getChild(0).getChild(1)).setOuterRadius(0.02);
+		assertFalse(table.covers(config, conditions));
+		tabulated.getAerodynamicForces(config, conditions, null);
+		assertEquals(1, tabulated.getCalculatedCount());
+	}
+	
+	@Test
+	public void testTabulatedSimulation() throws SimulationException, InterruptedException {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		FlightConfiguration config = rocket.getFlightConfiguration(sim.getId());
+		AerodynamicTable table = new AerodynamicTable.Builder(config).setMach(0.5, 0.01).build();
+		
+		SimulationConditions conditions = sim.getOptions().toSimulationConditions();
+		conditions.setSimulation(sim);
+		double exact = new BasicEventSimulationEngine().simulate(conditions).getMaxAltitude();
+		
+		TabulatedAerodynamicCalculator tabulated = new TabulatedAerodynamicCalculator(table);
+		conditions = sim.getOptions().toSimulationConditions();
+		conditions.setSimulation(sim);
+		conditions.setAerodynamicCalculator(tabulated);
+		double actual = new BasicEventSimulationEngine().simulate(conditions).getMaxAltitude();
+		
+		// The table covers the configuration the simulation uses
+		assertTrue(tabulated.getTableCount() > 0);
+		assertTrue(tabulated.getTableCount() > tabulated.getCalculatedCount());
+		assertTrue(exact > 100);
+		assertEquals(exact, actual, 0.005 * exact);
+	}
 }
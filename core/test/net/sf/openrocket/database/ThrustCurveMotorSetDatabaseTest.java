@@ -0,0 +1,111 @@
+package net.sf.openrocket.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.openrocket.database.motor.ThrustCurveMotorSet;
+import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.motor.Manufacturer;
+import net.sf.openrocket.motor.Motor;
+import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.util.Coordinate;
+
+import org.junit.Test;
+
+public class ThrustCurveMotorSetDatabaseTest {
+
+	private static ThrustCurveMotor createMotor(String manufacturer, String designation, Motor.Type type,
+			double diameter, double length, double thrust, String digest) {
+		return new ThrustCurveMotor.Builder()
+				.setManufacturer(Manufacturer.getManufacturer(manufacturer))
+				.setDesignation(designation)
+				.setDescription("Desc")
+				.setMotorType(type)
+				.setStandardDelays(new double[] {})
+				.setDiameter(diameter)
+				.setLength(length)
+				.setTimePoints(new double[] { 0, 1, 2 })
+				.setThrustPoints(new double[] { 0, thrust, 0 })
+				.setCGPoints(new Coordinate[] { Coordinate.NUL, Coordinate.NUL, Coordinate.NUL })
+				.setDigest(digest)
+				.build();
+	}
+
+	private static final ThrustCurveMotor motor1 = createMotor("Estes", "C6", Motor.Type.SINGLE, 0.018, 0.070, 10, "digest1");
+	private static final ThrustCurveMotor motor2 = createMotor("Estes", "D12", Motor.Type.SINGLE, 0.024, 0.070, 20, "digest2");
+	private static final ThrustCurveMotor motor3 = createMotor("AeroTech", "F40", Motor.Type.RELOAD, 0.029, 0.124, 60, "digest3");
+	private static final ThrustCurveMotor motor4 = createMotor("AeroTech", "G80", Motor.Type.RELOAD, 0.029, 0.124, 120, "digest4");
+	private static final ThrustCurveMotor motor5 = createMotor("AeroTech", "D21", Motor.Type.SINGLE, 0.018, 0.070, 25, "digest5");
+
+	private static ThrustCurveMotorSetDatabase createDatabase() {
+		ThrustCurveMotorSetDatabase db = new ThrustCurveMotorSetDatabase();
+		db.addMotor(motor1);
+		db.addMotor(motor2);
+		db.addMotor(motor3);
+		db.addMotor(motor4);
+		return db;
+	}
+
+	@Test
+	public void testFindMotor() {
+		ThrustCurveMotorSetDatabase db = createDatabase();
+		assertSame(motor3, db.findMotor("digest3"));
+		assertNull(db.findMotor("digest5"));
+		assertNull(db.findMotor(null));
+
+		// Adding a motor updates the index
+		db.addMotor(motor5);
+		assertSame(motor5, db.findMotor("digest5"));
+		assertSame(motor1, db.findMotor("digest1"));
+	}
+
+	@Test
+	public void testFindMotors() {
+		ThrustCurveMotorSetDatabase db = createDatabase();
+		db.addMotor(motor5);
+
+		assertEquals(Arrays.asList(motor1, motor2, motor3, motor4, motor5),
+				db.findMotors(null, null, null, Double.NaN, Double.NaN));
+		assertEquals(Arrays.asList(motor4), db.findMotors(null, null, "g80", Double.NaN, Double.NaN));
+		assertEquals(Arrays.asList(motor3, motor4, motor5), db.findMotors(null, "AeroTech", null, Double.NaN, Double.NaN));
+		assertEquals(Arrays.asList(motor1, motor5), db.findMotors(null, null, null, 0.018, Double.NaN));
+		assertEquals(Arrays.asList(motor1, motor2, motor5), db.findMotors(null, null, null, 0.0225, Double.NaN));
+		assertEquals(Arrays.asList(motor5), db.findMotors(Motor.Type.SINGLE, "AeroTech", null, 0.018, 0.070));
+		assertEquals(Arrays.asList(motor3), db.findMotors(Motor.Type.RELOAD, "AeroTech", "F40", 0.029, 0.124));
+		assertEquals(Collections.emptyList(), db.findMotors(Motor.Type.RELOAD, "Estes", null, Double.NaN, Double.NaN));
+		assertEquals(Collections.emptyList(), db.findMotors(null, null, "H128", Double.NaN, Double.NaN));
+	}
+
+	@Test
+	public void testMotorSetQueries() {
+		ThrustCurveMotorSetDatabase db = createDatabase();
+		db.addMotor(motor5);
+
+		assertEquals(5, db.getMotorSets().size());
+		assertEquals(Arrays.asList(motor3, motor4, motor5),
+				motorsOf(db.getMotorSets(Manufacturer.getManufacturer("AeroTech"))));
+
+		assertEquals(Arrays.asList(motor1, motor2, motor5), motorsOf(db.getMotorSetsByDiameter(0.018, 0.024)));
+		assertEquals(Arrays.asList(motor2), motorsOf(db.getMotorSetsByDiameter(0.020, 0.025)));
+		assertEquals(Collections.emptyList(), motorsOf(db.getMotorSetsByDiameter(0.030, 0.040)));
+
+		// Impulse classes D and E-F
+		assertEquals(Arrays.asList(motor2, motor5), motorsOf(db.getMotorSetsByTotalImpulse(10, 40)));
+		assertEquals(Arrays.asList(motor3), motorsOf(db.getMotorSetsByTotalImpulse(40, 80)));
+		assertEquals(Arrays.asList(motor4), motorsOf(db.getMotorSetsByTotalImpulse(80, 160)));
+	}
+
+	private static List<ThrustCurveMotor> motorsOf(List<ThrustCurveMotorSet> sets) {
+		List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>();
+		for (ThrustCurveMotorSet set : sets) {
+			motors.addAll(set.getMotors());
+		}
+		return motors;
+	}
+}
@@ -0,0 +1,292 @@
+package net.sf.openrocket.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
+
+import net.sf.openrocket.aerodynamics.WarningSet;
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.file.openrocket.OpenRocketSaver;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.simulation.extension.SimulationExtension;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+import net.sf.openrocket.util.TestRockets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocumentJournalTest extends BaseTestCase {
+
+	private static final int POINTS = 10000;
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("DocumentJournalTest", ".ork");
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+		DocumentJournal.getJournalFile(file).delete();
+	}
+
+
+	@Test
+	public void testCheckpointAndRecover() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+		assertFalse(DocumentJournal.getJournalFile(file).exists());
+		assertFalse(journal.checkpoint());
+
+		doc.getRocket().setName("Changed");
+		assertTrue(journal.checkpoint());
+		assertFalse(journal.checkpoint());
+
+		// The records reference the stored simulation data
+		File journalFile = DocumentJournal.getJournalFile(file);
+		long length = journalFile.length();
+		assertTrue(length * 10 < file.length());
+		assertTrue(DocumentJournal.hasJournal(file));
+
+		// Later records contain only the changes
+		doc.getRocket().setName("Changed again");
+		assertTrue(journal.checkpoint());
+		assertTrue(journalFile.length() - length < 100);
+		long modified = file.lastModified();
+
+		OpenRocketDocument recovered = DocumentJournal.recover(file, new WarningSet());
+		assertEquals("Changed again", recovered.getRocket().getName());
+		assertEquals(1, recovered.getSimulations().size());
+		FlightDataBranch branch = recovered.getSimulations().get(0).getSimulatedData().getBranch(0);
+		assertEquals(POINTS, branch.getLength());
+		assertEquals(POINTS - 1, branch.getLast(FlightDataType.TYPE_ALTITUDE), 1);
+		assertEquals(modified, file.lastModified());
+		journal.close();
+	}
+
+
+	@Test
+	public void testCompaction() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+		long length = file.length();
+		journal.setMaxSize(0);
+
+		// Each record replaces the journal
+		doc.getRocket().setName("Changed");
+		assertTrue(journal.checkpoint());
+		assertEquals(1, readRecordTypes().size());
+		doc.getRocket().setName("Altered");
+		assertTrue(journal.checkpoint());
+		List<Integer> types = readRecordTypes();
+		assertEquals(1, types.size());
+		assertEquals(1, (int) types.get(0)); // DOCUMENT
+		assertEquals(length, file.length());
+
+		OpenRocketDocument recovered = DocumentJournal.recover(file, new WarningSet());
+		assertEquals("Altered", recovered.getRocket().getName());
+		journal.close();
+	}
+
+
+	@Test
+	public void testBackgroundCheckpoint() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+
+		// Changes made after the snapshot are recorded by the next checkpoint
+		doc.getRocket().setName("Changed");
+		Future<Boolean> first = journal.submitCheckpoint();
+		doc.getRocket().setName("Changed again");
+		Future<Boolean> second = journal.submitCheckpoint();
+		assertTrue(first.get());
+		assertTrue(second.get());
+		assertFalse(journal.submitCheckpoint().get());
+		assertEquals("Changed again", DocumentJournal.recover(file, new WarningSet()).getRocket().getName());
+
+		// Records still being written are discarded as well
+		doc.getRocket().setName("Discarded");
+		journal.submitCheckpoint();
+		journal.discard();
+		assertFalse(DocumentJournal.getJournalFile(file).exists());
+		journal.close();
+	}
+
+
+	@Test
+	public void testUnsavedDocumentRecorded() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		new GeneralRocketSaver().save(file, doc);
+
+		// A recovered document has unsaved changes before any change event
+		doc.getRocket().setName("Recovered");
+		doc.setSaved(false);
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		assertTrue(journal.checkpoint());
+		assertEquals("Recovered", DocumentJournal.recover(file, new WarningSet()).getRocket().getName());
+		journal.close();
+	}
+
+
+	@Test
+	public void testValuesSetAfterStoring() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+
+		// A column added to the stored branch is not recorded
+		FlightData data = doc.getSimulations().get(0).getSimulatedData();
+		data.loadBranches();
+		data.getBranch(0).setValues(FlightDataType.TYPE_VELOCITY_Z, new double[POINTS]);
+		doc.getRocket().setName("Changed");
+		assertTrue(journal.checkpoint());
+
+		OpenRocketDocument recovered = DocumentJournal.recover(file, new WarningSet());
+		FlightDataBranch branch = recovered.getSimulations().get(0).getSimulatedData().getBranch(0);
+		assertEquals(POINTS, branch.getLength());
+		assertEquals(2, branch.getTypes().length);
+		journal.close();
+	}
+
+
+	@Test
+	public void testStorageOptions() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		doc.getDefaultStorageOptions().setSimulationDataFormat(StorageOptions.DataFormat.TEXT);
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+
+		ZipFile zip = new ZipFile(file);
+		try {
+			assertNull(zip.getEntry(OpenRocketSaver.getDataEntryName(1, 0)));
+		} finally {
+			zip.close();
+		}
+		assertEquals(StorageOptions.DataFormat.TEXT, doc.getDefaultStorageOptions().getSimulationDataFormat());
+		journal.close();
+	}
+
+
+	@Test
+	public void testIncompleteRecord() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+		doc.getRocket().setName("Changed");
+		journal.checkpoint();
+
+		// Partial record written when stopped
+		FileOutputStream out = new FileOutputStream(DocumentJournal.getJournalFile(file), true);
+		out.write(new byte[] { 0x4F, 0x52, 0x4A, 0x4C, 0, 0, 1 });
+		out.close();
+
+		OpenRocketDocument recovered = DocumentJournal.recover(file, new WarningSet());
+		assertEquals("Changed", recovered.getRocket().getName());
+		journal.close();
+
+		// A journal of the recovered document replaces the journal
+		journal = new DocumentJournal(recovered, file);
+		recovered.getRocket().setName("Changed again");
+		assertTrue(journal.checkpoint());
+		recovered = DocumentJournal.recover(file, new WarningSet());
+		assertEquals("Changed again", recovered.getRocket().getName());
+		assertEquals(POINTS, recovered.getSimulations().get(0).getSimulatedData().getBranch(0).getLength());
+
+		// Saving compacts the changes into the file
+		journal.save();
+		assertFalse(DocumentJournal.hasJournal(file));
+		OpenRocketDocument loaded = new GeneralRocketLoader(file).load();
+		assertEquals("Changed again", loaded.getRocket().getName());
+		assertEquals(POINTS, loaded.getSimulations().get(0).getSimulatedData().getBranch(0).getLength());
+		journal.close();
+	}
+
+
+	@Test
+	public void testSavedByOtherMeans() throws Exception {
+		OpenRocketDocument doc = createDocument();
+		DocumentJournal journal = new DocumentJournal(doc, file);
+		journal.save();
+		doc.getRocket().setName("Changed");
+		journal.checkpoint();
+		assertTrue(DocumentJournal.hasJournal(file));
+
+		new GeneralRocketSaver().save(file, doc);
+		assertFalse(DocumentJournal.hasJournal(file));
+
+		// The stale journal is discarded
+		doc.getRocket().setName("Changed again");
+		assertTrue(journal.checkpoint());
+		OpenRocketDocument recovered = DocumentJournal.recover(file, new WarningSet());
+		assertEquals("Changed again", recovered.getRocket().getName());
+		journal.close();
+	}
+
+
+	// Return the types of the records of the journal
+	private List<Integer> readRecordTypes() throws Exception {
+		List<Integer> types = new ArrayList<Integer>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(DocumentJournal.getJournalFile(file))));
+		try {
+			in.readInt(); // magic
+			in.readInt(); // version
+			in.readLong(); // file length
+			in.readLong(); // file modified
+			while (true) {
+				in.readInt(); // magic
+				types.add(in.readInt());
+				int length = in.readInt();
+				in.readInt(); // checksum
+				in.readFully(new byte[length]);
+			}
+		} catch (EOFException e) {
+			// End of the journal
+		} finally {
+			in.close();
+		}
+		return types;
+	}
+
+
+	private static OpenRocketDocument createDocument() {
+		OpenRocketDocument doc = TestRockets.makeTestRocket_v100();
+		FlightDataBranch branch = new FlightDataBranch("Sustainer",
+				FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE);
+		Random random = new Random(1);
+		for (int i = 0; i < POINTS; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i * 0.01);
+			branch.setValue(FlightDataType.TYPE_ALTITUDE, i + random.nextDouble());
+		}
+		doc.addSimulation(new Simulation(doc.getRocket(), Simulation.Status.UPTODATE, "Simulation",
+				new SimulationOptions(), new ArrayList<SimulationExtension>(), new FlightData(branch)));
+		doc.getDefaultStorageOptions().setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+		doc.getDefaultStorageOptions().setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+		return doc;
+	}
+}
@@ -1,18 +1,39 @@
 package net.sf.openrocket.file.motor;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import net.sf.openrocket.file.Loader;
+import net.sf.openrocket.file.LoaderCache;
+import net.sf.openrocket.file.ParallelLoader;
+import net.sf.openrocket.file.iterator.DirectoryIterator;
+import net.sf.openrocket.gui.util.SimpleFileFilter;
 import net.sf.openrocket.motor.Motor;
 import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.util.Pair;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class TestMotorLoader {
 	
@@ -20,6 +41,9 @@ public class TestMotorLoader {
 	private static final String DIGEST2 = "6a41f0f10b7283793eb0e6b389753729";
 	private static final String DIGEST3 = "e3164a735f9a50500f2725f0a33d246b";
 	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
 	
 	@Test
 	public void testGeneralMotorLoader() throws IOException {
@@ -52,6 +76,214 @@ public class TestMotorLoader {
 	}
 	
 	
+	@Test
+	public void testParallelLoader() throws Exception {
+		ParallelLoader<ThrustCurveMotor.Builder> loader = new ParallelLoader<ThrustCurveMotor.Builder>(new GeneralMotorLoader(), 3);
+		String[] files = { "test3.rse", "test.zip", "test.txt", "test1.eng", "test2.rse" };
+		for (String file : files) {
+			loader.add(file, this.getClass().getResourceAsStream(file));
+		}
+		
+		// The unsupported file is skipped, the others are in the order added
+		List<Pair<String, Collection<ThrustCurveMotor.Builder>>> results = loader.getResults();
+		assertEquals(4, results.size());
+		String[][] digests = { { DIGEST3 }, { DIGEST1, DIGEST2 }, { DIGEST1 }, { DIGEST2 } };
+		String[] names = { "test3.rse", "test.zip", "test1.eng", "test2.rse" };
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(names[i], results.get(i).getU());
+			List<String> d = new ArrayList<String>();
+			for (ThrustCurveMotor.Builder builder : results.get(i).getV()) {
+				d.add(builder.build().getDigest());
+			}
+			assertEquals(Arrays.asList(digests[i]), d);
+		}
+	}
+	
+	@Test
+	public void testLoaderCache() throws Exception {
+		File dir = folder.newFolder("motors");
+		File file1 = new File(dir, "test1.eng");
+		File file2 = new File(dir, "test2.rse");
+		copy("test1.eng", file1);
+		copy("test2.rse", file2);
+		File cacheFile = new File(folder.getRoot(), "cache/motors.ser");
+		
+		final AtomicInteger parsed = new AtomicInteger();
+		Loader<ThrustCurveMotor> loader = new Loader<ThrustCurveMotor>() {
+			@Override
+			public Collection<ThrustCurveMotor> load(InputStream stream, String filename) throws IOException {
+				parsed.incrementAndGet();
+				List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>();
+				for (ThrustCurveMotor.Builder builder : new GeneralMotorLoader().load(stream, filename)) {
+					motors.add(builder.build());
+				}
+				return motors;
+			}
+		};
+		
+		assertEquals(Arrays.asList(DIGEST1, DIGEST2), loadDigests(loader, dir, cacheFile));
+		assertEquals(2, parsed.get());
+		assertTrue(cacheFile.isFile());
+		
+		// Unchanged files are loaded from the cache
+		assertEquals(Arrays.asList(DIGEST1, DIGEST2), loadDigests(loader, dir, cacheFile));
+		assertEquals(2, parsed.get());
+		
+		// A changed file is parsed again
+		copy("test3.rse", file2);
+		assertEquals(Arrays.asList(DIGEST1, DIGEST3), loadDigests(loader, dir, cacheFile));
+		assertEquals(3, parsed.get());
+		assertEquals(Arrays.asList(DIGEST1, DIGEST3), loadDigests(loader, dir, cacheFile));
+		assertEquals(3, parsed.get());
+	}
+	
+	@Test
+	public void testFileChangedWhileLoading() throws Exception {
+		File dir = folder.newFolder("changing");
+		final File file = new File(dir, "test2.rse");
+		copy("test2.rse", file);
+		final long modified = file.lastModified();
+		File cacheFile = new File(folder.getRoot(), "cache/changing.ser");
+		
+		final AtomicInteger parsed = new AtomicInteger();
+		Loader<ThrustCurveMotor> loader = new Loader<ThrustCurveMotor>() {
+			@Override
+			public Collection<ThrustCurveMotor> load(InputStream stream, String filename) throws IOException {
+				// The file is replaced after its contents were read for the first time
+				if (parsed.incrementAndGet() == 1) {
+					copy("test3.rse", file);
+					file.setLastModified(modified + 10000);
+				}
+				List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>();
+				for (ThrustCurveMotor.Builder builder : new GeneralMotorLoader().load(stream, filename)) {
+					motors.add(builder.build());
+				}
+				return motors;
+			}
+		};
+		
+		assertEquals(Arrays.asList(DIGEST2), loadDigests(loader, dir, cacheFile));
+		assertEquals(Arrays.asList(DIGEST3), loadDigests(loader, dir, cacheFile));
+		assertEquals(2, parsed.get());
+	}
+	
+	@Test
+	public void testDirectoryOrder() throws Exception {
+		File dir = folder.newFolder("ordered");
+		File sub = new File(dir, "b");
+		sub.mkdir();
+		copy("test1.eng", new File(dir, "c.eng"));
+		copy("test2.rse", new File(sub, "a.rse"));
+		copy("test3.rse", new File(dir, "a.rse"));
+		FileFilter filter = new SimpleFileFilter("", new GeneralMotorLoader().getSupportedExtensions());
+		
+		List<String> expected = new ArrayList<String>();
+		DirectoryIterator iterator = new DirectoryIterator(dir, filter, true);
+		while (iterator.hasNext()) {
+			iterator.next().getV().close();
+			expected.add(iterator.getCurrentFile().getPath());
+		}
+		iterator.close();
+		assertEquals(Arrays.asList(new File(dir, "a.rse").getPath(), new File(sub, "a.rse").getPath(),
+				new File(dir, "c.eng").getPath()), expected);
+		
+		Loader<String> loader = new Loader<String>() {
+			@Override
+			public Collection<String> load(InputStream stream, String filename) throws IOException {
+				List<String> digests = new ArrayList<String>();
+				for (ThrustCurveMotor.Builder builder : new GeneralMotorLoader().load(stream, filename)) {
+					digests.add(builder.build().getDigest());
+				}
+				return digests;
+			}
+		};
+		ParallelLoader<String> parallelLoader = new ParallelLoader<String>(loader, 2);
+		parallelLoader.addDirectory(dir, filter);
+		List<String> digests = new ArrayList<String>();
+		for (Pair<String, Collection<String>> f : parallelLoader.getResults()) {
+			digests.addAll(f.getV());
+		}
+		assertEquals(Arrays.asList(DIGEST3, DIGEST2, DIGEST1), digests);
+	}
+	
+	private List<String> loadDigests(Loader<ThrustCurveMotor> loader, File dir, File cacheFile) throws Exception {
+		LoaderCache<ThrustCurveMotor> cache = new LoaderCache<ThrustCurveMotor>(cacheFile);
+		cache.read();
+		ParallelLoader<ThrustCurveMotor> parallelLoader = new ParallelLoader<ThrustCurveMotor>(loader, 2);
+		parallelLoader.setCache(cache);
+		parallelLoader.addDirectory(dir, new SimpleFileFilter("", new GeneralMotorLoader().getSupportedExtensions()));
+		List<String> digests = new ArrayList<String>();
+		for (Pair<String, Collection<ThrustCurveMotor>> f : parallelLoader.getResults()) {
+			for (ThrustCurveMotor m : f.getV()) {
+				digests.add(m.getDigest());
+			}
+		}
+		cache.write();
+		return digests;
+	}
+	
+	private void copy(String resource, File file) throws IOException {
+		InputStream in = this.getClass().getResourceAsStream(resource);
+		OutputStream out = new FileOutputStream(file);
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+		}
+		out.close();
+		in.close();
+	}
+	
+	@Test
+	public void testBinaryMotorDatabase() throws IOException {
+		List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>();
+		for (String file : new String[] { "test1.eng", "test2.rse", "test3.rse" }) {
+			InputStream is = this.getClass().getResourceAsStream(file);
+			for (ThrustCurveMotor.Builder builder : new GeneralMotorLoader().load(is, file)) {
+				motors.add(builder.build());
+			}
+			is.close();
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryMotorDatabase.write(motors, out);
+		List<ThrustCurveMotor> loaded = BinaryMotorDatabase.read(new ByteArrayInputStream(out.toByteArray()));
+		
+		assertEquals(motors.size(), loaded.size());
+		for (int i = 0; i < motors.size(); i++) {
+			ThrustCurveMotor expected = motors.get(i);
+			ThrustCurveMotor actual = loaded.get(i);
+			assertEquals(expected.getDigest(), actual.getDigest());
+			assertSame(expected.getManufacturer(), actual.getManufacturer());
+			assertEquals(expected.getDesignation(), actual.getDesignation());
+			assertEquals(expected.getDescription(), actual.getDescription());
+			assertEquals(expected.getMotorType(), actual.getMotorType());
+			assertEquals(expected.getCaseInfo(), actual.getCaseInfo());
+			assertEquals(expected.getDiameter(), actual.getDiameter(), 0);
+			assertEquals(expected.getLength(), actual.getLength(), 0);
+			assertEquals(expected.getTotalImpulseEstimate(), actual.getTotalImpulseEstimate(), 0);
+			assertEquals(expected.getBurnTimeEstimate(), actual.getBurnTimeEstimate(), 0);
+			assertEquals(expected.getUnitRotationalInertia(), actual.getUnitRotationalInertia(), 0);
+			assertArrayEquals(expected.getStandardDelays(), actual.getStandardDelays(), 0);
+			
+			// The thrust curve is loaded on first use
+			assertArrayEquals(expected.getTimePoints(), actual.getTimePoints(), 0);
+			assertArrayEquals(expected.getThrustPoints(), actual.getThrustPoints(), 0);
+			assertArrayEquals(expected.getCGPoints(), actual.getCGPoints());
+			assertEquals(expected.getAverageThrust(0.1, 0.5), actual.getAverageThrust(0.1, 0.5), 0);
+		}
+		
+		// Corrupted data is rejected
+		ByteBuffer corrupted = ByteBuffer.wrap(Arrays.copyOf(out.toByteArray(), 100));
+		try {
+			BinaryMotorDatabase.read(corrupted);
+			fail("Truncated database was read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+	
+	
 	private void test(MotorLoader loader, String file, String... digests) throws IOException {
 		List<ThrustCurveMotor.Builder> motors;
 		
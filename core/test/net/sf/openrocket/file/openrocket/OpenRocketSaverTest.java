@@ -1,7 +1,9 @@
 package net.sf.openrocket.file.openrocket;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -12,15 +14,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.zip.ZipFile;
 
 import net.sf.openrocket.ServicesForTesting;
+import net.sf.openrocket.aerodynamics.CachingBarrowmanCalculator;
 import net.sf.openrocket.database.ComponentPresetDao;
 import net.sf.openrocket.database.ComponentPresetDatabase;
 import net.sf.openrocket.database.motor.MotorDatabase;
 import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
 import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
 import net.sf.openrocket.document.StorageOptions;
 import net.sf.openrocket.file.GeneralRocketLoader;
+import net.sf.openrocket.file.GeneralRocketSaver;
 import net.sf.openrocket.file.RocketLoadException;
 import net.sf.openrocket.file.motor.GeneralMotorLoader;
 import net.sf.openrocket.l10n.DebugTranslator;
@@ -29,6 +35,12 @@ import net.sf.openrocket.motor.Manufacturer;
 import net.sf.openrocket.motor.Motor;
 import net.sf.openrocket.motor.ThrustCurveMotor;
 import net.sf.openrocket.plugin.PluginModule;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
+import net.sf.openrocket.simulation.FlightEvent;
+import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.simulation.extension.SimulationExtension;
 import net.sf.openrocket.simulation.extension.impl.ScriptingExtension;
 import net.sf.openrocket.simulation.extension.impl.ScriptingUtil;
 import net.sf.openrocket.startup.Application;
@@ -189,6 +201,120 @@ public class OpenRocketSaverTest {
 	}
 	
 	
+	@Test
+	public void testBinarySimulationData() throws Exception {
+		OpenRocketDocument rocketDoc = TestRockets.makeTestRocket_v100();
+		FlightDataBranch branch = new FlightDataBranch("Sustainer",
+				FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE);
+		for (int i = 0; i < 200; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i * 0.01);
+			branch.setValue(FlightDataType.TYPE_ALTITUDE, Math.sin(i * 0.01) * 100 / 3);
+		}
+		branch.addEvent(new FlightEvent(FlightEvent.Type.APOGEE, 1.5));
+		rocketDoc.addSimulation(new Simulation(rocketDoc.getRocket(), Simulation.Status.UPTODATE, "Binary",
+				new SimulationOptions(), new ArrayList<SimulationExtension>(), new FlightData(branch)));
+		
+		StorageOptions options = new StorageOptions();
+		options.setSimulationTimeSkip(0.05);
+		options.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+		
+		File file = File.createTempFile(TMP_DIR.getName(), ".ork");
+		try {
+			new GeneralRocketSaver().save(file, rocketDoc, options);
+			
+			ZipFile zip = new ZipFile(file);
+			try {
+				assertNotNull(zip.getEntry("data/simulation1-branch1.bin"));
+			} finally {
+				zip.close();
+			}
+			
+			OpenRocketDocument rocketDocLoaded = loadRocket(file.getPath());
+			assertEquals(1, rocketDocLoaded.getSimulations().size());
+			FlightData data = rocketDocLoaded.getSimulations().get(0).getSimulatedData();
+			assertEquals(1, data.getBranchCount());
+			FlightDataBranch loaded = data.getBranch(0);
+			assertEquals("Sustainer", loaded.getBranchName());
+			assertEquals(1, loaded.getEvents().size());
+			
+			// Every fifth point and the last one are stored exactly
+			assertEquals(41, loaded.getLength());
+			for (int i = 0; i < 40; i++) {
+				assertEquals(branch.get(FlightDataType.TYPE_TIME, 5 * i), loaded.get(FlightDataType.TYPE_TIME, i), 0);
+				assertEquals(branch.get(FlightDataType.TYPE_ALTITUDE, 5 * i), loaded.get(FlightDataType.TYPE_ALTITUDE, i), 0);
+			}
+			assertEquals(branch.getLast(FlightDataType.TYPE_ALTITUDE), loaded.getLast(FlightDataType.TYPE_ALTITUDE), 0);
+			
+			// Data is loaded on demand, and kept when saving over the file it is loaded from
+			rocketDocLoaded = loadRocket(file.getPath());
+			assertEquals(0.05, rocketDocLoaded.getDefaultStorageOptions().getSimulationTimeSkip(), 0);
+			assertEquals(StorageOptions.DataFormat.BINARY, rocketDocLoaded.getDefaultStorageOptions().getSimulationDataFormat());
+			data = rocketDocLoaded.getSimulations().get(0).getSimulatedData();
+			assertFalse(data.isBranchLoaded(0));
+			assertEquals(branch.getMaximum(FlightDataType.TYPE_ALTITUDE), data.getMaxAltitude(), 0.001);
+			new GeneralRocketSaver().save(file, rocketDocLoaded, new StorageOptions());
+			assertEquals(41, data.getBranch(0).getLength());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	
+	@Test
+	public void testBinarySimulationDataOfManySimulations() throws Exception {
+		OpenRocketDocument rocketDoc = TestRockets.makeTestRocket_v100();
+		for (int n = 0; n < 10; n++) {
+			FlightDataBranch branch = new FlightDataBranch("Sustainer",
+					FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE);
+			for (int i = 0; i < 100 + n; i++) {
+				branch.addPoint();
+				branch.setValue(FlightDataType.TYPE_TIME, i * 0.01);
+				branch.setValue(FlightDataType.TYPE_ALTITUDE, n * i);
+			}
+			rocketDoc.addSimulation(new Simulation(rocketDoc.getRocket(), Simulation.Status.UPTODATE, "Binary " + n,
+					new SimulationOptions(), new ArrayList<SimulationExtension>(), new FlightData(branch)));
+		}
+		
+		StorageOptions options = new StorageOptions();
+		options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+		options.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+		
+		File file = File.createTempFile(TMP_DIR.getName(), ".ork");
+		try {
+			new GeneralRocketSaver().save(file, rocketDoc, options);
+			
+			OpenRocketDocument rocketDocLoaded = loadRocket(file.getPath());
+			assertEquals(10, rocketDocLoaded.getSimulations().size());
+			for (int n = 0; n < 10; n++) {
+				FlightDataBranch loaded = rocketDocLoaded.getSimulations().get(n).getSimulatedData().getBranch(0);
+				assertEquals(100 + n, loaded.getLength());
+				assertEquals(n * (99 + n), loaded.getLast(FlightDataType.TYPE_ALTITUDE), 0);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	
+	@Test
+	public void testAerodynamicCacheSaved() {
+		OpenRocketDocument rocketDoc = TestRockets.makeTestRocket_v100();
+		Simulation cached = new Simulation(rocketDoc.getRocket());
+		cached.getOptions().setAerodynamicCache(true);
+		rocketDoc.addSimulation(cached);
+		rocketDoc.addSimulation(new Simulation(rocketDoc.getRocket()));
+		
+		File file = saveRocket(rocketDoc, new StorageOptions());
+		OpenRocketDocument rocketDocLoaded = loadRocket(file.getPath());
+		assertEquals(2, rocketDocLoaded.getSimulations().size());
+		SimulationOptions loaded = rocketDocLoaded.getSimulations().get(0).getOptions();
+		assertTrue(loaded.isAerodynamicCache());
+		assertTrue(loaded.toSimulationConditions().getAerodynamicCalculator() instanceof CachingBarrowmanCalculator);
+		assertFalse(rocketDocLoaded.getSimulations().get(1).getOptions().isAerodynamicCache());
+	}
+	
+	
 	////////////////////////////////
 	// Tests for File Version 1.7 // 
 	////////////////////////////////
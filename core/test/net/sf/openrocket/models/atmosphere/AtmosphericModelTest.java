@@ -0,0 +1,93 @@
+package net.sf.openrocket.models.atmosphere;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+
+public class AtmosphericModelTest {
+	
+	@Test
+	public void testISA() {
+		ExtendedISAModel model = new ExtendedISAModel();
+		test(model, 0, 288.15, 101325);
+		test(model, 1000, 281.65, 89876);
+		test(model, 5000, 255.65, 54048);
+		test(model, 11000, 216.65, 22632);
+		test(model, 20000, 216.65, 5474.9);
+	}
+	
+	@Test
+	public void testInterpolationAccuracy() {
+		ExtendedISAModel model = new ExtendedISAModel();
+		for (double alt = 0; alt < 10900; alt += 37) {
+			AtmosphericConditions exact = model.getExactConditions(alt);
+			AtmosphericConditions c = model.getConditions(alt);
+			assertEquals(exact.getTemperature(), c.getTemperature(), 1e-6 * exact.getTemperature());
+			assertEquals(exact.getPressure(), c.getPressure(), 1e-5 * exact.getPressure());
+		}
+	}
+	
+	@Test
+	public void testHolder() {
+		ExtendedISAModel model = new ExtendedISAModel();
+		AtmosphericConditions c = new AtmosphericConditions();
+		int modID = c.getModID();
+		
+		model.getConditions(3000, c);
+		assertEquals(model.getConditions(3000), c);
+		assertEquals(c.getPressure() / (AtmosphericConditions.R * c.getTemperature()), c.getDensity(), 0);
+		assertEquals(165.77 + 0.606 * c.getTemperature(), c.getMachSpeed(), 0);
+		assertEquals(false, modID == c.getModID());
+	}
+	
+	@Test
+	public void testSounding() throws IOException {
+		SoundingAtmosphericModel model = SoundingAtmosphericModel.load(new StringReader(
+				"# altitude, temperature, pressure\n" +
+						"1000, 290, 90000\n" +
+						"\n" +
+						"2000  280  80000\n" +
+						"4000, 270, 60000\n"));
+		
+		test(model, 0, 290, 90000);
+		test(model, 1000, 290, 90000);
+		test(model, 1500, 285, Math.sqrt(90000.0 * 80000.0));
+		test(model, 2000, 280, 80000);
+		test(model, 3000, 275, Math.sqrt(80000.0 * 60000.0));
+		test(model, 4000, 270, 60000);
+		test(model, 10000, 270, 60000);
+	}
+	
+	@Test
+	public void testSoundingModID() throws IOException {
+		String profile = "1000 290 90000\n2000 280 80000\n";
+		SoundingAtmosphericModel model = SoundingAtmosphericModel.load(new StringReader(profile));
+		assertEquals(model.getModID(), SoundingAtmosphericModel.load(new StringReader(profile)).getModID());
+		assertTrue(model.getModID() != SoundingAtmosphericModel.load(
+				new StringReader("1000 290 90000\n2500 280 80000\n")).getModID());
+		assertTrue(model.getModID() != SoundingAtmosphericModel.load(
+				new StringReader("1000 290 90000\n2000 285 80000\n")).getModID());
+	}
+	
+	@Test(expected = IOException.class)
+	public void testSoundingNotIncreasing() throws IOException {
+		SoundingAtmosphericModel.load(new StringReader("1000 290 90000\n1000 280 80000\n"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void testSoundingIllegalNumber() throws IOException {
+		SoundingAtmosphericModel.load(new StringReader("1000 290 foo\n"));
+	}
+	
+	private void test(AtmosphericModel model, double altitude, double temperature, double pressure) {
+		AtmosphericConditions c = model.getConditions(altitude);
+		assertEquals(temperature, c.getTemperature(), 0.01);
+		assertEquals(pressure, c.getPressure(), 1e-3 * pressure);
+	}
+	
+}
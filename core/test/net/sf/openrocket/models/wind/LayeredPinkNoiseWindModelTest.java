@@ -0,0 +1,81 @@
+package net.sf.openrocket.models.wind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import net.sf.openrocket.util.Coordinate;
+
+import org.junit.Test;
+
+
+public class LayeredPinkNoiseWindModelTest {
+	
+	@Test
+	public void testSingleLayerMatchesPinkNoise() {
+		PinkNoiseWindModel expected = createPinkNoise();
+		LayeredPinkNoiseWindModel model = new LayeredPinkNoiseWindModel(123);
+		model.addLayer(0, 5, 1.5, 0.3);
+		
+		// Run well past the initially generated sequence
+		for (double t = 0; t < 200; t += 0.0173) {
+			assertCoordinate(expected.getWindVelocity(t, 100), model.getWindVelocity(t, 100));
+		}
+		// Going back in time returns the same wind
+		for (double t = 10; t > 0; t -= 0.31) {
+			assertCoordinate(createPinkNoise().getWindVelocity(t, 100), model.getWindVelocity(t, 100));
+		}
+	}
+	
+	@Test
+	public void testLayers() {
+		LayeredPinkNoiseWindModel model = new LayeredPinkNoiseWindModel(5);
+		model.addLayer(1000, 10, 0, Math.PI / 2);
+		model.addLayer(0, 2, 0, 0);
+		assertEquals(2, model.getLayerCount());
+		assertEquals(0, model.getAltitude(0), 0);
+		assertEquals(1000, model.getAltitude(1), 0);
+		
+		assertCoordinate(new Coordinate(0, 2, 0), model.getWindVelocity(1, -50));
+		assertCoordinate(new Coordinate(0, 2, 0), model.getWindVelocity(1, 0));
+		assertCoordinate(new Coordinate(5, 1, 0), model.getWindVelocity(1, 500));
+		assertCoordinate(new Coordinate(10, 0, 0), model.getWindVelocity(1, 1000));
+		assertCoordinate(new Coordinate(10, 0, 0), model.getWindVelocity(1, 5000));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateLayer() {
+		LayeredPinkNoiseWindModel model = new LayeredPinkNoiseWindModel(5);
+		model.addLayer(1000, 10, 0, 0);
+		model.addLayer(1000, 5, 0, 0);
+	}
+	
+	@Test
+	public void testModID() {
+		LayeredPinkNoiseWindModel model = createLayers(0, 1000, 2, 10, 0);
+		assertEquals(model.getModID(), createLayers(0, 1000, 2, 10, 0).getModID());
+		assertTrue(model.getModID() != createLayers(0, 1500, 2, 10, 0).getModID());
+		assertTrue(model.getModID() != createLayers(0, 1000, 10, 2, 0).getModID());
+		assertTrue(model.getModID() != createLayers(0, 1000, 2, 10, 0.5).getModID());
+	}
+	
+	private static LayeredPinkNoiseWindModel createLayers(double alt0, double alt1, double avg0, double avg1, double dir) {
+		LayeredPinkNoiseWindModel model = new LayeredPinkNoiseWindModel(5);
+		model.addLayer(alt0, avg0, 1, dir);
+		model.addLayer(alt1, avg1, 1, 0);
+		return model;
+	}
+	
+	private static PinkNoiseWindModel createPinkNoise() {
+		PinkNoiseWindModel model = new PinkNoiseWindModel(123);
+		model.setAverage(5);
+		model.setStandardDeviation(1.5);
+		model.setDirection(0.3);
+		return model;
+	}
+	
+	private static void assertCoordinate(Coordinate expected, Coordinate actual) {
+		assertEquals(expected.x, actual.x, 1e-9);
+		assertEquals(expected.y, actual.y, 1e-9);
+		assertEquals(expected.z, actual.z, 1e-9);
+	}
+	
+}
@@ -177,6 +177,53 @@ public class ThrustCurveMotorTest {
 		}
 	}
 	
+	@Test
+	public void testIndexSearch(){
+		final ThrustCurveMotor mtr = motorEstesA8_3;
+		final double[] times = mtr.getTimePoints();
+		
+		assertEquals( 0, mtr.getIndex( -1, 0 ));
+		assertEquals( 0, mtr.getIndex( Double.NaN, 5 ));
+		assertEquals( times.length-1, mtr.getIndex( 10, 0 ));
+		
+		int cursor = 0;
+		for( double t = 0; t < 0.8; t += 0.0037 ){
+			int expIndex = 0;
+			while( expIndex < times.length-1 && times[expIndex+1] <= t ){
+				expIndex++;
+			}
+			// with and without a hint, and with a hint past the time
+			assertEquals( expIndex, mtr.getIndex( t, 0 ));
+			assertEquals( expIndex, mtr.getIndex( t, times.length-1 ));
+			cursor = mtr.getIndex( t, cursor );
+			assertEquals( expIndex, cursor );
+		}
+	}
+	
+	@Test
+	public void testAverageThrust(){
+		final ThrustCurveMotor mtr = motorEstesA8_3;
+		
+		final double[][] intervals = {{0, 0.73}, {0.05, 0.06}, {0.1, 0.5}, {0.2, 0.2001}, {0.7, 1.0}, {-0.1, 0.1}, {1.0, 2.0}};
+		for( double[] interval : intervals ){
+			final double start = interval[0];
+			final double end = interval[1];
+			
+			// integrate the interpolated thrust numerically
+			final int steps = 100000;
+			double impulse = 0;
+			for( int i = 0; i < steps; i++ ){
+				final double t = start + (end - start) * (i + 0.5) / steps;
+				impulse += ( t < 0 ? 0 : mtr.getThrust( t )) * (end - start) / steps;
+			}
+			
+			assertEquals( "Average thrust over [" + start + ", " + end + "]: ", impulse / (end - start), mtr.getAverageThrust( start, end ), 0.001 );
+		}
+		
+		assertEquals( mtr.getTotalImpulseEstimate(), mtr.getAverageThrust( 0, 1 ), 0.000001 );
+		assertEquals( 1.220, mtr.getAverageThrust( 0.060, 0.060 ), 0.001 );
+	}
+	
 	@Test
 	public void testThrustRetrieval(){
 		// attempt to retrieve an integer index: 
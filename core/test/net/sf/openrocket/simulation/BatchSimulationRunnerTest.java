@@ -0,0 +1,209 @@
+package net.sf.openrocket.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.simulation.exception.SimulationCancelledException;
+import net.sf.openrocket.simulation.listeners.AbstractSimulationListener;
+import net.sf.openrocket.util.TestRockets;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+
+public class BatchSimulationRunnerTest extends BaseTestCase {
+
+	private static final int COUNT = 6;
+
+	private static Simulation createSimulation(Rocket rocket, int seed) {
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		SimulationOptions options = sim.getOptions();
+		options.setRandomSeed(seed);
+		options.setWindSpeedAverage(3);
+		options.setWindTurbulenceIntensity(0.1);
+		return sim;
+	}
+
+	private static List<SimulationConditions> createConditions(Rocket rocket) {
+		List<SimulationConditions> list = new ArrayList<SimulationConditions>();
+		for (int i = 0; i < COUNT; i++) {
+			Simulation sim = createSimulation(rocket, i);
+			SimulationConditions conditions = sim.getOptions().toSimulationConditions();
+			conditions.setSimulation(sim);
+			list.add(conditions);
+		}
+		return list;
+	}
+
+	@Test
+	public void testConditionsMatchSequentialSimulation() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+
+		BatchSimulationRunner runner = new BatchSimulationRunner(3);
+		try {
+			BatchSimulationRunner.Batch batch = runner.simulateConditions(createConditions(rocket));
+			List<BatchSimulationRunner.Result> results = batch.getAll();
+			assertEquals(COUNT, results.size());
+			assertNull(batch.take());
+
+			for (int i = 0; i < COUNT; i++) {
+				BatchSimulationRunner.Result result = results.get(i);
+				assertEquals(i, result.getIndex());
+				assertTrue(result.isSuccessful());
+
+				Simulation sim = createSimulation(rocket, i);
+				sim.simulate();
+				FlightData expected = sim.getSimulatedData();
+				FlightData actual = result.getFlightData();
+				assertEquals(expected.getMaxAltitude(), actual.getMaxAltitude(), 0);
+				assertEquals(expected.getFlightTime(), actual.getFlightTime(), 0);
+				assertEquals(expected.getBranch(0).getLength(), actual.getBranch(0).getLength());
+			}
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+	@Test
+	public void testSimulations() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		List<Simulation> sims = new ArrayList<Simulation>();
+		for (int i = 0; i < COUNT; i++) {
+			sims.add(createSimulation(rocket, i));
+		}
+
+		BatchSimulationRunner runner = new BatchSimulationRunner(2);
+		try {
+			BatchSimulationRunner.Batch batch = runner.simulate(sims);
+			BatchSimulationRunner.Result result;
+			int n = 0;
+			while ((result = batch.take()) != null) {
+				assertTrue(result.isSuccessful());
+				assertEquals(sims.get(result.getIndex()).getSimulatedData(), result.getFlightData());
+				assertEquals(Simulation.Status.UPTODATE, sims.get(result.getIndex()).getStatus());
+				n++;
+			}
+			assertEquals(COUNT, n);
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+	@Test
+	public void testConditionsFactory() throws Exception {
+		final Rocket rocket = TestRockets.makeEstesAlphaIII();
+		final AtomicInteger created = new AtomicInteger(0);
+		final int count = 10;
+
+		// A single thread submits at most four simulations ahead of the retrieved results
+		BatchSimulationRunner runner = new BatchSimulationRunner(1);
+		try {
+			BatchSimulationRunner.Batch batch = runner.simulateConditions(count, new BatchSimulationRunner.ConditionsFactory() {
+				@Override
+				public SimulationConditions createConditions(int index) {
+					created.incrementAndGet();
+					Simulation sim = createSimulation(rocket, index);
+					SimulationConditions conditions = sim.getOptions().toSimulationConditions();
+					conditions.setSimulation(sim);
+					return conditions;
+				}
+			});
+			BatchSimulationRunner.Result first = batch.take();
+			assertEquals(0, first.getIndex());
+			assertTrue(first.isSuccessful());
+			assertTrue(created.get() <= 5);
+
+			List<BatchSimulationRunner.Result> results = batch.getAll();
+			assertEquals(count - 1, results.size());
+			for (BatchSimulationRunner.Result result : results) {
+				assertTrue(result.isSuccessful());
+			}
+			assertEquals(count, created.get());
+
+			Simulation sim = createSimulation(rocket, 3);
+			sim.simulate();
+			assertEquals(3, results.get(2).getIndex());
+			assertEquals(sim.getSimulatedData().getMaxAltitude(), results.get(2).getFlightData().getMaxAltitude(), 0);
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+
+		BatchSimulationRunner runner = new BatchSimulationRunner(1);
+		try {
+			BatchSimulationRunner.Batch batch = runner.simulateConditions(createConditions(rocket));
+			batch.cancel();
+			assertTrue(batch.isCancelled());
+
+			List<BatchSimulationRunner.Result> results = batch.getAll();
+			assertEquals(COUNT, results.size());
+			for (BatchSimulationRunner.Result result : results) {
+				// The first simulation may have completed before cancelling
+				if (!result.isSuccessful()) {
+					assertNull(result.getFlightData());
+					assertTrue(result.getException() instanceof SimulationCancelledException);
+				} else {
+					assertNotNull(result.getFlightData());
+				}
+			}
+			assertEquals(0, batch.getRemaining());
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelWaitsForRunningSimulations() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		final CountDownLatch running = new CountDownLatch(1);
+		final AtomicBoolean retrieved = new AtomicBoolean(false);
+		final AtomicBoolean stepAfterRetrieved = new AtomicBoolean(false);
+		List<SimulationConditions> conditions = createConditions(rocket);
+		for (SimulationConditions c : conditions) {
+			// The listener clones share the flags
+			c.getSimulationListenerList().add(new AbstractSimulationListener() {
+				@Override
+				public void postStep(SimulationStatus status) {
+					running.countDown();
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					if (retrieved.get()) {
+						stepAfterRetrieved.set(true);
+					}
+				}
+			});
+		}
+
+		BatchSimulationRunner runner = new BatchSimulationRunner(3);
+		try {
+			BatchSimulationRunner.Batch batch = runner.simulateConditions(conditions);
+			running.await();
+			batch.cancel();
+			assertEquals(COUNT, batch.getAll().size());
+			retrieved.set(true);
+
+			Thread.sleep(50);
+			assertFalse(stepAfterRetrieved.get());
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+}
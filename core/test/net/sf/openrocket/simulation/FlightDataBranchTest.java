@@ -0,0 +1,144 @@
+package net.sf.openrocket.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import net.sf.openrocket.unit.UnitGroup;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+
+public class FlightDataBranchTest extends BaseTestCase {
+
+	@Test
+	public void testValues() {
+		FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE);
+		assertEquals(0, branch.getLength());
+		assertTrue(Double.isNaN(branch.getLast(FlightDataType.TYPE_TIME)));
+
+		for (int i = 0; i < 1000; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i * 0.01);
+			branch.setValue(FlightDataType.TYPE_ALTITUDE, i * (999 - i));
+		}
+
+		assertEquals(1000, branch.getLength());
+		assertEquals(9.99, branch.getLast(FlightDataType.TYPE_TIME), 0);
+		assertEquals(0, branch.getMinimum(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(500 * 499, branch.getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(0.5, branch.get(FlightDataType.TYPE_TIME, 50), 0);
+
+		List<Double> time = branch.get(FlightDataType.TYPE_TIME);
+		assertEquals(1000, time.size());
+		assertEquals(5.0, time.get(500), 0);
+
+		// The view does not include points added later
+		branch.addPoint();
+		assertEquals(1000, time.size());
+		assertEquals(1001, branch.get(FlightDataType.TYPE_TIME).size());
+
+		assertNull(branch.get(FlightDataType.TYPE_MACH_NUMBER));
+		assertTrue(Double.isNaN(branch.getLast(FlightDataType.TYPE_MACH_NUMBER)));
+		assertTrue(Double.isNaN(branch.getMinimum(FlightDataType.TYPE_MACH_NUMBER)));
+	}
+
+	@Test
+	public void testAddTypeLater() {
+		FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME);
+		for (int i = 0; i < 3; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i);
+		}
+
+		FlightDataType custom = FlightDataType.getType("Branch test value", "btv", UnitGroup.UNITS_NONE);
+		branch.setValue(custom, 7);
+
+		List<Double> values = branch.get(custom);
+		assertEquals(3, values.size());
+		assertTrue(Double.isNaN(values.get(0)));
+		assertTrue(Double.isNaN(values.get(1)));
+		assertEquals(7, values.get(2), 0);
+		assertEquals(7, branch.getMinimum(custom), 0);
+
+		assertArrayEquals(new FlightDataType[] { FlightDataType.TYPE_TIME, custom }, branch.getTypes());
+	}
+
+	@Test
+	public void testImmute() {
+		FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME);
+		branch.addPoint();
+		branch.setValue(FlightDataType.TYPE_TIME, 1);
+		branch.immute();
+
+		assertEquals(1, branch.getLast(FlightDataType.TYPE_TIME), 0);
+		try {
+			branch.addPoint();
+		} catch (IllegalStateException e) {
+			return;
+		}
+		throw new AssertionError("Immutable branch was modified");
+	}
+
+	@Test
+	public void testSummaryPolicy() {
+		FlightDataBranch branch = new FlightDataBranch("test", RecordingPolicy.SUMMARY,
+				FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE, FlightDataType.TYPE_MACH_NUMBER);
+		assertArrayEquals(new FlightDataType[] { FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE },
+				branch.getTypes());
+		
+		for (int i = 0; i < 1000; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i * 0.01);
+			branch.setValue(FlightDataType.TYPE_ALTITUDE, i * (999 - i));
+			branch.setValue(FlightDataType.TYPE_MACH_NUMBER, i);
+			if (i == 200) {
+				branch.addEvent(new FlightEvent(FlightEvent.Type.BURNOUT, i * 0.01));
+			}
+		}
+		
+		// First point, points around the event, the maximum and the last point
+		List<Double> time = branch.get(FlightDataType.TYPE_TIME);
+		assertEquals(5, branch.getLength());
+		assertEquals(0, time.get(0), 0);
+		assertEquals(2.0, time.get(1), 0);
+		assertEquals(2.01, time.get(2), 0.000001);
+		assertEquals(5.0, time.get(3), 0);
+		assertEquals(9.99, time.get(4), 0);
+		assertEquals(500 * 499, branch.getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(500 * 499, branch.get(FlightDataType.TYPE_ALTITUDE, 3), 0);
+		
+		assertNull(branch.get(FlightDataType.TYPE_MACH_NUMBER));
+		assertEquals(999, branch.getLast(FlightDataType.TYPE_MACH_NUMBER), 0);
+	}
+	
+	@Test
+	public void testSetValues() {
+		FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME);
+		for (int i = 0; i < 3; i++) {
+			branch.addPoint();
+			branch.setValue(FlightDataType.TYPE_TIME, i);
+		}
+		branch.immute();
+		assertArrayEquals(new double[] { 0, 1, 2 }, branch.getValues(FlightDataType.TYPE_TIME), 0);
+		assertNull(branch.getValues(FlightDataType.TYPE_ALTITUDE));
+
+		// Values computed from finished data can be added to an immutable branch
+		branch.setValues(FlightDataType.TYPE_ALTITUDE, new double[] { 5, Double.NaN, -1 });
+		assertArrayEquals(new double[] { 5, Double.NaN, -1 }, branch.getValues(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(-1, branch.getLast(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(-1, branch.getMinimum(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(5, branch.getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+		assertEquals(Double.NaN, branch.get(FlightDataType.TYPE_ALTITUDE).get(1), 0);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewReadOnly() {
+		FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME);
+		branch.addPoint();
+		branch.get(FlightDataType.TYPE_TIME).set(0, 1.0);
+	}
+}
@@ -0,0 +1,214 @@
+package net.sf.openrocket.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.file.GeneralRocketSaver;
+import net.sf.openrocket.simulation.customexpression.CustomExpression;
+import net.sf.openrocket.simulation.customexpression.CustomExpressionBatchEvaluator;
+import net.sf.openrocket.simulation.extension.SimulationExtension;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+import net.sf.openrocket.util.TestRockets;
+
+public class FlightDataTest extends BaseTestCase {
+
+	@Test
+	public void testLoadedBranch() {
+		CountingLoader loader = new CountingLoader(false);
+		FlightData data = new FlightData(100, 50, 20, 0.2, 5, 30, 4, 10, 12);
+		data.addBranch(loader);
+		data.immute();
+
+		// The summary values are not calculated from the branch
+		assertEquals(0, loader.count);
+		assertEquals(1, data.getBranchCount());
+		assertEquals(100, data.getMaxAltitude(), 0);
+		assertTrue(Double.isNaN(data.getOptimumDelay()));
+		assertEquals(0, loader.count);
+
+		FlightDataBranch branch = data.getBranch(0);
+		assertEquals(1, loader.count);
+		assertEquals(10, branch.getLength());
+		assertEquals(81, branch.getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+
+		// Loaded once while the branch is reachable
+		assertSame(branch, data.getBranch(0));
+		assertEquals(1, loader.count);
+	}
+
+	@Test
+	public void testLoadBranches() throws Exception {
+		CountingLoader loader = new CountingLoader(false);
+		FlightData data = new FlightData();
+		data.addBranch(loader);
+
+		data.loadBranches();
+		assertEquals(1, loader.count);
+		data.getBranch(0);
+		assertEquals(1, loader.count);
+	}
+
+	@Test
+	public void testEvaluatedBranchNotEvicted() throws Exception {
+		OpenRocketDocument doc = TestRockets.makeTestRocket_v100();
+		CountingLoader loader = new CountingLoader(false);
+		FlightData data = new FlightData(100, 50, 20, 0.2, 5, 30, 4, 10, 12);
+		data.addBranch(loader);
+		data.immute();
+		Simulation sim = new Simulation(doc.getRocket(), Simulation.Status.UPTODATE, "Simulation",
+				new SimulationOptions(), new ArrayList<SimulationExtension>(), data);
+
+		CustomExpression exp = new CustomExpression(doc, "Twice altitude", "h2", "m", "2*h");
+		new CustomExpressionBatchEvaluator(Arrays.asList(exp)).evaluate(Arrays.asList(sim), 1);
+
+		// The evaluated values are not lost by loading the branch again
+		data.evictBranches();
+		assertTrue(data.isBranchLoaded(0));
+		assertEquals(162, data.getBranch(0).getMaximum(exp.getType()), 0);
+		assertEquals(1, loader.count);
+	}
+
+	@Test
+	public void testReleasedAfterSave() throws Exception {
+		OpenRocketDocument doc = TestRockets.makeTestRocket_v100();
+		FlightData data = new FlightData(new CountingLoader(false).load());
+		doc.addSimulation(new Simulation(doc.getRocket(), Simulation.Status.UPTODATE, "Simulation",
+				new SimulationOptions(), new ArrayList<SimulationExtension>(), data));
+		StorageOptions options = new StorageOptions();
+		options.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+
+		File file = File.createTempFile("FlightDataTest", ".ork");
+		try {
+			// Data saved with only some of the points is kept in memory
+			options.setSimulationTimeSkip(2);
+			new GeneralRocketSaver().save(file, doc, options);
+			data.evictBranches();
+			assertTrue(data.isBranchLoaded(0));
+
+			// Data saved with all points is loaded from the saved file
+			options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+			new GeneralRocketSaver().save(file, doc, options);
+			data.evictBranches();
+			assertFalse(data.isBranchLoaded(0));
+			FlightDataBranch branch = data.getBranch(0);
+			assertEquals(10, branch.getLength());
+			assertEquals(81, branch.getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+			assertEquals(1, branch.getEvents().size());
+
+			// Saving over the file keeps the data
+			new GeneralRocketSaver().save(file, doc, options);
+			data.evictBranches();
+			assertEquals(81, data.getBranch(0).getMaximum(FlightDataType.TYPE_ALTITUDE), 0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFailedLoad() {
+		CountingLoader loader = new CountingLoader(true);
+		FlightData data = new FlightData();
+		data.addBranch(loader);
+
+		FlightDataBranch branch = data.getBranch(0);
+		assertEquals("test", branch.getBranchName());
+		assertEquals(0, branch.getLength());
+		assertEquals(1, branch.getEvents().size());
+		assertTrue(Double.isNaN(branch.getLast(FlightDataType.TYPE_TIME)));
+
+		// The empty branch is not kept in place of the data
+		assertFalse(data.isBranchLoaded(0));
+		data.getBranch(0);
+		assertEquals(2, loader.count);
+		try {
+			data.loadBranches();
+			fail("Failure to load not reported");
+		} catch (IOException e) {
+			// Expected
+		}
+		assertFalse(data.isBranchLoaded(0));
+	}
+
+	@Test
+	public void testFailedLoadNotSaved() throws Exception {
+		OpenRocketDocument doc = TestRockets.makeTestRocket_v100();
+		FlightData data = new FlightData(100, 50, 20, 0.2, 5, 30, 4, 10, 12);
+		data.addBranch(new CountingLoader(true));
+		doc.addSimulation(new Simulation(doc.getRocket(), Simulation.Status.UPTODATE, "Simulation",
+				new SimulationOptions(), new ArrayList<SimulationExtension>(), data));
+		StorageOptions options = new StorageOptions();
+		options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_ALL);
+
+		File file = File.createTempFile("FlightDataTest", ".ork");
+		try {
+			// Neither a new file nor the existing one is written
+			file.delete();
+			try {
+				new GeneralRocketSaver().save(file, doc, options);
+				fail("Saved data which could not be loaded");
+			} catch (IOException e) {
+				// Expected
+			}
+			assertFalse(file.exists());
+
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 1, 2, 3 });
+			out.close();
+			try {
+				new GeneralRocketSaver().save(file, doc, options);
+				fail("Saved data which could not be loaded");
+			} catch (IOException e) {
+				// Expected
+			}
+			assertEquals(3, file.length());
+		} finally {
+			file.delete();
+		}
+	}
+
+
+	private static class CountingLoader implements FlightData.BranchLoader {
+		private final boolean fail;
+		private int count = 0;
+
+		CountingLoader(boolean fail) {
+			this.fail = fail;
+		}
+
+		@Override
+		public FlightDataBranch load() throws IOException {
+			count++;
+			if (fail) {
+				throw new IOException("Test failure");
+			}
+			FlightDataBranch branch = loadEmpty();
+			for (int i = 0; i < 10; i++) {
+				branch.addPoint();
+				branch.setValue(FlightDataType.TYPE_TIME, i);
+				branch.setValue(FlightDataType.TYPE_ALTITUDE, i * i);
+			}
+			return branch;
+		}
+
+		@Override
+		public FlightDataBranch loadEmpty() {
+			FlightDataBranch branch = new FlightDataBranch("test", FlightDataType.TYPE_TIME, FlightDataType.TYPE_ALTITUDE);
+			branch.addEvent(new FlightEvent(FlightEvent.Type.LAUNCH, 0));
+			return branch;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package net.sf.openrocket.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.util.TestRockets;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+
+public class RK4SimulationStepperTest extends BaseTestCase {
+
+	/**
+	 * Stepper using a newly allocated status and flight conditions for each sub-step,
+	 * as was done before they were reused.
+	 */
+	private static class AllocatingStepper extends RK4SimulationStepper {
+		@Override
+		protected RK4SimulationStatus subStep(RK4SimulationStatus status, RK4Parameters k, double h) {
+			return super.subStep(status, k, h).clone();
+		}
+
+		@Override
+		protected void computeParameters(RK4SimulationStatus status, DataStore dataStore, RK4Parameters params)
+				throws SimulationException {
+			dataStore.scratchFlightConditions = null;
+			super.computeParameters(status, dataStore, params);
+		}
+	}
+
+	private static FlightData simulate(Rocket rocket, final SimulationStepper stepper) throws SimulationException {
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		SimulationOptions options = sim.getOptions();
+		options.setRandomSeed(1);
+		options.setTimeStep(0.01);
+		options.setWindSpeedAverage(3);
+		options.setWindTurbulenceIntensity(0.1);
+		SimulationConditions conditions = options.toSimulationConditions();
+		conditions.setSimulation(sim);
+
+		BasicEventSimulationEngine engine = new BasicEventSimulationEngine() {
+			@Override
+			SimulationStepper newFlightStepper(SimulationConditions simulationConditions) {
+				return stepper;
+			}
+		};
+		return engine.simulate(conditions);
+	}
+
+	@Test
+	public void testReusedScratchState() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		FlightData expected = simulate(rocket, new AllocatingStepper());
+		FlightData actual = simulate(rocket, new RK4SimulationStepper());
+
+		assertTrue(expected.getMaxAltitude() > 100);
+		assertEquals(expected.getMaxAltitude(), actual.getMaxAltitude(), 1e-6);
+		assertEquals(expected.getTimeToApogee(), actual.getTimeToApogee(), 1e-6);
+		assertEquals(expected.getFlightTime(), actual.getFlightTime(), 1e-6);
+		assertEquals(expected.getBranch(0).getLength(), actual.getBranch(0).getLength());
+	}
+}
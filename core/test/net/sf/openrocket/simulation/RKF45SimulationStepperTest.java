@@ -0,0 +1,85 @@
+package net.sf.openrocket.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.file.GeneralRocketLoader;
+import net.sf.openrocket.file.GeneralRocketSaver;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.simulation.exception.SimulationException;
+import net.sf.openrocket.util.TestRockets;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+
+public class RKF45SimulationStepperTest extends BaseTestCase {
+
+	private static Simulation createSimulation(Rocket rocket, SimulationStepperType stepper, double timeStep) {
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		SimulationOptions options = sim.getOptions();
+		options.setRandomSeed(1);
+		options.setTimeStep(timeStep);
+		options.setWindSpeedAverage(0);
+		options.setSimulationStepperType(stepper);
+		return sim;
+	}
+
+	private static FlightData simulate(Rocket rocket, SimulationStepperType stepper, double timeStep)
+			throws SimulationException {
+		Simulation sim = createSimulation(rocket, stepper, timeStep);
+		sim.simulate();
+		return sim.getSimulatedData();
+	}
+
+	@Test
+	public void testMatchesFineRK4() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		FlightData expected = simulate(rocket, SimulationStepperType.RK4, 0.001);
+		FlightData actual = simulate(rocket, SimulationStepperType.RKF45, 0.01);
+
+		assertTrue(expected.getMaxAltitude() > 100);
+		assertEquals(expected.getMaxAltitude(), actual.getMaxAltitude(), 0.05);
+		assertEquals(expected.getMaxVelocity(), actual.getMaxVelocity(), 0.01);
+		assertEquals(expected.getTimeToApogee(), actual.getTimeToApogee(), 0.005);
+		assertEquals(expected.getFlightTime(), actual.getFlightTime(), 0.01 * expected.getFlightTime());
+
+		// The coasting flight is simulated with longer time steps
+		assertTrue(actual.getBranch(0).getLength() * 5 < expected.getBranch(0).getLength());
+	}
+
+	@Test
+	public void testStepperSelection() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		Simulation sim = createSimulation(rocket, SimulationStepperType.RKF45, 0.01);
+		SimulationConditions conditions = sim.getOptions().toSimulationConditions();
+		assertEquals(SimulationStepperType.RKF45, conditions.getSimulationStepperType());
+		assertTrue(new BasicEventSimulationEngine().newFlightStepper(conditions) instanceof RKF45SimulationStepper);
+
+		sim.getOptions().setSimulationStepperType(SimulationStepperType.RK4);
+		conditions = sim.getOptions().toSimulationConditions();
+		assertTrue(new BasicEventSimulationEngine().newFlightStepper(conditions) instanceof RK4SimulationStepper);
+	}
+
+	@Test
+	public void testStepperSaved() throws Exception {
+		OpenRocketDocument doc = TestRockets.makeTestRocket_v100();
+		Simulation sim = new Simulation(doc.getRocket());
+		sim.getOptions().setSimulationStepperType(SimulationStepperType.RKF45);
+		doc.addSimulation(sim);
+		doc.addSimulation(new Simulation(doc.getRocket()));
+
+		File file = File.createTempFile("RKF45SimulationStepperTest", ".ork");
+		try {
+			new GeneralRocketSaver().save(file, doc);
+			OpenRocketDocument loaded = new GeneralRocketLoader(file).load();
+			assertEquals(SimulationStepperType.RKF45, loaded.getSimulation(0).getOptions().getSimulationStepperType());
+			assertEquals(SimulationStepperType.RK4, loaded.getSimulation(1).getOptions().getSimulationStepperType());
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -1,23 +1,194 @@
 package net.sf.openrocket.simulation.customexpression;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
 import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.document.OpenRocketDocumentFactory;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.simulation.FlightDataBranch;
+import net.sf.openrocket.simulation.FlightDataType;
 import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+import net.sf.openrocket.util.TestRockets;
 
 import org.junit.Test;
 
+import de.congrace.exp4j.Calculable;
+import de.congrace.exp4j.DoubleExpression;
+import de.congrace.exp4j.ExpressionBuilder;
+import de.congrace.exp4j.Variable;
+
 public class TestExpressions extends BaseTestCase {
-	
+
 	@Test
 	public void testExpressions() {
 		// TODO Auto-generated constructor stub
-		
+
 		OpenRocketDocument doc = OpenRocketDocumentFactory.createNewRocket();
-		
+
 		//CustomExpression exp = new CustomExpression(doc, "Kinetic energy", "Ek", "J", ".5*m*Vt^2");
-		
+
 		CustomExpression exp = new CustomExpression(doc, "Average mass", "Mavg", "kg", "mean(m[0:t])");
 		//System.out.println(exp.getExpressionString());
-		
+
+	}
+
+	@Test
+	public void testVariableNames() throws Exception {
+		Calculable calc = new ExpressionBuilder("2*h + h*t - 1")
+				.withVariable(new Variable("h"))
+				.withVariable(new Variable("t"))
+				.withVariable(new Variable("m"))
+				.build();
+		assertEquals(new LinkedHashSet<String>(Arrays.asList("h", "t")), calc.getVariableNames());
+
+		// Setting a variable again replaces the previous value
+		calc.setVariable(new Variable("h", 1));
+		calc.setVariable(new Variable("t", 2));
+		assertEquals(3.0, calc.calculate().getDoubleValue(), 0);
+		calc.setVariable(new Variable("h", 2));
+		assertEquals(7.0, calc.calculate().getDoubleValue(), 0);
+	}
+
+	@Test
+	public void testBuildAgain() throws Exception {
+		ExpressionBuilder builder = new ExpressionBuilder("2*h")
+				.withVariable(new Variable("h"));
+		builder.build();
+
+		// The variables added after building are used when building again
+		Calculable calc = builder.withVariable(new Variable("t")).build();
+		calc.setVariable(new Variable("h", 1));
+		calc.setVariable(new Variable("t", 2));
+		assertEquals(2.0, calc.calculate().getDoubleValue(), 0);
+		assertEquals(new LinkedHashSet<String>(Arrays.asList("h")), calc.getVariableNames());
+	}
+
+	@Test
+	public void testCompile() throws Exception {
+		String[] expressions = { "2*h + h*t - 1", "-h^2 % 3 / t", "sqrt(abs(h)) + log10(t)", "lclip(h, 1) + uclip(t, 0.5)",
+				"mean(h) * 2", "+h - -t" };
+		double[][] values = { { 0.5, 2 }, { -3, 0.25 }, { 7, 1e-3 } };
+		for (String expression : expressions) {
+			ExpressionBuilder builder = new ExpressionBuilder(expression)
+					.withVariable(new Variable("h"))
+					.withVariable(new Variable("t"))
+					.withCustomFunctions(Functions.getInstance().getAllFunction());
+			Calculable calc = builder.build();
+			DoubleExpression compiled = calc.compile("t", "h");
+			assertNotNull(expression, compiled);
+			for (double[] v : values) {
+				calc.setVariable(new Variable("h", v[0]));
+				calc.setVariable(new Variable("t", v[1]));
+				assertEquals(expression, calc.calculate().getDoubleValue(), compiled.evaluate(new double[] { v[1], v[0] }), 0);
+			}
+		}
+
+		// Expressions with variables that are not given cannot be compiled
+		Calculable calc = new ExpressionBuilder("h + m")
+				.withVariable(new Variable("h"))
+				.withVariable(new Variable("m"))
+				.build();
+		assertNull(calc.compile("h"));
+	}
+
+	@Test
+	public void testSimulationListener() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		OpenRocketDocument doc = OpenRocketDocumentFactory.createDocumentFromRocket(rocket);
+		CustomExpression exp = new CustomExpression(doc, "Twice altitude", "h2", "m", "2*h + 0*t");
+		doc.addCustomExpression(exp);
+
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		sim.simulate(new CustomExpressionSimulationListener(doc.getCustomExpressions()));
+
+		FlightDataBranch branch = sim.getSimulatedData().getBranch(0);
+		List<Double> altitude = branch.get(FlightDataType.TYPE_ALTITUDE);
+		List<Double> values = branch.get(exp.getType());
+		assertTrue(altitude.size() > 10);
+		assertEquals(altitude.size(), values.size());
+		for (int i = 0; i < altitude.size(); i++) {
+			assertEquals(2 * altitude.get(i), values.get(i), 0);
+		}
+		assertEquals(2 * branch.getMaximum(FlightDataType.TYPE_ALTITUDE), branch.getMaximum(exp.getType()), 0);
+	}
+
+	@Test
+	public void testBatchEvaluator() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		OpenRocketDocument doc = OpenRocketDocumentFactory.createDocumentFromRocket(rocket);
+		doc.addCustomExpression(new CustomExpression(doc, "Kinetic energy", "Ek", "J", ".5*m*Vt^2"));
+		doc.addCustomExpression(new CustomExpression(doc, "Altitude gain", "dh", "m", "h - h[t-0.5]"));
+		doc.addCustomExpression(new CustomExpression(doc, "Mean altitude", "hm", "m", "mean(h[0:t])"));
+		doc.addCustomExpression(new CustomExpression(doc, "Double energy", "Ek2", "J", "2*Ek"));
+		assertEquals(4, doc.getCustomExpressions().size());
+
+		// Expressions evaluated during the simulation
+		Simulation expected = createSimulation(rocket);
+		expected.simulate(new CustomExpressionSimulationListener(doc.getCustomExpressions()));
+		FlightDataBranch expectedBranch = expected.getSimulatedData().getBranch(0);
+
+		// Expressions evaluated afterwards
+		Simulation actual = createSimulation(rocket);
+		actual.simulate();
+		FlightDataBranch actualBranch = actual.getSimulatedData().getBranch(0);
+		for (CustomExpression exp : doc.getCustomExpressions()) {
+			assertNull(actualBranch.get(exp.getType()));
+		}
+		new CustomExpressionBatchEvaluator(doc.getCustomExpressions()).evaluate(Arrays.asList(actual), 2);
+
+		assertEquals(expectedBranch.getLength(), actualBranch.getLength());
+		for (CustomExpression exp : doc.getCustomExpressions()) {
+			double[] expectedValues = expectedBranch.getValues(exp.getType());
+			double[] actualValues = actualBranch.getValues(exp.getType());
+			for (int i = 0; i < expectedValues.length; i++) {
+				assertEquals(exp.getName() + " at " + i, expectedValues[i], actualValues[i], 1e-9 * Math.abs(expectedValues[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testParallelBatchEvaluator() throws Exception {
+		Rocket rocket = TestRockets.makeEstesAlphaIII();
+		OpenRocketDocument doc = OpenRocketDocumentFactory.createDocumentFromRocket(rocket);
+		doc.addCustomExpression(new CustomExpression(doc, "Altitude gain", "dh", "m", "h - h[t-0.5]"));
+		doc.addCustomExpression(new CustomExpression(doc, "Mean altitude", "hm", "m", "mean(h[0:t])"));
+		CustomExpressionBatchEvaluator evaluator = new CustomExpressionBatchEvaluator(doc.getCustomExpressions());
+
+		// The same simulation evaluated one at a time and in parallel
+		Simulation expected = createSimulation(rocket);
+		expected.simulate();
+		FlightDataBranch expectedBranch = expected.getSimulatedData().getBranch(0);
+		evaluator.evaluate(expectedBranch, expected.getOptions().getTimeStep());
+
+		List<Simulation> simulations = new ArrayList<Simulation>();
+		for (int i = 0; i < 4; i++) {
+			Simulation sim = createSimulation(rocket);
+			sim.simulate();
+			simulations.add(sim);
+		}
+		evaluator.evaluate(simulations, 4);
+
+		for (Simulation sim : simulations) {
+			FlightDataBranch branch = sim.getSimulatedData().getBranch(0);
+			for (CustomExpression exp : doc.getCustomExpressions()) {
+				assertArrayEquals(exp.getName(), expectedBranch.getValues(exp.getType()), branch.getValues(exp.getType()), 0);
+			}
+		}
+	}
+
+	private static Simulation createSimulation(Rocket rocket) {
+		Simulation sim = TestRockets.makeAlphaIIISimulation(rocket);
+		sim.getOptions().setRandomSeed(1);
+		return sim;
 	}
 }
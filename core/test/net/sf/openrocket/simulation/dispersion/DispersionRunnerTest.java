@@ -0,0 +1,117 @@
+package net.sf.openrocket.simulation.dispersion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.simulation.BatchSimulationRunner;
+import net.sf.openrocket.simulation.SimulationOptions;
+import net.sf.openrocket.util.TestRockets;
+import net.sf.openrocket.util.BaseTestCase.BaseTestCase;
+
+public class DispersionRunnerTest extends BaseTestCase {
+
+	private static final double EPSILON = 0.000001;
+
+	private static Simulation createSimulation() {
+		Simulation sim = TestRockets.makeAlphaIIISimulation(TestRockets.makeEstesAlphaIII());
+		SimulationOptions options = sim.getOptions();
+		options.setWindSpeedAverage(3);
+		options.setWindTurbulenceIntensity(0.1);
+		return sim;
+	}
+
+	private static Dispersion createDispersion() {
+		Dispersion dispersion = new Dispersion();
+		dispersion.setLaunchRodAngle(Distribution.normal(0, Math.toRadians(2)));
+		dispersion.setWindSpeed(Distribution.uniform(-1, 1));
+		dispersion.setWindDirection(Distribution.normal(0, Math.toRadians(10)));
+		dispersion.setMotorImpulse(Distribution.normal(0, 0.05));
+		dispersion.setMass(Distribution.normal(0, 0.03));
+		dispersion.setCGOffset(Distribution.normal(0, 0.005));
+		return dispersion;
+	}
+
+	private static DispersionStatistics run(int threads, long seed) throws Exception {
+		BatchSimulationRunner runner = new BatchSimulationRunner(threads);
+		try {
+			return new DispersionRunner(createSimulation(), createDispersion()).run(runner, 8, seed);
+		} finally {
+			runner.shutdown();
+		}
+	}
+
+	@Test
+	public void testReproducible() throws Exception {
+		DispersionStatistics serial = run(1, 42);
+		DispersionStatistics parallel = run(4, 42);
+
+		assertEquals(8, serial.getCount());
+		assertEquals(0, serial.getFailureCount());
+		assertEquals(serial.getApogee().getMean(), parallel.getApogee().getMean(), 0);
+		assertEquals(serial.getApogee().getStandardDeviation(), parallel.getApogee().getStandardDeviation(), 0);
+		assertEquals(serial.getFlightTime().getMax(), parallel.getFlightTime().getMax(), 0);
+		assertEquals(serial.getLandingEllipse(0.5).getSemiMajorAxis(),
+				parallel.getLandingEllipse(0.5).getSemiMajorAxis(), 0);
+
+		// The dispersions must produce different flights
+		assertTrue(serial.getApogee().getStandardDeviation() > 0.1);
+
+		DispersionStatistics other = run(2, 43);
+		assertTrue(serial.getApogee().getMean() != other.getApogee().getMean());
+	}
+
+	@Test
+	public void testNoDispersionMatchesNominal() throws Exception {
+		Simulation sim = createSimulation();
+		DispersionRunner runner = new DispersionRunner(sim, new Dispersion());
+		DispersionSample sample = runner.getSample(7, 3);
+		assertEquals(null, sample.getListener());
+
+		sim.getOptions().setRandomSeed(sample.getSeed());
+		sim.simulate();
+
+		BatchSimulationRunner batch = new BatchSimulationRunner(1);
+		try {
+			BatchSimulationRunner.Result result = batch.simulateConditions(
+					Collections.singletonList(runner.createConditions(7, 3))).take();
+			assertTrue(result.isSuccessful());
+			assertEquals(sim.getSimulatedData().getMaxAltitude(), result.getFlightData().getMaxAltitude(), 0);
+		} finally {
+			batch.shutdown();
+		}
+	}
+
+	@Test
+	public void testLandingEllipse() {
+		DispersionStatistics statistics = new DispersionStatistics();
+		// Points on the axes of an ellipse rotated by 45 degrees
+		double a = 2 / Math.sqrt(2);
+		double b = 1 / Math.sqrt(2);
+		statistics.addLandingPoint(10 + a, 20 + a);
+		statistics.addLandingPoint(10 - a, 20 - a);
+		statistics.addLandingPoint(10 - b, 20 + b);
+		statistics.addLandingPoint(10 + b, 20 - b);
+
+		DispersionStatistics.LandingEllipse ellipse = statistics.getLandingEllipse(1 - Math.exp(-0.5));
+		assertNotNull(ellipse);
+		assertEquals(10, ellipse.getX(), EPSILON);
+		assertEquals(20, ellipse.getY(), EPSILON);
+		// Variances along the axes are 2*4/3 and 2*1/3
+		assertEquals(Math.sqrt(8.0 / 3), ellipse.getSemiMajorAxis(), EPSILON);
+		assertEquals(Math.sqrt(2.0 / 3), ellipse.getSemiMinorAxis(), EPSILON);
+		assertEquals(Math.PI / 4, ellipse.getAngle(), EPSILON);
+	}
+
+	@Test
+	public void testRunSeeds() {
+		assertEquals(Dispersion.getRunSeed(1, 5), Dispersion.getRunSeed(1, 5));
+		assertTrue(Dispersion.getRunSeed(1, 5) != Dispersion.getRunSeed(1, 6));
+		assertTrue(Dispersion.getRunSeed(1, 5) != Dispersion.getRunSeed(2, 5));
+	}
+}
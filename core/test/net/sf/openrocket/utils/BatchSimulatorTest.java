@@ -0,0 +1,236 @@
+package net.sf.openrocket.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import net.sf.openrocket.ServicesForTesting;
+import net.sf.openrocket.database.ComponentPresetDao;
+import net.sf.openrocket.database.ComponentPresetDatabase;
+import net.sf.openrocket.database.motor.MotorDatabase;
+import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.document.OpenRocketDocument;
+import net.sf.openrocket.document.OpenRocketDocumentFactory;
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.document.StorageOptions;
+import net.sf.openrocket.file.GeneralRocketLoader;
+import net.sf.openrocket.file.GeneralRocketSaver;
+import net.sf.openrocket.motor.MotorConfiguration;
+import net.sf.openrocket.motor.ThrustCurveMotor;
+import net.sf.openrocket.plugin.PluginModule;
+import net.sf.openrocket.rocketcomponent.FlightConfigurationId;
+import net.sf.openrocket.rocketcomponent.MotorMount;
+import net.sf.openrocket.rocketcomponent.Rocket;
+import net.sf.openrocket.rocketcomponent.RocketComponent;
+import net.sf.openrocket.simulation.FlightData;
+import net.sf.openrocket.startup.Application;
+import net.sf.openrocket.util.FileUtils;
+import net.sf.openrocket.util.TestRockets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Module;
+import com.google.inject.util.Modules;
+
+public class BatchSimulatorTest {
+
+	private static final ThrustCurveMotorSetDatabase motors = new ThrustCurveMotorSetDatabase();
+	private static Rocket rocket;
+
+	private File dir;
+	private File outputDir;
+	private File file;
+
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	private final BatchSimulator simulator = new BatchSimulator(new PrintStream(output), new PrintStream(output));
+
+	@BeforeClass
+	public static void setup() {
+		Module applicationModule = new ServicesForTesting();
+		Module pluginModule = new PluginModule();
+
+		Module dbOverrides = new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(ComponentPresetDao.class).toInstance(new ComponentPresetDatabase());
+				bind(MotorDatabase.class).toInstance(motors);
+			}
+		};
+
+		Application.setInjector(Guice.createInjector(Modules.override(applicationModule).with(dbOverrides), pluginModule));
+
+		// The documents are loaded using the motors of the test rocket
+		rocket = TestRockets.makeEstesAlphaIII();
+		for (RocketComponent c : rocket) {
+			if (!(c instanceof MotorMount)) {
+				continue;
+			}
+			for (FlightConfigurationId fcid : rocket.getIds()) {
+				MotorConfiguration config = ((MotorMount) c).getMotorConfig(fcid);
+				if (config.getMotor() instanceof ThrustCurveMotor) {
+					motors.addMotor((ThrustCurveMotor) config.getMotor());
+				}
+			}
+		}
+	}
+
+	@Before
+	public void createFiles() throws Exception {
+		dir = createTempDirectory();
+		outputDir = new File(dir, "out");
+
+		OpenRocketDocument doc = OpenRocketDocumentFactory.createDocumentFromRocket(rocket);
+		Simulation first = TestRockets.makeAlphaIIISimulation(doc.getRocket());
+		first.setName("First");
+		doc.addSimulation(first);
+		Simulation second = TestRockets.makeAlphaIIISimulation(doc.getRocket());
+		second.setName("Second");
+		doc.addSimulation(second);
+		file = new File(dir, "design.ork");
+		StorageOptions options = new StorageOptions();
+		options.setSimulationTimeSkip(StorageOptions.SIMULATION_DATA_NONE);
+		new GeneralRocketSaver().save(file, doc, options);
+	}
+
+	@After
+	public void deleteFiles() {
+		delete(dir);
+	}
+
+
+	@Test
+	public void testCSVOutput() throws Exception {
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run("-t", "2", "-o", outputDir.getPath(), dir.getPath()));
+		assertEquals(2, simulator.getSimulationCount());
+
+		File csv = new File(outputDir, "design-simulation2-branch1.csv");
+		assertTrue(csv.isFile());
+		BufferedReader reader = new BufferedReader(new FileReader(csv));
+		try {
+			assertTrue(reader.readLine().startsWith("# Second"));
+		} finally {
+			reader.close();
+		}
+		assertTrue(new File(outputDir, "design-simulation1-branch1.csv").isFile());
+	}
+
+	@Test
+	public void testSelectedSimulation() throws Exception {
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run("-s", "Second", "-o", outputDir.getPath(), file.getPath()));
+		assertEquals(1, simulator.getSimulationCount());
+		assertFalse(new File(outputDir, "design-simulation1-branch1.csv").exists());
+		assertTrue(new File(outputDir, "design-simulation2-branch1.csv").isFile());
+	}
+
+	@Test
+	public void testDocumentOutput() throws Exception {
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run("-f", "ork", "-o", outputDir.getPath(), file.getPath()));
+
+		OpenRocketDocument loaded = new GeneralRocketLoader(new File(outputDir, "design.ork")).load();
+		assertEquals(2, loaded.getSimulations().size());
+		for (Simulation sim : loaded.getSimulations()) {
+			FlightData data = sim.getSimulatedData();
+			assertTrue(data.getMaxAltitude() > 0);
+			assertTrue(data.getBranch(0).getLength() > 10);
+		}
+	}
+
+	@Test
+	public void testOptionsNotKept() throws Exception {
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run("-f", "ork", "-s", "First", "-o", outputDir.getPath(), file.getPath()));
+		assertTrue(new File(outputDir, "design.ork").isFile());
+
+		// The defaults write CSV files of all simulations next to the document
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run(file.getPath()));
+		assertEquals(2, simulator.getSimulationCount());
+		assertTrue(new File(dir, "design-simulation1-branch1.csv").isFile());
+		assertTrue(new File(dir, "design-simulation2-branch1.csv").isFile());
+		assertFalse(new File(outputDir, "design-simulation1-branch1.csv").exists());
+	}
+
+	@Test
+	public void testSubdirectories() throws Exception {
+		File input = new File(dir, "in");
+		copy(file, new File(input, "a/design.ork"));
+		copy(file, new File(input, "b/design.ork"));
+		assertEquals(BatchSimulator.EXIT_OK, simulator.run("-s", "First", "-o", outputDir.getPath(), input.getPath()));
+		assertEquals(2, simulator.getSimulationCount());
+		assertTrue(new File(outputDir, "a/design-simulation1-branch1.csv").isFile());
+		assertTrue(new File(outputDir, "b/design-simulation1-branch1.csv").isFile());
+
+		// Files of the same name given separately would overwrite the results
+		assertEquals(BatchSimulator.EXIT_USAGE, simulator.run("-o", outputDir.getPath(),
+				new File(input, "a/design.ork").getPath(), new File(input, "b/design.ork").getPath()));
+	}
+
+	@Test
+	public void testDocumentOutputRequiresDirectory() throws Exception {
+		long modified = file.lastModified();
+		assertEquals(BatchSimulator.EXIT_USAGE, simulator.run("-f", "ork", file.getPath()));
+		assertEquals(modified, file.lastModified());
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		File broken = new File(dir, "broken.ork");
+		OutputStream os = new FileOutputStream(broken);
+		os.write("not a rocket".getBytes("UTF-8"));
+		os.close();
+		assertEquals(BatchSimulator.EXIT_FILE_ERROR, simulator.run("-o", outputDir.getPath(), dir.getPath()));
+		assertEquals(2, simulator.getSimulationCount());
+		assertEquals(0, simulator.getSimulationErrors());
+
+		assertEquals(BatchSimulator.EXIT_USAGE, simulator.run());
+		assertEquals(BatchSimulator.EXIT_USAGE, simulator.run("-f", "xml", file.getPath()));
+		assertEquals(BatchSimulator.EXIT_USAGE, simulator.run(new File(dir, "missing.ork").getPath()));
+	}
+
+
+	private static void copy(File from, File to) throws IOException {
+		to.getParentFile().mkdirs();
+		InputStream in = new FileInputStream(from);
+		try {
+			OutputStream out = new FileOutputStream(to);
+			try {
+				FileUtils.copy(in, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static File createTempDirectory() throws IOException {
+		File dir = File.createTempFile("BatchSimulatorTest", "");
+		dir.delete();
+		dir.mkdir();
+		return dir;
+	}
+
+	private static void delete(File file) {
+		File[] list = file.listFiles();
+		if (list != null) {
+			for (File f : list) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
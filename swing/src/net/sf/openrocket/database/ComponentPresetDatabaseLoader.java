@@ -1,11 +1,15 @@
 package net.sf.openrocket.database;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.Collection;
 import java.util.List;
 
+import net.sf.openrocket.arch.SystemInfo;
+import net.sf.openrocket.file.LoaderCache;
+import net.sf.openrocket.file.ParallelLoader;
 import net.sf.openrocket.file.iterator.DirectoryIterator;
 import net.sf.openrocket.file.iterator.FileIterator;
 import net.sf.openrocket.gui.util.SimpleFileFilter;
@@ -29,6 +33,7 @@ public class ComponentPresetDatabaseLoader extends AsynchronousDatabaseLoader {
 	private final static Logger log = LoggerFactory.getLogger(ComponentPresetDatabaseLoader.class);
 	
 	private static final String SYSTEM_PRESET_DIR = "datafiles/presets";
+	private static final String CACHE_FILE = "Cache/UserComponents.ser";
 	private int fileCount = 0;
 	private int presetCount = 0;
 	
@@ -63,25 +68,33 @@ public class ComponentPresetDatabaseLoader extends AsynchronousDatabaseLoader {
 	/**
 	 * loads the user defined defined components into the database
 	 * uses the directory defined in the preferences
+	 * <p>
+	 * The files are parsed in parallel, and the presets are added to the database
+	 * in the order of the files.  The parsed presets are cached in the user's
+	 * application directory, so unchanged files are not parsed again.
 	 */
 	private void loadUserComponents() {
 		SimpleFileFilter orcFilter = new SimpleFileFilter("", false, "orc");
-		FileIterator iterator;
+		LoaderCache<ComponentPreset> cache = new LoaderCache<ComponentPreset>(
+				new File(SystemInfo.getUserApplicationDirectory(), CACHE_FILE));
+		ParallelLoader<ComponentPreset> loader = new ParallelLoader<ComponentPreset>(new OpenRocketComponentLoader());
+		loader.setCache(cache);
 		try {
-			iterator = new DirectoryIterator(
-					((SwingPreferences) Application.getPreferences()).getDefaultUserComponentDirectory(),
-					orcFilter,
-					true);
+			cache.read();
+			loader.addDirectory(((SwingPreferences) Application.getPreferences()).getDefaultUserComponentDirectory(), orcFilter);
 		} catch (IOException ioex) {
 			log.debug("Error opening UserComponentDirectory", ioex);
-			return;
 		}
-		while (iterator.hasNext()) {
-			Pair<String, InputStream> f = iterator.next();
-			Collection<ComponentPreset> presets = loadFile(f.getU(), f.getV());
-			componentPresetDao.addAll(presets);
-			fileCount++;
-			presetCount += presets.size();
+		try {
+			for (Pair<String, Collection<ComponentPreset>> f : loader.getResults()) {
+				componentPresetDao.addAll(f.getV());
+				fileCount++;
+				presetCount += f.getV().size();
+			}
+			cache.write();
+		} catch (InterruptedException e) {
+			log.warn("Interrupted while loading user components");
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -110,20 +123,4 @@ public class ComponentPresetDatabaseLoader extends AsynchronousDatabaseLoader {
 			}
 		}
 	}
-	
-	/**
-	 * load components from a custom component file
-	 * uses an OpenRocketComponentLoader for the job
-	 * 
-	 * @param fileName	name of the file to be 
-	 * @param stream	the input stream to the file
-	 * @return	a collection of components preset from the file
-	 */
-	private Collection<ComponentPreset> loadFile(String fileName, InputStream stream) {
-		log.debug("loading from file: " + fileName);
-		OpenRocketComponentLoader loader = new OpenRocketComponentLoader();
-		Collection<ComponentPreset> presets = loader.load(stream, fileName);
-		return presets;
-		
-	}
 }
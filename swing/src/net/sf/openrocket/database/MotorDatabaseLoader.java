@@ -1,25 +1,31 @@
 package net.sf.openrocket.database;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import net.sf.openrocket.arch.SystemInfo;
 import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.file.Loader;
+import net.sf.openrocket.file.LoaderCache;
+import net.sf.openrocket.file.ParallelLoader;
 import net.sf.openrocket.file.iterator.DirectoryIterator;
 import net.sf.openrocket.file.iterator.FileIterator;
+import net.sf.openrocket.file.motor.BinaryMotorDatabase;
 import net.sf.openrocket.file.motor.GeneralMotorLoader;
 import net.sf.openrocket.gui.util.SimpleFileFilter;
 import net.sf.openrocket.gui.util.SwingPreferences;
 import net.sf.openrocket.motor.ThrustCurveMotor;
 import net.sf.openrocket.startup.Application;
 import net.sf.openrocket.util.BugException;
+import net.sf.openrocket.util.JarUtil;
 import net.sf.openrocket.util.Pair;
 
 /**
@@ -34,6 +40,7 @@ public class MotorDatabaseLoader extends AsynchronousDatabaseLoader {
 	private final static Logger log = LoggerFactory.getLogger(MotorDatabaseLoader.class);
 	
 	private static final String THRUSTCURVE_DIRECTORY = "datafiles/thrustcurves/";
+	private static final String CACHE_FILE = "Cache/UserMotors.ser";
 	private static final long STARTUP_DELAY = 0;
 	
 	private final ThrustCurveMotorSetDatabase database = new ThrustCurveMotorSetDatabase();
@@ -49,7 +56,7 @@ public class MotorDatabaseLoader extends AsynchronousDatabaseLoader {
 	
 	@Override
 	protected void loadDatabase() {
-		loadSerializedMotorDatabase();
+		loadBinaryMotorDatabase();
 		loadUserDefinedMotors();
 	}
 
@@ -57,50 +64,91 @@ public class MotorDatabaseLoader extends AsynchronousDatabaseLoader {
 	/**
 	 * Loads the user defined motors
 	 * the directories are defined in the preferences
+	 * <p>
+	 * The files are parsed in parallel, and the motors are added to the database
+	 * in the order of the files.  The parsed motors are cached in the user's
+	 * application directory, so unchanged files are not parsed again.
 	 */
 	private void loadUserDefinedMotors() {
-		GeneralMotorLoader loader = new GeneralMotorLoader();
+		final GeneralMotorLoader loader = new GeneralMotorLoader();
 		SimpleFileFilter fileFilter = new SimpleFileFilter("", loader.getSupportedExtensions());
 		log.info("Starting reading user-defined motors");
+		
+		// Parse the files and build the motors in parallel
+		ParallelLoader<ThrustCurveMotor> parallelLoader = new ParallelLoader<ThrustCurveMotor>(new Loader<ThrustCurveMotor>() {
+			@Override
+			public Collection<ThrustCurveMotor> load(InputStream stream, String filename) throws IOException {
+				List<ThrustCurveMotor> motors = new ArrayList<ThrustCurveMotor>();
+				for (ThrustCurveMotor.Builder builder : loader.load(stream, filename)) {
+					motors.add(builder.build());
+				}
+				return motors;
+			}
+		});
+		LoaderCache<ThrustCurveMotor> cache = new LoaderCache<ThrustCurveMotor>(
+				new File(SystemInfo.getUserApplicationDirectory(), CACHE_FILE));
+		cache.read();
+		parallelLoader.setCache(cache);
+		
 		for (File file : ((SwingPreferences) Application.getPreferences()).getUserThrustCurveFiles()) {
 			if (file.isFile()) {
-				loadFile(loader, file);
+				loadFile(parallelLoader, file);
 			} else if (file.isDirectory()) {
-				loadDirectory(loader, fileFilter, file);
+				loadDirectory(parallelLoader, fileFilter, file);
 			} else {
 				log.warn("User-defined motor file " + file + " is neither file nor directory");
 			}
 		}
+		
+		try {
+			for (Pair<String, Collection<ThrustCurveMotor>> f : parallelLoader.getResults()) {
+				addMotors(f.getV());
+			}
+			cache.write();
+		} catch (InterruptedException e) {
+			log.warn("Interrupted while reading user-defined motors");
+			Thread.currentThread().interrupt();
+		}
 		log.info("Ending reading user-defined motors, motorCount=" + motorCount);
 	}
 
 
 	/**
-	 * Loads the default, with established serialized manufacturing and data
+	 * Loads the built-in motor database in the binary format
 	 * uses directory "datafiles/thrustcurves" for data  
 	 */
-	private void loadSerializedMotorDatabase() {
-		log.info("Starting reading serialized motor database");
-		FileIterator iterator = DirectoryIterator.findDirectory(THRUSTCURVE_DIRECTORY, new SimpleFileFilter("", false, "ser"));
+	private void loadBinaryMotorDatabase() {
+		log.info("Starting reading binary motor database");
+		FileIterator iterator = DirectoryIterator.findDirectory(THRUSTCURVE_DIRECTORY, new SimpleFileFilter("", false, "bin"));
 		while (iterator.hasNext()) {
 			Pair<String, InputStream> f = iterator.next();
-			loadSerialized(f);
+			loadBinary(f);
 		}
-		log.info("Ending reading serialized motor database, motorCount=" + motorCount);
+		log.info("Ending reading binary motor database, motorCount=" + motorCount);
 	}
 	
 	
 	/**
-	 * loads a serailized motor data from an stream
+	 * loads a binary motor database from a stream, or from the file if the database
+	 * is a plain file, in which case the file is memory-mapped
 	 * 
-	 * @param f	the pair of a String with the filename (for logging) and the input stream
+	 * @param f	the pair of a String with the filename and the input stream
 	 */
-	@SuppressWarnings("unchecked")
-	private void loadSerialized(Pair<String, InputStream> f) {
+	private void loadBinary(Pair<String, InputStream> f) {
 		try {
 			log.debug("Reading motors from file " + f.getU());
-			ObjectInputStream ois = new ObjectInputStream(f.getV());
-			List<ThrustCurveMotor> motors = (List<ThrustCurveMotor>) ois.readObject();
+			List<ThrustCurveMotor> motors;
+			URL url = ClassLoader.getSystemResource(THRUSTCURVE_DIRECTORY + f.getU());
+			if (url != null && "file".equals(url.getProtocol())) {
+				f.getV().close();
+				motors = BinaryMotorDatabase.read(JarUtil.urlToFile(url));
+			} else {
+				try {
+					motors = BinaryMotorDatabase.read(f.getV());
+				} finally {
+					f.getV().close();
+				}
+			}
 			addMotors(motors);
 		} catch (Exception ex) {
 			throw new BugException(ex);
@@ -108,61 +156,32 @@ public class MotorDatabaseLoader extends AsynchronousDatabaseLoader {
 	}
 	
 	/**
-	 * loads a single motor file into the database using a simple file handler object
+	 * adds a single motor file to be loaded
 	 * 
-	 * @param loader	the motor loading handler object
+	 * @param loader	the loader of the motor files
 	 * @param file		the File to the file itself
 	 */
-	private void loadFile(GeneralMotorLoader loader, File file) {
+	private void loadFile(ParallelLoader<ThrustCurveMotor> loader, File file) {
 		try {
 			log.debug("Loading motors from file " + file);
-			loadFile(
-					loader,
-					new Pair<String,InputStream>(
-							file.getName(),
-							new BufferedInputStream(new FileInputStream(file))));
+			loader.add(file);
 		} catch (IOException e) {
 			log.warn("IOException while reading " + file + ": " + e, e);
 		}
 	}
 	
 	/**
-	 * loads a single motor file into the database using inputStream instead of file object
-	 * 
-	 * @param loader	an object to handle the loading
-	 * @param f			the pair of File name and its input stream
-	 */
-	private void loadFile(GeneralMotorLoader loader, Pair<String, InputStream> f) {
-		try {
-			List<ThrustCurveMotor.Builder> motors = loader.load(f.getV(), f.getU());
-			addMotorsFromBuilders(motors);
-			f.getV().close();
-		} catch (IOException e) {
-			log.warn("IOException while loading file " + f.getU() + ": " + e, e);
-			try {
-				f.getV().close();
-			} catch (IOException e1) {
-			}
-		}
-	}
-	
-	/**
-	 * loads an entire directory of motor files
+	 * adds an entire directory of motor files to be loaded
 	 * 
-	 * @param loader 		a motor loading handler object
+	 * @param loader 		the loader of the motor files
 	 * @param fileFilter	the supported extensions of files
 	 * @param file			the directory file object
 	 */
-	private void loadDirectory(GeneralMotorLoader loader, SimpleFileFilter fileFilter, File file) {
-		FileIterator iterator;
+	private void loadDirectory(ParallelLoader<ThrustCurveMotor> loader, SimpleFileFilter fileFilter, File file) {
 		try {
-			iterator = new DirectoryIterator(file, fileFilter, true);
+			loader.addDirectory(file, fileFilter);
 		} catch (IOException e) {
 			log.warn("Unable to read directory " + file + ": " + e, e);
-			return;
-		}
-		while (iterator.hasNext()) {
-			loadFile(loader, iterator.next());
 		}
 	}
 
@@ -173,25 +192,13 @@ public class MotorDatabaseLoader extends AsynchronousDatabaseLoader {
 	 * adds a motor list into the database
 	 * @param motors	the list of motors to be added
 	 */
-	private synchronized void addMotors(List<ThrustCurveMotor> motors) {
+	private synchronized void addMotors(Collection<ThrustCurveMotor> motors) {
 		for (ThrustCurveMotor m : motors) {
 			motorCount++;
 			database.addMotor(m);
 		}
 	}
 	
-	/**
-	 * builds the motors while building them
-	 * 
-	 * @param motorBuilders List of motor builders to be used for adding motor into the database
-	 */
-	private synchronized void addMotorsFromBuilders(List<ThrustCurveMotor.Builder> motorBuilders) {
-		for (ThrustCurveMotor.Builder m : motorBuilders) {
-			motorCount++;
-			database.addMotor(m.build());
-		}
-	}
-	
 	/**
 	 * Returns the loaded database.  If the database has not fully loaded,
 	 * this blocks until it is.
@@ -51,6 +51,7 @@ import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.BevelBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ChangeEvent;
@@ -69,6 +70,7 @@ import net.sf.openrocket.document.OpenRocketDocument;
 import net.sf.openrocket.document.OpenRocketDocumentFactory;
 import net.sf.openrocket.document.StorageOptions;
 import net.sf.openrocket.document.StorageOptions.FileType;
+import net.sf.openrocket.file.DocumentJournal;
 import net.sf.openrocket.file.GeneralRocketSaver;
 import net.sf.openrocket.file.RocketLoadException;
 import net.sf.openrocket.gui.components.StyledLabel;
@@ -97,6 +99,7 @@ import net.sf.openrocket.gui.util.Icons;
 import net.sf.openrocket.gui.util.OpenFileWorker;
 import net.sf.openrocket.gui.util.SaveFileWorker;
 import net.sf.openrocket.gui.util.SwingPreferences;
+import net.sf.openrocket.l10n.L10N;
 import net.sf.openrocket.l10n.Translator;
 import net.sf.openrocket.logging.Markers;
 import net.sf.openrocket.rocketcomponent.ComponentChangeEvent;
@@ -130,6 +133,9 @@ public class BasicFrame extends JFrame {
 	public static final int CONFIGURATION_TAB = 1;
 	public static final int SIMULATION_TAB = 2;
 
+	/** Interval between recording unsaved changes in the journal of the file, in milliseconds. */
+	private static final int JOURNAL_INTERVAL = 30000;
+
 
 	/**
 	 * List of currently open frames.  When the list goes empty
@@ -147,6 +153,10 @@ public class BasicFrame extends JFrame {
 	private final OpenRocketDocument document;
 	private final Rocket rocket;
 
+	/** The journal of unsaved changes of the document file, or null if none. */
+	private DocumentJournal journal = null;
+	private final Timer journalTimer;
+
 	private JTabbedPane tabbedPane;
 	private RocketPanel rocketpanel;
 	private ComponentTree tree = null;
@@ -239,6 +249,19 @@ public class BasicFrame extends JFrame {
 		this.pack();
 
 
+		// Record unsaved changes of documents saved in OpenRocket format, including recovered changes
+		journalTimer = new Timer(JOURNAL_INTERVAL, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				checkpointJournal();
+			}
+		});
+		if (document.getFile() != null &&
+				document.getDefaultStorageOptions().getFileType() == FileType.OPENROCKET) {
+			startJournal(document.getFile());
+		}
+
+
 		// Set initial window size
 		Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
 		size.width = size.width * 9 / 10;
@@ -1282,6 +1305,12 @@ public class BasicFrame extends JFrame {
 		}
 
 
+		// Offer to recover the changes recorded in the journal of the file
+		File file = doc.getFile();
+		if (file != null && DocumentJournal.hasJournal(file)) {
+			doc = recover(doc, file, displayName, parent);
+		}
+
 		// Show warnings
 		WarningSet warnings = worker.getRocketLoader().getWarnings();
 		if (!warnings.isEmpty()) {
@@ -1312,6 +1341,85 @@ public class BasicFrame extends JFrame {
 		return true;
 	}
 
+	/**
+	 * Ask whether to recover the unsaved changes recorded in the journal of a file, and
+	 * recover them if requested.  The journal is deleted if the changes are not recovered.
+	 *
+	 * @param doc			the document loaded from the file.
+	 * @param file			the file.
+	 * @param displayName	the file name to display in dialogs.
+	 * @param parent		the parent window for dialogs.
+	 * @return				the recovered document, or the loaded document.
+	 */
+	private static OpenRocketDocument recover(OpenRocketDocument doc, File file, String displayName, Window parent) {
+		int result = JOptionPane.showConfirmDialog(parent,
+				L10N.replace(trans.get("BasicFrame.dlg.recover.txt"), "{filename}", displayName),
+				trans.get("BasicFrame.dlg.recover.title"), JOptionPane.YES_NO_OPTION,
+				JOptionPane.QUESTION_MESSAGE);
+		if (result != JOptionPane.YES_OPTION) {
+			log.info(Markers.USER_MARKER, "User decided not to recover changes of " + file);
+			DocumentJournal.getJournalFile(file).delete();
+			return doc;
+		}
+
+		try {
+			WarningSet warnings = new WarningSet();
+			OpenRocketDocument recovered = DocumentJournal.recover(file, warnings);
+			if (!warnings.isEmpty()) {
+				log.info("Warnings while recovering changes: " + warnings);
+			}
+			recovered.setFile(file);
+			recovered.setSaved(false);
+			return recovered;
+		} catch (RocketLoadException e) {
+			log.warn("Unable to recover changes of " + file, e);
+			JOptionPane.showMessageDialog(parent,
+					trans.get("BasicFrame.dlg.recover.error") + " " + e.getMessage(),
+					trans.get("BasicFrame.dlg.recover.title"), JOptionPane.ERROR_MESSAGE);
+			return doc;
+		}
+	}
+
+	/**
+	 * Start recording the unsaved changes of the document in the journal of the file it
+	 * has just been loaded from, recovered from or saved to.  The journal of a recovered
+	 * document is kept until it is replaced by the first checkpoint.
+	 */
+	private void startJournal(File file) {
+		if (journal != null) {
+			stopJournal();
+		}
+		journal = new DocumentJournal(document, file);
+		journalTimer.start();
+	}
+
+	/**
+	 * Stop recording the changes of the document and delete the journal.  The journal of
+	 * a recovered document that is not recorded yet is deleted as well.
+	 */
+	private void stopJournal() {
+		journalTimer.stop();
+		if (journal != null) {
+			journal.discard();
+			journal.close();
+			journal = null;
+		} else if (document.getFile() != null) {
+			DocumentJournal.getJournalFile(document.getFile()).delete();
+		}
+	}
+
+	private void checkpointJournal() {
+		if (journal == null) {
+			return;
+		}
+		try {
+			// Only the snapshot is taken on the EDT, the journal is written in the background
+			journal.submitCheckpoint();
+		} catch (IOException e) {
+			log.warn("Unable to record changes in the journal", e);
+		}
+	}
+
 	/**
 	 * "Save" action.  If the design is new, then this is identical to "Save As", with a default file filter for .ork.
 	 * If the rocket being edited previously was opened from a .ork file, then it will be saved immediately to the same
@@ -1468,12 +1576,15 @@ public class BasicFrame extends JFrame {
 		document.getDefaultStorageOptions().setFileType(FileType.OPENROCKET);
 		SaveFileWorker worker = new SaveFileWorker(document, file, ROCKET_SAVER);
 
+		// The journal is not written while the file is
+		journalTimer.stop();
 		if (!SwingWorkerDialog.runWorker(this, "Saving file",
 				"Writing " + file.getName() + "...", worker)) {
 
 			// User cancelled the save
 			log.info(Markers.USER_MARKER, "User cancelled the save, deleting the file");
 			file.delete();
+			restartJournal();
 			return false;
 		}
 
@@ -1482,6 +1593,7 @@ public class BasicFrame extends JFrame {
 			document.setFile(file);
 			document.setSaved(true);
 			setTitle();
+			startJournal(file);
 			return true;
 		} catch (ExecutionException e) {
 
@@ -1492,6 +1604,7 @@ public class BasicFrame extends JFrame {
 				JOptionPane.showMessageDialog(this, new String[] {
 						"An I/O error occurred while saving:",
 						e.getMessage() }, "Saving failed", JOptionPane.ERROR_MESSAGE);
+				restartJournal();
 				return false;
 			} else {
 				Reflection.handleWrappedException(e);
@@ -1501,9 +1614,16 @@ public class BasicFrame extends JFrame {
 			throw new BugException("EDT was interrupted", e);
 		}
 
+		restartJournal();
 		return false;
 	}
 
+	private void restartJournal() {
+		if (journal != null) {
+			journalTimer.start();
+		}
+	}
+
 
 	private boolean closeAction() {
 		if (!document.isSaved()) {
@@ -1533,6 +1653,7 @@ public class BasicFrame extends JFrame {
 		}
 
 		// Rocket has been saved or discarded
+		stopJournal();
 		log.debug("Disposing window");
 		this.dispose();
 
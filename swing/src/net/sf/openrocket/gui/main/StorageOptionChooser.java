@@ -5,6 +5,7 @@ import java.awt.event.ActionListener;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -39,6 +40,8 @@ public class StorageOptionChooser extends JPanel {
 	
 	private JSpinner timeSpinner;
 	
+	private JCheckBox binaryCheck;
+	
 	private JLabel estimateLabel;
 	
 	
@@ -118,7 +121,16 @@ public class StorageOptionChooser extends JPanel {
 				trans.get("StorageOptChooser.lbl.longC2"));
 		buttonGroup.add(noneButton);
 		noneButton.addActionListener(actionUpdater);
-		this.add(noneButton, "spanx, wrap 20lp");
+		this.add(noneButton, "spanx, wrap para");
+		
+		//// Store data in binary format
+		binaryCheck = new JCheckBox(trans.get("StorageOptChooser.checkbox.Binary"));
+		//// <html>Store the simulated data in a compact binary format.<br>
+		//// Smaller and faster, but older versions show only the primary figures.
+		binaryCheck.setToolTipText(trans.get("StorageOptChooser.lbl.longE1") +
+				trans.get("StorageOptChooser.lbl.longE2"));
+		binaryCheck.addActionListener(actionUpdater);
+		this.add(binaryCheck, "spanx, wrap 20lp");
 		
 		// Estimate is updated in loadOptions(opts)
 		estimateLabel = new JLabel("");
@@ -157,6 +169,8 @@ public class StorageOptionChooser extends JPanel {
 		timeSpinner.setValue(t);
 		artificialEvent = false;
 		
+		binaryCheck.setSelected(opts.getSimulationDataFormat() == StorageOptions.DataFormat.BINARY);
+		
 		updateEstimate();
 	}
 	
@@ -174,6 +188,12 @@ public class StorageOptionChooser extends JPanel {
 		
 		opts.setSimulationTimeSkip(t);
 		
+		if (binaryCheck.isSelected()) {
+			opts.setSimulationDataFormat(StorageOptions.DataFormat.BINARY);
+		} else {
+			opts.setSimulationDataFormat(StorageOptions.DataFormat.TEXT);
+		}
+		
 		opts.setExplicitlySet(true);
 	}
 	
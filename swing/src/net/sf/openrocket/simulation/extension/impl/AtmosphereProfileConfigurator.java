@@ -0,0 +1,47 @@
+package net.sf.openrocket.simulation.extension.impl;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import net.sf.openrocket.document.Simulation;
+import net.sf.openrocket.plugin.Plugin;
+import net.sf.openrocket.simulation.extension.AbstractSwingSimulationExtensionConfigurator;
+
+@Plugin
+public class AtmosphereProfileConfigurator extends AbstractSwingSimulationExtensionConfigurator<AtmosphereProfile> {
+	
+	public AtmosphereProfileConfigurator() {
+		super(AtmosphereProfile.class);
+	}
+	
+	@Override
+	protected JComponent getConfigurationComponent(final AtmosphereProfile extension, Simulation simulation, JPanel panel) {
+		panel.add(new JLabel(trans.get("SimulationExtension.atmosphereprofile.desc")), "wrap para");
+		panel.add(new JLabel(trans.get("SimulationExtension.atmosphereprofile.fileName")), "wrap rel");
+		final JTextField textField = new JTextField(extension.getFileName());
+		textField.getDocument().addDocumentListener(new DocumentListener() {
+			public void changedUpdate(DocumentEvent e) {
+				update();
+			}
+			
+			public void removeUpdate(DocumentEvent e) {
+				update();
+			}
+			
+			public void insertUpdate(DocumentEvent e) {
+				update();
+			}
+			
+			public void update() {
+				extension.setFileName(textField.getText());
+			}
+		});
+		panel.add(textField, "growx");
+		return panel;
+	}
+	
+}
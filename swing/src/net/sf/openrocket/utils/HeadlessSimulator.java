@@ -0,0 +1,124 @@
+package net.sf.openrocket.utils;
+
+import java.util.Locale;
+
+import net.sf.openrocket.database.ComponentPresetDao;
+import net.sf.openrocket.database.ComponentPresetDatabaseLoader;
+import net.sf.openrocket.database.MotorDatabaseLoader;
+import net.sf.openrocket.database.motor.MotorDatabase;
+import net.sf.openrocket.database.motor.ThrustCurveMotorSetDatabase;
+import net.sf.openrocket.plugin.PluginModule;
+import net.sf.openrocket.startup.Application;
+import net.sf.openrocket.startup.GuiModule;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.util.Modules;
+
+/**
+ * Utility that runs the simulations of OpenRocket documents without opening any
+ * windows, for example to run regression sweeps over a set of designs.  The
+ * options and exit codes are described in {@link BatchSimulator}.
+ *
+ * Usage:
+ *   java -cp OpenRocket.jar net.sf.openrocket.utils.HeadlessSimulator [options] <files or directories...>
+ */
+public class HeadlessSimulator {
+
+	public static void main(String[] args) {
+
+		setup();
+
+		int status = new BatchSimulator(System.out, System.err).run(args);
+		System.exit(status);
+
+	}
+
+	private static void setup() {
+		setupLogging();
+		System.setProperty("java.awt.headless", "true");
+		Locale.setDefault(Locale.US);
+
+		// The user preferences and the motor and component databases are needed to load the documents
+		HeadlessModule headlessModule = new HeadlessModule();
+		Module pluginModule = new PluginModule();
+		Injector injector = Guice.createInjector(Modules.override(new GuiModule()).with(headlessModule), pluginModule);
+		Application.setInjector(injector);
+
+		headlessModule.startLoader();
+	}
+
+	
+	/**
+	 * Log only warnings and errors, to standard error, so that the results written
+	 * to standard output can be parsed.
+	 */
+	private static void setupLogging() {
+		Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+		logger.detachAndStopAllAppenders();
+		logger.setLevel(Level.WARN);
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		ConsoleAppender<ILoggingEvent> appender = new ConsoleAppender<ILoggingEvent>();
+		appender.setName("console");
+		appender.setContext(context);
+		appender.setTarget("System.err");
+		PatternLayoutEncoder layout = new PatternLayoutEncoder();
+		layout.setContext(context);
+		layout.setPattern("%-5level %logger{2} - %message%n");
+		layout.start();
+		appender.setEncoder(layout);
+		appender.start();
+		logger.addAppender(appender);
+	}
+
+
+	/**
+	 * Provides the databases of the GUI module without a loading dialog, waiting
+	 * for loading to complete instead.
+	 */
+	private static class HeadlessModule extends AbstractModule {
+
+		private final ComponentPresetDatabaseLoader presetLoader = new ComponentPresetDatabaseLoader();
+		private final MotorDatabaseLoader motorLoader = new MotorDatabaseLoader();
+
+		@Override
+		protected void configure() {
+			Provider<ComponentPresetDao> presetProvider = new Provider<ComponentPresetDao>() {
+				@Override
+				public ComponentPresetDao get() {
+					presetLoader.blockUntilLoaded();
+					return presetLoader.getDatabase();
+				}
+			};
+			bind(ComponentPresetDao.class).toProvider(presetProvider).in(Scopes.SINGLETON);
+
+			Provider<ThrustCurveMotorSetDatabase> motorProvider = new Provider<ThrustCurveMotorSetDatabase>() {
+				@Override
+				public ThrustCurveMotorSetDatabase get() {
+					motorLoader.blockUntilLoaded();
+					return motorLoader.getDatabase();
+				}
+			};
+			bind(ThrustCurveMotorSetDatabase.class).toProvider(motorProvider).in(Scopes.SINGLETON);
+			bind(MotorDatabase.class).toProvider(motorProvider).in(Scopes.SINGLETON);
+		}
+
+		public void startLoader() {
+			presetLoader.startLoading();
+			motorLoader.startLoading();
+		}
+	}
+}